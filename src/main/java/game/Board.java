@@ -4,7 +4,10 @@
  */
 package game;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 
 import gomoku.Settings;
@@ -12,7 +15,9 @@ import gomoku.Settings;
 
 /**
  *
- * Warstwa logiczna planszy 
+ * Warstwa logiczna planszy. Stan pól przechowywany jest w postaci bitowej
+ * (po jednym bicie na pole dla każdego koloru), co pozwala na szybkie
+ * kopiowanie planszy i migawki stanu (zob. BoardSnapshot).
  * 
  * @author Maciej Kawecki
  * 
@@ -23,12 +28,25 @@ public class Board {
   protected int freeFieldsAmount;  
   /** Referencja do ustawień gry */
   private final Settings settings;
-  /** Wewnętrzna tablica zawierająca stan pól planszy */
+  /** Wewnętrzna tablica pól planszy (współrzędne, niezmienne) */
   private final BoardField[] fields;
-  /** Lista pustych pól */
-  private final List<BoardField> emptyFields;
+  /** Bitowa reprezentacja planszy: [0] - czarne, [1] - białe */
+  private final long[][] stones;
   /** Aktualny stan planszy  */
   private final BoardScoring scoring;
+  /** Przyrostowe wykrywanie wygranej */
+  private final BoardWinDetector winDetector;
+  /** Wykrywanie ruchów zabronionych */
+  private final ForbiddenMoveDetector forbiddenDetector;
+  /** Historia ruchów (ostatni na początku) */
+  private final Deque<BoardField> history;
+  /** Cofnięte ruchy do ponowienia (ostatnio cofnięty na początku) */
+  private final Deque<BoardField> redoHistory;
+  /** Maski kolumn dla przesunięć w wierszu o -RADIUS..RADIUS (generator kandydatów) */
+  private final long[][] colMasks;
+  
+  /** Promień otoczenia kamieni, w którym szukane są ruchy-kandydaci */
+  private final static int CANDIDATES_RADIUS = 2;
   
   
   /**
@@ -40,7 +58,6 @@ public class Board {
     this.settings = settings;
     
     freeFieldsAmount = settings.getFieldsAmount();
-    emptyFields = new ArrayList<>();
     fields = new BoardField[freeFieldsAmount];
     
     for (int a=0; a<settings.getColsAndRows(); a++) {
@@ -48,14 +65,58 @@ public class Board {
       int indeks = a*settings.getColsAndRows();     
       for (int b=0; b<settings.getColsAndRows(); b++) {    	
     	 fields[indeks+b] = new BoardField(a, b);
-    	 emptyFields.add(fields[indeks+b]);
       }
 
     }        
 	
-    scoring = new BoardScoring(settings);
+    stones = new long[2][(freeFieldsAmount + 63) / 64];
+    scoring = new BoardScoring(settings, stones);
+    winDetector = new BoardWinDetector(settings.getColsAndRows(), settings.getPiecesInRow(),
+    		settings.getRuleSet(), stones);
+    forbiddenDetector = new ForbiddenMoveDetector(settings.getColsAndRows(), settings.getPiecesInRow(), stones);
+    history = new ArrayDeque<>();
+    redoHistory = new ArrayDeque<>();
+    
+    // maska [RADIUS+s] - pola, które po przesunięciu o s w wierszu pozostają w tym samym wierszu
+    colMasks = new long[2*CANDIDATES_RADIUS + 1][stones[0].length];
+    for (int s=-CANDIDATES_RADIUS; s<=CANDIDATES_RADIUS; s++)
+      for (int i=0; i<fields.length; i++) {
+    	int b = fields[i].getB() + s;
+    	if (b >= 0 && b < settings.getColsAndRows()) colMasks[CANDIDATES_RADIUS+s][i >>> 6] |= 1L << i;
+      }
     
   }
+  
+  
+  /**
+   * Konstruktor kopii (np. dla równoległego przeszukiwania lub analizy)
+   * @param board Kopiowana plansza
+   */
+  private Board(Board board) {
+	  
+	settings = board.settings;
+	fields = board.fields;
+	freeFieldsAmount = board.freeFieldsAmount;
+	stones = new long[][] { board.stones[0].clone(), board.stones[1].clone() };
+	scoring = new BoardScoring(board.scoring, stones);
+	winDetector = new BoardWinDetector(board.winDetector, stones);
+	forbiddenDetector = new ForbiddenMoveDetector(settings.getColsAndRows(), settings.getPiecesInRow(), stones);
+	history = new ArrayDeque<>(board.history);
+	redoHistory = new ArrayDeque<>(board.redoHistory);
+	colMasks = board.colMasks;
+	  
+  }
+  
+  
+  /**
+   * Kopia planszy (razem z historią ruchów)
+   * @return Niezależna kopia planszy
+   */
+  public Board copy() {
+	  
+	return new Board(this);  
+	  
+  }
    
   
   
@@ -68,23 +129,22 @@ public class Board {
    */
   public BoardFieldState getFieldState(int a, int b) {
     
-    BoardFieldState tmp;  
-      
-    try {
-      tmp = fields[getIndex(a, b)].getState();
-    }
-    // wyjątek - a lub b poza zakresem
-    catch (Exception e) {
-      tmp = null; 
-    }
+    // a lub b poza zakresem
+    if (a<0 || b<0 || a>=settings.getColsAndRows() || b>=settings.getColsAndRows()) return null;
+    
+    int index = getIndex(a, b);
+    long bit = 1L << index;
     
-    return tmp;
+    if ((stones[0][index >>> 6] & bit) != 0) return BoardFieldState.BLACK;
+    if ((stones[1][index >>> 6] & bit) != 0) return BoardFieldState.WHITE;
+    
+    return BoardFieldState.EMPTY;
       
   }
   
   
   /**
-   * Metoda próbująca zmienić stan wskazanego pola planszy
+   * Metoda próbująca zmienić stan wskazanego pola planszy (bez zapisu w historii ruchów)
    * @param a Indeks a (kolumna) pola
    * @param b Indeks b (wiersz) pola
    * @param state Docelowa wartość(stan) pola
@@ -92,37 +152,205 @@ public class Board {
    */
   public boolean setFieldState(int a, int b, BoardFieldState state) {
     
-    boolean changed = false;  
-
-    try {
+    BoardFieldState prevState = getFieldState(a, b);
+    
+    // a lub b poza zakresem
+    if (prevState == null) return false;
+    if (prevState == state) return true;
          
-      int index = getIndex(a, b);  
-
-      fields[index].setState(state);     
+    int index = getIndex(a, b);  
+    long bit = 1L << index;
+    
+    scoring.update(a, b, -1);
       
-      if (state != BoardFieldState.EMPTY) {
-    	freeFieldsAmount--;
-    	emptyFields.remove(fields[index]);
-      }
-      else {
-    	freeFieldsAmount++;
-    	emptyFields.add(fields[index]);
-      }
-              
-      changed = true;      
-      scoring.update(a, b, state);
+    if (prevState != BoardFieldState.EMPTY) {
+      winDetector.remove(index, prevState);
+      stones[BoardWinDetector.getColor(prevState)][index >>> 6] &= ~bit;
+      freeFieldsAmount++;
+    }
       
+    if (state != BoardFieldState.EMPTY) {
+      stones[BoardWinDetector.getColor(state)][index >>> 6] |= bit;
+      freeFieldsAmount--;
+      winDetector.place(index, state);
     }
+              
+    scoring.update(a, b, 1);
     
-    // wyjątek - a lub b poza zakresem
-    catch (Exception e) {  System.err.println(e); }
-    
-    return changed;
-
+    return true;
     
   }    
   
   
+  /**
+   * Wykonanie ruchu z zapisem w historii (czyści listę ruchów do ponowienia)
+   * @param move Ruch (pole i kolor kamienia)
+   * @return true jeżeli wykonano ruch, false jeżeli pole jest zajęte lub poza planszą
+   */
+  public boolean makeMove(BoardField move) {
+	  
+	if (getFieldState(move.getA(), move.getB()) != BoardFieldState.EMPTY) return false;
+	
+	BoardField field = new BoardField(move.getA(), move.getB(), move.getState());
+	setFieldState(field.getA(), field.getB(), field.getState());
+	history.push(field);
+	redoHistory.clear();
+	
+	return true;
+	  
+  }
+  
+  
+  /**
+   * Cofnięcie ostatniego ruchu z historii
+   * @return Cofnięty ruch lub null jeżeli historia jest pusta
+   */
+  public BoardField undoMove() {
+	  
+	BoardField move = history.poll();
+	if (move == null) return null;
+	
+	setFieldState(move.getA(), move.getB(), BoardFieldState.EMPTY);
+	redoHistory.push(move);
+	
+	return move;
+	  
+  }
+  
+  
+  /**
+   * Ponowienie ostatnio cofniętego ruchu
+   * @return Ponowiony ruch lub null jeżeli nie ma ruchu do ponowienia
+   */
+  public BoardField redoMove() {
+	  
+	BoardField move = redoHistory.poll();
+	if (move == null) return null;
+	
+	setFieldState(move.getA(), move.getB(), move.getState());
+	history.push(move);
+	
+	return move;
+	  
+  }
+  
+  
+  /**
+   * Historia ruchów
+   * @return Lista ruchów, od pierwszego do ostatniego
+   */
+  public List<BoardField> getHistory() {
+	  
+	List<BoardField> list = new ArrayList<>(history.size());
+	Iterator<BoardField> it = history.descendingIterator();
+	while (it.hasNext()) list.add(it.next());
+	
+	return list;
+	  
+  }
+  
+  
+  public int getMovesAmount() {
+	return history.size();
+  }
+  
+  
+  public boolean canUndo() {
+	return !history.isEmpty();
+  }
+  
+  
+  public boolean canRedo() {
+	return !redoHistory.isEmpty();
+  }
+  
+  
+  /**
+   * Migawka bieżącego stanu planszy - O(liczba pól / 64)
+   * @return Migawka (bez historii ruchów)
+   */
+  public BoardSnapshot getSnapshot() {
+	  
+	return new BoardSnapshot(settings.getColsAndRows(), stones, freeFieldsAmount,
+			winDetector.getWins(), scoring.getScores());
+	  
+  }
+  
+  
+  /**
+   * Przywrócenie stanu planszy z migawki - O(liczba pól / 64). 
+   * Historia ruchów jest czyszczona, bo nie jest częścią migawki.
+   * @param snapshot Migawka tej samej wielkości planszy
+   */
+  public void restore(BoardSnapshot snapshot) {
+	  
+	if (snapshot.colsAndRows != settings.getColsAndRows())
+	  throw new IllegalArgumentException("Board size mismatch");
+	
+	for (int i=0; i<stones.length; i++)
+	  System.arraycopy(snapshot.stones[i], 0, stones[i], 0, stones[i].length);
+	
+	freeFieldsAmount = snapshot.freeFieldsAmount;
+	winDetector.setWins(snapshot.wins);
+	scoring.setScores(snapshot.scores);
+	history.clear();
+	redoHistory.clear();
+	  
+  }
+  
+  
+
+  /**
+   * Metoda sprawdzająca, czy ruch na wskazanym polu był wygrywający (stały czas)
+   * @param field Pole ostatniego ruchu
+   * @return True jeżeli wygrana
+   */
+  public boolean isWinningMove(BoardField field) {
+	  
+	 BoardFieldState state = getFieldState(field.getA(), field.getB());
+	 return state != null && winDetector.isWinningMove(getIndex(field.getA(), field.getB()), state); 
+	  
+  }
+  
+  
+  /**
+   * Czy gracz ma na planszy wygrywający rząd (stały czas)
+   * @param pColor Kolor kamieni
+   * @return True jeżeli wygrana
+   */
+  public boolean hasWon(BoardFieldState pColor) {
+	  
+	 return winDetector.hasWon(pColor); 
+	  
+  }
+  
+
+  /**
+   * Czy gracz ma ruchy zabronione (wg zasad gry)
+   * @param pColor Kolor kamieni
+   * @return True jeżeli tak
+   */
+  public boolean hasForbiddenMoves(BoardFieldState pColor) {
+	  
+	 return settings.getRuleSet().hasForbiddenMoves(pColor);
+	  
+  }
+  
+  
+  /**
+   * Czy ruch na wskazanym polu jest zabroniony (analiza tylko linii przechodzących przez pole)
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param pColor Kolor kamienia
+   * @return True jeżeli ruch jest zabroniony
+   */
+  public boolean isForbiddenMove(int a, int b, BoardFieldState pColor) {
+	  
+	 if (!hasForbiddenMoves(pColor) || getFieldState(a, b) != BoardFieldState.EMPTY) return false;
+	 return forbiddenDetector.isForbidden(a, b, BoardWinDetector.getColor(pColor));
+	  
+  }
+  
 
   /**
    * Metoda znajdująca "wygrywający" rząd zawierający wskazane pole.
@@ -132,56 +360,25 @@ public class Board {
    */
   public List<BoardField> getWinningRow(BoardField field) {
       
-	 int piecesNum = settings.getPiecesInRow(); 
-	  
-     int i,j,dir;
-     List<BoardField> winRow = new ArrayList<>();
-     Integer cnt = 0;   
-     
      int a = field.getA(), b = field.getB();
-
-     // przeglądanie od góry w 4 kierunkach: 0-skos góra, 1-pion, 2-poziom, 3-skos dół
-     for (dir=0; dir<=3; dir++) {
-      
-       for (i=-piecesNum+1; i<piecesNum; i++) {
-       
-    	 // wsp. pola: jeżeli pion to a jest stałe, jezeli poziom to b jest stałe  
-    	 int a2 = dir!=1?a+i:a;
-    	 int b2 = dir!=2?(dir!=3?b+i:b-i):b;
-    	 boolean checked = field.getState().equals(getFieldState(a2, b2));
-    	           
-         if (checked && a2<settings.getColsAndRows() && b2<settings.getColsAndRows() && a2>=0 && b2>=0) {
-           	 cnt++; 
-         }
-         else cnt = 0;
-         
-         // jeżeli jest już odpowiednia ilość kamieni, to wyjście z pętli         
-         if (cnt.equals(piecesNum)) break;
-   
-       }
+     BoardFieldState state = getFieldState(a, b);
+     if (state == null) return null;
      
-       
-       // jeżeli wygrana to zwrócenie listy indeksów pol
-       if (cnt.equals(piecesNum)) {
-      
-         for (j=0; j<piecesNum; j++) {
-        	 
-           BoardField fieldTmp = fields[getIndex((dir!=1?a+i-j:a), (dir!=2?(dir!=3?b+i-j:b-i+j):b))];	 
-         
-           winRow.add(fieldTmp); 
-           
-         }
-         
-         return winRow;
-       
-       }
-
-       winRow.clear();    
-       cnt = 0;
-       
+     int dir = winDetector.getWinningDir(getIndex(a, b), state);
+     if (dir < 0) return null;
+     
+     int da = BoardWinDetector.DIRS[dir][0], db = BoardWinDetector.DIRS[dir][1];
+     
+     // cofnięcie do początku ciągu
+     while (getFieldState(a - da, b - db) == state) {
+       a -= da;
+       b -= db;
      }
-
-     return null;
+     
+     List<BoardField> winRow = new ArrayList<>();
+     for (; getFieldState(a, b) == state; a += da, b += db) winRow.add(new BoardField(a, b, state));
+     
+     return winRow;
       
   }
   
@@ -225,6 +422,7 @@ public class Board {
    * @return Aktualna punktacja planszy dla danego gracza
    */  
   protected int getScore(BoardFieldState pColor) {
+	  if (winDetector.hasWon(pColor)) return MoveGenerator.MAX_SCORE;
 	  return scoring.getScore(pColor);
   }
   
@@ -243,10 +441,103 @@ public class Board {
 
   
   protected List<BoardField> getEmptyFields() {
-	 return new ArrayList<>(emptyFields);      
+	  
+	 long[] empty = new long[stones[0].length];
+	 for (int w=0; w<empty.length; w++) empty[w] = ~(stones[0][w] | stones[1][w]);
+	 
+	 return getFields(empty, freeFieldsAmount);      
   }  
+  
+  
+  /**
+   * Ruchy-kandydaci: wolne pola w promieniu CANDIDATES_RADIUS od położonych kamieni.
+   * Otoczenie wyznaczane jest przesunięciami bitowej reprezentacji planszy, więc 
+   * liczba rozważanych ruchów zależy od ilości kamieni, a nie od wielkości planszy.
+   * @return Lista pól (wszystkie wolne pola jeżeli plansza jest pusta)
+   */
+  protected List<BoardField> getCandidateFields() {
+	  
+	 if (freeFieldsAmount == fields.length) return getEmptyFields();
+	 
+	 int words = stones[0].length;
+	 long[] occupied = new long[words];
+	 for (int w=0; w<words; w++) occupied[w] = stones[0][w] | stones[1][w];
+	 
+	 // otoczenie w wierszu (b +/- s), potem w kolumnie (a +/- s)
+	 long[] row = occupied.clone();
+	 for (int s=1; s<=CANDIDATES_RADIUS; s++) {
+	   orShifted(occupied, colMasks[CANDIDATES_RADIUS+s], s, row);
+	   orShifted(occupied, colMasks[CANDIDATES_RADIUS-s], -s, row);
+	 }
+	 
+	 long[] near = row.clone();
+	 int cr = settings.getColsAndRows();
+	 for (int s=1; s<=CANDIDATES_RADIUS; s++) {
+	   orShifted(row, null, s*cr, near);
+	   orShifted(row, null, -s*cr, near);
+	 }
+	 
+	 for (int w=0; w<words; w++) near[w] &= ~occupied[w];
+	 
+	 return getFields(near, freeFieldsAmount);
+	  
+  }
+  
+  
+  /**
+   * Przesunięcie bitów (o s pozycji w stronę wyższych indeksów, s<0 - niższych) 
+   * i dodanie ich do tablicy wynikowej
+   * @param src Źródło
+   * @param mask Maska nakładana na źródło przed przesunięciem (lub null)
+   * @param s Przesunięcie
+   * @param dst Tablica wynikowa
+   */
+  private static void orShifted(long[] src, long[] mask, int s, long[] dst) {
+	  
+	 int words = Math.abs(s) >>> 6, bits = Math.abs(s) & 63;
+	 
+	 for (int i=0; i<dst.length; i++) {
+	   int j = s >= 0 ? i - words : i + words;
+	   long v = 0;
+	   if (j >= 0 && j < src.length) {
+		 long w = mask == null ? src[j] : src[j] & mask[j];
+		 v = s >= 0 ? w << bits : w >>> bits;
+	   }
+	   int k = s >= 0 ? j - 1 : j + 1;
+	   if (bits != 0 && k >= 0 && k < src.length) {
+		 long w = mask == null ? src[k] : src[k] & mask[k];
+		 v |= s >= 0 ? w >>> (64 - bits) : w << (64 - bits);
+	   }
+	   dst[i] |= v;
+	 }
+	  
+  }
+  
+  
+  /**
+   * Lista pól odpowiadających ustawionym bitom
+   * @param bits Bity pól
+   * @param capacity Przewidywana wielkość listy
+   * @return Lista pól
+   */
+  private List<BoardField> getFields(long[] bits, int capacity) {
+	  
+	 List<BoardField> list = new ArrayList<>(capacity);
+	 
+	 for (int w=0; w<bits.length; w++) {
+	   long word = bits[w];
+	   while (word != 0) {
+		 int index = (w << 6) + Long.numberOfTrailingZeros(word);
+		 if (index >= fields.length) break;
+		 list.add(fields[index]);
+		 word &= word - 1;
+	   }
+	 }
+	 
+	 return list;
+	  
+  }
     
 
 }
   
-  
\ No newline at end of file
@@ -80,18 +80,4 @@ public enum BoardFieldState {
    }
    
    
-   /**
-    * Wygrywający rząd
-    * @param cnt Długość rzędu (ustawienia)
-    * @return Wygrywający rząd jako ciąg znaków
-    */
-   public String getWinningRow(int cnt) {
-	   
-	  String row = ""; 
-	  for (int i=0; i<cnt; i++) row += this.toString();
-	  return row;
-	   
-   }
-   
-   
 }
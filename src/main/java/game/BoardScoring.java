@@ -4,208 +4,179 @@
  */
 package game;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.commons.lang3.StringUtils;
-
 import gomoku.Settings;
 
 
 /**
 *
-* Ocena sytuacji na planszy przy pomocy reprezentacji znakowej
-* 
+* Przyrostowa ocena sytuacji na planszy. Punktowane są wszystkie "okna" długości
+* wymaganego rzędu, w których leżą kamienie tylko jednego koloru. Przy zmianie
+* stanu pola przeliczane są jedynie okna przechodzące przez to pole (4 kierunki),
+* więc koszt ruchu nie zależy od wielkości planszy, a stan oceny to dwie liczby.
+*
 * @author Maciej Kawecki
-* 
+*
 */
 public class BoardScoring {
 
-  /** Indeksy linii -  poziome, pionowe i ukośne L-R */
-  private final static int HORIZ = 0, VERT = 1, SKETCH_L = 2, SKETCH_R = 3;	
-	
-  /** Aktualny stan planszy - linie poziome, pionowe i ukośne (repr. znakowa) */
-  private final String[] boardLines = new String[] {"", "", "", ""};
-  /** Wszystkie rozważane ciągi kamieni */
-  private final String[] allRowsB, allRowsW; 	
-  /** Wygrywające ciągi kamieni */
-  private final String successB, successW;
-  
-  /** Aktualne ustawienia gry */
-  private final Settings settings;
-  
-  
+  /** Kod pola poza planszą */
+  private final static int OUTSIDE = -2;
+
+  /** Ilość wierszy i kolumn planszy */
+  private final int colsAndRows;
+  /** Ilość kamieni w rzędzie wymagana do wygranej */
+  private final int piecesInRow;
+  /** Bitowa reprezentacja planszy (współdzielona z Board): [0] - czarne, [1] - białe */
+  private final long[][] stones;
+  /** Aktualna punktacja: [0] - czarne, [1] - białe */
+  private final int[] scores = new int[2];
+  /** Bufor kolorów pól odcinka przechodzącego przez zmieniane pole */
+  private final int[] line;
+
+
   /**
    * Konstruktor
    * @param settings Referencja do obiektu zawierającego ustawienia gry
-   */  
-  public BoardScoring(Settings settings) {
-	  	
-	this.settings = settings;
-	
-	for (int a=0; a<settings.getColsAndRows(); a++) {       
-	  for (int b=0; b<settings.getColsAndRows(); b++) {	    	        	      
-	     boardLines[HORIZ] += "0"; 	       
-	     if (b<=a) boardLines[SKETCH_L] += "0"; else boardLines[SKETCH_L] += "x";
-	     if (b>=a) boardLines[SKETCH_R] += "0"; else boardLines[SKETCH_R] += "x";	       
-	   }      	      
-	   boardLines[HORIZ] += "|"; 
-	   boardLines[SKETCH_L] += "|";  boardLines[SKETCH_R] += "|";	     
-	} 
-
-    boardLines[SKETCH_L] += boardLines[SKETCH_R].substring(settings.getColsAndRows()+1);
-    boardLines[SKETCH_R] = boardLines[SKETCH_L];
-    boardLines[VERT] = boardLines[HORIZ];    
-    
-    successB = BoardFieldState.BLACK.getWinningRow(settings.getPiecesInRow());
-    successW = BoardFieldState.WHITE.getWinningRow(settings.getPiecesInRow());    
-	allRowsB = getAllRows(BoardFieldState.BLACK);		
-    allRowsW = getAllRows(BoardFieldState.WHITE);    
-    	
+   * @param stones Bitowa reprezentacja planszy
+   */
+  public BoardScoring(Settings settings, long[][] stones) {
+
+	this.colsAndRows = settings.getColsAndRows();
+	this.piecesInRow = settings.getPiecesInRow();
+	this.stones = stones;
+	line = new int[2*piecesInRow - 1];
+
+  }
+
+
+
+  /**
+   * Konstruktor kopii
+   * @param scoring Kopiowany obiekt
+   * @param stones Bitowa reprezentacja planszy kopii
+   */
+  protected BoardScoring(BoardScoring scoring, long[][] stones) {
+
+	this.colsAndRows = scoring.colsAndRows;
+	this.piecesInRow = scoring.piecesInRow;
+	this.stones = stones;
+	line = new int[scoring.line.length];
+	setScores(scoring.scores);
+
   }
-  
-  
-  
+
+
   /**
-   * Czy wygrywa
-   * @param pColor Kolor kamieni
-   * @return True jeżeli wygrana
+   * Stan oceny (do migawki planszy)
+   * @return Kopia punktacji obu kolorów
    */
-  public boolean hasWon(BoardFieldState pColor) {	  
-
-	String success = pColor == BoardFieldState.BLACK ? successB : successW;  
-	  
-	return boardLines[HORIZ].contains(success)
-			|| boardLines[VERT].contains(success)
-			|| boardLines[SKETCH_L].contains(success)
-			|| boardLines[SKETCH_R].contains(success);
-	  
-  }  
-  
-	
+  protected int[] getScores() {
+	return scores.clone();
+  }
+
+
+  protected void setScores(int[] scores) {
+	System.arraycopy(scores, 0, this.scores, 0, this.scores.length);
+  }
+
+
   /**
-   * Aktualizacja reprezentacji znakowej (nowy ruch)
+   * Kolor kamienia na polu
    * @param a Indeks a (kolumna) pola
    * @param b Indeks b (wiersz) pola
-   * @param state Docelowa wartość(stan) pola
+   * @return 0 - czarny, 1 - biały, -1 - puste, OUTSIDE - poza planszą
    */
-  public void update(int a, int b, BoardFieldState state) {	  
-
-    int cr = settings.getColsAndRows() + 1;
-      
-    try {
-      StringBuilder tmp = new StringBuilder(boardLines[HORIZ]);
-      tmp.setCharAt(b*cr + a, state.getCode());
-      boardLines[HORIZ] = tmp.toString();
-    
-      tmp = new StringBuilder(boardLines[VERT]);
-      tmp.setCharAt(a*cr + b, state.getCode());
-      boardLines[VERT] = tmp.toString();      
-   
-      tmp = new StringBuilder(boardLines[SKETCH_L]);
-      tmp.setCharAt((a+b)*cr + a, state.getCode());
-      boardLines[SKETCH_L] = tmp.toString();
-   
-      tmp = new StringBuilder(boardLines[SKETCH_R]);
-      tmp.setCharAt((a-b+cr-2)*cr + a, state.getCode());        
-      boardLines[SKETCH_R] = tmp.toString();
-    }
-    catch (Exception e) {
-      System.err.println(e);
-    }
-    
+  private int getColor(int a, int b) {
+
+	if (a<0 || b<0 || a>=colsAndRows || b>=colsAndRows) return OUTSIDE;
+
+	int index = a*colsAndRows + b;
+	long bit = 1L << index;
+	if ((stones[0][index >>> 6] & bit) != 0) return 0;
+	if ((stones[1][index >>> 6] & bit) != 0) return 1;
+	return -1;
+
   }
-  
-  
+
+
   /**
-   * Wszystkie możliwe ciągi bez wygrywających i z co najmniej 2-oma kamieniami
-   * @param pColor Kolor kamieni
-   * @return Tablica ciągów znaków
+   * Aktualizacja punktacji okien przechodzących przez pole. Wołana z sign = -1
+   * przed zmianą stanu pola i z sign = 1 po zmianie.
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param sign Znak (odjęcie lub dodanie punktacji okien)
    */
-  private String[] getAllRows(BoardFieldState pColor) {
-	  
-	 String t = pColor.toString();
-	 String[] row = getAllRows(new String[] { t,  "0"}, settings.getPiecesInRow());
-	 
-	 List<String> tmp = new ArrayList<>();
-	 
-	 for (String s: row) {
-		 
-	   int i = StringUtils.countMatches(s, t);
-	   if (i>1 && i<settings.getPiecesInRow()) tmp.add(s);
-		 
-	 }
-	 
-	 String tmps[] = new String[tmp.size()];
-	 return tmp.toArray(tmps);
-	  
+  public void update(int a, int b, int sign) {
+
+    int n = piecesInRow;
+
+    for (int[] dir : BoardWinDetector.DIRS) {
+
+      for (int k=0; k<line.length; k++)
+    	line[k] = getColor(a + (k-n+1)*dir[0], b + (k-n+1)*dir[1]);
+
+      // okno przesuwane wzdłuż odcinka, liczniki kamieni i pól poza planszą
+      int black = 0, white = 0, outside = 0;
+
+      for (int k=0; k<line.length; k++) {
+
+    	if (line[k] == 0) black++; else if (line[k] == 1) white++; else if (line[k] == OUTSIDE) outside++;
+
+    	if (k >= n) {
+    	  int old = line[k-n];
+    	  if (old == 0) black--; else if (old == 1) white--; else if (old == OUTSIDE) outside--;
+    	}
+
+    	if (k < n-1 || outside > 0) continue;
+
+    	boolean freeEnds = line[k-n+1] == -1 && line[k] == -1;
+    	if (white == 0) scores[0] += sign * getWindowScore(black, freeEnds);
+    	if (black == 0) scores[1] += sign * getWindowScore(white, freeEnds);
+
+      }
+
+    }
+
   }
-  
-  
+
+
   /**
-   * Wszystkie możliwe ciągi (bez powt.)
-   * @param elems Elementy składowe
-   * @param len Długość listy
-   * @return Tablica możliwych ciagów znaków
+   * Punktacja pojedynczego okna z kamieniami jednego koloru
+   * @param cnt Ilość kamieni w oknie
+   * @param freeEnds True jeżeli oba skrajne pola okna są puste
+   * @return Punktacja okna
    */
-  private static String[] getAllRows(String[] elems, int len) {      
-      
-     if (len == 1) return elems;       
-
-     String[] rows = new String[(int) Math.pow(elems.length, len)];
-     String[] subrows = getAllRows(elems, len - 1);          
-     int el = elems.length, sl = subrows.length;
-     
-     for (int i = 0; i < el; i++)
-       for(int j = 0; j < sl; j++)                   
-         rows[i*sl + j] = elems[i] + subrows[j];
-         
-     return rows;
-          
-  }  
-  
-    
-  /**   
-   * Punktacja sytuacji na planszy
+  private int getWindowScore(int cnt, boolean freeEnds) {
+
+	// bez wygrywających i z co najmniej 2-oma kamieniami
+	if (cnt < 2 || cnt >= piecesInRow) return 0;
+
+	// bonusy ...
+	boolean near1 = cnt+2 == piecesInRow;
+	boolean near2 = near1 && freeEnds;
+	boolean near3 = !near1 && cnt+1 == piecesInRow;
+
+	int mcnt = 1;
+	if (near1) { mcnt *= 2; }
+	if (near2) { mcnt *= 4; }
+	if (near3) { mcnt *= 16; }
+
+	return cnt * mcnt;
+
+  }
+
+
+  /**
+   * Punktacja sytuacji na planszy (bez sprawdzania wygranej, zob. BoardWinDetector)
    * @param pColor Kolor gracza dla którego liczona jest punktacja
    * @return Aktualna punktacja planszy dla danego gracza
    */
   protected int getScore(BoardFieldState pColor) {
-	  
-	if (hasWon(pColor)) return MoveGenerator.MAX_SCORE;    
-	  
-	int score = 0;
-	String pStr = pColor.toString();
-	String opStr = pColor.getOpposite().toString();
-	String matches[] = pColor == BoardFieldState.BLACK ? allRowsB : allRowsW;		
-
-	for (String line : boardLines) {
-		
-	  line = line.replaceAll("[0x"+opStr+"]{" + settings.getColsAndRows() + "}", "");
-	  
-	  for (String match : matches)  {
-
-		  int cnt = StringUtils.countMatches(match, pStr);
-
-		  // bonusy ...
-		  boolean near1 = cnt+2 == settings.getPiecesInRow();
-		  boolean near2 = near1 && match.startsWith("0") && match.endsWith("0");
-		  boolean near3 = !near1 && cnt+1 == settings.getPiecesInRow();
-		  
-		  double mcnt =  StringUtils.countMatches(line, match);
-		  if (near1) { mcnt *= 2; } 
-		  if (near2) { mcnt *= 4; } 
-		  if (near3) { mcnt *= 16; }  
-		  
-		  score += cnt * mcnt; 
-		   
-	  }
-	  
-	}
-	  
-	return score;
-    
+
+	int color = BoardWinDetector.getColor(pColor);
+	return color < 0 ? 0 : scores[color];
+
   }
-    
-	
+
+
 }
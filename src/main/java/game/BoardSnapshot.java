@@ -0,0 +1,56 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+
+/**
+*
+* Migawka stanu logicznej warstwy planszy (bez historii ruchów). Zawiera kopię
+* bitowej reprezentacji planszy, więc jej wykonanie i przywrócenie kosztuje
+* O(liczba pól / 64).
+*
+* @author Maciej Kawecki
+* @see Board#getSnapshot()
+* @see Board#restore(BoardSnapshot)
+*
+*/
+public final class BoardSnapshot {
+
+  /** Ilość wierszy i kolumn planszy */
+  final int colsAndRows;
+  /** Bitowa reprezentacja planszy: [0] - czarne, [1] - białe */
+  final long[][] stones;
+  /** Ilość wolnych pól */
+  final int freeFieldsAmount;
+  /** Liczniki wygrywających ciągów */
+  final int[] wins;
+  /** Punktacja sytuacji na planszy */
+  final int[] scores;
+
+
+  BoardSnapshot(int colsAndRows, long[][] stones, int freeFieldsAmount, int[] wins,
+		  int[] scores) {
+
+	this.colsAndRows = colsAndRows;
+	this.stones = new long[][] { stones[0].clone(), stones[1].clone() };
+	this.freeFieldsAmount = freeFieldsAmount;
+	this.wins = wins;
+	this.scores = scores;
+
+  }
+
+
+  /**
+   * Ilość kamieni w migawce
+   * @return Ilość kamieni
+   */
+  public int getPiecesAmount() {
+
+	return colsAndRows * colsAndRows - freeFieldsAmount;
+
+  }
+
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+
+/**
+*
+* Przyrostowe wykrywanie wygranej. Długość ciągu kamieni w każdym z 4 kierunków
+* wyznaczana jest tylko wokół położonego (zdejmowanego) kamienia, na podstawie
+* bitowej reprezentacji planszy i gotowych tablic sąsiedztwa - koszt ruchu nie
+* zależy od wielkości planszy. Licznik wygrywających ciągów aktualizowany jest
+* przy każdym ruchu, zdejmowanie kamieni musi następować w kolejności odwrotnej
+* do kładzenia (LIFO). Warunek wygranej zależy od zasad gry (RuleSet).
+*
+* @author Maciej Kawecki
+*
+*/
+public class BoardWinDetector {
+
+  /** Kierunki: poziomy, pionowy, ukośny (w dół), ukośny (w górę) */
+  protected final static int[][] DIRS = { {1, 0}, {0, 1}, {1, 1}, {1, -1} };
+
+  /** Ilość kamieni w rzędzie wymagana do wygranej */
+  private final int piecesInRow;
+  /** Zasady gry */
+  private final RuleSet ruleSet;
+  /** Bitowa reprezentacja planszy (współdzielona z Board): [0] - czarne, [1] - białe */
+  private final long[][] stones;
+  /** Indeks sąsiedniego pola w przód / w tył w każdym kierunku (-1 poza planszą) */
+  private final int[][] next, prev;
+  /** Liczba położonych kamieni, które utworzyły wygrywający ciąg (dla koloru) */
+  private final int[] wins = new int[2];
+
+
+  /**
+   * Konstruktor
+   * @param colsAndRows Ilość wierszy i kolumn planszy
+   * @param piecesInRow Ilość kamieni w rzędzie wymagana do wygranej
+   * @param ruleSet Zasady gry
+   * @param stones Bitowa reprezentacja planszy
+   */
+  public BoardWinDetector(int colsAndRows, int piecesInRow, RuleSet ruleSet, long[][] stones) {
+
+	this.piecesInRow = piecesInRow;
+	this.ruleSet = ruleSet;
+	this.stones = stones;
+
+	int size = colsAndRows * colsAndRows;
+	next = new int[DIRS.length][size];
+	prev = new int[DIRS.length][size];
+
+	for (int d=0; d<DIRS.length; d++)
+	  for (int a=0; a<colsAndRows; a++)
+		for (int b=0; b<colsAndRows; b++) {
+		  next[d][getIndex(colsAndRows, a, b)]
+				  = getIndex(colsAndRows, a + DIRS[d][0], b + DIRS[d][1]);
+		  prev[d][getIndex(colsAndRows, a, b)]
+				  = getIndex(colsAndRows, a - DIRS[d][0], b - DIRS[d][1]);
+		}
+
+  }
+
+
+  /**
+   * Konstruktor kopii (tablice sąsiedztwa są współdzielone)
+   * @param detector Kopiowany obiekt
+   * @param stones Bitowa reprezentacja planszy kopii
+   */
+  protected BoardWinDetector(BoardWinDetector detector, long[][] stones) {
+
+	this.piecesInRow = detector.piecesInRow;
+	this.ruleSet = detector.ruleSet;
+	this.stones = stones;
+	this.next = detector.next;
+	this.prev = detector.prev;
+	System.arraycopy(detector.wins, 0, wins, 0, wins.length);
+
+  }
+
+
+  /**
+   * Indeks pola
+   * @param colsAndRows Ilość wierszy i kolumn planszy
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @return Indeks pola lub -1 jeżeli poza planszą
+   */
+  private static int getIndex(int colsAndRows, int a, int b) {
+
+	if (a<0 || b<0 || a>=colsAndRows || b>=colsAndRows) return -1;
+	return a*colsAndRows + b;
+
+  }
+
+
+  /**
+   * Czy na polu leży kamień danego koloru
+   * @param color Kolor (0 - czarny, 1 - biały)
+   * @param index Indeks pola
+   * @return True jeżeli tak
+   */
+  private boolean isSet(int color, int index) {
+
+	return (stones[color][index >>> 6] & (1L << index)) != 0;
+
+  }
+
+
+  /**
+   * Czy ciąg kamieni przechodzący przez pole, w danym kierunku, jest wygrywający
+   * @param color Kolor (0 - czarny, 1 - biały)
+   * @param index Indeks pola
+   * @param d Indeks kierunku (DIRS)
+   * @return True jeżeli ciąg wygrywa wg zasad gry
+   */
+  private boolean isWinningRun(int color, int index, int d) {
+
+	int start = index, end = index, cnt = 1;
+	for (int i = prev[d][start]; i >= 0 && isSet(color, i); i = prev[d][i]) { start = i; cnt++; }
+	for (int i = next[d][end]; i >= 0 && isSet(color, i); i = next[d][i]) { end = i; cnt++; }
+
+	if (cnt < piecesInRow) return false;
+	if (cnt > piecesInRow && ruleSet.isExactRow(color == 0 ? BoardFieldState.BLACK : BoardFieldState.WHITE))
+	  return false;
+
+	// zablokowany z obu stron kamieniami przeciwnika (brzeg planszy nie blokuje)
+	if (!ruleSet.isBlockedRowWinning()) {
+	  int before = prev[d][start], after = next[d][end];
+	  if (before >= 0 && isSet(1-color, before) && after >= 0 && isSet(1-color, after)) return false;
+	}
+
+	return true;
+
+  }
+
+
+  /**
+   * Czy przez pole przechodzi wygrywający ciąg kamieni
+   * @param color Kolor (0 - czarny, 1 - biały)
+   * @param index Indeks pola
+   * @return True jeżeli tak
+   */
+  private boolean isWinning(int color, int index) {
+
+	for (int d=0; d<DIRS.length; d++) if (isWinningRun(color, index, d)) return true;
+	return false;
+
+  }
+
+
+  /**
+   * Kod koloru kamieni
+   * @param state Stan pola
+   * @return Kod (0 - czarny, 1 - biały, -1 - puste)
+   */
+  protected static int getColor(BoardFieldState state) {
+
+	return state == BoardFieldState.BLACK ? 0 : (state == BoardFieldState.WHITE ? 1 : -1);
+
+  }
+
+
+  /**
+   * Aktualizacja po położeniu kamienia (bit już ustawiony)
+   * @param index Indeks pola
+   * @param state Kolor kamienia
+   * @return True jeżeli ruch utworzył wygrywający ciąg
+   */
+  public boolean place(int index, BoardFieldState state) {
+
+	int color = getColor(state);
+	boolean won = isWinning(color, index);
+	if (won) wins[color]++;
+
+	return won;
+
+  }
+
+
+  /**
+   * Aktualizacja przed zdjęciem kamienia (bit jeszcze ustawiony)
+   * @param index Indeks pola
+   * @param state Kolor zdejmowanego kamienia
+   */
+  public void remove(int index, BoardFieldState state) {
+
+	int color = getColor(state);
+	if (isWinning(color, index)) wins[color]--;
+
+  }
+
+
+  /**
+   * Czy ruch na wskazanym polu utworzył wygrywający ciąg
+   * @param index Indeks pola
+   * @param state Kolor kamienia
+   * @return True jeżeli wygrana
+   */
+  public boolean isWinningMove(int index, BoardFieldState state) {
+
+	int color = getColor(state);
+	return color >= 0 && isSet(color, index) && isWinning(color, index);
+
+  }
+
+
+  /**
+   * Czy wygrywa (stały czas)
+   * @param state Kolor kamieni
+   * @return True jeżeli wygrana
+   */
+  public boolean hasWon(BoardFieldState state) {
+
+	int color = getColor(state);
+	return color >= 0 && wins[color] > 0;
+
+  }
+
+
+  /**
+   * Kierunek, w którym kamień na wskazanym polu tworzy wygrywający ciąg
+   * @param index Indeks pola
+   * @param state Kolor kamienia
+   * @return Indeks kierunku (DIRS) lub -1
+   */
+  protected int getWinningDir(int index, BoardFieldState state) {
+
+	int color = getColor(state);
+	if (color < 0 || !isSet(color, index)) return -1;
+
+	for (int d=0; d<DIRS.length; d++)
+	  if (isWinningRun(color, index, d)) return d;
+
+	return -1;
+
+  }
+
+
+  protected int[] getWins() {
+	return wins.clone();
+  }
+
+
+  protected void setWins(int[] wins) {
+	System.arraycopy(wins, 0, this.wins, 0, this.wins.length);
+  }
+
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import gomoku.Lang;
+
+/**
+ *
+ * Poziom trudności gracza-komputera, zdefiniowany jako budżet przeszukiwania
+ * (głębokość, liczba ocenianych węzłów, czas) oraz szum oceny sytuacji
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public enum DifficultyLevel {
+
+
+   /** Łatwy */
+   EASY(1, 1, 2000, 250, 0.35),
+
+   /** Średni */
+   MEDIUM(2, 2, 60000, 1500, 0.1),
+
+   /** Trudny */
+   HARD(3, 3, 400000, 5000, 0.0);
+
+
+   private final int code;
+   /** Maksymalna głębokość rekurencji */
+   private final int maxDepth;
+   /** Maksymalna liczba ocenianych węzłów (na ruch) */
+   private final int maxNodes;
+   /** Maksymalny czas wyszukiwania ruchu (ms) */
+   private final int maxTime;
+   /** Szum dodawany do oceny sytuacji (0 - brak) */
+   private final double noise;
+
+   public static final DifficultyLevel DEFAULT = MEDIUM;
+
+
+   DifficultyLevel(int code, int maxDepth, int maxNodes, int maxTime, double noise) {
+	   this.code = code;
+	   this.maxDepth = maxDepth;
+	   this.maxNodes = maxNodes;
+	   this.maxTime = maxTime;
+	   this.noise = noise;
+   }
+
+
+   public int getCode() {  return code; }
+
+   public int getMaxDepth() {  return maxDepth; }
+
+   public int getMaxNodes() {  return maxNodes; }
+
+   public int getMaxTime() {  return maxTime; }
+
+   public double getNoise() {  return noise; }
+
+
+   @Override
+   public String toString() {
+
+	 switch (this) {
+
+	   case EASY: return Lang.get("DifficultyEasy");
+	   case MEDIUM: return Lang.get("DifficultyMedium");
+	   case HARD: return Lang.get("DifficultyHard");
+
+	 }
+
+	 return DEFAULT.toString();
+
+   }
+
+
+   /**
+    * Metoda zwraca odpowiedni obiekt dla kodu
+    * @param code Kod
+    * @return Poziom trudności
+    */
+   public static DifficultyLevel get(int code) {
+
+     for(DifficultyLevel e : values()) if(e.getCode() == code) return e;
+
+     return null;
+
+   }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gomoku.IConf;
+
+/**
+ *
+ * Pamięć podręczna ocen pozycji na dysku, wg skrótu pozycji (PositionHash). Plik jest
+ * w całości wczytywany przy otwarciu, nowe oceny są dopisywane na końcu (niepełny
+ * ostatni rekord po awarii jest odcinany). Plik z inną wersją oceny lub większy
+ * od limitu jest zakładany od nowa.
+ *
+ * @author Maciej Kawecki
+ * @see GameAnalysis
+ *
+ */
+public class EvaluationCache {
+
+  /** Domyślny plik (jak plik ustawień - w katalogu roboczym) */
+  public final static String FILE_NAME = "gomoku-analysis.cache";
+  /** Znacznik pliku */
+  private final static int MAGIC = 0x474d4b45;
+  /** Wersja oceny - zmiana sposobu oceny unieważnia zapisane oceny */
+  private final static int VERSION = 1;
+  /** Długość nagłówka (znacznik, wersja) */
+  private final static int HEADER_SIZE = 8;
+  /** Długość rekordu: skrót, najlepsze pole, ocena najlepszego ruchu, ocena odpowiedzi */
+  private final static int RECORD_SIZE = 8 + 2 + 4 + 4;
+  /** Największa liczba ocen */
+  private final static int MAX_ENTRIES = 1 << 20;
+
+  /** Oceny wg skrótu pozycji */
+  private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+  /** Dopisywanie ocen (null - tylko w pamięci) */
+  private DataOutputStream out;
+
+
+  /**
+   * Ocena pozycji
+   */
+  static class Entry {
+
+	/** Najlepsze pole (a*IConf.FREE_COLS_AND_ROWS+b, -1 - brak) */
+	private final short best;
+	/** Wartość najlepszego ruchu gracza na ruchu */
+	private final int bestScore;
+	/** Wartość najlepszej odpowiedzi (jeden półruch) gracza na ruchu */
+	private final int replyScore;
+
+	Entry(BoardField best, int bestScore, int replyScore) {
+	  this((short)(best == null ? -1 : best.getA() * IConf.FREE_COLS_AND_ROWS + best.getB()),
+			  bestScore, replyScore);
+	}
+
+	private Entry(short best, int bestScore, int replyScore) {
+	  this.best = best;
+	  this.bestScore = bestScore;
+	  this.replyScore = replyScore;
+	}
+
+	/**
+	 * Najlepszy ruch
+	 * @param color Kolor kamienia
+	 * @return Pole lub null
+	 */
+	BoardField getBest(BoardFieldState color) {
+	  if (best < 0) return null;
+	  return new BoardField(best / IConf.FREE_COLS_AND_ROWS, best % IConf.FREE_COLS_AND_ROWS, color);
+	}
+
+	int getBestScore() {
+	  return bestScore;
+	}
+
+	int getReplyScore() {
+	  return replyScore;
+	}
+
+  }
+
+
+  /**
+   * Konstruktor - odczyt zapisanych ocen. Błędy są zgłaszane na stderr, a pamięć
+   * działa wtedy bez zapisu.
+   * @param file Plik (null - tylko w pamięci)
+   */
+  public EvaluationCache(File file) {
+
+	if (file == null) return;
+
+	try {
+
+	  long valid = file.exists() ? load(file) : -1;
+
+	  if (valid < 0) {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.flush();
+	  }
+	  else {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+		  raf.setLength(valid);
+		}
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+	  }
+
+	} catch (IOException e) {
+	  System.err.println(e);
+	  out = null;
+	}
+
+  }
+
+
+  /**
+   * Odczyt pliku
+   * @param file Plik
+   * @return Długość poprawnej części pliku lub -1 jeżeli plik trzeba założyć od nowa
+   * @throws IOException Błąd odczytu
+   */
+  private long load(File file) throws IOException {
+
+	if (file.length() < HEADER_SIZE || (file.length() - HEADER_SIZE) / RECORD_SIZE > MAX_ENTRIES) return -1;
+
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+	  if (in.readInt() != MAGIC || in.readInt() != VERSION) return -1;
+
+	  long records = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+	  for (long i=0; i<records; i++)
+		entries.put(in.readLong(), new Entry(in.readShort(), in.readInt(), in.readInt()));
+
+	  return HEADER_SIZE + records * RECORD_SIZE;
+
+	} catch (EOFException e) {
+	  return -1;
+	}
+
+  }
+
+
+  /**
+   * Ocena pozycji
+   * @param hash Skrót pozycji
+   * @return Ocena lub null jeżeli jej nie ma
+   */
+  Entry get(long hash) {
+
+	return entries.get(hash);
+
+  }
+
+
+  /**
+   * Zapamiętanie oceny pozycji (po przekroczeniu limitu - pominięcie)
+   * @param hash Skrót pozycji
+   * @param entry Ocena
+   */
+  synchronized void put(long hash, Entry entry) {
+
+	if (entries.size() >= MAX_ENTRIES || entries.putIfAbsent(hash, entry) != null || out == null) return;
+
+	try {
+	  out.writeLong(hash);
+	  out.writeShort(entry.best);
+	  out.writeInt(entry.bestScore);
+	  out.writeInt(entry.replyScore);
+	} catch (IOException e) {
+	  System.err.println(e);
+	  out = null;
+	}
+
+  }
+
+
+  /**
+   * Zapis dopisanych ocen na dysk
+   */
+  synchronized void flush() {
+
+	if (out == null) return;
+
+	try {
+	  out.flush();
+	} catch (IOException e) {
+	  System.err.println(e);
+	  out = null;
+	}
+
+  }
+
+
+  public int getSize() {
+	return entries.size();
+  }
+
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+
+/**
+*
+* Wykrywanie ruchów zabronionych (Renju): podwójna trójka, podwójna czwórka
+* i rząd za długi. Analizowane są wyłącznie linie przechodzące przez sprawdzane
+* pole (4 kierunki, po piecesInRow+1 pól w każdą stronę), a większość pól
+* odrzucana jest wstępnie przez policzenie kamieni w tych liniach - dzięki temu
+* filtrowanie ruchów-kandydatów w trakcie przeszukiwania jest tanie.
+* Uproszczenia: trójka jest otwarta, jeżeli jednym ruchem można z niej zrobić
+* otwartą czwórkę (bez rekurencyjnego sprawdzania, czy ten ruch jest dozwolony).
+*
+* @author Maciej Kawecki
+*
+*/
+public class ForbiddenMoveDetector {
+
+  /** Kody pól w buforze linii (względem koloru sprawdzanego gracza) */
+  private final static int EMPTY = 0, OWN = 1, BLOCKED = 2;
+
+  /** Ilość wierszy i kolumn planszy */
+  private final int colsAndRows;
+  /** Ilość kamieni w rzędzie wymagana do wygranej */
+  private final int piecesInRow;
+  /** Bitowa reprezentacja planszy (współdzielona z Board): [0] - czarne, [1] - białe */
+  private final long[][] stones;
+  /** Ilość pól linii po każdej stronie sprawdzanego pola */
+  private final int reach;
+  /** Bufor linii przechodzącej przez sprawdzane pole */
+  private final int[] line;
+
+
+  /**
+   * Konstruktor
+   * @param colsAndRows Ilość wierszy i kolumn planszy
+   * @param piecesInRow Ilość kamieni w rzędzie wymagana do wygranej
+   * @param stones Bitowa reprezentacja planszy
+   */
+  public ForbiddenMoveDetector(int colsAndRows, int piecesInRow, long[][] stones) {
+
+	this.colsAndRows = colsAndRows;
+	this.piecesInRow = piecesInRow;
+	this.stones = stones;
+	reach = piecesInRow + 1;
+	line = new int[2*reach + 1];
+
+  }
+
+
+  /**
+   * Czy ruch na wskazanym (wolnym) polu jest zabroniony
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param color Kolor kamieni (0 - czarny, 1 - biały)
+   * @return True jeżeli ruch jest zabroniony
+   */
+  public boolean isForbidden(int a, int b, int color) {
+
+	if (!isCandidate(a, b, color)) return false;
+
+	int threes = 0, fours = 0;
+	boolean overline = false;
+
+	for (int[] dir : BoardWinDetector.DIRS) {
+
+	  fillLine(a, b, dir, color);
+	  line[reach] = OWN;
+
+	  int run = getRunLength(reach);
+	  // utworzenie rzędu wymaganej długości - ruch zawsze dozwolony
+	  if (run == piecesInRow) return false;
+	  if (run > piecesInRow) { overline = true; continue; }
+
+	  int lineFours = countFours();
+	  if (lineFours > 0) fours += lineFours;
+	  else if (isOpenThree()) threes++;
+
+	}
+
+	return overline || fours >= 2 || threes >= 2;
+
+  }
+
+
+  /**
+   * Wstępna selekcja: ruch może być zabroniony tylko jeżeli w co najmniej dwóch
+   * kierunkach są kamienie gracza lub w jednym jest ich dość na rząd za długi
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param color Kolor kamieni
+   * @return True jeżeli pole wymaga pełnej analizy
+   */
+  private boolean isCandidate(int a, int b, int color) {
+
+	int active = 0, need = Math.max(1, piecesInRow - 3);
+
+	for (int[] dir : BoardWinDetector.DIRS) {
+
+	  int own = 0;
+	  for (int k=1; k<piecesInRow; k++) {
+		if (getCode(a + k*dir[0], b + k*dir[1], color) == OWN) own++;
+		if (getCode(a - k*dir[0], b - k*dir[1], color) == OWN) own++;
+	  }
+
+	  if (own >= piecesInRow - 1) return true;
+	  if (own >= need && ++active >= 2) return true;
+
+	}
+
+	return false;
+
+  }
+
+
+  /**
+   * Kod pola względem koloru gracza
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param color Kolor kamieni gracza
+   * @return OWN, EMPTY lub BLOCKED (kamień przeciwnika lub poza planszą)
+   */
+  private int getCode(int a, int b, int color) {
+
+	if (a<0 || b<0 || a>=colsAndRows || b>=colsAndRows) return BLOCKED;
+
+	int index = a*colsAndRows + b;
+	long bit = 1L << index;
+	if ((stones[color][index >>> 6] & bit) != 0) return OWN;
+	if ((stones[1-color][index >>> 6] & bit) != 0) return BLOCKED;
+	return EMPTY;
+
+  }
+
+
+  private void fillLine(int a, int b, int[] dir, int color) {
+
+	for (int k=0; k<line.length; k++)
+	  line[k] = getCode(a + (k-reach)*dir[0], b + (k-reach)*dir[1], color);
+
+  }
+
+
+  /**
+   * Długość ciągu kamieni gracza przechodzącego przez pozycję w buforze
+   * @param pos Pozycja w buforze
+   * @return Długość ciągu
+   */
+  private int getRunLength(int pos) {
+
+	return getRunEnd(pos) - getRunStart(pos) + 1;
+
+  }
+
+
+  private int getRunStart(int pos) {
+
+	while (pos > 0 && line[pos-1] == OWN) pos--;
+	return pos;
+
+  }
+
+
+  private int getRunEnd(int pos) {
+
+	while (pos < line.length-1 && line[pos+1] == OWN) pos++;
+	return pos;
+
+  }
+
+
+  /**
+   * Ilość czwórek w linii: wolnych pól, które dają rząd dokładnie wymaganej
+   * długości przechodzący przez sprawdzane pole (otwarta czwórka liczona raz)
+   * @return Ilość czwórek
+   */
+  private int countFours() {
+
+	int cnt = 0;
+	boolean before = false, after = false;
+	int start = getRunStart(reach), end = getRunEnd(reach);
+
+	for (int p = reach - piecesInRow + 1; p <= reach + piecesInRow - 1; p++) {
+
+	  if (line[p] != EMPTY) continue;
+
+	  line[p] = OWN;
+	  if (getRunStart(p) <= reach && getRunEnd(p) >= reach && getRunLength(p) == piecesInRow) {
+		cnt++;
+		if (p == start-1) before = true;
+		if (p == end+1) after = true;
+	  }
+	  line[p] = EMPTY;
+
+	}
+
+	// otwarta czwórka - dwa pola uzupełniające ten sam ciąg
+	if (before && after && end-start+1 == piecesInRow-1) cnt--;
+
+	return cnt;
+
+  }
+
+
+  /**
+   * Czy w linii jest otwarta trójka: jeden ruch daje otwartą czwórkę
+   * przechodzącą przez sprawdzane pole
+   * @return True jeżeli tak
+   */
+  private boolean isOpenThree() {
+
+	for (int p = reach - piecesInRow + 1; p <= reach + piecesInRow - 1; p++) {
+
+	  if (line[p] != EMPTY) continue;
+
+	  line[p] = OWN;
+	  boolean open = isStraightFour();
+	  line[p] = EMPTY;
+
+	  if (open) return true;
+
+	}
+
+	return false;
+
+  }
+
+
+  /**
+   * Czy ciąg przez sprawdzane pole jest otwartą czwórką (oba końce wolne,
+   * a ich zajęcie nie tworzy rzędu za długiego)
+   * @return True jeżeli tak
+   */
+  private boolean isStraightFour() {
+
+	int start = getRunStart(reach), end = getRunEnd(reach);
+	if (end - start + 1 != piecesInRow - 1) return false;
+	if (start < 2 || end > line.length - 3) return false;
+
+	return line[start-1] == EMPTY && line[end+1] == EMPTY
+			&& line[start-2] != OWN && line[end+2] != OWN;
+
+  }
+
+
+}
@@ -5,6 +5,8 @@
 package game;
 
 import java.awt.Color;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
@@ -16,6 +18,7 @@ import javax.swing.SwingUtilities;
 import gomoku.AppObserver;
 import gomoku.Lang;
 import gomoku.Settings;
+import gomoku.SettingsVar;
 import gui.BoardGraphics;
 import gui.Console;
 import gui.GUI;
@@ -23,8 +26,12 @@ import gui.Sounds;
 import gui.dialogs.ConfirmDialog;
 import gui.dialogs.DialogType;
 import gui.dialogs.NewGameDialog;
+import gui.dialogs.Swap2Dialog;
 import network.Client;
 import network.Command;
+import network.GameResult;
+import network.JoinRequest;
+import network.RoomSnapshot;
 
 
 /**
@@ -52,6 +59,8 @@ public class Game extends Thread implements Observer {
    private GameState gameState;   
    /** Podany przez użytkownika adres IP serwera do przekazania do obiektu klienta */
    private String serverIP;
+   /** Podany przez użytkownika numer pokoju gry na serwerze */
+   private int room;
    /** Obserwacja stanu gry przez wątek serwera */
    private final AppObserver gameSpy;
    /** Obiekt klienta w grze sieciowej */
@@ -62,6 +71,22 @@ public class Game extends Thread implements Observer {
    private Settings settings;
    /** Ref. do GUI */
    private final GUI frame;
+   /** Gracz wykonujący bieżący ruch */
+   private volatile Player currentPlayer;
+   /** True jeżeli gracz zażądał cofnięcia ruchu */
+   private volatile boolean undoRequested;
+   /** Ilość kamieni otwarcia (Swap2), których nie można cofnąć */
+   private volatile int openingMoves;
+   /** Wczytana gra, od której rozpoczyna się rozgrywka (null - nowa gra) */
+   private GameRecord record;
+   /** Analiza odtwarzanej gry */
+   private GameAnalysis analysis;
+   /** True w trybie odtwarzania gry */
+   private volatile boolean replaying;
+   /** True jeżeli zażądano odtworzenia gry */
+   private volatile boolean replayRequested;
+   /** Pozycja w trybie odtwarzania (ilość wykonanych ruchów), do której ma przejść plansza */
+   private volatile int replayPosition;
    
    
    /**
@@ -99,12 +124,14 @@ public class Game extends Thread implements Observer {
         case "state":  
        
         	this.gameState = (GameState)obs.getObject();
+        	replaying = false;
                    
             // wymuszenie końca ruchu graczy
             if (player1!=null) player1.forceEndTurn();
             if (player2!=null) player2.forceEndTurn();
             // zmiana adresu IP serwera
             this.serverIP = gameState.getServerIP();
+            this.room = gameState.getRoom();
             console.networkButtonsEnable(false);    
                 
             break;
@@ -112,11 +139,65 @@ public class Game extends Thread implements Observer {
         // zmieniono ustawienia, zmiana ref. do graficznej planszy  
         case "board":
             
+           replaying = false;
            setBoard((BoardGraphics)obs.getObject());
            
            break;
            
            
+        // tryb odtwarzania zakończonej gry
+        case "replay":
+        	
+           if (gameState != GameState.RUN && !replaying && lBoard != null && lBoard.getMovesAmount() > 0)
+             replayRequested = true;
+           
+           break;
+           
+           
+        // przejście o podaną ilość ruchów w trybie odtwarzania (MIN_VALUE i MAX_VALUE - początek i koniec gry)
+        case "replay-step":
+        	
+           if (replaying) {
+             int step = (Integer)obs.getObject();
+             int position = step == Integer.MIN_VALUE ? 0 : step == Integer.MAX_VALUE ? analysis.getMovesAmount() 
+            		 : replayPosition + step;
+             replayPosition = Math.max(0, Math.min(analysis.getMovesAmount(), position));
+           }
+           
+           break;
+           
+           
+        // cofnięcie ruchu (gra z komputerem lub hot-seat, w trakcie ruchu gracza-człowieka)
+        case "undo":
+        	
+           if (gameState == GameState.RUN && !gameMode.isServerGame()
+        		   && currentPlayer instanceof PlayerHuman && lBoard.getMovesAmount() > openingMoves) {
+             undoRequested = true;
+             currentPlayer.cancelTurn();
+           }
+           
+           break;
+           
+           
+        // token sesji gry sieciowej - wskazuje serwerowi ranking gracza przy następnej grze
+        case "session":
+        	
+           settings.setRatingToken((String)obs.getObject());
+           settings.save();
+           
+           break;
+           
+           
+        // nowy ranking gracza po grze sieciowej (ustalony przez serwer)
+        case "rating":
+        	
+           settings.setRating((Integer)obs.getObject());
+           settings.save();
+           console.setMessageLn(Lang.get("NewRating", settings.getRating()), Color.DARK_GRAY);
+           
+           break;
+           
+           
         // przesłanie wiadomości
         case "message":
             
@@ -134,6 +215,38 @@ public class Game extends Thread implements Observer {
         
            break;
            
+           
+        // zapis bieżącej gry do pliku (format wg rozszerzenia)
+        case "save":
+        	
+           File file = (File)obs.getObject();
+           
+           try {
+        	   
+             // w trybie odtwarzania plansza może być cofnięta - zapisywana jest cała gra
+             Board board = lBoard;
+             List<BoardField> moves = replaying ? analysis.getMoves() : board == null ? null : board.getHistory();
+             GameRecord game = moves == null || moves.isEmpty() ? null
+            		 : GameRecord.create(getSettingsVar(), moves);
+             
+             if (game == null) {
+               console.setMessageLn(Lang.get("GameSaveFailed", Lang.get("NoMovesToSave")), Color.RED);
+               break;
+             }
+             
+             try (GameRecordWriter writer = new GameRecordWriter(new FileOutputStream(file), 
+            		 GameRecordFormat.get(file.getName()))) {
+               if (!writer.write(game)) throw new IOException(Lang.get("BoardSizeNotSupported", GameRecordFormat.get(file.getName())));
+             }
+             
+             console.setMessageLn("[" + Lang.get("GameSaved", file.getName()) + "]", Color.GRAY);
+             
+           } catch (IOException | RuntimeException e) {
+             console.setMessageLn(Lang.get("GameSaveFailed", e.getMessage()), Color.RED);
+           }
+           
+           break;
+           
      }
      
    
@@ -195,31 +308,31 @@ public class Game extends Thread implements Observer {
            break;  
              
         
-        //  gracz (klient lokalny) vs gracz (klient zdalny)
+        //  gracz (klient lokalny) vs gracz (klient zdalny) lub silnik serwera
         case NETWORK_GAME:
+        case ENGINE_GAME:
                     
            try {
+              
+              SettingsVar proposed = new SettingsVar(settings.getColsAndRows(), settings.getPiecesInRow(), 
+            		  settings.getRuleSet());
+              boolean engine = gameMode == GameMode.ENGINE_GAME;
                 
-              client = new Client(serverIP, gameSpy, console);  
+              client = new Client(serverIP, new JoinRequest(room, proposed, settings.getRatingToken(), 
+            		  engine ? settings.getDifficulty() : null, settings.isComputerStarts()), gameSpy, console);  
               // jeżeli się udało połączyć, to zmiana ustawień gry
-              Settings clientSettings = client.getSettings();
-              frame.restartClientGameSettings(clientSettings.getColsAndRows());
-              settings.setGameSettings(clientSettings.getColsAndRows(), clientSettings.getPiecesInRow());
-              gameSpy.sendObject("settings-main", clientSettings);
-              
-              // zmiana logiki planszy, bo zmiana ustawień
-              lBoard = new Board(clientSettings);
+              applyServerSettings();
               
               // kto pierwszy ten zaczyna
               if (client.getNumber()==0) {
                 player1 = new PlayerLocal(client, BoardFieldState.BLACK, gBoard, lBoard,
                 		"PlayerYou",  1);
-                player2 = new PlayerRemote(client, BoardFieldState.WHITE, gBoard, lBoard,
-                		"Player", 2);
+                player2 = engine ? new PlayerRemote(client, BoardFieldState.WHITE, gBoard, lBoard, "Computer")
+                		: new PlayerRemote(client, BoardFieldState.WHITE, gBoard, lBoard, "Player", 2);
               }
               else {
-                player1 = new PlayerRemote(client, BoardFieldState.BLACK, gBoard, lBoard,
-                		"Player", 1);    
+                player1 = engine ? new PlayerRemote(client, BoardFieldState.BLACK, gBoard, lBoard, "Computer")
+                		: new PlayerRemote(client, BoardFieldState.BLACK, gBoard, lBoard, "Player", 1);    
                 player2 = new PlayerLocal(client, BoardFieldState.WHITE, gBoard, lBoard,
                 		"PlayerYou", 2);   
               }
@@ -250,6 +363,28 @@ public class Game extends Thread implements Observer {
            
             
            break;
+           
+        // obserwacja gry sieciowej (widz)
+        case WATCH_GAME:
+        	
+           player1 = null;
+           player2 = null;
+           
+           try {
+        	   
+              client = new Client(serverIP, room, gameSpy, console);
+              applyServerSettings();
+              
+           } catch (Exception e) {
+        	   
+              console.setMessageLn(Lang.get("CantConnect") + " " + Lang.get("CantWatch"), Color.RED); 
+              console.newLine();
+              throw e;
+              
+           }
+           
+           watchGame();
+           return;
                      
      }
      
@@ -268,17 +403,32 @@ public class Game extends Thread implements Observer {
      console.setMessageLn(Lang.get("START"), new Color(0x22, 0x8b, 0x22));  
      console.newLine();      
 
-     boolean playAgain = false;
+     boolean playAgain = false, finished = false;
      int moveNo = 1;            // nr ruchu
      List<BoardField> winRow;   // lista kamieni w ewentualnym wygrywającym rzędzie
      
-     List<Player> players = Arrays.asList(player1, player2); 
+     // kontynuacja wczytanej gry lub otwarcie Swap2 (gra z komputerem lub hot-seat)
+     openingMoves = 0;
+     if (record != null) moveNo = playRecord(record);
+     else if (settings.isSwap2() && !gameMode.isServerGame()) {
+       // w trakcie otwarcia cofanie ruchów jest zablokowane
+       openingMoves = Integer.MAX_VALUE;
+       openingMoves = playSwap2Opening();
+       moveNo = openingMoves + 1;
+     }
+     
+     // kolejność wg koloru (kolory mogły zostać zamienione w otwarciu)
+     List<Player> players = player1.getPieceColor() == BoardFieldState.BLACK
+    		 ? Arrays.asList(player1, player2) : Arrays.asList(player2, player1); 
      
      // petla rozgrywki
      while (gameState==GameState.RUN) {  
                     
-       // sekwencja zdarzeń dla każdego z graczy  
-       for(Player p:players) if (gameState==GameState.RUN) {         
+       // sekwencja zdarzeń dla każdego z graczy (kolejność wg nr ruchu, bo ruchy mogą być cofnięte)
+       for (int i=0; i<players.size() && gameState==GameState.RUN; i++) {         
+    	   
+         Player p = players.get((moveNo-1) % players.size());
+         currentPlayer = p;
     	   
          // komunikat na konsoli
          console.setMessage(Lang.get("Move") + " #" + Integer.toString(moveNo) + ": ", Color.BLUE);
@@ -291,27 +441,64 @@ public class Game extends Thread implements Observer {
          // żeby uniknąć wypisywanie komunikatów jeżeli przerwano w trakcie ruchu
          if (gameState!=GameState.RUN) break;
          
+         // cofnięcie ruchów na żądanie gracza (w grze z komputerem - również ruchu komputera)
+         if (undoRequested) {
+        	 
+           undoRequested = false;
+           int undo = gameMode == GameMode.SINGLE_GAME ? 2 : 1;
+           console.newLine();
+           
+           if (lBoard.getMovesAmount() - undo >= openingMoves) {
+             for (int j=0; j<undo; j++) lBoard.undoMove();
+             moveNo -= undo;
+             gBoard.redraw(lBoard);
+             console.setMessageLn("[" + Lang.get("MovesTakenBack", undo) + "]", Color.GRAY);
+           }
+           
+           continue;
+        	 
+         }
+         
          // dokończenie komunikatu na konsoli - wykonany ruch 
          console.setMessageLn("  \u279C  " + lBoard.getFieldName(p.getLastMove()), Color.RED);
          // dźwięk położenia kamienia
          sounds.play(Sounds.SND_MOVE);
          
-         // sprawdzenie warunków końca gry (wygrana lub remis)
-         winRow = lBoard.getWinningRow(p.getLastMove());
-         if ((winRow != null || lBoard.freeFieldsAmount==0)) {
+         // sprawdzenie warunków końca gry (wygrana lub remis), w grze sieciowej rozstrzyga serwer
+         boolean won, draw;
+         
+         if (gameMode.isServerGame()) {
+           GameResult result;
+           try {
+             result = client.getGameResult();
+           } catch (IOException e) {
+             client.endGame();
+             break;
+           }
+           won = result.isWin();
+           draw = result == GameResult.DRAW;
+         }
+         else {
+           won = lBoard.isWinningMove(p.getLastMove());
+           draw = !won && lBoard.freeFieldsAmount==0;
+         }
+         
+         if (won || draw) {
+             
+           // komunikat o wygranej, rząd pobierany tylko w razie wygranej
+           if (won) {
              
-           // komunikat o wygranej 
-           if (winRow != null) {
+             winRow = lBoard.getWinningRow(p.getLastMove());
                
              console.newLine();  
              console.setMessageLn(Lang.get("WON", p.getName().toUpperCase()), Color.RED);
              console.newGameMsg();
              
-             gBoard.setPiecesRow(winRow, p.getPieceColor());
+             if (winRow != null) gBoard.setPiecesRow(winRow, p.getPieceColor());
              
              boolean win = (gameMode == GameMode.SINGLE_GAME && p instanceof PlayerHuman) 
             		 || gameMode == GameMode.HOTSEAT_GAME 
-            		 || (gameMode == GameMode.NETWORK_GAME && p instanceof PlayerLocal);
+            		 || (gameMode.isServerGame() && p instanceof PlayerLocal);
              
              sounds.play(Sounds.SND_SUCCESS);
              
@@ -338,11 +525,12 @@ public class Game extends Thread implements Observer {
 
            gBoard.setDefaultMouseCursor();
            gameState=GameState.WAIT;                      
+           finished = true;
               
          }
                   
          // odłączenie od serwera
-         if (gameState!=GameState.RUN && gameMode==GameMode.NETWORK_GAME && client!=null) {
+         if (gameState!=GameState.RUN && gameMode.isServerGame() && client!=null) {
              
            try {
              client.sendCommand(new Command(Command.CMD_EXIT));
@@ -364,13 +552,391 @@ public class Game extends Thread implements Observer {
                 
      } 
      
-     if (gameMode == GameMode.NETWORK_GAME && client != null) gBoard.setDefaultMouseCursor();             
+     if (gameMode.isServerGame() && client != null) gBoard.setDefaultMouseCursor();             
      
      if (playAgain) new NewGameDialog(frame);
+     // bez nowej gry - odtworzenie zakończonej gry z oceną ruchów
+     else if (finished && gameState == GameState.WAIT) replayRequested = true;
   
    }
    
    
+   /**
+    * Tryb odtwarzania zakończonej (lub przerwanej) gry: przechodzenie po ruchach na planszy 
+    * i ocena ruchów, liczona w tle (równolegle dla pozycji, z pamięcią podręczną na dysku).
+    * Kończy się ze zmianą stanu gry lub planszy, ostatecznie wszystkie ruchy są przywracane.
+    */
+   private void replayGame() {
+	   
+     replayRequested = false;
+     
+     analysis = new GameAnalysis(getSettingsVar(), lBoard.getHistory());
+     analysis.start();
+     
+     int position = analysis.getMovesAmount();
+     boolean shown = true, summary = false;
+     replayPosition = position;
+     replaying = true;
+     
+     console.newLine();
+     console.setMessageLn("[" + Lang.get("ReplayStarted", position) + "]", Color.GRAY);
+     
+     while (replaying) {
+    	 
+       int target = replayPosition;
+       
+       if (target != position) {
+         while (position > target && lBoard.undoMove() != null) position--;
+         while (position < target && lBoard.redoMove() != null) position++;
+         gBoard.redraw(lBoard);
+         shown = false;
+       }
+       
+       // ocena ruchu prowadzącego do bieżącej pozycji (o ile jest już gotowa)
+       if (!shown) {
+         if (position == 0) {
+           console.setMessageLn(Lang.get("ReplayStart"), Color.BLUE);
+           shown = true;
+         }
+         else {
+           MoveEvaluation e = analysis.get(position);
+           if (e != null) {
+             showEvaluation(e);
+             gBoard.setReplayMarks(e.getMove(), e.isBest() ? null : e.getBest());
+             shown = true;
+           }
+         }
+       }
+       
+       if (!summary && analysis.isDone()) {
+    	 showSummary();
+    	 summary = true;
+       }
+       
+       try {
+         Thread.sleep(20);
+       }
+       catch (InterruptedException e) { break; }
+    	 
+     }
+     
+     analysis.cancel();
+     while (lBoard.redoMove() != null);
+	   
+   }
+   
+   
+   /**
+    * Wyświetlenie oceny ruchu na konsoli
+    * @param e Ocena ruchu
+    */
+   private void showEvaluation(MoveEvaluation e) {
+	   
+     BoardFieldState color = e.getMove().getState();
+     
+     console.setMessage(Lang.get("Move") + " #" + Integer.toString(e.getMoveNo()) + ": ", Color.BLUE);
+     console.setMessage(color.getName(), (color==BoardFieldState.WHITE) ? Color.BLACK : Color.WHITE,
+                       (color==BoardFieldState.WHITE) ? Color.WHITE : Color.BLACK);
+     console.setMessage("  \u279C  " + lBoard.getFieldName(e.getMove()), Color.RED);
+     console.setMessage("  " + Lang.get("ReplayScore", getScoreText(e.getScore())), Color.DARK_GRAY);
+     
+     if (!e.isBest())
+       console.setMessage("  " + Lang.get("ReplayBest", lBoard.getFieldName(e.getBest()), 
+    		   getScoreText(e.getBestScore())), Color.GRAY);
+     if (e.isBlunder()) console.setMessage("  " + Lang.get("Blunder"), Color.RED);
+     
+     console.newLine();
+	   
+   }
+   
+   
+   /**
+    * Wyświetlenie podsumowania analizy na konsoli (czas i błędy)
+    */
+   private void showSummary() {
+	   
+     console.setMessageLn("[" + Lang.get("ReplayFinished", analysis.getTime(), analysis.getCachedCount()) + "]", 
+    		 Color.GRAY);
+     
+     List<MoveEvaluation> blunders = analysis.getBlunders();
+     if (blunders.isEmpty()) {
+       console.setMessageLn(Lang.get("ReplayNoBlunders"), Color.DARK_GRAY);
+       return;
+     }
+     
+     StringBuilder sb = new StringBuilder();
+     for (MoveEvaluation e : blunders) 
+       sb.append(sb.length() > 0 ? ", #" : "#").append(e.getMoveNo()).append(' ').append(lBoard.getFieldName(e.getMove()));
+     
+     console.setMessageLn(Lang.get("ReplayBlunders", sb.toString()), Color.RED);
+	   
+   }
+   
+   
+   private static String getScoreText(int score) {
+	   
+     if (score >= MoveEvaluation.WIN) return Lang.get("ScoreWin");
+     if (score <= -MoveEvaluation.WIN) return Lang.get("ScoreLoss");
+     
+     return String.format("%+d", score);
+	   
+   }
+   
+   
+   private SettingsVar getSettingsVar() {
+	   
+     return new SettingsVar(settings.getColsAndRows(), settings.getPiecesInRow(), settings.getRuleSet());
+	   
+   }
+   
+   
+
+   /**
+    * Zmiana ustawień gry na ustawienia pokoju na serwerze (nowa logika planszy)
+    */
+   private void applyServerSettings() {
+	   
+     Settings clientSettings = client.getSettings();
+     frame.restartClientGameSettings(clientSettings.getColsAndRows());
+     settings.setGameSettings(clientSettings.getColsAndRows(), clientSettings.getPiecesInRow());
+     settings.setRules(clientSettings.getRuleSet(), settings.isSwap2());
+     gameSpy.sendObject("settings-main", clientSettings);
+     
+     // zmiana logiki planszy, bo zmiana ustawień
+     lBoard = new Board(clientSettings);
+	   
+   }
+   
+   
+   /**
+    * Obserwacja gry sieciowej: ruchy i wyniki przesyłane przez serwer są nanoszone 
+    * na planszę. Migawka planszy (po dołączeniu lub gdy widz nie nadąża) zastępuje
+    * jej stan, dlatego ruch zawarty już w migawce jest pomijany.
+    */
+   private void watchGame() {
+	   
+     console.setMessageLn(Lang.get("WatchingRoom", client.getRoom()), new Color(0x22, 0x8b, 0x22));
+     console.newLine();
+     
+     RoomSnapshot snapshot = client.getSnapshot();
+     int moveNo = restoreSnapshot(snapshot);
+     BoardField lastMove = null;
+     GameResult result = snapshot.getResult();
+     
+     try {
+    	 
+       while (gameState == GameState.RUN && result == GameResult.CONTINUE) {
+    	   
+         Command cmd = client.getResponse();
+         
+         switch (cmd.getCommand()) {
+         
+           case Command.CMD_MOVE:
+        	   
+             BoardField field = (BoardField)cmd.getCommandData();
+             if (!lBoard.makeMove(field)) break;
+             
+             gBoard.setPiece(lBoard, field.getA(), field.getB(), field.getState());
+             gBoard.repaint();
+             lastMove = field;
+             
+             console.setMessage(Lang.get("Move") + " #" + Integer.toString(++moveNo) + ": ", Color.BLUE);
+             console.setMessageLn(lBoard.getFieldName(field), Color.RED);
+             sounds.play(Sounds.SND_MOVE);
+             
+             break;
+             
+           case Command.CMD_RESULT:
+        	   
+             result = GameResult.get((Integer)cmd.getCommandData());
+             if (result == null) result = GameResult.CONTINUE;
+             break;
+             
+           case Command.CMD_SNAPSHOT:
+        	   
+             snapshot = (RoomSnapshot)cmd.getCommandData();
+             moveNo = restoreSnapshot(snapshot);
+             lastMove = null;
+             result = snapshot.getResult();
+             break;
+             
+           case Command.CMD_EXIT: throw new IOException();
+             
+           default: break;
+             
+         }
+         
+       }
+       
+     }
+     
+     catch (IOException | ClassCastException e) {
+    	 
+       if (gameState == GameState.RUN) client.endGame();
+       else client.close();
+       return;
+    	 
+     }
+     
+     if (gameState != GameState.RUN) {
+       client.close();
+       return;
+     }
+     
+     // komunikat o wyniku gry
+     console.newLine();
+     
+     if (result.isWin()) {
+       if (lastMove != null && lBoard.isWinningMove(lastMove))
+         gBoard.setPiecesRow(lBoard.getWinningRow(lastMove), lastMove.getState());
+       console.setMessageLn(result.toString().toUpperCase(), Color.RED);
+     }
+     else console.setMessageLn(Lang.get("DRAW"), Color.RED);
+     
+     console.newGameMsg();
+     sounds.play(Sounds.SND_SUCCESS);
+     
+     client.close();
+     gameState = GameState.WAIT;
+	   
+   }
+   
+   
+   /**
+    * Odtworzenie wczytanej gry na planszy. Jeżeli gra jest rozstrzygnięta, wyświetlany
+    * jest wynik i rozgrywka się kończy, w przeciwnym razie gra toczy się dalej
+    * (wczytane ruchy można cofać).
+    * @param record Wczytana gra
+    * @return Nr kolejnego ruchu
+    */
+   private int playRecord(GameRecord record) {
+	   
+     for (BoardField field : record.getMoves()) lBoard.makeMove(field);
+     gBoard.redraw(lBoard);
+     
+     console.setMessageLn("[" + Lang.get("GameLoaded", record.getMovesAmount()) + "]", Color.GRAY);
+     
+     GameResult result = record.getResult();
+     if (result != GameResult.CONTINUE) {
+       
+       BoardField lastMove = record.getMoves().get(record.getMovesAmount() - 1);
+       console.newLine();
+       
+       if (result.isWin()) {
+         gBoard.setPiecesRow(lBoard.getWinningRow(lastMove), lastMove.getState());
+         console.setMessageLn(result.toString().toUpperCase(), Color.RED);
+       }
+       else console.setMessageLn(Lang.get("DRAW"), Color.RED);
+       
+       console.newGameMsg();
+       gBoard.setDefaultMouseCursor();
+       gameState = GameState.WAIT;
+       replayRequested = true;
+       
+     }
+     
+     return record.getMovesAmount() + 1;
+	   
+   }
+   
+   
+   /**
+    * Odtworzenie planszy z migawki
+    * @param snapshot Migawka planszy pokoju
+    * @return Ilość wykonanych ruchów
+    */
+   private int restoreSnapshot(RoomSnapshot snapshot) {
+	   
+     lBoard = new Board(settings);
+     for (BoardField field : snapshot.getStones()) lBoard.makeMove(field);
+     gBoard.redraw(lBoard);
+     
+     return snapshot.getMovesAmount();
+	   
+   }
+   
+   
+   /**
+    * Otwarcie Swap2: pierwszy gracz kładzie 3 kamienie (2 czarne i biały), drugi 
+    * wybiera kolor lub dokłada 2 kamienie (biały i czarny) - wtedy kolor wybiera 
+    * pierwszy gracz. Ruchy otwarcia nie mogą być cofnięte.
+    * @return Ilość położonych kamieni otwarcia (0 jeżeli przerwano grę)
+    */
+   private int playSwap2Opening() {
+	   
+	 BoardFieldState[] opening = { BoardFieldState.BLACK, BoardFieldState.WHITE, BoardFieldState.BLACK };
+	 
+	 int moveNo = 1;
+	 for (BoardFieldState color : opening)
+	   if (!placeOpeningStone(player1, color, moveNo++)) return 0;
+	 
+	 Player chooser = player2;
+	 Swap2Choice choice = getSwap2Choice(player2, true);
+	 
+	 if (choice == Swap2Choice.PLACE_TWO) {
+	   if (!placeOpeningStone(player2, BoardFieldState.WHITE, moveNo++)
+			   || !placeOpeningStone(player2, BoardFieldState.BLACK, moveNo++)) return 0;
+	   chooser = player1;
+	   choice = getSwap2Choice(player1, false);
+	 }
+	 
+	 Player other = chooser == player1 ? player2 : player1;
+	 chooser.setPieceColor(choice.getColor());
+	 other.setPieceColor(choice.getColor().getOpposite());
+	 
+	 console.setMessageLn("[" + Lang.get("Swap2Chosen", chooser.getName()) + "]", Color.GRAY);
+	 console.newLine();
+	 
+	 return moveNo - 1;
+	   
+   }
+   
+   
+   /**
+    * Położenie kamienia otwarcia (dowolnego koloru) przez gracza
+    * @param p Gracz
+    * @param color Kolor kamienia
+    * @param moveNo Nr ruchu
+    * @return True jeżeli położono kamień, false jeżeli przerwano grę
+    */
+   private boolean placeOpeningStone(Player p, BoardFieldState color, int moveNo) {
+	   
+	 p.setPieceColor(color);
+	 currentPlayer = p;
+	 
+	 console.setMessage(Lang.get("Move") + " #" + Integer.toString(moveNo) + ": ", Color.BLUE);
+	 console.setMessage(p.getName(), (color==BoardFieldState.WHITE) ? Color.BLACK : Color.WHITE,
+			 (color==BoardFieldState.WHITE) ? Color.WHITE : Color.BLACK);
+	 
+	 p.makeMove();
+	 if (gameState != GameState.RUN) return false;
+	 
+	 console.setMessageLn("  \u279C  " + lBoard.getFieldName(p.getLastMove()), Color.RED);
+	 sounds.play(Sounds.SND_MOVE);
+	 
+	 return true;
+	   
+   }
+   
+   
+   /**
+    * Decyzja gracza w otwarciu Swap2. Komputer wybiera kolor, dla którego
+    * ocena sytuacji na planszy jest lepsza.
+    * @param p Gracz
+    * @param placeTwo True jeżeli można dołożyć dwa kamienie
+    * @return Decyzja gracza
+    */
+   private Swap2Choice getSwap2Choice(Player p, boolean placeTwo) {
+	   
+	 if (p instanceof PlayerComputer)
+	   return lBoard.getScore(BoardFieldState.BLACK) > lBoard.getScore(BoardFieldState.WHITE)
+			   ? Swap2Choice.BLACK : Swap2Choice.WHITE;
+	 
+	 return new Swap2Dialog(frame, placeTwo).getChoice();
+	   
+   }
+   
+   
 
    @Override
    public void run() {	   
@@ -390,6 +956,8 @@ public class Game extends Thread implements Observer {
 	  // pętla oczekiwania na rozpoczęcie nowej gry
 	  do {  
 	          
+	    if (replayRequested && gameState == GameState.WAIT) replayGame();
+	      
 	    try {         
 	       Thread.sleep(10);
 	    } catch (InterruptedException e) { return; }
@@ -408,6 +976,11 @@ public class Game extends Thread implements Observer {
    public void setSettings(Settings settings) {
 	 this.settings = settings;
    }
+   
+   
+   public void setRecord(GameRecord record) {
+	 this.record = record;
+   }
 
    
 }
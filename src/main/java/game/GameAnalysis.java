@@ -0,0 +1,365 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Analiza zakończonej gry: ocena każdego ruchu w tle. Pozycje są oceniane
+ * równolegle (wspólna pula wątków, od końca gry - tryb odtwarzania zaczyna się
+ * od ostatniego ruchu), każda na własnej kopii planszy. Ocena pozycji to wartość
+ * najlepszej odpowiedzi (jeden półruch) i najlepszy ruch z wartością (dwa półruchy),
+ * wg tej samej punktacji planszy co silnik, ale bez szumu i limitu czasu, więc
+ * wynik zależy tylko od pozycji i jest zapamiętywany na dysku wg skrótu pozycji -
+ * ponowna analiza tej samej gry (lub gry przez te same pozycje) jest natychmiastowa.
+ * Ocena ruchu wymaga ocen pozycji przed ruchem i po nim.
+ *
+ * @author Maciej Kawecki
+ * @see MoveEvaluation
+ * @see EvaluationCache
+ *
+ */
+public class GameAnalysis {
+
+  /** Wątki analizy (jeden procesor zostaje dla interfejsu) */
+  private final static ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+		  Math.max(1, Runtime.getRuntime().availableProcessors() - 1), new ThreadFactory() {
+	private final AtomicInteger n = new AtomicInteger();
+	@Override
+	public Thread newThread(Runnable r) {
+	  Thread t = new Thread(r, "analysis-" + n.getAndIncrement());
+	  t.setDaemon(true);
+	  t.setPriority(Thread.NORM_PRIORITY - 1);
+	  return t;
+	}
+  });
+
+  /** Pamięć podręczna ocen (otwierana przy pierwszej analizie) */
+  private static EvaluationCache cache;
+
+  /** Ustawienia gry */
+  private final SettingsVar settings;
+  /** Ruchy gry (z kolorami kamieni) */
+  private final List<BoardField> moves;
+  /** Skróty pozycji po kolejnych ruchach (0 - pusta plansza) */
+  private final long[] hashes;
+  /** Oceny pozycji */
+  private final AtomicReferenceArray<EvaluationCache.Entry> positions;
+  /** Oceny ruchów */
+  private final AtomicReferenceArray<MoveEvaluation> evaluations;
+  /** Zlecone oceny pozycji */
+  private final List<Future<?>> tasks = new ArrayList<>();
+  /** Ilość ocenionych pozycji i ocen pobranych z pamięci podręcznej */
+  private final AtomicInteger done = new AtomicInteger(), cached = new AtomicInteger();
+  /** Czas rozpoczęcia i zakończenia analizy (System.nanoTime) */
+  private volatile long started, finished;
+
+
+  /**
+   * Konstruktor
+   * @param settings Ustawienia gry
+   * @param moves Ruchy gry (z kolorami kamieni, od pierwszego)
+   */
+  public GameAnalysis(SettingsVar settings, List<BoardField> moves) {
+
+	this.settings = settings;
+	this.moves = new ArrayList<>(moves);
+
+	hashes = new long[moves.size() + 1];
+	hashes[0] = PositionHash.get(settings);
+	for (int i=0; i<moves.size(); i++) {
+	  BoardField f = moves.get(i);
+	  hashes[i+1] = hashes[i] ^ PositionHash.getKey(f.getA(), f.getB(), f.getState());
+	}
+
+	positions = new AtomicReferenceArray<>(hashes.length);
+	evaluations = new AtomicReferenceArray<>(moves.size());
+
+  }
+
+
+  /**
+   * Rozpoczęcie analizy w tle
+   */
+  public synchronized void start() {
+
+	started = System.nanoTime();
+	final EvaluationCache c = getCache();
+
+	for (int i=hashes.length-1; i>=0; i--) {
+
+	  final int position = i;
+	  EvaluationCache.Entry entry = c.get(hashes[i]);
+
+	  if (entry != null) {
+		cached.incrementAndGet();
+		setPosition(position, entry);
+		continue;
+	  }
+
+	  tasks.add(EXECUTOR.submit(new Runnable() {
+		@Override
+		public void run() {
+		  EvaluationCache.Entry e = analyse(getBoard(position), getColor(position));
+		  c.put(hashes[position], e);
+		  setPosition(position, e);
+		}
+	  }));
+
+	}
+
+  }
+
+
+  /**
+   * Przerwanie analizy (oceny pozycji jeszcze nie rozpoczęte są pomijane)
+   */
+  public synchronized void cancel() {
+
+	for (Future<?> f : tasks) f.cancel(false);
+	getCache().flush();
+
+  }
+
+
+  /**
+   * Ocena ruchu
+   * @param moveNo Nr ruchu (od 1)
+   * @return Ocena lub null jeżeli jeszcze nie jest gotowa
+   */
+  public MoveEvaluation get(int moveNo) {
+
+	return evaluations.get(moveNo - 1);
+
+  }
+
+
+  /**
+   * Analizowane ruchy
+   * @return Niemodyfikowalna lista ruchów
+   */
+  public List<BoardField> getMoves() {
+	return Collections.unmodifiableList(moves);
+  }
+
+
+  public int getMovesAmount() {
+	return moves.size();
+  }
+
+
+  public boolean isDone() {
+	return done.get() == hashes.length;
+  }
+
+
+  /**
+   * Ilość pozycji, których ocena była w pamięci podręcznej
+   * @return Ilość pozycji
+   */
+  public int getCachedCount() {
+	return cached.get();
+  }
+
+
+  /**
+   * Czas analizy
+   * @return Czas (ms) lub -1 jeżeli analiza trwa
+   */
+  public long getTime() {
+	return isDone() ? (finished - started) / 1000000 : -1;
+  }
+
+
+  /**
+   * Błędy w ocenionych ruchach
+   * @return Lista ocen ruchów-błędów (wg nr ruchu)
+   */
+  public List<MoveEvaluation> getBlunders() {
+
+	List<MoveEvaluation> list = new ArrayList<>();
+	for (int i=0; i<evaluations.length(); i++) {
+	  MoveEvaluation e = evaluations.get(i);
+	  if (e != null && e.isBlunder()) list.add(e);
+	}
+
+	return list;
+
+  }
+
+
+  /**
+   * Zapamiętanie oceny pozycji i ocena ruchów do tej pozycji i z niej
+   * @param position Nr pozycji (ilość wykonanych ruchów)
+   * @param entry Ocena pozycji
+   */
+  private synchronized void setPosition(int position, EvaluationCache.Entry entry) {
+
+	positions.set(position, entry);
+
+	for (int i=Math.max(0, position-1); i<=Math.min(position, moves.size()-1); i++) {
+	  EvaluationCache.Entry before = positions.get(i), after = positions.get(i+1);
+	  if (before == null || after == null) continue;
+	  // wartość ruchu dla gracza = minus wartość najlepszej odpowiedzi przeciwnika
+	  evaluations.set(i, new MoveEvaluation(i+1, moves.get(i), before.getBest(getColor(i)),
+			  -after.getReplyScore(), before.getBestScore()));
+	}
+
+	if (done.incrementAndGet() == hashes.length) {
+	  finished = System.nanoTime();
+	  getCache().flush();
+	}
+
+  }
+
+
+  /**
+   * Plansza w pozycji po zadanej ilości ruchów
+   * @param position Ilość ruchów
+   * @return Nowa plansza
+   */
+  private Board getBoard(int position) {
+
+	Board board = new Board(new Settings(settings));
+	for (int i=0; i<position; i++) board.makeMove(moves.get(i));
+
+	return board;
+
+  }
+
+
+  /**
+   * Kolor gracza na ruchu (kolory na przemian, od czarnych)
+   * @param position Ilość wykonanych ruchów
+   * @return Kolor
+   */
+  private static BoardFieldState getColor(int position) {
+
+	return position % 2 == 0 ? BoardFieldState.BLACK : BoardFieldState.WHITE;
+
+  }
+
+
+  /**
+   * Ocena pozycji: najlepsza odpowiedź gracza na ruchu oraz najlepszy ruch, którego
+   * wartość to minus wartość najlepszej odpowiedzi przeciwnika (wygrana kończy
+   * przeszukiwanie)
+   * @param board Plansza (zmieniana w trakcie, przywracana)
+   * @param color Kolor gracza na ruchu
+   * @return Ocena pozycji
+   */
+  static EvaluationCache.Entry analyse(Board board, BoardFieldState color) {
+
+	int reply = getReplyScore(board, color);
+	if (isOver(board)) return new EvaluationCache.Entry(null, reply, reply);
+
+	BoardField best = null;
+	int bestScore = -MoveEvaluation.WIN;
+
+	for (BoardField f : MoveGenerator.getAllowedMoves(board, color)) {
+
+	  board.setFieldState(f.getA(), f.getB(), color);
+	  int score = board.hasWon(color) ? MoveEvaluation.WIN : -getReplyScore(board, color.getOpposite());
+	  board.setFieldState(f.getA(), f.getB(), BoardFieldState.EMPTY);
+
+	  // przy równej wartości - pole bliżej środka planszy
+	  if (best == null || score > bestScore
+			  || (score == bestScore && getCenterDistance(board, f) < getCenterDistance(board, best))) {
+		best = f;
+		bestScore = score;
+		if (score >= MoveEvaluation.WIN) break;
+	  }
+
+	}
+
+	return new EvaluationCache.Entry(best, bestScore, reply);
+
+  }
+
+
+  /**
+   * Wartość najlepszej odpowiedzi (jeden półruch) dla gracza na ruchu
+   * @param board Plansza (zmieniana w trakcie, przywracana)
+   * @param color Kolor gracza na ruchu
+   * @return Wartość
+   */
+  private static int getReplyScore(Board board, BoardFieldState color) {
+
+	if (isOver(board)) return evaluate(board, color);
+
+	int best = -MoveEvaluation.WIN;
+	boolean any = false;
+
+	for (BoardField f : MoveGenerator.getAllowedMoves(board, color)) {
+
+	  board.setFieldState(f.getA(), f.getB(), color);
+	  int score = evaluate(board, color);
+	  board.setFieldState(f.getA(), f.getB(), BoardFieldState.EMPTY);
+
+	  if (!any || score > best) best = score;
+	  any = true;
+	  if (best >= MoveEvaluation.WIN) break;
+
+	}
+
+	return any ? best : evaluate(board, color);
+
+  }
+
+
+  /**
+   * Ocena statyczna: różnica punktacji planszy graczy
+   * @param board Plansza
+   * @param color Kolor gracza
+   * @return Ocena z punktu widzenia gracza (+/- WIN - wygrana / przegrana)
+   */
+  private static int evaluate(Board board, BoardFieldState color) {
+
+	if (board.hasWon(color)) return MoveEvaluation.WIN;
+	if (board.hasWon(color.getOpposite())) return -MoveEvaluation.WIN;
+
+	return board.getScore(color) - board.getScore(color.getOpposite());
+
+  }
+
+
+  private static int getCenterDistance(Board board, BoardField f) {
+
+	int center = board.getColsAndRows() / 2;
+	return Math.max(Math.abs(f.getA() - center), Math.abs(f.getB() - center));
+
+  }
+
+
+  private static boolean isOver(Board board) {
+
+	return board.hasWon(BoardFieldState.BLACK) || board.hasWon(BoardFieldState.WHITE)
+			|| board.getFreeFieldsAmount() == 0;
+
+  }
+
+
+  private static synchronized EvaluationCache getCache() {
+
+	if (cache == null) cache = new EvaluationCache(new File(EvaluationCache.FILE_NAME));
+	return cache;
+
+  }
+
+
+}
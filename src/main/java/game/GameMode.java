@@ -23,7 +23,13 @@ public enum GameMode {
    HOTSEAT_GAME(2), 
 	   
    /** Gracz kontra gracz (gra sieciowa) */
-   NETWORK_GAME(3);
+   NETWORK_GAME(3),
+   
+   /** Obserwacja gry sieciowej (widz) */
+   WATCH_GAME(4),
+   
+   /** Gracz kontra silnik serwera */
+   ENGINE_GAME(5);
 	
 	
    private final int code;
@@ -39,6 +45,24 @@ public enum GameMode {
    public boolean isEnabled() {
 	   return true;
    }
+   
+   
+   /**
+    * Czy tryb wymaga połączenia z serwerem
+    * @return True jeżeli tak
+    */
+   public boolean isNetworkMode() {
+	   return this == NETWORK_GAME || this == WATCH_GAME || this == ENGINE_GAME;
+   }
+   
+   
+   /**
+    * Czy gracz gra na serwerze (ruchy sprawdza i wynik ustala serwer)
+    * @return True jeżeli tak
+    */
+   public boolean isServerGame() {
+	   return this == NETWORK_GAME || this == ENGINE_GAME;
+   }
 	
 	
    @Override
@@ -49,6 +73,8 @@ public enum GameMode {
 	   case SINGLE_GAME: return Lang.get("StartSingleGame");
 	   case HOTSEAT_GAME: return Lang.get("StartHotSeatGame");
 	   case NETWORK_GAME: return Lang.get("StartNetworkGame");
+	   case WATCH_GAME: return Lang.get("StartWatchGame");
+	   case ENGINE_GAME: return Lang.get("StartEngineGame");
 	 
 	 }
 	   
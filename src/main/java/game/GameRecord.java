@@ -0,0 +1,131 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gomoku.IConf;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+import network.GameResult;
+
+/**
+ *
+ * Zapis gry (eksport i import): ustawienia, kolejne ruchy i wynik. Ruchy są
+ * sprawdzane na bitowej reprezentacji planszy z przyrostowym wykrywaniem wygranej
+ * (bez oceny pól potrzebnej tylko silnikowi, co przy dużych zbiorach gier ma znaczenie) -
+ * kolory na przemian, od czarnych (także w otwarciu Swap2), a wynik wynika z ostatniego ruchu.
+ *
+ * @author Maciej Kawecki
+ * @see GameRecordReader
+ * @see GameRecordWriter
+ *
+ */
+public class GameRecord {
+
+  /** Wzorcowe detektory wygranej wg ustawień (kopie współdzielą tablice sąsiedztwa) */
+  private final static Map<Integer, BoardWinDetector> DETECTORS = new ConcurrentHashMap<>();
+
+  /** Ustawienia gry */
+  private final SettingsVar settings;
+  /** Kolejne ruchy */
+  private final List<BoardField> moves;
+  /** Wynik gry (CONTINUE - gra nierozstrzygnięta) */
+  private final GameResult result;
+
+
+  private GameRecord(SettingsVar settings, List<BoardField> moves, GameResult result) {
+
+	this.settings = settings;
+	this.moves = Collections.unmodifiableList(moves);
+	this.result = result;
+
+  }
+
+
+  /**
+   * Zapis gry z listy pól - ruchy są wykonywane na bitowej planszy, co sprawdza
+   * ich poprawność i ustala wynik
+   * @param settings Ustawienia gry
+   * @param fields Kolejne pola (kolor kamieni jest pomijany)
+   * @return Zapis gry lub null jeżeli ustawienia są nieprawidłowe, ruch jest poza
+   * planszą lub na zajętym polu albo gra toczy się po rozstrzygnięciu
+   */
+  public static GameRecord create(SettingsVar settings, List<BoardField> fields) {
+
+	Settings s = new Settings(settings);
+	if (s.getColsAndRows() < IConf.MIN_COLS_AND_ROWS || s.getColsAndRows() > IConf.FREE_COLS_AND_ROWS
+			|| s.getPiecesInRow() < IConf.MIN_PIECES_IN_ROW || s.getPiecesInRow() > IConf.MAX_PIECES_IN_ROW)
+	  return null;
+
+	int size = s.getColsAndRows();
+	long[][] stones = new long[2][(size * size + 63) / 64];
+	int key = (size * (IConf.MAX_PIECES_IN_ROW + 1) + s.getPiecesInRow()) * RuleSet.values().length
+			+ s.getRuleSet().ordinal();
+	BoardWinDetector template = DETECTORS.get(key);
+	if (template == null) {
+	  template = new BoardWinDetector(size, s.getPiecesInRow(), s.getRuleSet(), null);
+	  DETECTORS.put(key, template);
+	}
+	BoardWinDetector winDetector = new BoardWinDetector(template, stones);
+
+	List<BoardField> moves = new ArrayList<>(fields.size());
+	GameResult result = GameResult.CONTINUE;
+	BoardFieldState color = BoardFieldState.BLACK;
+
+	for (BoardField f : fields) {
+
+	  int a = f.getA(), b = f.getB();
+	  if (result != GameResult.CONTINUE || a < 0 || b < 0 || a >= size || b >= size) return null;
+
+	  int index = a * size + b;
+	  long bit = 1L << index;
+	  if (((stones[0][index >>> 6] | stones[1][index >>> 6]) & bit) != 0) return null;
+
+	  stones[BoardWinDetector.getColor(color)][index >>> 6] |= bit;
+	  moves.add(new BoardField(a, b, color));
+
+	  if (winDetector.place(index, color)) result = GameResult.won(color);
+	  else if (moves.size() == size * size) result = GameResult.DRAW;
+
+	  color = color.getOpposite();
+
+	}
+
+	return new GameRecord(new SettingsVar(s.getColsAndRows(), s.getPiecesInRow(), s.getRuleSet()),
+			moves, result);
+
+  }
+
+
+  public SettingsVar getSettings() {
+	return settings;
+  }
+
+
+  /**
+   * Kolejne ruchy
+   * @return Niemodyfikowalna lista ruchów (z kolorami kamieni)
+   */
+  public List<BoardField> getMoves() {
+	return moves;
+  }
+
+
+  public int getMovesAmount() {
+	return moves.size();
+  }
+
+
+  public GameResult getResult() {
+	return result;
+  }
+
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import gomoku.IConf;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Konwersja zbiorów gier między formatami (formaty wg rozszerzeń nazw plików,
+ * "-" - standardowe wejście / wyjście w formacie listy ruchów). Gry są czytane
+ * i zapisywane strumieniowo, nieprawidłowe są pomijane. Podsumowanie na stderr.
+ *
+ * Uruchomienie: Gomoku -convert wejście wyjście [-size=15] [-row=5] [-rules=freestyle]
+ * (ustawienia dla formatów, które ich nie zapisują)
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class GameRecordConverter {
+
+  /** Nazwa pliku oznaczająca standardowe wejście / wyjście */
+  private final static String STD = "-";
+
+  private String input, output;
+  private int size = IConf.DEFAULT_COLS_AND_ROWS, row = IConf.DEFAULT_PIECES_IN_ROW;
+  private RuleSet rules = RuleSet.DEFAULT;
+
+
+  /**
+   * Odczyt parametrów wywołania
+   * @param args Parametry (pierwszy to -convert)
+   * @throws IllegalArgumentException Nieprawidłowy parametr
+   */
+  private void parse(String[] args) {
+
+	List<String> files = new ArrayList<>();
+
+	for (int i=1; i<args.length; i++) {
+
+	  String arg = args[i];
+	  if (arg.equals(STD) || !arg.startsWith("-")) {
+		files.add(arg);
+		continue;
+	  }
+
+	  if (arg.indexOf('=') < 0) throw new IllegalArgumentException(arg);
+	  String key = arg.substring(1, arg.indexOf('=')), val = arg.substring(arg.indexOf('=') + 1);
+
+	  switch (key) {
+		case "size": size = Integer.parseInt(val); break;
+		case "row": row = Integer.parseInt(val); break;
+		case "rules":
+		  rules = GameRecordReader.getRuleSet(val);
+		  if (rules == null) throw new IllegalArgumentException(arg);
+		  break;
+		default: throw new IllegalArgumentException(arg);
+	  }
+
+	}
+
+	if (files.size() != 2 || size < IConf.MIN_COLS_AND_ROWS || size > IConf.FREE_COLS_AND_ROWS
+			|| row < IConf.MIN_PIECES_IN_ROW || row > IConf.MAX_PIECES_IN_ROW)
+	  throw new IllegalArgumentException();
+
+	input = files.get(0);
+	output = files.get(1);
+
+  }
+
+
+  /**
+   * Konwersja i podsumowanie
+   * @throws IOException Błąd odczytu lub zapisu
+   */
+  private void run() throws IOException {
+
+	long start = System.nanoTime(), unsupported = 0, read, skipped, written;
+
+	// plik wynikowy jest tworzony dopiero po sprawdzeniu nagłówka wejścia
+	try (InputStream in = input.equals(STD) ? System.in : new FileInputStream(input);
+		 GameRecordReader reader = new GameRecordReader(in, GameRecordFormat.get(input), new SettingsVar(size, row, rules));
+		 OutputStream out = output.equals(STD) ? System.out : new FileOutputStream(output);
+		 GameRecordWriter writer = new GameRecordWriter(out, GameRecordFormat.get(output))) {
+
+	  GameRecord game;
+	  while ((game = reader.next()) != null)
+		if (!writer.write(game)) unsupported++;
+
+	  read = reader.getGamesCount();
+	  skipped = reader.getSkippedCount();
+	  written = writer.getGamesCount();
+
+	}
+
+	// podsumowanie po zapisie (zamknięcie zapisuje drzewo RenLib)
+	System.err.println(String.format(Locale.US, "read=%d skipped=%d written=%d unsupported=%d time=%dms",
+			read, skipped, written, unsupported, (System.nanoTime() - start) / 1000000));
+
+  }
+
+
+  /**
+   * Uruchomienie konwersji
+   * @param args Parametry wywołania (zob. opis klasy)
+   */
+  public static void main(String[] args) {
+
+	GameRecordConverter conv = new GameRecordConverter();
+
+	try {
+	  conv.parse(args);
+	} catch (IllegalArgumentException e) {
+	  System.err.println("Invalid option " + (e.getMessage() == null ? "value" : e.getMessage()));
+	  System.err.println("Usage: -convert input.(txt|psq|lib) output.(txt|psq|lib) [-size=15] [-row=5] [-rules=freestyle]");
+	  System.exit(1);
+	}
+
+	try {
+	  conv.run();
+	} catch (IOException e) {
+	  System.err.println(e);
+	  System.exit(1);
+	}
+
+  }
+
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import gomoku.Lang;
+
+/**
+ *
+ * Formaty zapisu gier (wybierane wg rozszerzenia nazwy pliku)
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public enum GameRecordFormat {
+
+
+   /** Lista ruchów - jedna gra w wierszu, np. "size=15 row=5 rules=renju H8 I9 J10" */
+   MOVES("txt"),
+
+   /** Gomocup PSQ - nagłówek "Piskvorky 20x20, ...", ruchy "x,y,czas" (od 1), kolejne gry jedna za drugą */
+   PSQ("psq"),
+
+   /** Drzewo ruchów w układzie RenLib (plansza 15x15) - każda ścieżka do liścia jest grą */
+   RENLIB("lib");
+
+
+   private final String extension;
+
+   public static final GameRecordFormat DEFAULT = MOVES;
+
+
+   GameRecordFormat(String extension) {
+	   this.extension = extension;
+   }
+
+
+   public String getExtension() {  return extension; }
+
+
+   @Override
+   public String toString() {
+
+	 switch (this) {
+
+	   case MOVES: return Lang.get("FormatMoves");
+	   case PSQ: return Lang.get("FormatPsq");
+	   case RENLIB: return Lang.get("FormatRenlib");
+
+	 }
+
+	 return DEFAULT.toString();
+
+   }
+
+
+   /**
+    * Format pliku wg rozszerzenia nazwy
+    * @param fileName Nazwa pliku
+    * @return Format (domyślny dla nieznanego rozszerzenia)
+    */
+   public static GameRecordFormat get(String fileName) {
+
+     String name = fileName.toLowerCase();
+     for (GameRecordFormat e : values()) if (name.endsWith("." + e.getExtension())) return e;
+
+     return DEFAULT;
+
+   }
+
+
+}
@@ -0,0 +1,404 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Strumieniowy odczyt zapisów gier - kolejne gry są odczytywane na żądanie,
+ * a w pamięci jest tylko bieżąca gra (w formacie RenLib - bieżąca ścieżka drzewa
+ * i stos rozgałęzień), więc wielkość zbioru gier nie jest ograniczona pamięcią.
+ * Nieprawidłowe gry są pomijane i liczone.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class GameRecordReader implements Closeable {
+
+  /** Nagłówek pliku RenLib */
+  final static byte[] RENLIB_HEADER = { (byte)0xff, 'R', 'e', 'n', 'L', 'i', 'b', (byte)0xff, 3, 0,
+		  (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff,
+		  (byte)0xff, (byte)0xff };
+  /** Długość sprawdzanej części nagłówka RenLib (bez wersji) */
+  private final static int RENLIB_MAGIC_LENGTH = 8;
+  /** Flagi rekordu RenLib: ruch ma kontynuację, ruch ma alternatywę, po rekordzie jest komentarz */
+  final static int RENLIB_DOWN = 0x80, RENLIB_RIGHT = 0x40, RENLIB_COMMENT = 0x08;
+  /** Komentarz RenLib oznaczający koniec gry w węźle z kontynuacją (gra jest początkiem innej gry) */
+  final static String RENLIB_GAME_END = "game end";
+  /** Wielkość planszy RenLib */
+  final static int RENLIB_SIZE = 15;
+  /** Rozmiar bufora odczytu */
+  private final static int BUFFER_SIZE = 64 * 1024;
+
+  /** Początek nagłówka gry PSQ */
+  private final static String PSQ_PREFIX = "Piskvorky";
+  /** Nagłówek gry PSQ */
+  private final static Pattern PSQ_HEADER = Pattern.compile("\\s*Piskvorky\\s+(\\d{1,3})x(\\d{1,3}).*");
+  /** Separatory w liście ruchów */
+  private final static Pattern SEPARATORS = Pattern.compile("[\\s,;]+");
+  /** Maksymalna liczba cyfr numeru kolumny / wiersza */
+  private final static int MAX_DIGITS = 3;
+
+  /** Format zapisu */
+  private final GameRecordFormat format;
+  /** Ustawienia dla formatów, które ich nie zapisują */
+  private final Settings defaults;
+  /** Odczyt formatów tekstowych */
+  private BufferedReader text;
+  /** Odczyt formatu RenLib */
+  private DataInputStream data;
+  /** Ustawienia bieżącej gry */
+  private SettingsVar settings;
+  /** Nagłówek kolejnej gry PSQ (odczytany na końcu poprzedniej) */
+  private String header;
+  /** RenLib: ruchy od korzenia do bieżącego węzła */
+  private final List<BoardField> path = new ArrayList<>();
+  /** RenLib: głębokości węzłów, które mają alternatywę */
+  private final Deque<Integer> siblings = new ArrayDeque<>();
+  /** RenLib: True jeżeli poprzedni węzeł ma kontynuację */
+  private boolean down = true;
+  /** Liczba odczytanych gier */
+  private long games;
+  /** Liczba pominiętych (nieprawidłowych) gier */
+  private long skipped;
+
+
+  /**
+   * Konstruktor
+   * @param in Strumień wejściowy (zamykany razem z obiektem)
+   * @param format Format zapisu
+   * @param defaults Ustawienia dla formatów, które ich nie zapisują (wielkość planszy
+   * tylko dla listy ruchów)
+   * @throws IOException Błąd odczytu lub nieprawidłowy nagłówek pliku RenLib
+   */
+  public GameRecordReader(InputStream in, GameRecordFormat format, SettingsVar defaults) throws IOException {
+
+	this.format = format;
+	this.defaults = new Settings(defaults);
+
+	if (format == GameRecordFormat.RENLIB) {
+	  data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+	  byte[] h = new byte[RENLIB_HEADER.length];
+	  data.readFully(h);
+	  for (int i=0; i<RENLIB_MAGIC_LENGTH; i++)
+		if (h[i] != RENLIB_HEADER[i]) throw new IOException("Not a RenLib file");
+	}
+	else text = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+  }
+
+
+  /**
+   * Odczyt kolejnej gry (nieprawidłowe są pomijane)
+   * @return Gra lub null jeżeli nie ma już gier
+   * @throws IOException Błąd odczytu
+   */
+  public GameRecord next() throws IOException {
+
+	while (true) {
+
+	  List<BoardField> fields;
+
+	  switch (format) {
+		case PSQ: fields = readPsq(); break;
+		case RENLIB: fields = readRenlib(); break;
+		default: fields = readMoves(); break;
+	  }
+
+	  if (fields == null) return null;
+
+	  GameRecord game = fields.isEmpty() ? null : GameRecord.create(settings, fields);
+	  if (game != null) {
+		games++;
+		return game;
+	  }
+
+	  skipped++;
+
+	}
+
+  }
+
+
+  public long getGamesCount() {
+	return games;
+  }
+
+
+  public long getSkippedCount() {
+	return skipped;
+  }
+
+
+  @Override
+  public void close() throws IOException {
+
+	if (text != null) text.close();
+	if (data != null) data.close();
+
+  }
+
+
+  /**
+   * Lista ruchów: gra w wierszu, opcje "klucz=wartość" (size, row, rules) i nazwy pól.
+   * Puste wiersze i wiersze zaczynające się od # są pomijane.
+   * @return Pola gry (pusta lista - nieprawidłowy wiersz) lub null na końcu strumienia
+   * @throws IOException Błąd odczytu
+   */
+  private List<BoardField> readMoves() throws IOException {
+
+	String line;
+	do {
+	  line = text.readLine();
+	  if (line == null) return null;
+	  line = line.trim();
+	} while (line.isEmpty() || line.startsWith("#"));
+
+	int size = defaults.getColsAndRows(), row = defaults.getPiecesInRow();
+	RuleSet rules = defaults.getRuleSet();
+	List<String> names = new ArrayList<>();
+
+	try {
+
+	  for (String token : SEPARATORS.split(line)) {
+
+		int eq = token.indexOf('=');
+		if (eq < 0) {
+		  names.add(token);
+		  continue;
+		}
+
+		String value = token.substring(eq + 1);
+		switch (token.substring(0, eq).toLowerCase()) {
+		  case "size": size = Integer.parseInt(value); break;
+		  case "row": row = Integer.parseInt(value); break;
+		  case "rules":
+			rules = getRuleSet(value);
+			if (rules == null) return Collections.emptyList();
+			break;
+		  default: break;
+		}
+
+	  }
+
+	} catch (NumberFormatException e) {
+	  return Collections.emptyList();
+	}
+
+	List<BoardField> fields = new ArrayList<>(names.size());
+
+	for (String name : names) {
+	  int col = name.isEmpty() ? -1 : Character.toLowerCase(name.charAt(0)) - 'a';
+	  int number = getNumber(name, 1, name.length());
+	  if (col < 0 || col >= 'z' - 'a' + 1 || number < 0) return Collections.emptyList();
+	  fields.add(new BoardField(col, size - number));
+	}
+
+	settings = new SettingsVar(size, row, rules);
+	return fields;
+
+  }
+
+
+  /**
+   * Gomocup PSQ: gra od nagłówka do kolejnego nagłówka lub końca strumienia. Ruchy
+   * kończy pierwszy wiersz, który nie jest ruchem (nazwy programów, wynik itp.).
+   * @return Pola gry (pusta lista - nieprawidłowa gra) lub null na końcu strumienia
+   * @throws IOException Błąd odczytu
+   */
+  private List<BoardField> readPsq() throws IOException {
+
+	String line;
+
+	while (header == null) {
+	  line = text.readLine();
+	  if (line == null) return null;
+	  if (isPsqHeader(line)) header = line;
+	}
+
+	Matcher h = PSQ_HEADER.matcher(header);
+	h.matches();
+	header = null;
+
+	int width = Integer.parseInt(h.group(1)), height = Integer.parseInt(h.group(2));
+	List<BoardField> fields = new ArrayList<>();
+	boolean moves = true;
+
+	while ((line = text.readLine()) != null) {
+
+	  if (isPsqHeader(line)) {
+		header = line;
+		break;
+	  }
+
+	  if (!moves) continue;
+
+	  BoardField field = getPsqMove(line);
+	  if (field != null) fields.add(field);
+	  else moves = false;
+
+	}
+
+	settings = new SettingsVar(width, defaults.getPiecesInRow(), defaults.getRuleSet());
+	return width == height ? fields : Collections.<BoardField>emptyList();
+
+  }
+
+
+  /**
+   * RenLib: rekordy 2-bajtowe (pole, flagi) w kolejności przejścia drzewa w głąb -
+   * po węźle jest jego kontynuacja, a po całym poddrzewie węzła jego alternatywa.
+   * Grą jest każda ścieżka od korzenia do liścia oraz do węzła z komentarzem końca gry
+   * (zob. {@link #RENLIB_GAME_END}). Pole 0 oznacza węzeł bez ruchu
+   * (zwykle korzeń), pozostałe: wiersz na starszych 4 bitach, kolumna + 1 na młodszych.
+   * @return Pola gry (pusta lista - nieprawidłowe pole) lub null na końcu drzewa
+   * @throws IOException Błąd odczytu
+   */
+  private List<BoardField> readRenlib() throws IOException {
+
+	while (true) {
+
+	  int pos = data.read(), flags = data.read();
+	  if (flags < 0) return null;
+
+	  // komentarz (zakończony zerem) jest pomijany, chyba że oznacza koniec gry
+	  boolean end = (flags & RENLIB_COMMENT) != 0 && readRenlibComment();
+
+	  // alternatywa dla ostatniego węzła z flagą RIGHT
+	  if (!down) {
+		if (siblings.isEmpty()) return null;
+		int depth = siblings.pop();
+		path.subList(depth, path.size()).clear();
+	  }
+
+	  if ((flags & RENLIB_RIGHT) != 0) siblings.push(path.size());
+	  if (pos != 0) path.add(new BoardField((pos & 0x0f) - 1, pos >> 4));
+	  down = (flags & RENLIB_DOWN) != 0;
+
+	  if ((!down || end) && !path.isEmpty()) {
+		settings = new SettingsVar(RENLIB_SIZE, defaults.getPiecesInRow(), defaults.getRuleSet());
+		return new ArrayList<>(path);
+	  }
+
+	}
+
+  }
+
+
+  /**
+   * Odczyt komentarza RenLib (zakończonego zerem)
+   * @return True jeżeli jest to komentarz końca gry
+   * @throws IOException Błąd odczytu
+   */
+  private boolean readRenlibComment() throws IOException {
+
+	StringBuilder sb = new StringBuilder();
+	for (int c = data.read(); c > 0; c = data.read())
+	  if (sb.length() <= RENLIB_GAME_END.length()) sb.append((char)c);
+
+	return sb.toString().equals(RENLIB_GAME_END);
+
+  }
+
+
+  /**
+   * Czy wiersz jest nagłówkiem gry PSQ (wyrażenie regularne tylko dla wierszy
+   * zaczynających się od nazwy programu, nie dla każdego ruchu)
+   * @param line Wiersz
+   * @return True jeżeli tak
+   */
+  private static boolean isPsqHeader(String line) {
+
+	int i = skipSpaces(line, 0);
+	return line.startsWith(PSQ_PREFIX, i) && PSQ_HEADER.matcher(line).matches();
+
+  }
+
+
+  /**
+   * Ruch PSQ "kolumna,wiersz[,czas]" (numery od 1)
+   * @param line Wiersz
+   * @return Pole lub null jeżeli wiersz nie jest ruchem
+   */
+  private static BoardField getPsqMove(String line) {
+
+	int from = skipSpaces(line, 0), sep = line.indexOf(',', from);
+	if (sep < 0) return null;
+
+	int x = getNumber(line, from, sep);
+	from = skipSpaces(line, sep + 1);
+	sep = line.indexOf(',', from);
+	int y = getNumber(line, from, sep < 0 ? line.length() : sep);
+
+	return x < 0 || y < 0 ? null : new BoardField(x - 1, y - 1);
+
+  }
+
+
+  /**
+   * Liczba bez znaku (najwyżej MAX_DIGITS cyfr) z fragmentu tekstu
+   * @param s Tekst
+   * @param from Początek fragmentu
+   * @param to Koniec fragmentu (bez tego znaku)
+   * @return Liczba lub -1 jeżeli fragment nie jest liczbą
+   */
+  private static int getNumber(String s, int from, int to) {
+
+	if (to <= from || to - from > MAX_DIGITS) return -1;
+
+	int n = 0;
+	for (int i=from; i<to; i++) {
+	  char c = s.charAt(i);
+	  if (c < '0' || c > '9') return -1;
+	  n = n * 10 + c - '0';
+	}
+
+	return n;
+
+  }
+
+
+  private static int skipSpaces(String s, int from) {
+
+	while (from < s.length() && Character.isWhitespace(s.charAt(from))) from++;
+	return from;
+
+  }
+
+
+  /**
+   * Zasady gry wg nazwy (np. renju) lub kodu
+   * @param value Nazwa lub kod
+   * @return Zasady gry lub null jeżeli nieznane
+   */
+  static RuleSet getRuleSet(String value) {
+
+	for (RuleSet r : RuleSet.values())
+	  if (r.name().equalsIgnoreCase(value) || String.valueOf(r.getCode()).equals(value)) return r;
+
+	return null;
+
+  }
+
+
+}
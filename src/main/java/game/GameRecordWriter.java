@@ -0,0 +1,204 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import gomoku.Settings;
+
+/**
+ *
+ * Zapis gier w wybranym formacie. Formaty tekstowe są zapisywane na bieżąco,
+ * gry w formacie RenLib są łączone w drzewo ruchów (wspólne początki gier są
+ * zapisywane raz), które jest zapisywane przy zamknięciu. Gra będąca początkiem
+ * innej gry jest oznaczana komentarzem końca gry w swoim ostatnim węźle.
+ * Powtórzona gra jest zapisywana w drzewie raz.
+ *
+ * @author Maciej Kawecki
+ * @see GameRecordReader
+ *
+ */
+public class GameRecordWriter implements Closeable {
+
+  /** Rozmiar bufora zapisu */
+  private final static int BUFFER_SIZE = 64 * 1024;
+
+  /** Format zapisu */
+  private final GameRecordFormat format;
+  /** Zapis formatów tekstowych */
+  private Writer text;
+  /** Zapis formatu RenLib */
+  private OutputStream data;
+  /** RenLib: korzeń drzewa ruchów (bez ruchu) */
+  private Node root;
+  /** Liczba zapisanych gier */
+  private long games;
+
+
+  /**
+   * Węzeł drzewa ruchów RenLib (pierwsza kontynuacja i kolejna alternatywa - bez list,
+   * bo węzłów jest tyle co ruchów we wszystkich grach)
+   */
+  private static class Node {
+
+	/** Pole (wiersz na starszych 4 bitach, kolumna + 1 na młodszych), 0 - brak ruchu */
+	private final int pos;
+	/** Pierwszy kolejny ruch */
+	private Node down;
+	/** Kolejna alternatywa tego ruchu */
+	private Node right;
+	/** True jeżeli w tym węźle kończy się gra */
+	private boolean end;
+
+	private Node(int pos) {
+	  this.pos = pos;
+	}
+
+	/**
+	 * Kolejny ruch (dodawany na końcu alternatyw, jeżeli go nie ma)
+	 * @param pos Pole
+	 * @return Węzeł
+	 */
+	private Node getChild(int pos) {
+
+	  if (down == null) return down = new Node(pos);
+
+	  Node n = down;
+	  while (n.pos != pos) {
+		if (n.right == null) return n.right = new Node(pos);
+		n = n.right;
+	  }
+
+	  return n;
+
+	}
+
+  }
+
+
+  /**
+   * Konstruktor
+   * @param out Strumień wyjściowy (zamykany razem z obiektem)
+   * @param format Format zapisu
+   */
+  public GameRecordWriter(OutputStream out, GameRecordFormat format) {
+
+	this.format = format;
+
+	if (format == GameRecordFormat.RENLIB) {
+	  data = new BufferedOutputStream(out, BUFFER_SIZE);
+	  root = new Node(0);
+	}
+	else text = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+  }
+
+
+  /**
+   * Zapis gry
+   * @param game Zapis gry
+   * @return False jeżeli gry nie można zapisać w tym formacie (RenLib - plansza inna niż 15x15
+   * lub gra bez ruchów)
+   * @throws IOException Błąd zapisu
+   */
+  public boolean write(GameRecord game) throws IOException {
+
+	Settings s = new Settings(game.getSettings());
+
+	switch (format) {
+
+	  case RENLIB:
+		if (s.getColsAndRows() != GameRecordReader.RENLIB_SIZE || game.getMoves().isEmpty()) return false;
+		Node node = root;
+		for (BoardField f : game.getMoves()) node = node.getChild((f.getB() << 4) | (f.getA() + 1));
+		node.end = true;
+		break;
+
+	  case PSQ:
+		text.write("Piskvorky " + s.getColsAndRows() + "x" + s.getColsAndRows() + ", 0:0, 0\n");
+		for (BoardField f : game.getMoves()) text.write((f.getA() + 1) + "," + (f.getB() + 1) + ",0\n");
+		text.write("-1\n");
+		break;
+
+	  default:
+		StringBuilder sb = new StringBuilder(16 + game.getMovesAmount() * 4);
+		sb.append("size=").append(s.getColsAndRows()).append(" row=").append(s.getPiecesInRow())
+		  .append(" rules=").append(s.getRuleSet().name().toLowerCase());
+		for (BoardField f : game.getMoves())
+		  sb.append(' ').append((char)('A' + f.getA())).append(s.getColsAndRows() - f.getB());
+		text.write(sb.append('\n').toString());
+		break;
+
+	}
+
+	games++;
+	return true;
+
+  }
+
+
+  public long getGamesCount() {
+	return games;
+  }
+
+
+  @Override
+  public void close() throws IOException {
+
+	if (text != null) text.close();
+
+	if (data != null) {
+	  try {
+		data.write(GameRecordReader.RENLIB_HEADER);
+		writeNode(root);
+	  }
+	  finally {
+		data.close();
+		data = null;
+		root = null;
+	  }
+	}
+
+  }
+
+
+  /**
+   * Zapis poddrzewa RenLib w głąb: węzeł, jego kontynuacje, następnie alternatywy
+   * (rekurencja tylko po kontynuacjach - głębokość nie przekracza długości gry)
+   * @param node Węzeł
+   * @throws IOException Błąd zapisu
+   */
+  private void writeNode(Node node) throws IOException {
+
+	for (Node n = node; n != null; n = n.right) {
+
+	  // koniec gry w liściu wynika z drzewa, w pozostałych węzłach jest komentarzem
+	  boolean comment = n.end && n.down != null;
+
+	  data.write(n.pos);
+	  data.write((n.down == null ? 0 : GameRecordReader.RENLIB_DOWN)
+			  | (n.right == null ? 0 : GameRecordReader.RENLIB_RIGHT)
+			  | (comment ? GameRecordReader.RENLIB_COMMENT : 0));
+
+	  if (comment) {
+		data.write(GameRecordReader.RENLIB_GAME_END.getBytes(StandardCharsets.US_ASCII));
+		data.write(0);
+	  }
+
+	  if (n.down != null) writeNode(n.down);
+
+	}
+
+  }
+
+
+}
@@ -24,6 +24,8 @@ public enum GameState {
     
    /** Adres IP serwera */
    private String serverIP = "";
+   /** Numer pokoju gry na serwerze (0 - dowolny) */
+   private int room = 0;
    
    
    public void setServerIP(String serverIP) {
@@ -34,5 +36,13 @@ public enum GameState {
        return serverIP;
    }
    
+   public void setRoom(int room) {
+	   this.room = room;
+   }
+   
+   public int getRoom() {
+	   return room;
+   }
+   
    
 }
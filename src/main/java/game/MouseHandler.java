@@ -48,14 +48,17 @@ public class MouseHandler extends MouseAdapter  {
     public void mouseClicked(MouseEvent me) { 
         
        // wyznaczenie indeksow macierzy - planszy
-       int a = BoardGraphics.getFieldA(me.getX());
-       int b = BoardGraphics.getFieldB(me.getY());
+       int a = gBoard.getFieldA(me.getX());
+       int b = gBoard.getFieldB(me.getY());
        
        // FIX
        if (a<0 || a>=lBoard.getColsAndRows() || b<0 || b>=lBoard.getColsAndRows()) return;
        
        if (lockedFlag || (lBoard.getFieldState(a,b)!=BoardFieldState.EMPTY)) return;  
        
+       // ruch zabroniony wg zasad gry (Renju)
+       if (lBoard.isForbiddenMove(a, b, pColor)) return;
+       
        // w razie potrzeby tu wysłanie odpowiedniego komunikatu do serwera gry
        sendMoveToServer(a, b);          
        
@@ -66,7 +69,7 @@ public class MouseHandler extends MouseAdapter  {
        gBoard.repaint();                  
        
        // zmiana wartosci pola (logicznego)
-       lockedFlag = lBoard.setFieldState(a, b, pColor);
+       lockedFlag = lBoard.makeMove(move);
        
     
     } 
@@ -91,8 +94,12 @@ public class MouseHandler extends MouseAdapter  {
          
        if (lockedFlag) return;
         
-       // rysowanie kursora  
-       gBoard.setCursor(lBoard, BoardGraphics.getFieldA(me.getX()), BoardGraphics.getFieldB(me.getY()), pColor);
+       int a = gBoard.getFieldA(me.getX());
+       int b = gBoard.getFieldB(me.getY());
+       
+       // rysowanie kursora (bez kursora na polu z ruchem zabronionym)
+       if (lBoard.isForbiddenMove(a, b, pColor)) a = -1;
+       gBoard.setCursor(lBoard, a, b, pColor);
        gBoard.repaint();      
       
     }
@@ -61,7 +61,7 @@ public class MouseHandlerLocalClient extends MouseHandler  {
     @Override
     protected void sendMoveToServer(int a, int b) {
 
-        if (!client.getPing().isPingOut())
+        if (!client.isConnectionLost())
         
         try {
             client.sendCommand(new Command(Command.CMD_MOVE, new BoardField(a, b, pColor)));
@@ -0,0 +1,111 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+/**
+ *
+ * Ocena ruchu w analizie gry: wartość wykonanego ruchu i najlepszego ruchu silnika
+ * w tej samej pozycji (z punktu widzenia gracza wykonującego ruch). Ruch jest błędem,
+ * jeżeli pomija wygraną, pozwala przeciwnikowi wygrać w kolejnym ruchu albo traci
+ * co najmniej BLUNDER_LOSS punktów względem najlepszego ruchu.
+ *
+ * @author Maciej Kawecki
+ * @see GameAnalysis
+ *
+ */
+public class MoveEvaluation {
+
+  /** Wartość wygranej (przegranej ze znakiem minus) */
+  public final static int WIN = 1000000;
+  /** Strata oceny, od której ruch jest błędem */
+  public final static int BLUNDER_LOSS = 150;
+
+  /** Nr ruchu (od 1) */
+  private final int moveNo;
+  /** Wykonany ruch */
+  private final BoardField move;
+  /** Najlepszy ruch silnika (null jeżeli nie było innego ruchu) */
+  private final BoardField best;
+  /** Wartość wykonanego ruchu */
+  private final int score;
+  /** Wartość najlepszego ruchu */
+  private final int bestScore;
+
+
+  /**
+   * Konstruktor
+   * @param moveNo Nr ruchu (od 1)
+   * @param move Wykonany ruch
+   * @param best Najlepszy ruch silnika
+   * @param score Wartość wykonanego ruchu
+   * @param bestScore Wartość najlepszego ruchu
+   */
+  public MoveEvaluation(int moveNo, BoardField move, BoardField best, int score, int bestScore) {
+
+	this.moveNo = moveNo;
+	this.move = move;
+	this.best = best;
+	this.score = score;
+	this.bestScore = Math.max(score, bestScore);
+
+  }
+
+
+  public int getMoveNo() {
+	return moveNo;
+  }
+
+
+  public BoardField getMove() {
+	return move;
+  }
+
+
+  public BoardField getBest() {
+	return best;
+  }
+
+
+  public int getScore() {
+	return score;
+  }
+
+
+  public int getBestScore() {
+	return bestScore;
+  }
+
+
+  /**
+   * Strata względem najlepszego ruchu
+   * @return Różnica ocen (nieujemna)
+   */
+  public int getLoss() {
+	return bestScore - score;
+  }
+
+
+  /**
+   * Czy wykonany ruch był najlepszy (lub równie dobry)
+   * @return True jeżeli tak
+   */
+  public boolean isBest() {
+	return score == bestScore;
+  }
+
+
+  /**
+   * Czy ruch jest błędem
+   * @return True jeżeli tak
+   */
+  public boolean isBlunder() {
+
+	if (isBest()) return false;
+	return bestScore >= WIN || score <= -WIN || getLoss() >= BLUNDER_LOSS;
+
+  }
+
+
+}
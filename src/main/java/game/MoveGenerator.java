@@ -4,6 +4,7 @@
  */
 package game;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -22,32 +23,50 @@ public class MoveGenerator extends IA<BoardField> {
 
    /** Wybrany algorytm */
    private final static Algorithm algo = Algorithm.NEGASCOUT;	
-   /** Maksymalna głębokość rekurencji */
-   protected final static int MAX_DEPTH = 2;	   
    /** Maksymalny możliwy wynik (wygrana) */
    protected final static int MAX_SCORE = Integer.MAX_VALUE - 1;   
    /** Współczynnik obrony */
    private final static double DEFENCE = 0.8;
+   /** Skala szumu oceny sytuacji (mnożona przez szum poziomu trudności) */
+   private final static double NOISE_SCALE = 50.0;
 	
    /** Kolor bieżącego gracza */ 
    private BoardFieldState currentPlayer;   
    /** Referencja do logicznej warstwy planszy */
    private final Board board;
+   /** Poziom trudności (budżet przeszukiwania) */
+   private final DifficultyLevel level;
+   /** Budżet czasu na ruch (ms) */
+   private final long maxTime;
+   /** Generator szumu oceny */
+   private final Random random = new Random();
 	   
    /** True jeżeli koniec gry (wygrana lub remis) */
    private boolean gameOver = false;
+   /** Bieżąca głębokość rekurencji (pogłębianie iteracyjne) */
+   private int depth;
+   /** Liczba ocenionych węzłów w bieżącym wyszukiwaniu */
+   private int nodes;
+   /** Czas (System.nanoTime) przekroczenia budżetu czasowego */
+   private long deadline;
+   /** True jeżeli przekroczono budżet - wynik bieżącej iteracji jest odrzucany */
+   private boolean aborted;
    
    
    /**
     * Konstruktor obiektu reprezentującego algorytm AI
     * @param board Referencja do logicznej warstwy planszy
     * @param currentPlayer Kolor kamieni gracza-komputera
+    * @param level Poziom trudności
+    * @param maxTime Budżet czasu na ruch (ms)
     */
-   private MoveGenerator(Board board, BoardFieldState currentPlayer) {
+   private MoveGenerator(Board board, BoardFieldState currentPlayer, DifficultyLevel level, long maxTime) {
 	       
 	  super(algo); 
       this.currentPlayer = currentPlayer;  
       this.board = board;
+      this.level = level;
+      this.maxTime = maxTime;
 	      
    }	
     
@@ -60,6 +79,36 @@ public class MoveGenerator extends IA<BoardField> {
     */
    public static BoardField getMove(Board board, BoardFieldState computerColor) {
 	   
+	 return getMove(board, computerColor, DifficultyLevel.DEFAULT);
+	   
+   }
+   
+   
+   /**
+    * Pobranie sugerowanego ruchu dla komputera
+    * @param board Ref. do logiki planszy
+    * @param computerColor Kolor kamieni komputera
+    * @param level Poziom trudności
+    * @return Sugerowany ruch
+    */
+   public static BoardField getMove(Board board, BoardFieldState computerColor, DifficultyLevel level) {
+	   
+	 return getMove(board, computerColor, level, level.getMaxTime());
+	 
+   }
+   
+   
+   /**
+    * Pobranie sugerowanego ruchu dla komputera w zadanym czasie (np. silnik serwera
+    * obsługujący wiele pokoi)
+    * @param board Ref. do logiki planszy
+    * @param computerColor Kolor kamieni komputera
+    * @param level Poziom trudności
+    * @param maxTime Budżet czasu na ruch (ms, nie więcej niż budżet poziomu trudności)
+    * @return Sugerowany ruch
+    */
+   public static BoardField getMove(Board board, BoardFieldState computerColor, DifficultyLevel level, long maxTime) {
+	   
 	 // na początku losowy ruch w pobliżu środka
 	 if (board.getFreeFieldsAmount() >= board.getFieldsAmount()-1) {
 	   int a = board.getColsAndRows() / 2;
@@ -71,9 +120,61 @@ public class MoveGenerator extends IA<BoardField> {
 	   return new BoardField(a + rand1, a + rand2, computerColor);
 	 }
    	   
-	 return new MoveGenerator(board, computerColor).getBestMove();
+	 BoardField move = new MoveGenerator(board, computerColor, level, 
+			 Math.max(0, Math.min(maxTime, level.getMaxTime()))).search();
+	 
+	 // brak dozwolonych kandydatów (np. same ruchy zabronione) - pierwsze dozwolone wolne pole
+	 if (move == null) {
+	   List<BoardField> empty = board.getEmptyFields();
+	   move = empty.get(0);
+	   for (BoardField f : empty)
+		 if (!board.isForbiddenMove(f.getA(), f.getB(), computerColor)) { move = f; break; }
+	 }
+	 
+	 return new BoardField(move.getA(), move.getB(), computerColor);
 	 	 	   	   
    }      
+   
+   
+   /**
+    * Pogłębianie iteracyjne w ramach budżetu poziomu trudności. Głębokość 1 jest 
+    * zawsze przeszukiwana w całości, wynik głębszej iteracji przerwanej przez 
+    * przekroczenie budżetu jest odrzucany.
+    * @return Najlepszy znaleziony ruch
+    */
+   private BoardField search() {
+	   
+	 deadline = System.nanoTime() + maxTime * 1000000L;
+	 nodes = 0;
+	 
+	 BoardField best = null;
+	 
+	 for (depth = 1; depth <= level.getMaxDepth(); depth++) {
+		 
+	   gameOver = false;
+	   aborted = false;
+	   BoardField move = getBestMove();
+	   
+	   if (aborted) break;
+	   best = move;
+	   if (isBudgetExceeded()) break;
+		 
+	 }
+	 
+	 return best;
+	   
+   }
+   
+   
+   /**
+    * Czy przekroczono budżet węzłów lub czasu (nie dotyczy głębokości 1)
+    * @return True jeżeli przekroczono
+    */
+   private boolean isBudgetExceeded() {
+	   
+	 return depth > 1 && (nodes >= level.getMaxNodes() || System.nanoTime() >= deadline);
+	   
+   }
 	
 	
    @Override
@@ -82,7 +183,7 @@ public class MoveGenerator extends IA<BoardField> {
 	 return new Difficulty() {			
 		@Override
 		public int getDepth() {				
-		  return MAX_DEPTH;
+		  return depth;
 		}
 	  };
 	  
@@ -91,7 +192,7 @@ public class MoveGenerator extends IA<BoardField> {
 
    @Override
    public boolean isOver() {
-	 return gameOver;
+	 return gameOver || aborted;
    }
 
    
@@ -116,14 +217,45 @@ public class MoveGenerator extends IA<BoardField> {
    @Override
    public List<BoardField> getPossibleMoves() {
 		
-	 return board.getEmptyFields();
+	 return getAllowedMoves(board, currentPlayer);
 	  
    }
+   
+   
+   /**
+    * Ruchy-kandydaci gracza bez ruchów zabronionych (także dla analizy gry)
+    * @param board Ref. do logiki planszy
+    * @param color Kolor kamieni gracza
+    * @return Lista pól
+    */
+   protected static List<BoardField> getAllowedMoves(Board board, BoardFieldState color) {
+	   
+	 List<BoardField> moves = board.getCandidateFields();
+	 
+	 // ruchy zabronione (Renju) - pola z wstępną selekcją, więc filtrowanie jest tanie
+	 if (board.hasForbiddenMoves(color)) {
+	   Iterator<BoardField> it = moves.iterator();
+	   while (it.hasNext()) {
+		 BoardField f = it.next();
+		 if (board.isForbiddenMove(f.getA(), f.getB(), color)) it.remove();
+	   }
+	 }
+	 
+	 return moves;
+	   
+   }
 	
 
    @Override
    public double evaluate() {
 	   
+	 // po przekroczeniu budżetu pozostałe węzły nie są już oceniane
+	 if (aborted) return 0;
+	 if (++nodes % 64 == 0 && isBudgetExceeded()) {
+	   aborted = true;
+	   return 0;
+	 }
+	   
 	 int score1 = board.getScore(currentPlayer);
 	 next();
 	 int score2 = board.getScore(currentPlayer);
@@ -132,7 +264,13 @@ public class MoveGenerator extends IA<BoardField> {
 	 boolean win1 = score1 == MAX_SCORE;
 	 gameOver = win1 || score2 == MAX_SCORE || board.getFreeFieldsAmount() == 0;
 	 
-	 return win1 ? score1 : score1 - score2* DEFENCE;	 
+	 if (win1) return score1;
+	 
+	 double score = score1 - score2* DEFENCE;
+	 if (level.getNoise() > 0 && score2 != MAX_SCORE)
+	   score += random.nextGaussian() * level.getNoise() * NOISE_SCALE;
+	 
+	 return score;
 	 
    }
 	
@@ -19,8 +19,8 @@ import gui.BoardGraphics;
  */
 public abstract class Player {
     
-   /** Kolor kamieni gracza - biały lub czarny */
-   protected final BoardFieldState pieceColor;  
+   /** Kolor kamieni gracza - biały lub czarny (może się zmienić w otwarciu Swap2) */
+   protected volatile BoardFieldState pieceColor;  
    /** Nazwa gracza (klucz) */
    protected final String name;
    /** Referencja do obiektu będącego graficzną reprezentacją planszy */
@@ -29,6 +29,8 @@ public abstract class Player {
    protected final Board lBoard;
    /** Zmienna wymuszająca zakończenie ruchu w razie zakończenia gry */
    protected boolean gameRestarted;
+   /** Zmienna przerywająca bieżący ruch (np. cofnięcie ruchów), bez kończenia gry */
+   protected volatile boolean turnCancelled;
    /** Ostatni ruch gracza */
    protected BoardField lastMove;
    /** Parametry (nazwa) */
@@ -66,6 +68,15 @@ public abstract class Player {
        
    }
    
+   /**
+    * Metoda przerywająca bieżący ruch gracza bez kończenia gry
+    */
+   public void cancelTurn() {
+       
+      turnCancelled = true; 
+       
+   }
+   
    /**
     * Metoda abstrakcyjna, wykonanie ruchu, specyficzne dla graczy różnych typów
     */
@@ -78,6 +89,13 @@ public abstract class Player {
      return pieceColor; 
    
    }   
+   
+   
+   public void setPieceColor(BoardFieldState pieceColor) {
+	   
+     this.pieceColor = pieceColor;
+     
+   }
   
     
    /**
@@ -82,7 +82,7 @@ public class PlayerComputer extends Player  {
   	    @Override
   	    protected BoardField doInBackground() {
   	      // pobranie wygenerowanego nowego ruchu 	
-  	      return MoveGenerator.getMove(lBoard, pieceColor);  	      
+  	      return MoveGenerator.getMove(lBoard, pieceColor, frame.getSettings().getDifficulty());  	      
     	}
 
   	    @Override
@@ -95,7 +95,7 @@ public class PlayerComputer extends Player  {
 		    gBoard.setPiece(lBoard, move.getA(), move.getB(), pieceColor);
 		    gBoard.repaint();
 		    // zmiana wartosci pola (logicznego)
-		    lBoard.setFieldState(move.getA(), move.getB(), pieceColor);
+		    lBoard.makeMove(move);
 		  } 
   	      catch (InterruptedException | ExecutionException | CancellationException e) {	}
   	      finally {			  
@@ -50,9 +50,10 @@ public class PlayerHuman extends Player {
 
      // oczekiwanie na ustawienie kamienia lub wymuszenie zakończenia ruchu
      Integer tmp = lBoard.freeFieldsAmount;
-     do {} while (!gameRestarted && tmp.equals(lBoard.freeFieldsAmount));
+     do {} while (!gameRestarted && !turnCancelled && tmp.equals(lBoard.freeFieldsAmount));
     
      lastMove = moveHandler.getMove();
+     turnCancelled = false;
      
      //  koniec kolejki, więc trzeba usunąć listenery myszy
      gBoard.removeMouseListener(moveHandler);
@@ -5,10 +5,8 @@
 package game;
 
 import gui.BoardGraphics;
-import java.io.IOException;
 import network.Client;
 import network.Command;
-import network.MessageReader;
 
 /**
  *
@@ -49,7 +47,7 @@ public class PlayerLocal extends Player {
        
      super.forceEndTurn();
      
-     if (!client.getPing().isPingOut())
+     if (!client.isConnectionLost())
      try {
         client.sendCommand(new Command(Command.CMD_EXIT));        
      } catch (Exception e) {
@@ -67,10 +65,6 @@ public class PlayerLocal extends Player {
    @Override
    public void makeMove() {
     
-     // utworzenie wątku oczekującego na wiadomości
-     MessageReader msgReader = new MessageReader(client);
-     msgReader.start();
-     
      // ustawienie obsługi zdarzeń myszy
      final MouseHandlerLocalClient moveHandler
               = new MouseHandlerLocalClient(client, gBoard, lBoard, pieceColor);   
@@ -90,19 +84,7 @@ public class PlayerLocal extends Player {
      gBoard.removeMouseMotionListener(cursorHandler);
      // przywrócenie domyślnego kursora myszy
      gBoard.setDefaultMouseCursor();
-     
-     // zwolnienie wątku oczekującego na wiadomości
-     try {
-       client.sendCommand(new Command(Command.CMD_STOP_MSG));
-     } catch (IOException e) {
-       System.err.println(e);
-     } catch (ClassNotFoundException e) {
-       System.err.println(e);
-     }
-     finally {
-       msgReader.interrupt();    
-     }
-     
+ 
         
    }
     
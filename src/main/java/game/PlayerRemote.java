@@ -5,10 +5,8 @@
 package game;
 
 import gui.BoardGraphics;
-import java.awt.Color;
 import java.io.IOException;
 
-import gomoku.Lang;
 import network.Client;
 import network.Command;
 
@@ -57,7 +55,7 @@ public class PlayerRemote extends Player {
      }
      finally {
          
-       client.getPing().stopPinging();
+       client.stopHeartbeat();
        
      }
      
@@ -87,27 +85,17 @@ public class PlayerRemote extends Player {
               return;
              
            }
-           // odebranie wiadomości
-           else if (command.getCommand() == Command.CMD_MESSAGE) {
-               
-             String msg = "[" + Lang.get("MsgFromPlayer", client.getNumber() == 1 ? 1 : 2, 
-            		 (String)(command.getCommandData())) + "]";             
-
-             client.getConsole().newLine();
-             client.getConsole().setMessageLn(msg, new Color(0x22, 0x8b, 0x22));               
-               
-           }
 
              
         }  while (command.getCommand() != Command.CMD_MOVE);
       
-        // ruch, sprawdzony już po stronie klienta zdalnego
+        // ruch, sprawdzony już przez serwer
         BoardField field = (BoardField)(command.getCommandData());
         lastMove = field;
         gBoard.setPiece(lBoard, field.getA(), field.getB(), field.getState());
         gBoard.repaint();    
         // zmiana wartosci pola (logicznego)
-        lBoard.setFieldState(field.getA(), field.getB(), field.getState());
+        lBoard.makeMove(field);
         
       }
       
@@ -0,0 +1,193 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import gomoku.IConf;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Skrót pozycji (Zobrist): XOR losowych kluczy kamieni (pole, kolor) i klucza
+ * ustawień gry. Klucze są generowane ze stałego ziarna, więc skróty są takie same
+ * w każdym uruchomieniu (mogą być zapisywane na dysku). Po ruchu skrót zmienia się
+ * o jeden klucz, kolejność ruchów nie ma znaczenia. Skróty dla 8 symetrii planszy
+ * pozwalają utożsamić obrócone i odbite pozycje (postać kanoniczna).
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public final class PositionHash {
+
+  /** Ziarno generatora kluczy (nie może się zmieniać - skróty są zapisywane) */
+  private final static long SEED = 0x476f6d6f6b75L;
+  /** Ilość symetrii planszy (obroty i odbicia) */
+  public final static int SYMMETRIES = 8;
+  /** Wielkość tablicy kluczy (największa plansza) */
+  private final static int SIZE = IConf.FREE_COLS_AND_ROWS;
+  /** Klucze kamieni: [kolor][a*SIZE+b] */
+  private final static long[][] KEYS = new long[2][SIZE*SIZE];
+  /** Klucze ustawień: [wielkość planszy], [ilość kamieni w rzędzie], [kod zasad] */
+  private final static long[] SIZE_KEYS = new long[SIZE+1], ROW_KEYS = new long[IConf.MAX_PIECES_IN_ROW+1],
+		  RULE_KEYS = new long[16];
+
+  static {
+
+	Random random = new Random(SEED);
+	for (long[] keys : new long[][] { KEYS[0], KEYS[1], SIZE_KEYS, ROW_KEYS, RULE_KEYS })
+	  for (int i=0; i<keys.length; i++) keys[i] = random.nextLong();
+
+  }
+
+
+  private PositionHash() {}
+
+
+  /**
+   * Klucz kamienia
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param state Kolor kamienia
+   * @return Klucz
+   */
+  public static long getKey(int a, int b, BoardFieldState state) {
+
+	return KEYS[BoardWinDetector.getColor(state)][a*SIZE + b];
+
+  }
+
+
+  /**
+   * Klucz kamienia na planszy przekształconej przez symetrię
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param state Kolor kamienia
+   * @param size Wielkość planszy
+   * @param symmetry Nr symetrii (0 - tożsamość)
+   * @return Klucz
+   */
+  public static long getKey(int a, int b, BoardFieldState state, int size, int symmetry) {
+
+	return KEYS[BoardWinDetector.getColor(state)][transform(a, b, size, symmetry)];
+
+  }
+
+
+  /**
+   * Przekształcenie pola przez symetrię planszy: zamiana kolumn z wierszami (bit 2),
+   * a następnie odbicie kolumn (bit 0) i wierszy (bit 1)
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param size Wielkość planszy
+   * @param symmetry Nr symetrii (0 - tożsamość)
+   * @return Indeks przekształconego pola (a*25+b, jak w kluczach kamieni)
+   */
+  public static int transform(int a, int b, int size, int symmetry) {
+
+	int x = (symmetry & 4) != 0 ? b : a, y = (symmetry & 4) != 0 ? a : b;
+	if ((symmetry & 1) != 0) x = size - 1 - x;
+	if ((symmetry & 2) != 0) y = size - 1 - y;
+
+	return x*SIZE + y;
+
+  }
+
+
+  /**
+   * Przekształcenie odwrotne do {@link #transform(int, int, int, int)}
+   * @param index Indeks przekształconego pola
+   * @param size Wielkość planszy
+   * @param symmetry Nr symetrii
+   * @return Indeks pola przed przekształceniem
+   */
+  public static int inverse(int index, int size, int symmetry) {
+
+	int x = index / SIZE, y = index % SIZE;
+	if ((symmetry & 1) != 0) x = size - 1 - x;
+	if ((symmetry & 2) != 0) y = size - 1 - y;
+
+	return (symmetry & 4) != 0 ? y*SIZE + x : x*SIZE + y;
+
+  }
+
+
+  /**
+   * Skróty pozycji po kolejnych ruchach dla wszystkich symetrii planszy
+   * @param settings Ustawienia gry
+   * @param moves Ruchy (z kolorami kamieni)
+   * @param count Ilość pierwszych ruchów
+   * @return Skróty wg nr symetrii
+   */
+  public static long[] getSymmetric(SettingsVar settings, List<BoardField> moves, int count) {
+
+	long[] hashes = new long[SYMMETRIES];
+	int size = new Settings(settings).getColsAndRows();
+	Arrays.fill(hashes, get(settings));
+
+	for (int i=0; i<count; i++) {
+	  BoardField f = moves.get(i);
+	  for (int s=0; s<SYMMETRIES; s++) hashes[s] ^= getKey(f.getA(), f.getB(), f.getState(), size, s);
+	}
+
+	return hashes;
+
+  }
+
+
+  /**
+   * Symetria, dla której skrót pozycji jest najmniejszy (postać kanoniczna - ta sama
+   * dla obróconych i odbitych pozycji)
+   * @param hashes Skróty wg nr symetrii
+   * @return Nr symetrii (najmniejszy przy równych skrótach)
+   */
+  public static int getCanonical(long[] hashes) {
+
+	int c = 0;
+	for (int s=1; s<hashes.length; s++)
+	  if (hashes[s] < hashes[c]) c = s;
+
+	return c;
+
+  }
+
+
+  /**
+   * Skrót pustej planszy (klucz ustawień gry)
+   * @param settings Ustawienia gry
+   * @return Skrót
+   */
+  public static long get(SettingsVar settings) {
+
+	Settings s = new Settings(settings);
+	return SIZE_KEYS[s.getColsAndRows()] ^ ROW_KEYS[s.getPiecesInRow()] ^ RULE_KEYS[s.getRuleSet().getCode() & 15];
+
+  }
+
+
+  /**
+   * Skrót pozycji po kolejnych ruchach
+   * @param settings Ustawienia gry
+   * @param moves Ruchy (z kolorami kamieni)
+   * @param count Ilość pierwszych ruchów
+   * @return Skrót
+   */
+  public static long get(SettingsVar settings, List<BoardField> moves, int count) {
+
+	long hash = get(settings);
+	for (int i=0; i<count; i++) {
+	  BoardField f = moves.get(i);
+	  hash ^= getKey(f.getA(), f.getB(), f.getState());
+	}
+
+	return hash;
+
+  }
+
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gomoku.IConf;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+import network.GameResult;
+
+/**
+ *
+ * Baza pozycji (odczyt): posortowane wpisy są mapowane do pamięci, a tablica
+ * początków przedziałów wg najstarszych 16 bitów skrótu zawęża wyszukiwanie binarne
+ * do kilkudziesięciu - kilkuset wpisów (przy milionach pozycji kilka odczytów stron pliku).
+ * Pozycja jest szukana w postaci kanonicznej, więc obejmuje też obrócone i odbite
+ * pozycje z gier, a kolejne ruchy są zwracane w układzie zapytania.
+ *
+ * @author Maciej Kawecki
+ * @see PositionIndexWriter
+ *
+ */
+public class PositionIndex {
+
+  /** Ilość wpisów w jednym mapowaniu pliku (potęga 2, 1 GB) */
+  private final static int CHUNK_BITS = 26;
+
+  /** Ilość wpisów */
+  private final long size;
+  /** Początki przedziałów wpisów wg najstarszych bitów skrótu */
+  private final long[] buckets = new long[PositionIndexWriter.BUCKETS + 1];
+  /** Zmapowane wpisy */
+  private final MappedByteBuffer[] chunks;
+  /** Nazwy źródeł gier i numery gier poprzedzających źródło */
+  private final String[] sources;
+  private final int[] bases;
+
+
+  /**
+   * Kolejny ruch z pozycji
+   */
+  public static class Continuation {
+
+	/** Ruch (w układzie zapytania, z kolorem kamienia) */
+	private final BoardField move;
+	/** Ilość gier */
+	private int count;
+	/** Ilość gier wg kodu wyniku */
+	private final int[] results = new int[GameResult.values().length];
+
+	private Continuation(BoardField move) {
+	  this.move = move;
+	}
+
+	public BoardField getMove() {
+	  return move;
+	}
+
+	public int getCount() {
+	  return count;
+	}
+
+	public int getCount(GameResult result) {
+	  return results[result.getCode()];
+	}
+
+  }
+
+
+  /**
+   * Wynik zapytania o pozycję: gry, w których wystąpiła, ich wyniki i kolejne ruchy
+   */
+  public static class Position {
+
+	/** Numery gier */
+	private int[] games = new int[16];
+	/** Ilość gier */
+	private int count;
+	/** Ilość gier wg kodu wyniku */
+	private final int[] results = new int[GameResult.values().length];
+	/** Kolejne ruchy wg indeksu pola w postaci kanonicznej */
+	private final Map<Integer, Continuation> next = new HashMap<>();
+
+	/**
+	 * Numery gier, w których wystąpiła pozycja
+	 * @return Numery gier (rosnąco)
+	 */
+	public int[] getGames() {
+	  return Arrays.copyOf(games, count);
+	}
+
+	public int getGamesCount() {
+	  return count;
+	}
+
+	public int getCount(GameResult result) {
+	  return results[result.getCode()];
+	}
+
+	/**
+	 * Kolejne ruchy
+	 * @return Ruchy od najczęściej granych (bez gier kończących się w tej pozycji)
+	 */
+	public List<Continuation> getContinuations() {
+
+	  List<Continuation> list = new ArrayList<>(next.values());
+	  Collections.sort(list, new Comparator<Continuation>() {
+		@Override
+		public int compare(Continuation c1, Continuation c2) {
+		  return Integer.compare(c2.count, c1.count);
+		}
+	  });
+
+	  return list;
+
+	}
+
+  }
+
+
+  /**
+   * Konstruktor - odczyt nagłówka i źródeł, mapowanie wpisów do pamięci
+   * @param file Plik bazy
+   * @throws IOException Błąd odczytu lub nieprawidłowy plik
+   */
+  public PositionIndex(File file) throws IOException {
+
+	try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+	  ByteBuffer header = ByteBuffer.allocate(PositionIndexWriter.HEADER_SIZE);
+	  while (header.hasRemaining() && ch.read(header) > 0);
+	  header.flip();
+
+	  if (header.remaining() < PositionIndexWriter.HEADER_SIZE || header.getInt() != PositionIndexWriter.MAGIC
+			  || header.getInt() != PositionIndexWriter.VERSION)
+		throw new IOException("Not a position index: " + file);
+
+	  size = header.getLong();
+	  long sourcesOffset = header.getLong();
+	  header.asLongBuffer().get(buckets);
+
+	  if (size < 0 || sourcesOffset != PositionIndexWriter.HEADER_SIZE + size * PositionIndexWriter.RECORD_SIZE
+			  || ch.size() < sourcesOffset + 4 || buckets[buckets.length - 1] != size)
+		throw new IOException("Invalid position index: " + file);
+
+	  chunks = new MappedByteBuffer[(int)((size + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS)];
+	  for (int i=0; i<chunks.length; i++) {
+		long start = (long)i << CHUNK_BITS;
+		chunks[i] = ch.map(FileChannel.MapMode.READ_ONLY, PositionIndexWriter.HEADER_SIZE + start * PositionIndexWriter.RECORD_SIZE,
+				Math.min(size - start, 1L << CHUNK_BITS) * PositionIndexWriter.RECORD_SIZE);
+	  }
+
+	  ch.position(sourcesOffset);
+	  DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch)));
+	  sources = new String[in.readInt()];
+	  bases = new int[sources.length];
+	  for (int i=0; i<sources.length; i++) {
+		sources[i] = in.readUTF();
+		bases[i] = in.readInt();
+	  }
+
+	}
+
+  }
+
+
+  public long getPositionsCount() {
+	return size;
+  }
+
+
+  /**
+   * Wyszukanie pozycji
+   * @param settings Ustawienia gry
+   * @param moves Ruchy prowadzące do pozycji (z kolorami kamieni, kolejność nie ma znaczenia)
+   * @return Wynik zapytania (bez gier, jeżeli pozycji nie ma w bazie)
+   */
+  public Position find(SettingsVar settings, List<BoardField> moves) {
+
+	long[] hashes = PositionHash.getSymmetric(settings, moves, moves.size());
+	int symmetry = PositionHash.getCanonical(hashes), boardSize = new Settings(settings).getColsAndRows();
+	long key = hashes[symmetry];
+	BoardFieldState color = moves.size() % 2 == 0 ? BoardFieldState.BLACK : BoardFieldState.WHITE;
+
+	// wyszukiwanie binarne pierwszego wpisu w przedziale
+	int bucket = PositionIndexWriter.getBucket(key);
+	long lo = buckets[bucket], hi = buckets[bucket + 1];
+	while (lo < hi) {
+	  long mid = (lo + hi) >>> 1;
+	  if (getKey(mid) < key) lo = mid + 1;
+	  else hi = mid;
+	}
+
+	Position p = new Position();
+
+	for (long i=lo; i<buckets[bucket + 1] && getKey(i) == key; i++) {
+
+	  long value = getValue(i);
+	  int result = (int)value & 0xff, move = (int)(value >>> 16) & 0xffff;
+
+	  if (p.count == p.games.length) p.games = Arrays.copyOf(p.games, p.count * 2);
+	  p.games[p.count++] = (int)(value >>> 32);
+	  p.results[result]++;
+
+	  if (move == PositionIndexWriter.NO_MOVE) continue;
+
+	  Continuation c = p.next.get(move);
+	  if (c == null) {
+		int index = PositionHash.inverse(move, boardSize, symmetry);
+		c = new Continuation(new BoardField(index / IConf.FREE_COLS_AND_ROWS, index % IConf.FREE_COLS_AND_ROWS, color));
+		p.next.put(move, c);
+	  }
+	  c.count++;
+	  c.results[result]++;
+
+	}
+
+	return p;
+
+  }
+
+
+  /**
+   * Źródło gry
+   * @param game Numer gry
+   * @return Nazwa źródła i numer gry w źródle, np. "games.txt #12" (null - nieznany numer)
+   */
+  public String getSource(int game) {
+
+	// kolejne źródła mogą być puste (ten sam numer poprzedzający) - ostatnie z nich
+	int i = bases.length - 1;
+	while (i >= 0 && bases[i] >= game) i--;
+
+	return i < 0 ? null : sources[i] + " #" + (game - bases[i]);
+
+  }
+
+
+  private long getKey(long i) {
+
+	return chunks[(int)(i >>> CHUNK_BITS)].getLong((int)(i & ((1 << CHUNK_BITS) - 1)) * PositionIndexWriter.RECORD_SIZE);
+
+  }
+
+
+  private long getValue(long i) {
+
+	return chunks[(int)(i >>> CHUNK_BITS)].getLong((int)(i & ((1 << CHUNK_BITS) - 1)) * PositionIndexWriter.RECORD_SIZE + 8);
+
+  }
+
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import gomoku.IConf;
+import gomoku.SettingsVar;
+import network.GameResult;
+import network.GameStore;
+import network.StoredGame;
+
+/**
+ *
+ * Budowa bazy pozycji i zapytania o pozycję z wiersza poleceń. Źródłami gier są
+ * zbiory gier (format wg rozszerzenia nazwy pliku) i katalogi zapisu gier serwera
+ * (tylko odczyt - numer gry w źródle to numer gry serwera).
+ * Podsumowanie budowy na stderr, wynik zapytania na stdout.
+ *
+ * Uruchomienie: Gomoku -index baza.idx źródło... [-size=15] [-row=5] [-rules=freestyle]
+ *               Gomoku -query baza.idx [-size=15] [-row=5] [-rules=freestyle] [-games=20] H8 I9 ...
+ *
+ * @author Maciej Kawecki
+ * @see PositionIndex
+ *
+ */
+public class PositionIndexTool {
+
+  /** Domyślna ilość wypisywanych gier, w których wystąpiła pozycja */
+  private final static int DEFAULT_GAMES = 20;
+
+  private boolean query;
+  private String index;
+  private final List<String> args = new ArrayList<>();
+  private int size = IConf.DEFAULT_COLS_AND_ROWS, row = IConf.DEFAULT_PIECES_IN_ROW, games = DEFAULT_GAMES;
+  private RuleSet rules = RuleSet.DEFAULT;
+
+
+  /**
+   * Odczyt parametrów wywołania
+   * @param args Parametry (pierwszy to -index lub -query)
+   * @throws IllegalArgumentException Nieprawidłowy parametr
+   */
+  private void parse(String[] args) {
+
+	query = args[0].equals("-query");
+
+	for (int i=1; i<args.length; i++) {
+
+	  String arg = args[i];
+	  if (!arg.startsWith("-")) {
+		if (index == null) index = arg;
+		else this.args.add(arg);
+		continue;
+	  }
+
+	  if (arg.indexOf('=') < 0) throw new IllegalArgumentException(arg);
+	  String key = arg.substring(1, arg.indexOf('=')), val = arg.substring(arg.indexOf('=') + 1);
+
+	  switch (key) {
+		case "size": size = Integer.parseInt(val); break;
+		case "row": row = Integer.parseInt(val); break;
+		case "games": games = Integer.parseInt(val); break;
+		case "rules":
+		  rules = GameRecordReader.getRuleSet(val);
+		  if (rules == null) throw new IllegalArgumentException(arg);
+		  break;
+		default: throw new IllegalArgumentException(arg);
+	  }
+
+	}
+
+	if (index == null || (!query && this.args.isEmpty()) || games < 0 || size < IConf.MIN_COLS_AND_ROWS
+			|| size > IConf.FREE_COLS_AND_ROWS || row < IConf.MIN_PIECES_IN_ROW || row > IConf.MAX_PIECES_IN_ROW)
+	  throw new IllegalArgumentException();
+
+  }
+
+
+  /**
+   * Budowa bazy ze wszystkich źródeł i podsumowanie
+   * @throws IOException Błąd odczytu lub zapisu
+   */
+  private void build() throws IOException {
+
+	long start = System.nanoTime(), skipped = 0, games, positions;
+
+	try (PositionIndexWriter writer = new PositionIndexWriter(new File(index))) {
+
+	  for (String name : args) {
+
+		File source = new File(name);
+		writer.addSource(name);
+
+		if (source.isDirectory()) skipped += addStore(writer, source);
+		else try (GameRecordReader reader = new GameRecordReader(new FileInputStream(source),
+				GameRecordFormat.get(name), new SettingsVar(size, row, rules))) {
+
+		  GameRecord game;
+		  int number = 0;
+		  while ((game = reader.next()) != null) writer.write(game, ++number);
+		  skipped += reader.getSkippedCount();
+
+		}
+
+	  }
+
+	  games = writer.getGamesCount();
+	  positions = writer.getPositionsCount();
+
+	}
+
+	// podsumowanie po zapisie bazy (zamknięcie scala partie)
+	System.err.println(String.format(Locale.US, "sources=%d games=%d skipped=%d positions=%d time=%dms",
+			args.size(), games, skipped, positions, (System.nanoTime() - start) / 1000000));
+
+  }
+
+
+  /**
+   * Dodanie gier z zapisu gier serwera (gry bez ruchów, uszkodzone i nieprawidłowe są pomijane)
+   * @param writer Zapis bazy
+   * @param dir Katalog segmentów
+   * @return Ilość pominiętych gier
+   * @throws IOException Błąd odczytu lub zapisu
+   */
+  private static long addStore(PositionIndexWriter writer, File dir) throws IOException {
+
+	GameStore store = GameStore.openReadOnly(dir);
+	long skipped = 0;
+
+	try {
+	  for (int id=1; id<=store.getGamesCount(); id++) {
+		StoredGame g = store.getGame(id);
+		GameRecord game = g == null || g.isDamaged() || g.getMoves().isEmpty() ? null : GameRecord.create(g.getSettings(), g.getMoves());
+		if (game != null) writer.write(game, id);
+		else skipped++;
+	  }
+	}
+	finally {
+	  store.close();
+	}
+
+	return skipped;
+
+  }
+
+
+  /**
+   * Zapytanie o pozycję po podanych ruchach
+   * @throws IOException Błąd odczytu bazy
+   */
+  private void find() throws IOException {
+
+	SettingsVar settings = new SettingsVar(size, row, rules);
+	List<BoardField> moves = Collections.emptyList();
+
+	// ruchy w formacie listy ruchów (sprawdzane tak jak przy wczytaniu gry)
+	if (!args.isEmpty()) {
+	  StringBuilder sb = new StringBuilder();
+	  for (String m : args) sb.append(m).append(' ');
+	  try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)),
+			  GameRecordFormat.MOVES, settings)) {
+		GameRecord game = reader.next();
+		if (game == null) throw new IllegalArgumentException(sb.toString().trim());
+		moves = game.getMoves();
+	  }
+	}
+
+	PositionIndex db = new PositionIndex(new File(index));
+
+	long start = System.nanoTime();
+	PositionIndex.Position p = db.find(settings, moves);
+	long time = System.nanoTime() - start;
+
+	System.out.println(String.format(Locale.US, "games=%d black=%d white=%d draw=%d unfinished=%d time=%.3fms",
+			p.getGamesCount(), p.getCount(GameResult.BLACK_WON), p.getCount(GameResult.WHITE_WON),
+			p.getCount(GameResult.DRAW), p.getCount(GameResult.CONTINUE), time / 1e6));
+
+	for (PositionIndex.Continuation c : p.getContinuations())
+	  System.out.println(String.format(Locale.US, "%-4s games=%d black=%d white=%d draw=%d unfinished=%d",
+			  getFieldName(c.getMove()), c.getCount(), c.getCount(GameResult.BLACK_WON), c.getCount(GameResult.WHITE_WON),
+			  c.getCount(GameResult.DRAW), c.getCount(GameResult.CONTINUE)));
+
+	int[] ids = p.getGames();
+	for (int i=0; i<ids.length && i<games; i++) System.out.println("game " + ids[i] + ": " + db.getSource(ids[i]));
+	if (ids.length > games) System.out.println("... " + (ids.length - games) + " more");
+
+  }
+
+
+  private String getFieldName(BoardField field) {
+
+	return Character.toString((char)('A' + field.getA())) + Integer.toString(size - field.getB());
+
+  }
+
+
+  /**
+   * Uruchomienie budowy bazy lub zapytania
+   * @param args Parametry wywołania (zob. opis klasy)
+   */
+  public static void main(String[] args) {
+
+	PositionIndexTool tool = new PositionIndexTool();
+
+	try {
+	  tool.parse(args);
+	  if (tool.query) tool.find();
+	  else tool.build();
+	} catch (IllegalArgumentException e) {
+	  System.err.println("Invalid option " + (e.getMessage() == null ? "value" : e.getMessage()));
+	  System.err.println("Usage: -index positions.idx (games.(txt|psq|lib)|store-dir)... [-size=15] [-row=5] [-rules=freestyle]");
+	  System.err.println("       -query positions.idx [-size=15] [-row=5] [-rules=freestyle] [-games=20] H8 I9 ...");
+	  System.exit(1);
+	} catch (IOException e) {
+	  System.err.println(e);
+	  System.exit(1);
+	}
+
+  }
+
+
+}
@@ -0,0 +1,379 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gomoku.Settings;
+
+/**
+ *
+ * Budowa bazy pozycji: każda pozycja każdej gry (od pustej planszy) jest wpisem
+ * 16 bajtów - skrót pozycji w postaci kanonicznej (najmniejszy z 8 symetrii planszy)
+ * oraz nr gry, kolejny ruch (w układzie postaci kanonicznej) i wynik gry.
+ * Wpisy są sortowane wg skrótu partiami w pamięci, partie są zapisywane do plików
+ * tymczasowych i scalane przy zamknięciu (pamięć nie zależy od ilości gier).
+ * Przed wpisami zapisywana jest tablica początków przedziałów wg najstarszych 16 bitów
+ * skrótu, po wpisach - nazwy źródeł gier.
+ *
+ * @author Maciej Kawecki
+ * @see PositionIndex
+ *
+ */
+public class PositionIndexWriter implements Closeable {
+
+  /** Nagłówek pliku ("GMKP") */
+  final static int MAGIC = 0x474d4b50;
+  /** Wersja formatu */
+  final static int VERSION = 1;
+  /** Ilość przedziałów wg najstarszych bitów skrótu */
+  final static int BUCKETS = 1 << 16;
+  /** Długość nagłówka (nagłówek, wersja, ilość wpisów, położenie źródeł, początki przedziałów) */
+  final static int HEADER_SIZE = 4 + 4 + 8 + 8 + (BUCKETS + 1) * 8;
+  /** Długość wpisu */
+  final static int RECORD_SIZE = 16;
+  /** Brak kolejnego ruchu (pozycja końcowa gry) */
+  final static int NO_MOVE = 0xffff;
+
+  /** Ilość wpisów sortowanych w pamięci (partia) */
+  private final static int RUN_SIZE = 1 << 19;
+  /** Rozmiar bufora zapisu i odczytu */
+  private final static int BUFFER_SIZE = 64 * 1024;
+
+  /** Plik bazy */
+  private final File file;
+  /** Skróty i dane wpisów bieżącej partii */
+  private final long[] keys = new long[RUN_SIZE], values = new long[RUN_SIZE];
+  /** Ilość wpisów bieżącej partii */
+  private int size;
+  /** Ilość wszystkich wpisów wg przedziału */
+  private final long[] counts = new long[BUCKETS];
+  /** Pliki zapisanych partii */
+  private final List<File> runs = new ArrayList<>();
+  /** Nazwy źródeł gier i numery gier poprzedzających źródło */
+  private final List<String> sources = new ArrayList<>();
+  private final List<Integer> bases = new ArrayList<>();
+  /** Numer gry poprzedzającej bieżące źródło i największy nadany numer gry */
+  private int base, last;
+  /** Ilość gier i pozycji */
+  private long games, positions;
+  /** True po zamknięciu */
+  private boolean closed;
+
+
+  /**
+   * Wpis w zapisanej partii (scalanie partii)
+   */
+  private static class Run {
+
+	private final DataInputStream in;
+	private long key, value;
+
+	private Run(File file) throws IOException {
+	  in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+	}
+
+	/**
+	 * Odczyt kolejnego wpisu
+	 * @return False jeżeli partia się skończyła (plik jest zamykany)
+	 * @throws IOException Błąd odczytu
+	 */
+	private boolean next() throws IOException {
+
+	  try {
+		key = in.readLong();
+		value = in.readLong();
+		return true;
+	  } catch (EOFException e) {
+		in.close();
+		return false;
+	  }
+
+	}
+
+  }
+
+
+  /**
+   * Konstruktor
+   * @param file Plik bazy (pliki tymczasowe partii są tworzone w tym samym katalogu)
+   */
+  public PositionIndexWriter(File file) {
+
+	this.file = file;
+
+  }
+
+
+  /**
+   * Rozpoczęcie kolejnego źródła gier - numery gier źródła są liczone od
+   * największego dotychczas nadanego numeru
+   * @param name Nazwa źródła (plik lub katalog zapisu gier serwera)
+   */
+  public void addSource(String name) {
+
+	base = last;
+	sources.add(name);
+	bases.add(base);
+
+  }
+
+
+  /**
+   * Dodanie pozycji gry
+   * @param game Zapis gry
+   * @param number Numer gry w bieżącym źródle (od 1)
+   * @throws IOException Błąd zapisu partii
+   */
+  public void write(GameRecord game, int number) throws IOException {
+
+	if (sources.isEmpty()) addSource("");
+
+	int id = base + number;
+	last = Math.max(last, id);
+
+	List<BoardField> moves = game.getMoves();
+	int boardSize = new Settings(game.getSettings()).getColsAndRows(), result = game.getResult().getCode();
+	long[] hashes = PositionHash.getSymmetric(game.getSettings(), moves, 0);
+
+	for (int i=0; i<=moves.size(); i++) {
+
+	  BoardField next = i < moves.size() ? moves.get(i) : null;
+	  int c = PositionHash.getCanonical(hashes), move = NO_MOVE;
+
+	  // pozycja symetryczna sama w sobie - ruch z najmniejszym indeksem spośród równoważnych
+	  if (next != null)
+		for (int s=0; s<PositionHash.SYMMETRIES; s++)
+		  if (hashes[s] == hashes[c]) move = Math.min(move, PositionHash.transform(next.getA(), next.getB(), boardSize, s));
+
+	  add(hashes[c], (long)id << 32 | (long)move << 16 | result);
+
+	  if (next != null)
+		for (int s=0; s<PositionHash.SYMMETRIES; s++)
+		  hashes[s] ^= PositionHash.getKey(next.getA(), next.getB(), next.getState(), boardSize, s);
+
+	}
+
+	games++;
+
+  }
+
+
+  public long getGamesCount() {
+	return games;
+  }
+
+
+  public long getPositionsCount() {
+	return positions;
+  }
+
+
+  /**
+   * Zapis bazy: scalenie partii (lub zapis jedynej partii z pamięci), usunięcie
+   * plików tymczasowych
+   * @throws IOException Błąd zapisu
+   */
+  @Override
+  public void close() throws IOException {
+
+	if (closed) return;
+	closed = true;
+
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+
+	  out.writeInt(MAGIC);
+	  out.writeInt(VERSION);
+	  out.writeLong(positions);
+	  out.writeLong(HEADER_SIZE + positions * RECORD_SIZE);
+
+	  long start = 0;
+	  for (long n : counts) {
+		out.writeLong(start);
+		start += n;
+	  }
+	  out.writeLong(start);
+
+	  if (runs.isEmpty()) {
+		sort(0, size);
+		for (int i=0; i<size; i++) {
+		  out.writeLong(keys[i]);
+		  out.writeLong(values[i]);
+		}
+	  }
+	  else {
+		if (size > 0) writeRun();
+		merge(out);
+	  }
+
+	  out.writeInt(sources.size());
+	  for (int i=0; i<sources.size(); i++) {
+		out.writeUTF(sources.get(i));
+		out.writeInt(bases.get(i));
+	  }
+
+	}
+
+	finally {
+	  for (File f : runs) f.delete();
+	}
+
+  }
+
+
+  /**
+   * Przedział wpisu wg najstarszych bitów skrótu (rośnie razem ze skrótem)
+   * @param key Skrót pozycji
+   * @return Nr przedziału
+   */
+  static int getBucket(long key) {
+
+	return (int)(key >> 48) + (BUCKETS >>> 1);
+
+  }
+
+
+  private void add(long key, long value) throws IOException {
+
+	if (size == RUN_SIZE) writeRun();
+
+	keys[size] = key;
+	values[size++] = value;
+	counts[getBucket(key)]++;
+	positions++;
+
+  }
+
+
+  /**
+   * Posortowanie bieżącej partii i zapis do pliku tymczasowego
+   * @throws IOException Błąd zapisu
+   */
+  private void writeRun() throws IOException {
+
+	sort(0, size);
+
+	File run = File.createTempFile("gomoku-index", ".run", file.getAbsoluteFile().getParentFile());
+	run.deleteOnExit();
+	runs.add(run);
+
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), BUFFER_SIZE))) {
+	  for (int i=0; i<size; i++) {
+		out.writeLong(keys[i]);
+		out.writeLong(values[i]);
+	  }
+	}
+
+	size = 0;
+
+  }
+
+
+  /**
+   * Scalenie zapisanych partii
+   * @param out Strumień pliku bazy
+   * @throws IOException Błąd odczytu lub zapisu
+   */
+  private void merge(DataOutputStream out) throws IOException {
+
+	PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), new Comparator<Run>() {
+	  @Override
+	  public int compare(Run r1, Run r2) {
+		return r1.key != r2.key ? Long.compare(r1.key, r2.key) : Long.compare(r1.value, r2.value);
+	  }
+	});
+
+	try {
+
+	  for (File f : runs) {
+		Run r = new Run(f);
+		if (r.next()) queue.add(r);
+	  }
+
+	  while (!queue.isEmpty()) {
+		Run r = queue.poll();
+		out.writeLong(r.key);
+		out.writeLong(r.value);
+		if (r.next()) queue.add(r);
+	  }
+
+	}
+
+	finally {
+	  for (Run r : queue) r.in.close();
+	}
+
+  }
+
+
+  /**
+   * Sortowanie wpisów partii wg skrótu i danych (quicksort na tablicach równoległych,
+   * krótkie przedziały przez wstawianie)
+   * @param from Początek przedziału
+   * @param to Koniec przedziału (bez tego elementu)
+   */
+  private void sort(int from, int to) {
+
+	while (to - from > 16) {
+
+	  int mid = (from + to) >>> 1, i = from, j = to - 1;
+	  long pk = keys[mid], pv = values[mid];
+
+	  while (i <= j) {
+		while (compare(i, pk, pv) < 0) i++;
+		while (compare(j, pk, pv) > 0) j--;
+		if (i <= j) swap(i++, j--);
+	  }
+
+	  // rekurencja dla krótszej części
+	  if (j - from < to - i) {
+		sort(from, j + 1);
+		from = i;
+	  }
+	  else {
+		sort(i, to);
+		to = j + 1;
+	  }
+
+	}
+
+	for (int i=from+1; i<to; i++)
+	  for (int j=i; j>from && compare(j - 1, keys[j], values[j]) > 0; j--) swap(j - 1, j);
+
+  }
+
+
+  private int compare(int i, long key, long value) {
+
+	return keys[i] != key ? Long.compare(keys[i], key) : Long.compare(values[i], value);
+
+  }
+
+
+  private void swap(int i, int j) {
+
+	long k = keys[i], v = values[i];
+	keys[i] = keys[j];
+	values[i] = values[j];
+	keys[j] = k;
+	values[j] = v;
+
+  }
+
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import gomoku.Lang;
+
+/**
+ *
+ * Zasady gry (warunek wygranej i ruchy zabronione)
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public enum RuleSet {
+
+
+   /** Styl wolny - wygrywa rząd wymaganej długości lub dłuższy */
+   FREESTYLE(1),
+
+   /** Standardowe - wygrywa rząd dokładnie wymaganej długości */
+   STANDARD(2),
+
+   /** Renju - czarne: dokładna długość, zabronione 3x3, 4x4 i rząd za długi */
+   RENJU(3),
+
+   /** Caro - rząd zablokowany z obu stron kamieniami przeciwnika nie wygrywa */
+   CARO(4);
+
+
+   private final int code;
+
+   public static final RuleSet DEFAULT = FREESTYLE;
+
+
+   RuleSet(int code) {
+	   this.code = code;
+   }
+
+
+   public int getCode() {  return code; }
+
+
+   /**
+    * Czy wygrywa tylko rząd dokładnie wymaganej długości
+    * @param color Kolor kamieni
+    * @return True jeżeli rząd dłuższy nie wygrywa
+    */
+   public boolean isExactRow(BoardFieldState color) {
+
+	 return this == STANDARD || (this == RENJU && color == BoardFieldState.BLACK);
+
+   }
+
+
+   /**
+    * Czy rząd zablokowany z obu stron kamieniami przeciwnika wygrywa
+    * @return True jeżeli tak
+    */
+   public boolean isBlockedRowWinning() {
+
+	 return this != CARO;
+
+   }
+
+
+   /**
+    * Czy gracz ma ruchy zabronione
+    * @param color Kolor kamieni
+    * @return True jeżeli tak (czarne w Renju)
+    */
+   public boolean hasForbiddenMoves(BoardFieldState color) {
+
+	 return this == RENJU && color == BoardFieldState.BLACK;
+
+   }
+
+
+   @Override
+   public String toString() {
+
+	 switch (this) {
+
+	   case FREESTYLE: return Lang.get("RulesFreestyle");
+	   case STANDARD: return Lang.get("RulesStandard");
+	   case RENJU: return Lang.get("RulesRenju");
+	   case CARO: return Lang.get("RulesCaro");
+
+	 }
+
+	 return DEFAULT.toString();
+
+   }
+
+
+   /**
+    * Metoda zwraca odpowiedni obiekt dla kodu
+    * @param code Kod
+    * @return Zasady gry
+    */
+   public static RuleSet get(int code) {
+
+     for(RuleSet e : values()) if(e.getCode() == code) return e;
+
+     return null;
+
+   }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package game;
+
+import gomoku.Lang;
+
+/**
+ *
+ * Decyzja gracza w otwarciu Swap2
+ * 
+ * @author Maciej Kawecki
+ * 
+ */
+public enum Swap2Choice {
+
+   /** Gra białymi */
+   WHITE(1),
+   
+   /** Gra czarnymi */
+   BLACK(2),
+   
+   /** Dołożenie dwóch kamieni (białego i czarnego), kolor wybiera przeciwnik */
+   PLACE_TWO(3);
+   
+   
+   private final int code;
+   
+   public static final Swap2Choice DEFAULT = WHITE;
+   
+   
+   Swap2Choice(int code) {
+	   this.code = code;
+   }
+   
+   
+   public int getCode() {  return code; }
+   
+   
+   /**
+    * Kolor kamieni wybierającego gracza
+    * @return Kolor (null dla PLACE_TWO)
+    */
+   public BoardFieldState getColor() {
+	   
+	 switch (this) {
+	   case WHITE: return BoardFieldState.WHITE;
+	   case BLACK: return BoardFieldState.BLACK;
+	   default: return null;
+	 }
+	   
+   }
+   
+   
+   @Override
+   public String toString() {
+	   
+	 switch (this) {
+	   
+	   case WHITE: return Lang.get("Swap2White");
+	   case BLACK: return Lang.get("Swap2Black");
+	   case PLACE_TWO: return Lang.get("Swap2PlaceTwo");
+	   
+	 }
+	 
+	 return DEFAULT.toString();
+	   
+   }
+   
+   
+   /**
+    * Metoda zwraca odpowiedni obiekt dla kodu
+    * @param code Kod
+    * @return Decyzja
+    */
+   public static Swap2Choice get(int code) {
+
+     for(Swap2Choice e : values()) if(e.getCode() == code) return e;
+
+     return null;
+
+   }
+	
+}
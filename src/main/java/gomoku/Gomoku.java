@@ -11,9 +11,13 @@ import java.util.Observer;
 import javax.swing.SwingUtilities;
 
 import game.Game;
+import game.GameRecord;
+import game.GameRecordConverter;
+import game.PositionIndexTool;
 import gui.BoardGraphics;
 import gui.GUI;
 import gui.dialogs.RulesDialog;
+import network.LoadTest;
 import network.Server;
 
 
@@ -35,6 +39,8 @@ public final class Gomoku implements Observer {
   private AppObserver gameSpy;
   /** Ustawienia gry */
   private final Settings settings;
+  /** Wczytana gra dla kolejnej rozgrywki */
+  private volatile GameRecord record;
   
   
   /**
@@ -72,6 +78,8 @@ public final class Gomoku implements Observer {
        // uruchomienie nowej gry 
        game.setSettings(settings);
        game.setGameMode(gui.getGameMode());
+       game.setRecord(record);
+       record = null;
        game.start();
        game.join();
        gameSpy.deleteObserver(game);
@@ -105,8 +113,15 @@ public final class Gomoku implements Observer {
           Settings s = (Settings)obs.getObject();
           settings.setGameSettings(s.getColsAndRows(), s.getPiecesInRow(), s.isComputerStarts());          
           gui.getSettings().setGameSettings(s.getColsAndRows(), s.getPiecesInRow(), s.isComputerStarts());  
+          settings.setRules(s.getRuleSet(), settings.isSwap2());
+          gui.getSettings().setRules(s.getRuleSet(), gui.getSettings().isSwap2());
           
           break;
+          
+        case "load":
+        	
+          record = (GameRecord)obs.getObject();
+          break;
      
      
           
@@ -119,16 +134,31 @@ public final class Gomoku implements Observer {
   /** 
    * Metoda main, uruchomienie okna klienta.
    * @param args Argumenty przekazane do aplikacji. Wywołanie z parametrem -s 
-   * spowoduje uruchomienie statycznej metody main() z klasy Server, czyli uruchomienie serwera.
+   * spowoduje uruchomienie statycznej metody main() z klasy Server, czyli uruchomienie serwera
+   * (dodatkowe parametry: -threads - wątek na połączenie zamiast pętli zdarzeń, -platform - 
+   * zwykłe zamiast wirtualnych wątków na połączenie, -headless - 
+   * bez interfejsu graficznego, -log=plik - plik dziennika, -config=plik - konfiguracja serwera,
+   * -klucz=wartość - pojedyncza wartość konfiguracji, np. -port=4446 -adminPort=0).
+   * Parametr -load uruchamia generator obciążenia (z -compare - porównanie trybów serwera),
+   * -convert konwersję zbiorów gier, a -index i -query budowę bazy pozycji i zapytanie o pozycję.
    * @see network.Server
+   * @see network.LoadTest
+   * @see game.GameRecordConverter
+   * @see game.PositionIndexTool
    */
   public static void main(final String[] args) {
 	  
-     GUI.setLookAndFeel(); 
      try {
          
+        // serwer ustawia wygląd sam (bez interfejsu graficznego - wcale)
         if (args.length!=0 && args[0].startsWith("-s")) Server.main(args); 
-        else new Gomoku();
+        else if (args.length!=0 && args[0].equals("-load")) LoadTest.main(args);
+        else if (args.length!=0 && args[0].equals("-convert")) GameRecordConverter.main(args);
+        else if (args.length!=0 && (args[0].equals("-index") || args[0].equals("-query"))) PositionIndexTool.main(args);
+        else {
+          GUI.setLookAndFeel(); 
+          new Gomoku();
+        }
         
      } catch (InterruptedException | InvocationTargetException e) {
         System.err.println(Lang.get("StartGraphicsProblem", e));
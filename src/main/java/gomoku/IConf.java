@@ -18,7 +18,9 @@ public interface IConf {
    /** Najmniejsza możliwa liczba wierszy (nieparzyste) */
    int MIN_COLS_AND_ROWS = 7;
    /** Największa możliwa liczba wierszy (nieparzyste) */
-   int MAX_COLS_AND_ROWS = 15;   
+   int MAX_COLS_AND_ROWS = 19;   
+   /** Liczba wierszy i kolumn planszy w trybie swobodnym (większa niż MAX_COLS_AND_ROWS) */
+   int FREE_COLS_AND_ROWS = 25;
    /** Domyślna liczba wierszy i kolumn planszy */
    int DEFAULT_COLS_AND_ROWS = 11;
    
@@ -37,8 +39,60 @@ public interface IConf {
    
    /** Domyślny adres IP serwera */
    String DEFAULT_HOST = "127.0.0.1";          
-   /** Używany port serwera */  
+   /** Domyślny port serwera (serwer: konfiguracja, klient: adres w postaci host:port) */  
    int SERVER_PORT = 4444;  
+   /** Domyślna długość kolejki połączeń czekających na przyjęcie przez serwer */
+   int SERVER_BACKLOG = 128;
+   /** Domyślna maksymalna liczba pokoi (jednoczesnych rozgrywek) na serwerze */
+   int MAX_ROOMS = 500;
+   /** Domyślna maksymalna liczba jednoczesnych połączeń (graczy i widzów) z serwerem */
+   int MAX_CONNECTIONS = 5000;
+   /** Maksymalna liczba widzów w pokoju */
+   int MAX_SPECTATORS = 200;
+   /** Limit ramek w kolejce zapisu widza (przepełnienie - zastąpienie kolejki migawką planszy) */
+   int SPECTATOR_QUEUE_LIMIT = 32;
+   /** Początkowy ranking gracza (Elo) */
+   int DEFAULT_RATING = 1500;
+   /** Maksymalna liczba rankingów graczy przechowywanych przez serwer */
+   int MAX_RATINGS = 100000;
+   /** Współczynnik K - maksymalna zmiana rankingu po jednej grze */
+   int RATING_K = 32;
+   /** Szerokość przedziału rankingu w kolejce doboru przeciwników */
+   int MATCH_RATING_BAND = 200;
+   /** Maksymalna odległość (w przedziałach) rankingów dobieranych przeciwników */
+   int MATCH_MAX_BANDS = 2;
+   /** Czas oczekiwania na przeciwnika, po którym do gry dołącza silnik serwera (ms, 0 - bez silnika) */
+   long MATCH_ENGINE_TIMEOUT_MS = 30000;
+   /** Liczba wątków silnika serwera (wspólnych dla wszystkich pokoi z silnikiem) */
+   int SERVER_ENGINE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+   /** Budżet czasu ruchu silnika serwera (ms, razem z oczekiwaniem w kolejce puli) */
+   long ENGINE_MOVE_BUDGET_MS = 2000;
+   /** Domyślny port konsoli administracyjnej serwera (tylko adres lokalny) */
+   int ADMIN_PORT = 4445;
+   /** Domyślny port punktu HTTP z licznikami serwera (tylko adres lokalny) */
+   int METRICS_PORT = 4446;
+   /** Maksymalna liczba wpisów dziennika serwera czekających na zapis */
+   int SERVER_LOG_QUEUE = 10000;
+   /** Domyślny katalog zapisu gier serwera */
+   String GAME_STORE_DIR = "games";
+   /** Maksymalny rozmiar segmentu zapisu gier (bajty) */
+   int GAME_STORE_SEGMENT_SIZE = 64 * 1024 * 1024;
+   /** Interwał utrwalania zapisu gier na dysku (ms) */
+   long GAME_STORE_SYNC_MS = 1000;
+   /** Maksymalna liczba rekordów gier czekających na zapis */
+   int GAME_STORE_QUEUE = 100000;
+   /** Maksymalny czas oczekiwania na zapis kolejki gier przed odtworzeniem pokoi (ms) */
+   long GAME_STORE_FLUSH_MS = 5000;
+   /** Liczba wątków pętli zdarzeń serwera (obsługa wszystkich połączeń) */
+   int SERVER_IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+   /** Interwał pingów (ms), ping pomijany jeżeli w tym czasie wysłano inne dane */
+   long HEARTBEAT_INTERVAL_MS = 500;
+   /** Limit czasu bez danych od drugiej strony połączenia (ms) */
+   long HEARTBEAT_TIMEOUT_MS = 10000;
+   /** Czas na powrót gracza do przerwanej gry (serwer trzyma jego miejsce w pokoju, ms) */
+   long RESUME_GRACE_MS = 30000;
+   /** Odstęp prób ponownego połączenia klienta (ms) */
+   long RESUME_RETRY_MS = 1000;
    
    /** Dostępne lokalizacje */
    Locale[] LOCALES = { new Locale("en", "US"), new Locale("pl", "PL")};
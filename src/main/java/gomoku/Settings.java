@@ -10,6 +10,9 @@ import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.util.Properties;
 
+import game.DifficultyLevel;
+import game.RuleSet;
+
 /**
  *
  * Szablon obiektu przechowywującego ustawienia gry.
@@ -21,6 +24,14 @@ public class Settings extends SettingsVar {
    
   /** Czy komputer zaczyna grę */
   private boolean computerStarts = IConf.DEFAULT_COMPUTER_STARTS;
+  /** Poziom trudności gracza-komputera */
+  private DifficultyLevel difficulty = DifficultyLevel.DEFAULT;
+  /** Czy otwarcie gry wg protokołu Swap2 */
+  private boolean swap2 = false;
+  /** Ranking gracza w grze sieciowej (Elo, aktualizowany przez serwer po grze) */
+  private int rating = IConf.DEFAULT_RATING;
+  /** Token sesji z ostatniej gry sieciowej (serwer przechowuje pod nim ranking gracza) */
+  private String ratingToken = null;
   
   /** Nazwa pliku ustawień */
   private final static String FILE_NAME = "gomoku-settings.properties";
@@ -56,6 +67,7 @@ public class Settings extends SettingsVar {
   public Settings(SettingsVar settings) {
       
      this(settings.colsAndRows, settings.piecesInRow, IConf.DEFAULT_COMPUTER_STARTS);
+     if (settings.ruleSet != null) ruleSet = settings.ruleSet;
      
   }        
     
@@ -85,6 +97,24 @@ public class Settings extends SettingsVar {
 	  return setGameSettings(colsAndRows, piecesInRow, IConf.DEFAULT_COMPUTER_STARTS);
   }
   
+  
+  /**
+   * Metoda zmieniająca zasady gry (o ile się różnią)
+   * @param ruleSet Zasady gry
+   * @param swap2 Czy otwarcie wg protokołu Swap2
+   * @return true jeżeli coś zmieniono, false jeżeli nic się nie zmieniło
+   */
+  public boolean setRules(RuleSet ruleSet, boolean swap2) {
+	  
+	 if (ruleSet == this.ruleSet && swap2 == this.swap2) return false;
+	 
+	 this.ruleSet = ruleSet;
+	 this.swap2 = swap2;
+	 
+	 return true;
+	  
+  }
+  
 
   public int getColsAndRows() {
       
@@ -115,6 +145,46 @@ public class Settings extends SettingsVar {
   public void setComputerStarts(boolean computerStarts) {
 	this.computerStarts = computerStarts;
   }
+
+
+  public RuleSet getRuleSet() {
+	return ruleSet != null ? ruleSet : RuleSet.DEFAULT;
+  }
+
+
+  public boolean isSwap2() {
+	return swap2;
+  }
+
+
+  public DifficultyLevel getDifficulty() {
+	return difficulty;
+  }
+
+
+  public void setDifficulty(DifficultyLevel difficulty) {
+	this.difficulty = difficulty;
+  }
+
+
+  public int getRating() {
+	return rating;
+  }
+
+
+  public void setRating(int rating) {
+	this.rating = rating;
+  }
+
+
+  public String getRatingToken() {
+	return ratingToken;
+  }
+
+
+  public void setRatingToken(String ratingToken) {
+	this.ratingToken = ratingToken;
+  }
   
   
   /**
@@ -127,6 +197,11 @@ public class Settings extends SettingsVar {
 	  props.setProperty("colsAndRows", String.valueOf(colsAndRows));
 	  props.setProperty("piecesInRow", String.valueOf(piecesInRow));
 	  props.setProperty("computerStarts", String.valueOf(computerStarts));
+	  props.setProperty("difficulty", String.valueOf(difficulty.getCode()));
+	  props.setProperty("ruleSet", String.valueOf(getRuleSet().getCode()));
+	  props.setProperty("swap2", String.valueOf(swap2));
+	  props.setProperty("rating", String.valueOf(rating));
+	  if (ratingToken != null) props.setProperty("ratingToken", ratingToken);
 	  props.setProperty("localeIndex", String.valueOf(Lang.getLocaleIndex()));
 	  File f = new File(FILE_NAME);
 	  OutputStream out = new FileOutputStream(f);
@@ -154,7 +229,8 @@ public class Settings extends SettingsVar {
 	  
 	 try {
 		int val = Integer.parseInt(props.getProperty("colsAndRows"));
-		if (val < IConf.MIN_COLS_AND_ROWS || val > IConf.MAX_COLS_AND_ROWS) throw new Exception();
+		if ((val < IConf.MIN_COLS_AND_ROWS || val > IConf.MAX_COLS_AND_ROWS) 
+				&& val != IConf.FREE_COLS_AND_ROWS) throw new Exception();
 		if (val%2 == 0) throw new Exception();
 		colsAndRows = val;
 	 }
@@ -170,6 +246,33 @@ public class Settings extends SettingsVar {
 	 if (props.containsKey("computerStarts"))
 		 computerStarts = Boolean.valueOf(props.getProperty("computerStarts"));
 	 
+	 try {
+		DifficultyLevel val = DifficultyLevel.get(Integer.parseInt(props.getProperty("difficulty")));
+		if (val == null) throw new Exception();
+		difficulty = val;
+	 }
+	 catch (Exception e) { }
+	 
+	 try {
+		RuleSet val = RuleSet.get(Integer.parseInt(props.getProperty("ruleSet")));
+		if (val == null) throw new Exception();
+		ruleSet = val;
+	 }
+	 catch (Exception e) { }
+	 
+	 if (props.containsKey("swap2"))
+		 swap2 = Boolean.valueOf(props.getProperty("swap2"));
+	 
+	 try {
+		int val = Integer.parseInt(props.getProperty("rating"));
+		if (val < 0) throw new Exception();
+		rating = val;
+	 }
+	 catch (Exception e) { }
+	 
+	 if (props.containsKey("ratingToken"))
+		 ratingToken = props.getProperty("ratingToken");
+	 
 	 try {
 		int val = Integer.parseInt(props.getProperty("localeIndex"));
 		Lang.setLocale(val);
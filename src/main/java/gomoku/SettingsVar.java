@@ -6,6 +6,8 @@ package gomoku;
 
 import java.io.Serializable;
 
+import game.RuleSet;
+
 
 /**
  *
@@ -20,6 +22,8 @@ public class SettingsVar implements Serializable {
   protected int colsAndRows;  
   /** Ilość kamieni w rzędzie wymagana do wygranej */
   protected int piecesInRow;
+  /** Zasady gry */
+  protected RuleSet ruleSet;
 
     
   private final static long serialVersionUID = 1L;
@@ -41,8 +45,22 @@ public class SettingsVar implements Serializable {
    */
   public SettingsVar(int colsAndRows, int piecesInRow) {
       
+     this(colsAndRows, piecesInRow, RuleSet.DEFAULT);
+      
+  }      
+  
+  
+  /**
+   * Konstruktor
+   * @param colsAndRows Ilość wierszy i kolumn planszy
+   * @param piecesInRow Ilość kamieni w rzędzie wymagana do wygranej 
+   * @param ruleSet Zasady gry
+   */
+  public SettingsVar(int colsAndRows, int piecesInRow, RuleSet ruleSet) {
+      
      this.colsAndRows = colsAndRows;
      this.piecesInRow = piecesInRow;
+     this.ruleSet = ruleSet;
       
   }      
     
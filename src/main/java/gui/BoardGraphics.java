@@ -11,8 +11,11 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.RenderingHints;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -33,8 +36,8 @@ import gomoku.IConf;
 @SuppressWarnings("serial")
 public class BoardGraphics extends JLayeredPane {
     
-  /** Szerokość i wysokość (w pikselach) pojedynczego pola planszy */ 
-  private static final int PX_FIELD = 24;
+  /** Maksymalna szerokość i wysokość (w pikselach) pojedynczego pola planszy */ 
+  private static final int MAX_PX_FIELD = 24;
   /** Lewy margines planszy w pikselach */
   private static final int PX_BOARD_MARGIN = 22;
   /** Szerokość całego panelu planszy w pikselach */
@@ -43,6 +46,12 @@ public class BoardGraphics extends JLayeredPane {
   private static final int B_HEIGHT=400;  
   /** Ilość wierszy i kolumn planszy */
   private Integer colsAndRows;  
+  /** Szerokość i wysokość (w pikselach) pojedynczego pola planszy, zależna od wielkości planszy */
+  private int pxField;
+  /** Wielkość (w pikselach) obrazka z kamieniem */
+  private int pxPiece;
+  /** Obrazki kamieni przeskalowane do bieżącej wielkości pola */
+  private final Map<Image, Image> scaledImages = new HashMap<>();
   /** Przechowanie poprzednio narysowanego na planszy kursora */
   private JLabel tmpCursor;
 
@@ -54,7 +63,7 @@ public class BoardGraphics extends JLayeredPane {
   public BoardGraphics(int colsAndRows) {
       
     super();  
-    this.colsAndRows = colsAndRows;
+    setColsAndRows(colsAndRows);
     setPreferredSize(new Dimension(B_WIDTH, B_HEIGHT)); 
     tmpCursor = null;
     
@@ -96,15 +105,15 @@ public class BoardGraphics extends JLayeredPane {
     // rysowanie planszy (siatka i podpisy)
     for (i=0;i<colsAndRows;i++) {
         
-      g2D.drawLine(PX_BOARD_MARGIN+i*PX_FIELD+12, PX_BOARD_MARGIN, PX_BOARD_MARGIN+i*PX_FIELD+12, 
-                 PX_BOARD_MARGIN+(colsAndRows-1)*PX_FIELD);
-      g2D.drawString(Character.toString((char)('A' + i)), PX_BOARD_MARGIN+i*PX_FIELD+9, 
-                   PX_BOARD_MARGIN+(colsAndRows-1)*PX_FIELD+21);
+      g2D.drawLine(PX_BOARD_MARGIN+i*pxField+12, PX_BOARD_MARGIN, PX_BOARD_MARGIN+i*pxField+12, 
+                 PX_BOARD_MARGIN+(colsAndRows-1)*pxField);
+      g2D.drawString(Character.toString((char)('A' + i)), PX_BOARD_MARGIN+i*pxField+9, 
+                   PX_BOARD_MARGIN+(colsAndRows-1)*pxField+21);
     
-      g2D.drawLine(PX_BOARD_MARGIN+12, PX_BOARD_MARGIN+i*PX_FIELD, 
-                   PX_BOARD_MARGIN+(colsAndRows-1)*PX_FIELD+12, PX_BOARD_MARGIN+i*PX_FIELD);
-      g2D.drawString(Integer.toString(colsAndRows-i), PX_BOARD_MARGIN-(i<6 ? 13:11), 
-                  PX_BOARD_MARGIN+i*PX_FIELD+4);
+      g2D.drawLine(PX_BOARD_MARGIN+12, PX_BOARD_MARGIN+i*pxField, 
+                   PX_BOARD_MARGIN+(colsAndRows-1)*pxField+12, PX_BOARD_MARGIN+i*pxField);
+      g2D.drawString(Integer.toString(colsAndRows-i), PX_BOARD_MARGIN-(colsAndRows-i>9 ? 13:11), 
+                  PX_BOARD_MARGIN+i*pxField+4);
 
     }
    
@@ -113,7 +122,7 @@ public class BoardGraphics extends JLayeredPane {
     while (tmp > 11) tmp-=4;
     if (tmp == 11) 
       for (i=3; i<=colsAndRows-4; i+=4) for (j=3; j<=colsAndRows-4; j+=4) 
-        g2D.fillOval(24+PX_FIELD*i+8, 12+PX_FIELD*j+8, 6, 5);
+        g2D.fillOval(PX_BOARD_MARGIN+pxField*i+10, PX_BOARD_MARGIN+pxField*j-2, 6, 5);
    
    
   }
@@ -143,11 +152,8 @@ public class BoardGraphics extends JLayeredPane {
        if (getCursor().getType()!=Cursor.HAND_CURSOR) setCursor(new Cursor(Cursor.HAND_CURSOR));  
          
        // wstawienie odpowiedniego obrazka do komp.JLabel
-       ImageIcon img = new ImageIcon(cursor ? ImageRes.getImgCursor(pColor) : ImageRes.getImgPiece(pColor, pChecked));
-       JLabel piece = new JLabel(img); 
-       // ustawienie pozycji komponentu JLabel i dodanie go do planszy
-       piece.setBounds(24+PX_FIELD*a, 12+PX_FIELD*b, ImageRes.IMG_PIECES_WIDTH, ImageRes.IMG_PIECES_HEIGHT);
-       add(piece);
+       JLabel piece = addElement(a, b, 
+    		   cursor ? ImageRes.getImgCursor(pColor) : ImageRes.getImgPiece(pColor, pChecked)); 
        
        // przesuniecie na wierzch zaznaczonego rzedu (wygrana)
        if (pChecked) moveToFront(piece);
@@ -166,6 +172,46 @@ public class BoardGraphics extends JLayeredPane {
      
   }
   
+  /**
+   * Umieszczenie obrazka (kamienia lub kursora) na wskazanym polu planszy
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @param img Obrazek
+   * @return Dodany komponent
+   */
+  private JLabel addElement(int a, int b, Image img) {
+	  
+    JLabel piece = new JLabel(new ImageIcon(getScaledImage(img))); 
+    // ustawienie pozycji komponentu JLabel (środek na przecięciu linii) i dodanie go do planszy
+    piece.setBounds(PX_BOARD_MARGIN+pxField*a+12-pxPiece/2, PX_BOARD_MARGIN+pxField*b-pxPiece/2,
+    		pxPiece, pxPiece);
+    add(piece);
+    
+    return piece;
+	  
+  }
+  
+  
+  /**
+   * Obrazek kamienia (kursora) dopasowany do bieżącej wielkości pola
+   * @param img Oryginalny obrazek
+   * @return Obrazek o wielkości pxPiece
+   */
+  private Image getScaledImage(Image img) {
+	  
+    if (img == null || pxPiece == ImageRes.IMG_PIECES_WIDTH) return img;
+    
+    Image scaled = scaledImages.get(img);
+    if (scaled == null) {
+      scaled = img.getScaledInstance(pxPiece, pxPiece, Image.SCALE_SMOOTH);
+      scaledImages.put(img, scaled);
+    }
+    
+    return scaled;
+	  
+  }
+  
+  
   /**
    * Metoda przywracająca domyślny kursor myszy na planszy
    */
@@ -186,9 +232,17 @@ public class BoardGraphics extends JLayeredPane {
 
 
     
+  /**
+   * Ustawienie wielkości planszy - dla większych plansz pola (i kamienie) są 
+   * pomniejszane tak, aby cała plansza zmieściła się w panelu
+   * @param colsAndRows Ilość kolumn i wierszy
+   */
   public void setColsAndRows(Integer colsAndRows) {
       
     this.colsAndRows = colsAndRows;
+    pxField = Math.min(MAX_PX_FIELD, (B_WIDTH - 2*PX_BOARD_MARGIN - 12) / Math.max(1, colsAndRows-1));
+    pxPiece = pxField == MAX_PX_FIELD ? ImageRes.IMG_PIECES_WIDTH : pxField * ImageRes.IMG_PIECES_WIDTH / MAX_PX_FIELD;
+    scaledImages.clear();
     
   }
   
@@ -256,6 +310,39 @@ public class BoardGraphics extends JLayeredPane {
       
   }
   
+  /**
+   * Ponowne narysowanie kamieni na podstawie historii ruchów (np. po cofnięciu ruchów)
+   * @param lBoard Referencja do obiektu logicznej warstwy planszy
+   */
+  public void redraw(Board lBoard) {
+	  
+    clear();
+    tmpCursor = null;
+    
+    for (BoardField field : lBoard.getHistory())
+      addElement(field.getA(), field.getB(), ImageRes.getImgPiece(field.getState(), false));
+    
+    repaint();
+	  
+  }
+  
+  
+  /**
+   * Oznaczenia w trybie odtwarzania gry (po narysowaniu kamieni): wyróżniony ostatni
+   * ruch i ruch proponowany przez silnik (jako kursor, bez zmiany kursora myszy)
+   * @param last Ostatni ruch (null - brak)
+   * @param best Ruch silnika w miejsce ostatniego ruchu (null - brak)
+   */
+  public void setReplayMarks(BoardField last, BoardField best) {
+	  
+    if (last != null) moveToFront(addElement(last.getA(), last.getB(), ImageRes.getImgPiece(last.getState(), true)));
+    if (best != null) moveToFront(addElement(best.getA(), best.getB(), ImageRes.getImgCursor(best.getState())));
+    
+    repaint();
+	  
+  }
+  
+  
   /**
    * Usunięcie wszystkich elementów graficznych położonych na planszy
    */
@@ -268,27 +355,27 @@ public class BoardGraphics extends JLayeredPane {
   
   
   /**
-   * Statyczna metoda przeliczająca współrzędną x (w pikselach) okna aplikacji 
+   * Metoda przeliczająca współrzędną x (w pikselach) okna aplikacji 
    * na indeks a (kolumnę) pola planszy
    * @param x Współrzędna pozioma położenia w oknie aplikacji
    * @return Indeks a (kolumna) pola planszy
    */
   
-  public static int getFieldA(int x) {
+  public int getFieldA(int x) {
      
-     return (int) Math.floor((((float)x - PX_BOARD_MARGIN/2 - ImageRes.IMG_PIECES_WIDTH/2)/PX_FIELD));
+     return (int) Math.floor(((float)x - PX_BOARD_MARGIN - 12 + pxField/2) / pxField);
   
   }
   
   /**
-   * Statyczna metoda przeliczająca współrzędną y (w pikselach) okna aplikacji 
+   * Metoda przeliczająca współrzędną y (w pikselach) okna aplikacji 
    * na indeks b (wiersz) pola planszy
    * @param y Współrzędna pionowa położenia w oknie aplikacji 
    * @return Indeks b (wiersz) pola planszy
    */  
-  public static int getFieldB(int y) {
+  public int getFieldB(int y) {
      
-      return (int) Math.floor(((float)y - ImageRes.IMG_PIECES_HEIGHT/2)/PX_FIELD);
+      return (int) Math.floor(((float)y - PX_BOARD_MARGIN + pxField/2) / pxField);
      
   }
   
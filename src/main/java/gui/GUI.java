@@ -15,28 +15,38 @@ import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.Observable;
 import java.util.Observer;
 
+import javax.swing.AbstractAction;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JMenuBar;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.KeyStroke;
 import javax.swing.UIManager;
 import javax.swing.plaf.metal.MetalLookAndFeel;
 import javax.swing.plaf.metal.OceanTheme;
 
 import game.GameMode;
+import game.GameRecord;
+import game.GameRecordFormat;
+import game.GameRecordReader;
 import game.GameState;
 import gomoku.AppObserver;
 import gomoku.IConf;
 import gomoku.Lang;
 import gomoku.Settings;
+import gomoku.SettingsVar;
 import gui.dialogs.ConfirmDialog;
 import gui.dialogs.PromptDialog;
 
@@ -234,6 +244,12 @@ public class GUI extends JFrame implements IBaseGUI, Observer {
     menu.add(menuHelp);
     setJMenuBar(menu);    
     
+    // tryb odtwarzania gry: poprzedni / kolejny ruch, początek i koniec gry
+    bindReplayKey(KeyEvent.VK_LEFT, -1);
+    bindReplayKey(KeyEvent.VK_RIGHT, 1);
+    bindReplayKey(KeyEvent.VK_HOME, Integer.MIN_VALUE);
+    bindReplayKey(KeyEvent.VK_END, Integer.MAX_VALUE);
+    
     pack();
     setSize(F_WIDTH, F_HEIGHT);
     setResizable(false);
@@ -252,15 +268,17 @@ public class GUI extends JFrame implements IBaseGUI, Observer {
    *  kontrolującego przebieg gry o zmianie, wyczyszczenie graficznej planszy i konsoli
    * @param gameMode Wybrany przez użytkownika tryb nowej gry
    * @param serverIP Adres IP serwera
+   * @param room Numer pokoju gry na serwerze (0 - dowolny)
    * @see game.Game#update(java.util.Observable, java.lang.Object) 
    */
   @Override
-  public void restartGame(GameMode gameMode, String serverIP) {      
+  public void restartGame(GameMode gameMode, String serverIP, int room) {      
       
 	GameState gs = GameState.RESTART;
 	gs.setServerIP(serverIP);  
+	gs.setRoom(room);
 	  
-    if (this.gameMode == GameMode.NETWORK_GAME && socket != null) {
+    if (this.gameMode != null && this.gameMode.isNetworkMode() && socket != null) {
          
       try {
          socket.close();
@@ -280,7 +298,7 @@ public class GUI extends JFrame implements IBaseGUI, Observer {
     board.clear();
     console.clear();   
     
-    if (gameMode == GameMode.NETWORK_GAME) 
+    if (gameMode.isNetworkMode()) 
       console.setMessageLn(Lang.get("NetworkModeChosen"), Color.DARK_GRAY);
               
     else {
@@ -291,6 +309,109 @@ public class GUI extends JFrame implements IBaseGUI, Observer {
   }
   
   
+  /**
+   * Metoda obsługująca cofnięcie ruchu - przesłanie informacji do wątku gry
+   * @see game.Game#update(java.util.Observable, java.lang.Object) 
+   */
+  @Override
+  public void undoMove() {
+	  
+	gameSpy.sendObject("undo", null);
+	  
+  }
+  
+  
+  /**
+   * Zapis bieżącej gry - przesłanie informacji do wątku gry
+   * @param file Plik
+   * @see game.Game#update(java.util.Observable, java.lang.Object) 
+   */
+  @Override
+  public void saveGame(File file) {
+	  
+	gameSpy.sendObject("save", file);
+	  
+  }
+  
+  
+  /**
+   * Wczytanie gry: odczyt pierwszej poprawnej gry z pliku, zmiana ustawień i planszy
+   * wg wczytanej gry (jak przy zmianie ustawień), przesłanie gry do wątku głównego
+   * i uruchomienie nowej gry (w grze sieciowej - gry hot-seat)
+   * @param file Plik
+   * @see gomoku.Gomoku#update(java.util.Observable, java.lang.Object)
+   */
+  @Override
+  public void loadGame(File file) {
+	  
+	GameRecord record;
+	
+	try (GameRecordReader reader = new GameRecordReader(new FileInputStream(file), 
+			GameRecordFormat.get(file.getName()), new SettingsVar(settings.getColsAndRows(), 
+					settings.getPiecesInRow(), settings.getRuleSet()))) {
+	  record = reader.next();
+	} catch (IOException e) {
+	  console.setMessageLn(Lang.get("GameLoadFailed", e.getMessage()), Color.RED);
+	  return;
+	}
+	
+	if (record == null) {
+	  console.setMessageLn(Lang.get("GameLoadFailed", Lang.get("NoGameInFile")), Color.RED);
+	  return;
+	}
+	
+	Settings s = new Settings(record.getSettings());
+	settings.setGameSettings(s.getColsAndRows(), s.getPiecesInRow(), settings.isComputerStarts());
+	settings.setRules(s.getRuleSet(), settings.isSwap2());
+	
+    gameSpy.sendObject("state", GameState.WAIT);
+    
+    board = new BoardGraphics(settings.getColsAndRows());
+    panelBoard.removeAll();
+    panelBoard.add(board);
+    revalidate();
+    
+    // przesłanie do wątków nowych ustawien, referencji do nowej planszy i wczytanej gry
+    gameSpy.sendObject("settings-main", settings);
+    gameSpy.sendObject("board", board);
+    gameSpy.sendObject("load", record);
+    
+    restartGame(gameMode == null || gameMode.isNetworkMode() ? GameMode.HOTSEAT_GAME : gameMode, null, 0);
+	  
+  }
+  
+  
+  /**
+   * Tryb odtwarzania zakończonej gry - przesłanie informacji do wątku gry
+   * @see game.Game#update(java.util.Observable, java.lang.Object) 
+   */
+  @Override
+  public void analyseGame() {
+	  
+	gameSpy.sendObject("replay", null);
+	  
+  }
+  
+  
+  /**
+   * Przypisanie klawisza do przejścia po ruchach w trybie odtwarzania gry
+   * @param keyCode Kod klawisza
+   * @param step Ilość ruchów (Integer.MIN_VALUE - początek gry, Integer.MAX_VALUE - koniec)
+   */
+  private void bindReplayKey(int keyCode, final int step) {
+	  
+	String name = "replay" + step;
+	getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(keyCode, 0), name);
+	getRootPane().getActionMap().put(name, new AbstractAction() {
+	  @Override
+	  public void actionPerformed(ActionEvent e) {
+		gameSpy.sendObject("replay-step", step);
+	  }
+	});
+	  
+  }
+  
+  
   /**
    * Zatrzymanie rozgrywki
    */
@@ -6,6 +6,7 @@ package gui;
 
 import java.awt.Component;
 import java.awt.Container;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,8 +38,9 @@ public interface IBaseGUI extends ILocalizable {
    * wątku kontrolującego przebieg gry o zmianie, wyczyszczenie graficznej planszy i konsoli
    * @param gameMode Wybrany przez użytkownika tryb nowej gry
    * @param serverIP Adres IP serwera   
+   * @param room Numer pokoju gry na serwerze (0 - dowolny)
    */  
-  void restartGame(GameMode gameMode, String serverIP);
+  void restartGame(GameMode gameMode, String serverIP, int room);
   
   /**
    * Metoda obsługująca zmianę ustawień przez użytkownika: zatrzymanie bieżącej rozgrywki, 
@@ -48,6 +50,32 @@ public interface IBaseGUI extends ILocalizable {
    */  
   void restartGameSettings();  
   
+  /**
+   * Metoda obsługująca cofnięcie ruchu (ruchów) przez użytkownika: powiadomienie 
+   * wątku kontrolującego przebieg gry
+   */
+  void undoMove();
+  
+  /**
+   * Zapis bieżącej gry do pliku (format wg rozszerzenia): przesłanie informacji 
+   * do wątku kontrolującego przebieg gry
+   * @param file Plik
+   */
+  void saveGame(File file);
+  
+  /**
+   * Wczytanie gry z pliku (format wg rozszerzenia): zmiana ustawień wg wczytanej gry
+   * i uruchomienie nowej gry od ostatniego wczytanego ruchu
+   * @param file Plik
+   */
+  void loadGame(File file);
+  
+  /**
+   * Tryb odtwarzania zakończonej gry z oceną ruchów: powiadomienie wątku 
+   * kontrolującego przebieg gry
+   */
+  void analyseGame();
+  
   /**
    * Metoda odpowiada czy interfejs jest implementowany przez GUI serwera, czy klienta
    * @return True jeżeli serwer, false jeżeli klient
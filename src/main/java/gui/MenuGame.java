@@ -4,6 +4,7 @@
  */
 package gui;
 
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -12,10 +13,13 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 
+import javax.swing.JFileChooser;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.KeyStroke;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
+import game.GameRecordFormat;
 import gomoku.Gomoku;
 import gomoku.Lang;
 import gui.dialogs.ConfirmDialog;
@@ -34,6 +38,14 @@ public class MenuGame extends JMenu implements ILocalizable {
     
    /** Menu: opcja nowej gry */ 
    private final JMenuItem newGameItem;
+   /** Menu: opcja cofnięcia ruchu */
+   private final JMenuItem undoItem;
+   /** Menu: opcja zapisu gry */
+   private final JMenuItem saveItem;
+   /** Menu: opcja wczytania gry */
+   private final JMenuItem loadItem;
+   /** Menu: opcja analizy gry */
+   private final JMenuItem analyseItem;
    /** Menu: opcja serwer */
    private final JMenuItem serverItem;
    /** Menu: opcja rozłącz */
@@ -42,6 +54,8 @@ public class MenuGame extends JMenu implements ILocalizable {
    private final JMenuItem settingsItem;
    /** Menu: opcja koniec */
    private final JMenuItem quitItem;
+   /** Katalog ostatnio zapisanej / wczytanej gry */
+   private File lastDir;
     
    /**
     * Konstruktor  
@@ -67,6 +81,64 @@ public class MenuGame extends JMenu implements ILocalizable {
      });   
      
      
+    undoItem = new JMenuItem(Lang.get("MenuUndoMove"));
+    undoItem.setMnemonic(IBaseGUI.getKeyCode(undoItem));
+    undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, ActionEvent.CTRL_MASK));
+    add(undoItem);
+    undoItem.addActionListener(new ActionListener() {
+       @Override  
+       public void actionPerformed(final ActionEvent e) {
+           
+          frame.undoMove();
+         
+       }
+     });   
+     
+     
+    saveItem = new JMenuItem(Lang.get("MenuSaveGame"));
+    saveItem.setMnemonic(IBaseGUI.getKeyCode(saveItem));
+    saveItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, ActionEvent.CTRL_MASK));
+    add(saveItem);
+    saveItem.addActionListener(new ActionListener() {
+       @Override  
+       public void actionPerformed(final ActionEvent e) {
+           
+          File file = chooseFile(frame, true);
+          if (file != null) frame.saveGame(file);
+         
+       }
+     });   
+     
+     
+    loadItem = new JMenuItem(Lang.get("MenuLoadGame"));
+    loadItem.setMnemonic(IBaseGUI.getKeyCode(loadItem));
+    loadItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, ActionEvent.CTRL_MASK));
+    add(loadItem);
+    loadItem.addActionListener(new ActionListener() {
+       @Override  
+       public void actionPerformed(final ActionEvent e) {
+           
+          File file = chooseFile(frame, false);
+          if (file != null) frame.loadGame(file);
+         
+       }
+     });   
+     
+     
+    analyseItem = new JMenuItem(Lang.get("MenuAnalyseGame"));
+    analyseItem.setMnemonic(IBaseGUI.getKeyCode(analyseItem));
+    analyseItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_R, ActionEvent.CTRL_MASK));
+    add(analyseItem);
+    analyseItem.addActionListener(new ActionListener() {
+       @Override  
+       public void actionPerformed(final ActionEvent e) {
+           
+          frame.analyseGame();
+         
+       }
+     });   
+     
+     
     serverItem = new JMenuItem(Lang.get("MenuRunServer"));
     serverItem.setPreferredSize(new Dimension(160, 20));
     serverItem.setMnemonic(IBaseGUI.getKeyCode(serverItem));
@@ -140,11 +212,48 @@ public class MenuGame extends JMenu implements ILocalizable {
    public void enableItems(boolean enabled) {
 	   
 	 newGameItem.setEnabled(enabled);
+	 undoItem.setEnabled(enabled);
+	 loadItem.setEnabled(enabled);
 	 settingsItem.setEnabled(enabled);
 	   
    }
    
    
+   /**
+    * Wybór pliku gry (filtry wg formatów zapisu, przy zapisie dodawane jest
+    * rozszerzenie wybranego formatu)
+    * @param frame Interfejs GUI
+    * @param save True - zapis, false - odczyt
+    * @return Wybrany plik lub null
+    */
+   private File chooseFile(IBaseGUI frame, boolean save) {
+	   
+	 JFileChooser chooser = new JFileChooser(lastDir);
+	 FileNameExtensionFilter def = null;
+	 for (GameRecordFormat f : GameRecordFormat.values()) {
+	   FileNameExtensionFilter filter = new FileNameExtensionFilter(f + " (*." + f.getExtension() + ")", f.getExtension());
+	   chooser.addChoosableFileFilter(filter);
+	   if (f == GameRecordFormat.DEFAULT) def = filter;
+	 }
+	 chooser.setFileFilter(def);
+	 
+	 Component parent = frame instanceof Component ? (Component)frame : null;
+	 int res = save ? chooser.showSaveDialog(parent) : chooser.showOpenDialog(parent);
+	 if (res != JFileChooser.APPROVE_OPTION) return null;
+	 
+	 File file = chooser.getSelectedFile();
+	 lastDir = file.getParentFile();
+	 
+	 if (save && chooser.getFileFilter() instanceof FileNameExtensionFilter) {
+	   String ext = ((FileNameExtensionFilter)chooser.getFileFilter()).getExtensions()[0];
+	   if (!file.getName().toLowerCase().endsWith("." + ext)) file = new File(file.getPath() + "." + ext);
+	 }
+	 
+	 return file;
+	   
+   }
+   
+   
    public JMenuItem getDscItem() {
 	 return dscItem;
    }
@@ -159,6 +268,14 @@ public class MenuGame extends JMenu implements ILocalizable {
 	   
 	  newGameItem.setText(Lang.get("MenuNewGame"));     
 	  newGameItem.setMnemonic(IBaseGUI.getKeyCode(newGameItem));
+	  undoItem.setText(Lang.get("MenuUndoMove"));     
+	  undoItem.setMnemonic(IBaseGUI.getKeyCode(undoItem));
+	  saveItem.setText(Lang.get("MenuSaveGame"));     
+	  saveItem.setMnemonic(IBaseGUI.getKeyCode(saveItem));
+	  loadItem.setText(Lang.get("MenuLoadGame"));     
+	  loadItem.setMnemonic(IBaseGUI.getKeyCode(loadItem));
+	  analyseItem.setText(Lang.get("MenuAnalyseGame"));     
+	  analyseItem.setMnemonic(IBaseGUI.getKeyCode(analyseItem));
 	  serverItem.setText(Lang.get("MenuRunServer"));     
 	  serverItem.setMnemonic(IBaseGUI.getKeyCode(serverItem));
 	  dscItem.setText(Lang.get("MenuDisconnect"));
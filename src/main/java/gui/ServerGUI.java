@@ -11,6 +11,7 @@ import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
@@ -148,10 +149,11 @@ public class ServerGUI extends JFrame implements IBaseGUI {
   
   /**
    * Dodaje menu do zasobnika systemowego (system tray)
+   * @param port Port serwera
    */
-  public void setTray() {
+  public void setTray(int port) {
 
- 	 tray = new ServerTrayIcon(this);
+ 	 tray = new ServerTrayIcon(this, port);
  
 	 try {
 	   tray.add();
@@ -206,7 +208,23 @@ public class ServerGUI extends JFrame implements IBaseGUI {
 
 
   @Override
-  public void restartGame(GameMode gameMode, String serverIP) {}
+  public void restartGame(GameMode gameMode, String serverIP, int room) {}
+  
+  
+  @Override
+  public void undoMove() {}
+  
+  
+  @Override
+  public void saveGame(File file) {}
+  
+  
+  @Override
+  public void loadGame(File file) {}
+  
+  
+  @Override
+  public void analyseGame() {}
   
      
   @Override
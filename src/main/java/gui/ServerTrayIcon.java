@@ -23,7 +23,6 @@ import javax.swing.JSeparator;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 
-import gomoku.IConf;
 import gomoku.Lang;
 import gui.dialogs.ConfirmDialog;
 
@@ -54,6 +53,8 @@ public class ServerTrayIcon extends TrayIcon implements ILocalizable {
   private final JMenuItem trayQuitItem;  
   /** Nagłówek menu */
   private final JLabel stateLabel;
+  /** Port serwera */
+  private final int port;
   
   
   /** Wewn. klasa: element menu */
@@ -91,10 +92,12 @@ public class ServerTrayIcon extends TrayIcon implements ILocalizable {
   /**
    * Konstruktor
    * @param frame Ref. do GUI serwera
+   * @param port Port serwera
    */
-  public ServerTrayIcon(ServerGUI frame) {
+  public ServerTrayIcon(ServerGUI frame, int port) {
 	  
 	super(frame.getIconImage(), frame.getTitle());
+	this.port = port;
 	setImageAutoSize(true);
 	setToolTip(frame.getTitle());
 	
@@ -108,7 +111,7 @@ public class ServerTrayIcon extends TrayIcon implements ILocalizable {
 	header.add(title);
 	
 	stateLabel = new JLabel();
-	stateLabel.setText(Lang.get("ServerRunning", String.valueOf(IConf.SERVER_PORT)));
+	stateLabel.setText(Lang.get("ServerRunning", String.valueOf(port)));
 	stateLabel.setFont(TRAY_FONT);
 	stateLabel.setBorder(new EmptyBorder(0, 5, 0, 0));
 	stateLabel.setForeground(Color.GRAY);
@@ -231,7 +234,7 @@ public class ServerTrayIcon extends TrayIcon implements ILocalizable {
 		
 	if (!supported) return;
 	  
-	stateLabel.setText(Lang.get("ServerRunning", String.valueOf(IConf.SERVER_PORT)));
+	stateLabel.setText(Lang.get("ServerRunning", String.valueOf(port)));
 	trayShowItem.setText(Lang.get("ShowWindow"));
 	trayRestartItem.setText(Lang.get("Restart"));	
 	trayQuitItem.setText(Lang.get("Quit"));
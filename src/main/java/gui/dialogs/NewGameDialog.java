@@ -47,7 +47,7 @@ public class NewGameDialog extends SimpleDialog {
       
      super(frame);
      gameMode = GameMode.DEFAULT;
-     super.showDialog(320, 220);
+     super.showDialog(320, 245);
        
   }
   
@@ -100,9 +100,10 @@ public class NewGameDialog extends SimpleDialog {
           GameMode modeTmp = GameMode.get(Integer.parseInt(bGroup.getSelection().getActionCommand()));
           
           String serverIP = "";
+          int room = 0;
               
           // jeżeli to klient, to pobranie od użytkownika adresu IP serwera
-          if (modeTmp == GameMode.NETWORK_GAME) {
+          if (modeTmp.isNetworkMode()) {
 
              // usunięcie komponentów i ustawienie przezroczystego tła
              // żeby okienko wyboru nowej gry zniknęło, ale dalej blokowało wątki
@@ -111,14 +112,24 @@ public class NewGameDialog extends SimpleDialog {
              
              serverIP = new PromptDialog(frame, Lang.get("ServerHost") + ":",
             		 IConf.DEFAULT_HOST).getAnswer();
+             
+             // numer pokoju gry (0 - dowolny), gra z silnikiem serwera zawsze w nowym pokoju
+             if (serverIP!=null && !serverIP.isEmpty() && modeTmp != GameMode.ENGINE_GAME) {
+               String roomStr = new PromptDialog(frame, Lang.get("RoomNumber") + ":", "0").getAnswer();
+               try {
+                 room = Math.max(0, Integer.parseInt(roomStr.trim()));
+               } catch (NumberFormatException | NullPointerException ex) {
+                 room = 0;
+               }
+             }
           }
           
            // zakończenie obecnej rozgrywki i rozpoczęcie nowej 
-          if (modeTmp != GameMode.NETWORK_GAME || (serverIP!=null && !serverIP.isEmpty())) {
+          if (!modeTmp.isNetworkMode() || (serverIP!=null && !serverIP.isEmpty())) {
           
              gameMode = modeTmp;
              
-             frame.restartGame(gameMode, serverIP);
+             frame.restartGame(gameMode, serverIP, room);
              
           }
           
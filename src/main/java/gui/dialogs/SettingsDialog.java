@@ -26,6 +26,8 @@ import javax.swing.text.StyleConstants;
 import javax.swing.text.StyleContext;
 import javax.swing.text.StyledDocument;
 
+import game.DifficultyLevel;
+import game.RuleSet;
 import gomoku.IConf;
 import gomoku.Lang;
 import gomoku.Settings;
@@ -57,7 +59,7 @@ public class SettingsDialog extends SimpleDialog {
       super(frame);
       settings = frame.getSettings();
       server = frame.isServer();
-      super.showDialog(320, server ? 280 : 320);
+      super.showDialog(320, server ? 310 : 410);
       
     }        
    
@@ -72,20 +74,23 @@ public class SettingsDialog extends SimpleDialog {
        setTitle(Lang.get("GomokuSettings") 
     		   + (frame.isServer() ? " (" + Lang.get("Server") + ")" : ""));
        
-       JPanel p = new JPanel(new GridLayout(2,2));
+       JPanel p = new JPanel(new GridLayout(3,2));
        
        JLabel label = new JLabel(Lang.get("BoardSize") + ":");
        label.setFont(formsFont);
        p.add(label);
        
        int j = 0;
-       int k = (IConf.MAX_COLS_AND_ROWS - IConf.MIN_COLS_AND_ROWS) / 2 + 1;
+       int k = (IConf.MAX_COLS_AND_ROWS - IConf.MIN_COLS_AND_ROWS) / 2 + 2;
        String[] options = new String[k];
        Integer[] boardOptionIndex = new Integer[k];
        for (int i = IConf.MIN_COLS_AND_ROWS; i <= IConf.MAX_COLS_AND_ROWS; i+=2) {
     	 options[j] = String.valueOf(i) + " \u00d7 " + String.valueOf(i);   
     	 boardOptionIndex[j++] = i;
        }
+       // tryb swobodny
+       options[j] = Lang.get("FreeBoardSize", IConf.FREE_COLS_AND_ROWS);
+       boardOptionIndex[j] = IConf.FREE_COLS_AND_ROWS;
        
        final JComboBox<String> boardSize = new JComboBox<>(options);
        boardSize.setFont(formsFont);
@@ -112,14 +117,41 @@ public class SettingsDialog extends SimpleDialog {
        piecesInLine.setSelectedIndex(Arrays.asList(piecesOptionIndex).indexOf(settings.getPiecesInRow()));
        piecesInLine.setBorder(new EmptyBorder(5, 0, 5, 0)); 
        p.add(piecesInLine);     
+       
+       label = new JLabel(Lang.get("RuleSet") + ":");
+       label.setFont(formsFont);
+       p.add(label);
+       
+       final JComboBox<RuleSet> ruleSet = new JComboBox<>(RuleSet.values());
+       ruleSet.setFont(formsFont);
+       ruleSet.setSelectedItem(settings.getRuleSet());
+       ruleSet.setBorder(new EmptyBorder(5, 0, 5, 0)); 
+       p.add(ruleSet);
+       
        p.setBorder(new EmptyBorder(5, 15, 5, 15)); 
        add(p);
        
        final JCheckBox compStartsField = new JCheckBox(" " + Lang.get("ComputerStarts"),
     		   settings.isComputerStarts());
+       
+       final JCheckBox swap2Field = new JCheckBox(" " + Lang.get("Swap2Opening"), settings.isSwap2());
+       
+       final JComboBox<DifficultyLevel> difficulty = new JComboBox<>(DifficultyLevel.values());
+       difficulty.setSelectedItem(settings.getDifficulty());
               
        if (!server) {
     	   
+         p = new JPanel(new GridLayout(1, 2));
+         label = new JLabel(Lang.get("Difficulty") + ":");
+         label.setFont(formsFont);
+         p.add(label);
+         
+         difficulty.setFont(formsFont);
+         difficulty.setBorder(new EmptyBorder(5, 0, 5, 0));
+         p.add(difficulty);
+         p.setBorder(new EmptyBorder(0, 15, 0, 15));
+         add(p);
+    	   
          p = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
          compStartsField.setFont(formsFont);
@@ -128,6 +160,15 @@ public class SettingsDialog extends SimpleDialog {
          p.add(compStartsField);
            
          add(p); 
+         
+         p = new JPanel(new FlowLayout(FlowLayout.LEFT));
+         
+         swap2Field.setFont(formsFont);
+         swap2Field.setBorder(new EmptyBorder(0, 10, 0, 0)); 
+         swap2Field.setFocusPainted(false);
+         p.add(swap2Field);
+         
+         add(p);
     	   
     	   
        }
@@ -191,11 +232,17 @@ public class SettingsDialog extends SimpleDialog {
           public void actionPerformed(final ActionEvent e) { 
               
         	 if (Lang.setLocale(language.getSelectedIndex())) frame.translate();
+        	 
+        	 // zmiana poziomu trudności nie wymaga przerwania gry
+        	 settings.setDifficulty((DifficultyLevel)difficulty.getSelectedItem());
         	  
+             boolean rulesChanged = settings.setRules((RuleSet)ruleSet.getSelectedItem(), 
+            		 swap2Field.isSelected());
+        	 
              // jezeli cos sie zmienilo, zakonczenie rozgrywki i wprowadzenie zmian 
              if (settings.setGameSettings(boardOptionIndex[boardSize.getSelectedIndex()], 
                                   piecesOptionIndex[piecesInLine.getSelectedIndex()], 
-                                  compStartsField.isSelected())) {
+                                  compStartsField.isSelected()) || rulesChanged) {
                
                frame.restartGameSettings();
                
@@ -0,0 +1,100 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package gui.dialogs;
+
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.border.EmptyBorder;
+
+import game.Swap2Choice;
+import gomoku.Lang;
+import gui.IBaseGUI;
+
+
+/**
+ *
+ * Okienko wyboru w otwarciu Swap2 (kolor lub dołożenie dwóch kamieni)
+ * 
+ * @author Maciej Kawecki
+ * 
+ */
+@SuppressWarnings("serial")
+public class Swap2Dialog extends InfoDialog {
+    
+  /** Wybór gracza */ 
+  private Swap2Choice choice;
+  
+  /** Czy można dołożyć dwa kamienie (przed wywołaniem konstruktora nadrzędnego) */
+  private static boolean placeTwoEnabled;
+  
+	
+  /**
+    * Konstruktor
+    * @param frame Interfejs GUI
+    * @param placeTwo True jeżeli można wybrać dołożenie dwóch kamieni
+    */
+   public Swap2Dialog(IBaseGUI frame, boolean placeTwo) {
+      
+	 super(frame, init(placeTwo), DialogType.PROMPT);	     
+	            
+   } 
+   
+   
+   /**
+    * Ustawienie opcji przed wyświetleniem okienka (modalne, wyświetlane w konstruktorze)
+    * @param placeTwo True jeżeli można wybrać dołożenie dwóch kamieni
+    * @return Treść pytania
+    */
+   private static String init(boolean placeTwo) {
+	   
+	 placeTwoEnabled = placeTwo;
+	 return Lang.get(placeTwo ? "Swap2QuestionPlaceTwo" : "Swap2Question");
+	   
+   }
+   
+
+   @Override
+   protected JPanel getButtonsPanel()  {   
+           
+	  choice = Swap2Choice.DEFAULT;
+	  
+      JPanel p = new JPanel(new FlowLayout());
+      p.setBorder(new EmptyBorder(0, 30, 5, 0)); 
+	   
+      for (final Swap2Choice c : Swap2Choice.values()) {
+    	  
+    	if (c == Swap2Choice.PLACE_TWO && !placeTwoEnabled) continue;  
+    	
+        JButton button = new JButton(c.toString());
+        button.setFocusPainted(false);
+        button.addActionListener(new ActionListener() {
+           @Override
+           public void actionPerformed(final ActionEvent e) { 
+              choice = c;
+              dispose();
+           }
+        });
+        
+        p.add(button);
+    	  
+      }
+      
+      return p;
+            
+   }
+    
+
+   public Swap2Choice getChoice() {
+       
+      return choice; 
+       
+   }
+   
+    
+}
@@ -0,0 +1,164 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import gomoku.Settings;
+
+/**
+ *
+ * Konsola administracyjna serwera bez interfejsu graficznego - port tekstowy
+ * dostępny tylko lokalnie (adres pętli zwrotnej), jedno polecenie na wiersz:
+ * status, rooms, restart, shutdown, help, quit. Odpowiedzi mają stały format
+ * (pary klucz=wartość), niezależny od języka interfejsu.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class AdminConsole extends Thread {
+
+  /** Limit czasu bezczynności sesji (ms) */
+  private final static int SESSION_TIMEOUT_MS = 5 * 60 * 1000;
+
+  /** Referencja do obiektu głównego serwera */
+  private final Server server;
+  /** Gniazdko konsoli */
+  private final ServerSocket socket;
+
+
+  /**
+   * Konstruktor
+   * @param server Referencja do obiektu głównego serwera
+   * @param port Port konsoli (na adresie pętli zwrotnej)
+   * @throws IOException Nie można otworzyć portu
+   */
+  public AdminConsole(Server server, int port) throws IOException {
+
+	super("admin");
+	this.server = server;
+	setDaemon(true);
+
+	socket = new ServerSocket();
+	socket.setReuseAddress(true);
+	socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+  }
+
+
+  @Override
+  public void run() {
+
+	while (!socket.isClosed()) {
+
+	  try (Socket s = socket.accept()) {
+		s.setSoTimeout(SESSION_TIMEOUT_MS);
+		session(s);
+	  }
+	  catch (IOException e) {}
+
+	}
+
+  }
+
+
+  /**
+   * Obsługa jednej sesji (sesje są obsługiwane kolejno)
+   * @param s Gniazdko sesji
+   * @throws IOException Błąd połączenia
+   */
+  private void session(Socket s) throws IOException {
+
+	BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+	PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+
+	String line;
+	while ((line = in.readLine()) != null) {
+
+	  switch (line.trim().toLowerCase()) {
+
+		case "": break;
+
+		case "status":
+		  out.println(getStatus());
+		  break;
+
+		case "rooms":
+		  for (Room r : server.getRooms()) out.println(getRoomInfo(r));
+		  out.println("end");
+		  break;
+
+		case "restart":
+		  out.println("ok");
+		  server.getServerSpy().sendObject("state", "restart");
+		  break;
+
+		case "shutdown":
+		  out.println("ok");
+		  System.exit(0);
+		  break;
+
+		case "quit":
+		  return;
+
+		case "help":
+		  out.println("commands: status rooms restart shutdown quit");
+		  break;
+
+		default:
+		  out.println("error unknown command");
+
+	  }
+
+	}
+
+  }
+
+
+  private String getStatus() {
+
+	int started = 0;
+	for (Room r : server.getRooms())
+	  if (r.isStarted()) started++;
+
+	return "connections=" + server.getConnectionsCount() + " rooms=" + server.getRooms().size()
+			+ " started=" + started + " engine_pending=" + server.getEnginePool().getPending();
+
+  }
+
+
+  private static String getRoomInfo(Room r) {
+
+	Settings s = new Settings(r.getSettings());
+
+	return "room=" + r.getId() + " size=" + s.getColsAndRows() + " pieces=" + s.getPiecesInRow()
+			+ " rules=" + s.getRuleSet().getCode() + " players=" + r.getPlayersCount()
+			+ " engine=" + r.hasEngine() + " spectators=" + r.getSpectatorsCount()
+			+ " state=" + (r.isStarted() ? "started" : r.isClosed() ? "closed" : "waiting");
+
+  }
+
+
+  /**
+   * Zamknięcie konsoli
+   */
+  public void shutdown() {
+
+	try {
+	  socket.close();
+	} catch (IOException e) {}
+
+  }
+
+
+}
@@ -5,10 +5,16 @@
 package network;
 
 import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import game.GameState;
 import gomoku.AppObserver;
@@ -20,31 +26,72 @@ import gui.Console;
 
 /**
  *
- * Klient serwera gry
+ * Klient serwera gry. Wszystkie komendy z serwera odczytuje jeden wątek: pingi 
+ * obsługuje od razu, wiadomości wyświetla, a pozostałe komendy kolejkuje dla 
+ * getResponse(). Pingi do serwera wysyła wspólny harmonogram (Heartbeat).
+ * Po utracie połączenia w trakcie gry klient próbuje wrócić do pokoju z tokenem 
+ * sesji (komenda RESUME) - serwer odsyła ruchy, których klient nie otrzymał, 
+ * a niepotwierdzony własny ruch jest wysyłany ponownie.
  * 
  * @author Maciej Kawecki
  * 
  */
-public final class Client {        
+public final class Client implements IConnection {        
+
+  /** Znacznik końca kolejki odpowiedzi (połączenie zamknięte) */
+  private final static Command END_OF_STREAM = new Command((byte)0);
+  /** Harmonogram pingów wspólny dla klientów */
+  private static Heartbeat heartbeat;
+
 
   /** Adres IP lub nazwa hosta serwera */  
   private final String serverIP;  
-  /** Gniazdko do którego klient (zdalny) został podłączony */
-  private final Socket socket;
-  /** Strumień wyjściowy (do pisania) */
-  private final ObjectOutputStream output;
-  /** Strumień wejściowy (do czytania) */
-  private final ObjectInputStream input;
+  /** Gniazdko do którego klient (zdalny) został podłączony (zmieniane po powrocie do gry) */
+  private volatile Socket socket;
+  /** Strumień wyjściowy (do pisania ramek, zapis synchronizowany) */
+  private volatile DataOutputStream output;
+  /** Strumień wejściowy (do czytania ramek) */
+  private volatile DataInputStream input;
+  /** Blokada zapisu (piszą wątek gry, wątek odczytu i harmonogram pingów) */
+  private final Object writeLock = new Object();
+  /** Token sesji gracza (powrót do gry po utracie połączenia) */
+  private volatile String session;
+  /** Liczba wyników ruchów otrzymanych z serwera */
+  private volatile int resultsCount;
+  /** Własny ruch wysłany do serwera, którego wynik jeszcze nie dotarł */
+  private volatile Command pendingMove;
+  /** True jeżeli odebrano ruch przeciwnika bez jego wyniku */
+  private boolean awaitingResult;
+  /** True jeżeli powtórzony przez serwer ruch przeciwnika ma być pominięty */
+  private boolean skipMove;
+  /** True jeżeli gniazdko zamknięto w celu powrotu do gry (a nie rozłączenia) */
+  private volatile boolean dropped;
+  /** True jeżeli gra w pokoju została rozstrzygnięta */
+  private volatile boolean gameOver;
   /** Numer przypisany przez serwer */
   private Integer number;
+  /** Numer pokoju gry na serwerze */
+  private int room;
   /** Ustawienia przekazane z serwera */
   private SettingsVar settingsVar;
+  /** Migawka planszy przekazana widzowi po dołączeniu */
+  private RoomSnapshot snapshot;
   /** Obserwator stanu gry */
   private final AppObserver gameSpy;
   /** Referencja do konsoli GUI */
   private final Console console;
-  /** Timer do pingowania serwera */
-  private final Ping ping;
+  /** Komendy odebrane z serwera (bez pingów i wiadomości) */
+  private final BlockingQueue<Command> responses = new LinkedBlockingQueue<>();
+  /** True jeżeli wystąpił błąd połączenia (odpowiednik błędu pingu) */
+  private volatile boolean connectionLost;
+  /** True jeżeli zakończono nawiązywanie połączenia (dołączenie do gry) */
+  private volatile boolean started;
+  /** Czas ostatniego wysłania danych (ms) */
+  private volatile long lastSendTime = Heartbeat.now();
+  /** Czas ostatniego odebrania danych (ms) */
+  private volatile long lastReceiveTime = Heartbeat.now();
+  /** Ostatnio zmierzony czas odpowiedzi serwera (mikrosekundy, -1 - brak pomiaru) */
+  private volatile int rtt = -1;
   /** true jeżeli klient już zakończył udział w grze */
   private boolean clientEnded;
 
@@ -52,74 +99,417 @@ public final class Client {
   /**
    * Konstruktor obiektu klienta w grze sieciowej
    * @param serverIP Adres IP (lub nazwa hosta) serwera zdalnego
+   * @param request Żądanie dołączenia (pokój, ustawienia proponowane w razie utworzenia 
+   * nowego pokoju i ranking gracza)
    * @param gameSpy Referencja do obserwatora stanu gry
    * @param console Referencja do konsoli GUI
    * @throws java.io.IOException Podłączanie gniazdka
    * @throws java.lang.ClassNotFoundException W razie nieprawidłowej komendy z serwera
-   * @throws Exception Odmowa połączenia (komplet klientów)
+   * @throws Exception Odmowa połączenia (komplet klientów w pokoju lub limit pokoi)
    */  
-  public Client(String serverIP, AppObserver gameSpy, Console console)
+  public Client(String serverIP, JoinRequest request, AppObserver gameSpy, Console console)
 		  throws IOException, ClassNotFoundException, Exception {    
+	  
+	this(serverIP, request, false, gameSpy, console);
+	
+  }
+  
+  
+  /**
+   * Konstruktor obiektu widza gry sieciowej
+   * @param serverIP Adres IP (lub nazwa hosta) serwera zdalnego
+   * @param room Numer pokoju gry (JoinRequest.ANY_ROOM - dowolna trwająca gra)
+   * @param gameSpy Referencja do obserwatora stanu gry
+   * @param console Referencja do konsoli GUI
+   * @throws java.io.IOException Podłączanie gniazdka
+   * @throws java.lang.ClassNotFoundException W razie nieprawidłowej komendy z serwera
+   * @throws Exception Odmowa połączenia (brak pokoju lub limit widzów)
+   */  
+  public Client(String serverIP, int room, AppObserver gameSpy, Console console)
+		  throws IOException, ClassNotFoundException, Exception {    
+	  
+	this(serverIP, new JoinRequest(room, null), true, gameSpy, console);
+	
+  }
+  
+  
+  /**
+   * Konstruktor obiektu klienta w grze sieciowej lub widza
+   * @param serverIP Adres IP (lub nazwa hosta) serwera zdalnego
+   * @param request Żądanie dołączenia
+   * @param spectator True jeżeli klient tylko obserwuje grę w pokoju
+   * @param gameSpy Referencja do obserwatora stanu gry
+   * @param console Referencja do konsoli GUI
+   * @throws java.io.IOException Podłączanie gniazdka
+   * @throws java.lang.ClassNotFoundException W razie nieprawidłowej komendy z serwera
+   * @throws Exception Odmowa połączenia (komplet klientów w pokoju, limit pokoi lub brak pokoju)
+   */  
+  private Client(String serverIP, JoinRequest request, boolean spectator, AppObserver gameSpy,
+		  Console console) throws IOException, ClassNotFoundException, Exception {    
    
      // podłączenie gniazdka
      this.serverIP = serverIP;
-     socket = new Socket(this.serverIP, IConf.SERVER_PORT); 
-     output = new ObjectOutputStream(socket.getOutputStream());
-     input = new ObjectInputStream(socket.getInputStream());
+     socket = new Socket(getHost(serverIP), getPort(serverIP)); 
+     socket.setTcpNoDelay(true);
+     output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+     input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
      
      this.gameSpy = gameSpy;
      this.console = console;
           
      gameSpy.sendObject("socket", socket);     
 
-     // oczekiwanie na powitanie z serwera
-     Command cmd = getResponse();
-     //  jest już komplet
-     if (cmd.getCommand() == Command.CMD_FULL) throw new Exception();
-     // oczekiwanie na 2. gracza
-     gameSpy.sendObject("socket-state", "wait");     
-     while (cmd.getCommand() != Command.CMD_START) {         
-       cmd = getResponse();       
-     } 
-
-     // przesłanie do serwera zapytania o numer gracza
-     sendCommand(new Command(Command.CMD_NUMBER));
-     do {
-         
-       cmd = getResponse();
-       if (cmd.getCommand()==Command.CMD_NUMBER)
-         number = (Integer)(cmd.getCommandData());
-       
-     } while (number==null);
-          
-     // przesłanie do serwera zapytania o ustawienia gry
-     sendCommand(new Command(Command.CMD_SETTINGS));
+     startReader();
+     getHeartbeat().register(this);
      
-     do {
-         
-       cmd = (Command)(input.readObject());
-       if (cmd.getCommand()==Command.CMD_SETTINGS)
-         settingsVar = (SettingsVar)(cmd.getCommandData());
-       
-     } while (settingsVar==null);  
+     try {
      
-     // włączenie pingowania
-     ping = new Ping(this); 
-     ping.startPinging();
+       if (spectator) watch(request.getRoom());
+       else join(request);
+       
+     } catch (Exception e) {
+       stopHeartbeat();
+       socket.close();
+       throw e;
+     }
      
-     console.networkButtonsEnable(true);
+     if (!spectator) console.networkButtonsEnable(true);
      
      clientEnded = false;
+     started = true;
      
      
   }
   
   
-  public Ping getPing() {
-      
-    return ping;
-      
-  }  
+  /**
+   * Dołączenie do gry w pokoju i pobranie numeru gracza i ustawień gry
+   * @param request Żądanie dołączenia
+   * @throws Exception Komplet klientów w pokoju, limit pokoi lub błąd połączenia
+   */
+  private void join(JoinRequest request) throws Exception {
+	  
+       // dołączenie do pokoju gry
+       sendCommand(new Command(Command.CMD_JOIN, request));
+     
+       Command cmd;
+       do {
+         cmd = getResponse();
+       } while (cmd.getCommand() != Command.CMD_JOIN && cmd.getCommand() != Command.CMD_FULL);
+     
+       //  jest już komplet
+       if (cmd.getCommand() == Command.CMD_FULL) throw new Exception();
+       this.room = (Integer)(cmd.getCommandData());
+       console.setMessageLn(Lang.get("JoinedRoom", this.room), Color.DARK_GRAY);
+     
+       // oczekiwanie na 2. gracza
+       gameSpy.sendObject("socket-state", "wait");     
+       while (cmd.getCommand() != Command.CMD_START) {         
+         cmd = getResponse();       
+       } 
+
+       // przesłanie do serwera zapytania o numer gracza
+       sendCommand(new Command(Command.CMD_NUMBER));
+       do {
+         
+         cmd = getResponse();
+         if (cmd.getCommand()==Command.CMD_NUMBER)
+           number = (Integer)(cmd.getCommandData());
+       
+       } while (number==null);
+          
+       // przesłanie do serwera zapytania o ustawienia gry
+       sendCommand(new Command(Command.CMD_SETTINGS));
+     
+       do {
+         
+         cmd = getResponse();
+         if (cmd.getCommand()==Command.CMD_SETTINGS)
+           settingsVar = (SettingsVar)(cmd.getCommandData());
+       
+       } while (settingsVar==null);
+       
+  }
+  
+  
+  /**
+   * Dołączenie widza do pokoju i pobranie migawki planszy
+   * @param room Numer pokoju gry (JoinRequest.ANY_ROOM - dowolna trwająca gra)
+   * @throws Exception Brak pokoju, limit widzów lub błąd połączenia
+   */
+  private void watch(int room) throws Exception {
+	  
+	sendCommand(new Command(Command.CMD_WATCH, room));
+	
+	Command cmd;
+	do {
+	  cmd = getResponse();
+	} while (cmd.getCommand() != Command.CMD_SNAPSHOT && cmd.getCommand() != Command.CMD_FULL);
+	
+	if (cmd.getCommand() == Command.CMD_FULL) throw new Exception();
+	
+	snapshot = (RoomSnapshot)cmd.getCommandData();
+	settingsVar = snapshot.getSettings();
+	this.room = snapshot.getRoom();
+	  
+  }
+  
+  
+  /**
+   * Wspólny harmonogram pingów (tworzony przy pierwszym połączeniu)
+   * @return Harmonogram
+   */
+  private static synchronized Heartbeat getHeartbeat() {
+	  
+	if (heartbeat == null) heartbeat = new Heartbeat(IConf.HEARTBEAT_INTERVAL_MS, IConf.HEARTBEAT_TIMEOUT_MS);
+	return heartbeat;
+
+  }
+
+
+  /**
+   * Host z adresu serwera w postaci host lub host:port
+   * @param address Adres serwera
+   * @return Adres IP lub nazwa hosta
+   */
+  private static String getHost(String address) {
+
+	int i = address.lastIndexOf(':');
+	// adres IPv6 bez portu zawiera wiele dwukropków
+	return i > 0 && address.indexOf(':') == i ? address.substring(0, i) : address;
+
+  }
+
+
+  /**
+   * Port z adresu serwera w postaci host lub host:port
+   * @param address Adres serwera
+   * @return Port (IConf.SERVER_PORT jeżeli nie podano)
+   * @throws NumberFormatException Nieprawidłowy port
+   */
+  private static int getPort(String address) {
+
+	int i = address.lastIndexOf(':');
+	return i > 0 && address.indexOf(':') == i ? Integer.parseInt(address.substring(i + 1)) : IConf.SERVER_PORT;
+
+  }
+
+
+  /**
+   * Uruchomienie wątku odczytującego komendy z serwera
+   */
+  private void startReader() {
+	  
+	Thread reader = new Thread("client-reader") {
+	  @Override
+	  public void run() {
+		  
+		while (readCommands() && resumeGame());
+		
+		responses.add(END_OF_STREAM);
+		  
+	  }
+	};
+	
+	reader.setDaemon(true);
+	reader.start();
+	  
+  }
+  
+  
+  /**
+   * Odczyt komend z serwera do zamknięcia połączenia
+   * @return True jeżeli można spróbować wrócić do gry
+   */
+  private boolean readCommands() {
+	  
+	try {
+		
+	  while (true) {
+		  
+		Command cmd = CommandCodec.read(input);
+		lastReceiveTime = Heartbeat.now();
+		
+		switch (cmd.getCommand()) {
+		
+		  // token sesji po dołączeniu do pokoju
+		  case Command.CMD_SESSION:
+			if (cmd.getCommandData() instanceof String) {
+			  session = (String)cmd.getCommandData();
+			  // pod tokenem sesji serwer przechowuje ranking gracza (następne dołączenie)
+			  gameSpy.sendObject("session", session);
+			}
+			break;
+			
+		  // ruch przeciwnika (po powrocie do gry może być powtórzony)
+		  case Command.CMD_MOVE:
+			if (skipMove) {
+			  skipMove = false;
+			  break;
+			}
+			awaitingResult = true;
+			responses.add(cmd);
+			break;
+			
+		  // wynik ruchu - potwierdzenie własnego ruchu
+		  case Command.CMD_RESULT:
+			resultsCount++;
+			pendingMove = null;
+			awaitingResult = skipMove = false;
+			if (!Integer.valueOf(GameResult.CONTINUE.getCode()).equals(cmd.getCommandData())) gameOver = true;
+			responses.add(cmd);
+			break;
+		
+		  // ping serwera - odesłanie znacznika czasu
+		  case Command.CMD_PING:
+			if (cmd.getCommandData() != null) 
+			  sendCommand(new Command(Command.CMD_PONG, cmd.getCommandData()));
+			break;
+			
+		  // odpowiedź na ping - pomiar czasu odpowiedzi
+		  case Command.CMD_PONG:
+			if (cmd.getCommandData() instanceof Integer) rtt = Heartbeat.getRtt((Integer)cmd.getCommandData());
+			break;
+			
+		  case Command.CMD_MESSAGE:
+			showMessage((String)cmd.getCommandData());
+			break;
+			
+		  case Command.CMD_STOP_MSG: break;
+		  
+		  // nowy ranking po grze
+		  case Command.CMD_RATING:
+			if (cmd.getCommandData() instanceof Integer) gameSpy.sendObject("rating", cmd.getCommandData());
+			break;
+			
+		  default: responses.add(cmd);
+		
+		}
+		
+	  }
+	  
+	}
+	
+	catch (IOException e) {
+	  return isResumable();
+	}
+	catch (ClassNotFoundException | ClassCastException e) {}
+	
+	return false;
+	  
+  }
+  
+  
+  /**
+   * Czy po utracie połączenia można wrócić do gry (gra trwa, a gniazdka nie 
+   * zamknięto w celu rozłączenia)
+   * @return True jeżeli tak
+   */
+  private boolean isResumable() {
+	  
+	return session != null && started && !clientEnded && !gameOver && (dropped || !socket.isClosed());
+	  
+  }
+  
+  
+  /**
+   * Powrót do gry po utracie połączenia - ponawianie połączenia co IConf.RESUME_RETRY_MS 
+   * do upływu IConf.RESUME_GRACE_MS. Serwer odpowiada komendą RESUME z liczbą ruchów
+   * w pokoju, a następnie odsyła brakujące ruchy i wyniki.
+   * @return True jeżeli wrócono do gry
+   */
+  private boolean resumeGame() {
+	  
+	console.setMessageLn(Lang.get("ConnectionResuming"), Color.RED);
+	// zapis w trakcie powrotu do gry nie kończy gry
+	drop();
+	
+	long deadline = Heartbeat.now() + IConf.RESUME_GRACE_MS;
+	
+	while (!clientEnded && Heartbeat.now() < deadline) {
+		
+	  Socket s = new Socket();
+	  
+	  try {
+		  
+		s.connect(new InetSocketAddress(getHost(serverIP), getPort(serverIP)), (int)IConf.RESUME_RETRY_MS);
+		s.setTcpNoDelay(true);
+		s.setSoTimeout((int)IConf.RESUME_GRACE_MS);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+		DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+		
+		CommandCodec.write(out, new Command(Command.CMD_RESUME, new ResumeRequest(session, resultsCount)));
+		
+		Command cmd;
+		do {
+		  cmd = CommandCodec.read(in);
+		} while (cmd.getCommand() != Command.CMD_RESUME && cmd.getCommand() != Command.CMD_FULL
+				&& cmd.getCommand() != Command.CMD_EXIT);
+		
+		// sesja wygasła lub przeciwnik opuścił grę
+		if (cmd.getCommand() != Command.CMD_RESUME) {
+		  s.close();
+		  break;
+		}
+		
+		s.setSoTimeout(0);
+		
+		synchronized (writeLock) {
+		  socket = s;
+		  output = out;
+		  input = in;
+		  // przeciwnik otrzyma ponownie ruch, którego wynik nie dotarł
+		  skipMove = awaitingResult;
+		  // własny ruch nie dotarł do serwera - ponowne wysłanie
+		  Command move = pendingMove;
+		  if (move != null && (Integer)cmd.getCommandData() <= resultsCount) CommandCodec.write(output, move);
+		}
+		
+		dropped = false;
+		lastReceiveTime = lastSendTime = Heartbeat.now();
+		getHeartbeat().register(this);
+		gameSpy.sendObject("socket", s);
+		console.setMessageLn(Lang.get("ConnectionResumed"), Color.DARK_GRAY);
+		
+		return true;
+		
+	  }
+	  
+	  catch (IOException | ClassCastException e) {
+		  
+		try {
+		  s.close();
+		} catch (IOException e2) {}
+		
+		try {
+		  Thread.sleep(IConf.RESUME_RETRY_MS);
+		} catch (InterruptedException e2) {
+		  break;
+		}
+		
+	  }
+	  
+	}
+	
+	// kolejne błędy zapisu kończą grę
+	session = null;
+	return false;
+	  
+  }
+  
+  
+  /**
+   * Wyświetlenie wiadomości od drugiego gracza
+   * @param msg Treść
+   */
+  private void showMessage(String msg) {
+	  
+	String txt = "[" + Lang.get("MsgFromPlayer", number != null && number == 1 ? 1 : 2, msg) + "]";             
+
+	console.newLine();
+	console.setMessageLn(txt, new Color(0x22, 0x8b, 0x22));               
+	  
+  }
   
  
   protected Socket getSocket() {
@@ -146,37 +536,173 @@ public final class Client {
   */
   public void sendCommand(Command cmd) throws IOException, ClassNotFoundException {
     
-    if ((ping==null || !ping.isPingOut()) && cmd instanceof Command) {
-      output.writeObject(cmd);
-      output.flush();
+    if (!connectionLost && cmd instanceof Command) {
+      
+      if (cmd.getCommand() == Command.CMD_MOVE) pendingMove = cmd;
+      
+      // piszą wątek gry, wątek odczytu i harmonogram pingów
+      try {
+        synchronized (writeLock) {
+          CommandCodec.write(output, cmd);
+        }
+      } catch (IOException e) {
+        // ruch zostanie wysłany ponownie po powrocie do gry
+        if (!isResumable()) throw e;
+        drop();
+      }
+      lastSendTime = Heartbeat.now();
     }
     
-    else if (ping != null) ping.stopPinging();
+    else stopHeartbeat();
   
   }  
   
 
   /**
-   * Metoda pobiera odpowiedź serwera (komendę)
+   * Metoda pobiera odpowiedź serwera (komendę), czekając na nią
    * @return Odpowiedź serwera (komenda)
-   * @throws IOException  Nie można pobrać odpowiedzi
+   * @throws IOException  Połączenie zamknięte
    */
   public Command getResponse() throws IOException {
       
      try {
-       return (Command)(input.readObject());
-     } 
-     catch (ClassCastException e) {
-       return null;  
-     }
-     catch (ClassNotFoundException e) {
-       System.err.println(e);
+    	 
+       Command cmd = responses.take();
+       
+       if (cmd == END_OF_STREAM) {
+    	 // kolejne wywołania też mają zakończyć się błędem
+    	 responses.add(END_OF_STREAM);
+    	 throw new IOException("Connection closed");
+       }
+       
+       return cmd;
+       
+     } catch (InterruptedException e) {
+       throw new InterruptedIOException();
      }
-     
-     return null;
       
   }
   
+  
+  /**
+   * Oczekiwanie na wynik ostatniego ruchu ustalony przez serwer (komenda RESULT)
+   * @return Wynik ruchu
+   * @throws IOException Połączenie zamknięte, przeciwnik opuścił grę lub nieprawidłowy wynik
+   */
+  public GameResult getGameResult() throws IOException {
+	  
+	Command cmd;
+	
+	do {
+	  cmd = getResponse();
+	  if (cmd.getCommand() == Command.CMD_EXIT) throw new IOException("Game ended");
+	} while (cmd.getCommand() != Command.CMD_RESULT);
+	
+	GameResult result = cmd.getCommandData() instanceof Integer ? GameResult.get((Integer)cmd.getCommandData()) : null;
+	if (result == null) throw new IOException("Invalid game result");
+	
+	return result;
+	  
+  }
+  
+  
+  @Override
+  public long getLastSendTime() {
+	return lastSendTime;
+  }
+
+
+  @Override
+  public long getLastReceiveTime() {
+	return lastReceiveTime;
+  }
+
+
+  /**
+   * Wysłanie pingu przez harmonogram, błąd kończy grę
+   * @param ping Komenda PING
+   */
+  @Override
+  public void sendPing(Command ping) {
+	  
+	try {
+	  if (socket.isClosed()) throw new IOException();
+	  sendCommand(ping);
+	} catch (Exception e) {
+	  connectionTimeout();
+	}
+	
+  }
+
+
+  /**
+   * Utrata połączenia: przed rozpoczęciem gry tylko zamknięcie gniazdka
+   * (konstruktor zakończy się błędem), w trakcie gry - próba powrotu do gry,
+   * a gdy nie jest możliwa - zakończenie gry
+   */
+  @Override
+  public void connectionTimeout() {
+	  
+	if (isResumable()) {
+	  drop();
+	  return;
+	}
+	  
+	connectionLost = true;
+	stopHeartbeat();
+	
+	if (started) endGame();
+	else try {
+	  socket.close();
+	} catch (IOException e) {}
+	  
+  }
+  
+  
+  /**
+   * Zamknięcie gniazdka w celu powrotu do gry (wątek odczytu ponowi połączenie)
+   */
+  private void drop() {
+	  
+	dropped = true;
+	stopHeartbeat();
+	
+	try {
+	  socket.close();
+	} catch (IOException e) {}
+	  
+  }
+  
+  
+  /**
+   * Czy połączenie z serwerem zostało utracone
+   * @return True jeżeli tak
+   */
+  public boolean isConnectionLost() {
+	  
+	return connectionLost;
+	  
+  }
+  
+  
+  /**
+   * Zatrzymanie pingowania serwera
+   */
+  public void stopHeartbeat() {
+	  
+	getHeartbeat().unregister(this);
+	  
+  }
+  
+  
+  /**
+   * Ostatnio zmierzony czas odpowiedzi serwera
+   * @return RTT w mikrosekundach lub -1 jeżeli nie zmierzono
+   */
+  public int getRtt() {
+	return rtt;
+  }
+  
 
   public int getNumber() {
       
@@ -184,6 +710,43 @@ public final class Client {
       
   }
   
+  
+  /**
+   * Migawka planszy otrzymana po dołączeniu widza
+   * @return Migawka lub null (gracz)
+   */
+  public RoomSnapshot getSnapshot() {
+	  
+	 return snapshot;
+	  
+  }
+  
+  
+  /**
+   * Zakończenie obserwacji gry (widz) - rozłączenie bez komunikatu o utracie połączenia
+   */
+  public void close() {
+	  
+    clientEnded = true;
+    stopHeartbeat();
+    
+    try {
+      sendCommand(new Command(Command.CMD_EXIT));
+    } catch (Exception e) {}
+    
+    try {
+      socket.close();
+    } catch (IOException e) {}
+	  
+  }
+  
+  
+  public int getRoom() {
+	  
+	 return room;
+	  
+  }
+  
   /**
    * Metoda zwracająca ustawienia gry pobrane z serwera
    * @return Ustawienia gry pobrane z serwera
@@ -212,7 +775,7 @@ public final class Client {
     console.setMessageLn(Lang.get("ConnectionLost"), Color.RED);
     console.newGameMsg();    
              
-    ping.stopPinging();
+    stopHeartbeat();
     console.networkButtonsEnable(false);
             
     try {
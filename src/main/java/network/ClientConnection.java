@@ -0,0 +1,817 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+
+import game.BoardField;
+import gomoku.IConf;
+
+/**
+ *
+ * Połączenie z klientem obsługiwane przez pętlę zdarzeń serwera (SelectorLoop).
+ * Odczyt i obsługa komend odbywają się w wątku pętli, wysyłać mogą też inne
+ * wątki (zapis kolejkowany, dokańczany przez pętlę gdy kanał jest zapchany).
+ * Bez pętli (kanał blokujący) połączenie jest obsługiwane przez własny wątek - run(),
+ * a wysyłaniem zajmuje się osobny wątek zapisu (wysyłający tylko wstawia ramkę do
+ * kolejki, więc wolny klient nie blokuje pokoju ani wątku pingów).
+ * Ramki wiadomości są przekazywane drugiemu graczowi w pokoju bez dekodowania,
+ * inne komendy nieobsługiwane przez serwer zamykają połączenie. Ruchy są sprawdzane na planszy
+ * pokoju i przekazywane w postaci otrzymanej ramki. Widz (komenda WATCH) tylko
+ * odbiera ruchy z pokoju i zawsze jest obsługiwany przez pętlę zdarzeń, a jego
+ * kolejka zapisu jest ograniczona. Gracz otrzymuje przy dołączeniu token sesji,
+ * z którym po utracie połączenia może wrócić do gry (komenda RESUME).
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class ClientConnection implements Runnable, IConnection {
+
+  /** Początkowy rozmiar bufora odczytu */
+  private final static int READ_BUFFER_SIZE = 4 * 1024;
+
+  /** Referencja do obiektu głównego serwera */
+  private final Server server;
+  /** Liczniki serwera */
+  private final ServerMetrics metrics;
+  /** Kanał klienta */
+  private final SocketChannel channel;
+  /** Pętla zdarzeń obsługująca połączenie (null - kanał blokujący, własny wątek) */
+  private volatile SelectorLoop loop;
+  /** Klucz kanału w selektorze pętli */
+  private volatile SelectionKey key;
+  /** Bufor odczytu (niepełne ramki czekają na resztę danych) */
+  private ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+  /** Kolejka ramek do wysłania (dostęp synchronizowany na kolejce) */
+  private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+  /** True dopóki kolejkę wysyła wątek zapisu (tryb blokujący) */
+  private volatile boolean threadedWrite;
+  /** Zakończenie wątku zapisu */
+  private final CountDownLatch writerDone = new CountDownLatch(1);
+  /** Adres klienta (zapamiętany, bo po zamknięciu kanału nie jest dostępny) */
+  private final InetAddress address;
+  /** Pokój, do którego dołączył klient */
+  private volatile Room room;
+  /** Numer klienta w pokoju (0-1) */
+  private volatile int clientNumber;
+  /** Ranking gracza podany przy dołączeniu */
+  private volatile int rating = IConf.DEFAULT_RATING;
+  /** Pokój obserwowany przez klienta (widza) */
+  private volatile Room watching;
+  /** Limit ramek w kolejce zapisu (widz, 0 - bez limitu) */
+  private volatile int queueLimit;
+  /** Token sesji gracza */
+  private volatile String session;
+  /** True jeżeli gracz zakończył grę (komenda EXIT lub niedozwolony ruch - bez powrotu do gry) */
+  private volatile boolean exited;
+  /** True jeżeli połączenie zostało zamknięte */
+  private volatile boolean closed;
+  /** Czas ostatniego wysłania danych (ms) */
+  private volatile long lastSendTime = Heartbeat.now();
+  /** Czas ostatniego odebrania danych (ms) */
+  private volatile long lastReceiveTime = Heartbeat.now();
+  /** Ostatnio zmierzony czas odpowiedzi klienta (mikrosekundy, -1 - brak pomiaru) */
+  private volatile int rtt = -1;
+
+
+  /**
+   * Konstruktor
+   * @param channel Kanał klienta
+   * @param server Referencja do obiektu głównego serwera
+   * @param loop Pętla zdarzeń obsługująca połączenie lub null (tryb blokujący)
+   */
+  public ClientConnection(SocketChannel channel, Server server, SelectorLoop loop)  {
+
+    this.server = server;
+    this.metrics = server.getMetrics();
+    this.channel = channel;
+    this.loop = loop;
+    this.address = channel.socket().getInetAddress();
+
+  }
+
+
+  /**
+   * Wysłanie komendy do klienta. Dane, których nie udało się od razu zapisać
+   * do kanału, wysyła pętla zdarzeń.
+   * @param command Komenda
+   * @throws IOException Błąd zapisu
+   */
+  public void send(Command command) throws IOException {
+
+	ByteBuffer frame = CommandCodec.toFrame(command);
+	boolean pending;
+
+	metrics.framesOut(frame);
+
+	synchronized (writeQueue) {
+	  if (closed) throw new IOException("Connection closed");
+	  writeQueue.add(frame);
+	  pending = threadedWrite ? wakeWriter() : flush();
+	}
+
+	lastSendTime = Heartbeat.now();
+
+	if (pending && loop != null) loop.requestWrite(this);
+
+  }
+
+
+  /**
+   * Wysłanie gotowej ramki (przekazywanej od drugiego gracza). Ramka jest zapisywana
+   * do kanału bezpośrednio z bufora nadawcy, kopiowana jest tylko część, której nie 
+   * udało się od razu zapisać. W razie błędu zamknięcie połączenia.
+   * @param frame Ramka (pozycja bufora nadawcy nie jest zmieniana)
+   */
+  public void sendFrame(ByteBuffer frame) {
+
+	ByteBuffer buf = frame.duplicate();
+	boolean pending = false;
+
+	try {
+	  synchronized (writeQueue) {
+		if (closed) return;
+		metrics.framesOut(frame);
+		if (writeQueue.isEmpty() && !threadedWrite) channel.write(buf);
+		if (buf.hasRemaining()) {
+		  ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+		  copy.put(buf).flip();
+		  writeQueue.add(copy);
+		  pending = threadedWrite ? wakeWriter() : true;
+		}
+	  }
+	} catch (IOException e) {
+	  disconnect();
+	  return;
+	}
+
+	lastSendTime = Heartbeat.now();
+	if (pending && loop != null) loop.requestWrite(this);
+
+  }
+
+
+  /**
+   * Dodanie do kolejki ramki współdzielonej przez wielu odbiorców (bufor nie jest 
+   * kopiowany ani zmieniany). Zapis do kanału - flushShared().
+   * @param frame Ramka
+   * @return False jeżeli kolejka jest pełna (ramka nie została dodana)
+   */
+  protected boolean queueShared(ByteBuffer frame) {
+
+	synchronized (writeQueue) {
+	  if (closed) return true;
+	  if (queueLimit > 0 && writeQueue.size() >= queueLimit) return false;
+	  writeQueue.add(frame.duplicate());
+	  metrics.framesOut(frame);
+	}
+
+	return true;
+
+  }
+
+
+  /**
+   * Zastąpienie zaległych ramek w kolejce jedną ramką (np. migawką planszy dla
+   * widza, który nie nadąża). Częściowo zapisana ramka jest zachowywana.
+   * @param frame Ramka (współdzielona)
+   */
+  protected void replaceQueue(ByteBuffer frame) {
+
+	synchronized (writeQueue) {
+	  if (closed) return;
+	  ByteBuffer head = writeQueue.peek();
+	  writeQueue.clear();
+	  if (head != null && head.position() > 0) writeQueue.add(head);
+	  writeQueue.add(frame.duplicate());
+	  metrics.framesOut(frame);
+	}
+
+  }
+
+
+  /**
+   * Zapis kolejki do kanału bez blokowania, resztę wysyła pętla zdarzeń
+   */
+  protected void flushShared() {
+
+	boolean pending;
+
+	try {
+	  synchronized (writeQueue) {
+		if (closed) return;
+		// wątek zapisu (tryb blokujący) lub kanał jeszcze nie przekazany do pętli,
+		// która zapisze całą kolejkę
+		if (threadedWrite) pending = wakeWriter();
+		else pending = channel.isBlocking() ? !writeQueue.isEmpty() : flush();
+	  }
+	} catch (IOException e) {
+	  disconnect();
+	  return;
+	}
+
+	lastSendTime = Heartbeat.now();
+	if (pending && loop != null) loop.requestWrite(this);
+
+  }
+
+
+  /**
+   * Wysłanie komendy do klienta, w razie błędu zamknięcie połączenia
+   * @param command Komenda
+   */
+  public void sendSafe(Command command) {
+
+	try {
+	  send(command);
+	} catch (IOException e) {
+	  disconnect();
+	}
+
+  }
+
+
+  /**
+   * Zapis kolejki do kanału jednym wywołaniem (gathering write), wołane z blokadą kolejki
+   * @return True jeżeli w kolejce zostały dane
+   * @throws IOException Błąd zapisu
+   */
+  private boolean flush() throws IOException {
+
+	if (writeQueue.isEmpty()) return false;
+
+	if (writeQueue.size() == 1) channel.write(writeQueue.peek());
+	else channel.write(writeQueue.toArray(new ByteBuffer[writeQueue.size()]));
+
+	while (!writeQueue.isEmpty() && !writeQueue.peek().hasRemaining()) writeQueue.poll();
+
+	return !writeQueue.isEmpty();
+
+  }
+
+
+  /**
+   * Powiadomienie wątku zapisu o nowej ramce (wołane z blokadą kolejki)
+   * @return False - kolejkę wysyła wątek zapisu, nie pętla zdarzeń
+   */
+  private boolean wakeWriter() {
+
+	writeQueue.notifyAll();
+	return false;
+
+  }
+
+
+  /**
+   * Wątek zapisu w trybie blokującym: zapis kolejki do kanału bez blokady kolejki
+   * (wysyłający tylko dopisują ramki). Kończy się po zamknięciu połączenia albo
+   * po zatrzymaniu (stopWriter()) i wysłaniu reszty kolejki.
+   * @return Zadanie wątku zapisu
+   */
+  protected Runnable getWriter() {
+
+	threadedWrite = true;
+
+	return new Runnable() {
+	  @Override
+	  public void run() {
+		writeLoop();
+	  }
+	};
+
+  }
+
+
+  private void writeLoop() {
+
+	try {
+
+	  while (true) {
+
+		ByteBuffer[] frames;
+
+		synchronized (writeQueue) {
+		  while (!closed && threadedWrite && writeQueue.isEmpty()) writeQueue.wait();
+		  // po zatrzymaniu wątek dopisuje jeszcze resztę kolejki
+		  if (closed || writeQueue.isEmpty()) return;
+		  frames = writeQueue.toArray(new ByteBuffer[writeQueue.size()]);
+		}
+
+		// kanał blokujący - zapis całości, pozostali dopisują w tym czasie do kolejki
+		channel.write(frames);
+		lastSendTime = Heartbeat.now();
+
+		synchronized (writeQueue) {
+		  while (!writeQueue.isEmpty() && !writeQueue.peek().hasRemaining()) writeQueue.poll();
+		}
+
+	  }
+
+	}
+	catch (IOException | InterruptedException e) {
+	  disconnect();
+	}
+	finally {
+	  writerDone.countDown();
+	}
+
+  }
+
+
+  protected boolean hasPendingWrites() {
+
+	synchronized (writeQueue) {
+	  return !writeQueue.isEmpty();
+	}
+
+  }
+
+
+  /**
+   * Kanał gotowy do zapisu (wątek pętli)
+   */
+  protected void onWritable() {
+
+	try {
+	  synchronized (writeQueue) {
+		if (!flush()) key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+	  }
+	} catch (IOException e) {
+	  disconnect();
+	}
+
+  }
+
+
+  /**
+   * Kanał gotowy do odczytu (wątek pętli): odczyt i obsługa wszystkich
+   * kompletnych ramek. W trybie blokującym czeka na dane.
+   */
+  protected void onReadable() {
+
+	try {
+
+	  if (channel.read(readBuffer) < 0) throw new IOException();
+	  lastReceiveTime = Heartbeat.now();
+	  long received = System.nanoTime();
+
+	  readBuffer.flip();
+
+	  while (readBuffer.hasRemaining()) {
+
+		int pos = readBuffer.position();
+		int length = CommandCodec.readLength(readBuffer);
+		if (length < 0) break;
+
+		// niepełna ramka - powrót do nagłówka
+		if (readBuffer.remaining() < length) {
+		  readBuffer.position(pos);
+		  break;
+		}
+
+		int limit = readBuffer.limit(), end = readBuffer.position() + length;
+		readBuffer.limit(end);
+		byte code = readBuffer.get(readBuffer.position());
+		metrics.frameIn(code, end - pos);
+
+		// wiadomości - przekazanie ramki bez dekodowania
+		if (code == Command.CMD_MESSAGE) {
+		  readBuffer.position(pos);
+		  if (room != null) room.relay(clientNumber, readBuffer);
+		  readBuffer.limit(limit).position(end);
+		  metrics.relayLatency((System.nanoTime() - received) / 1000);
+		  continue;
+		}
+
+		// pozostałe komendy (odpowiedzi serwera, nieznane kody) nie są przekazywane
+		// przeciwnikowi - naruszenie protokołu kończy połączenie
+		if (!isServerCommand(code)) throw new IOException("Unexpected command: " + code);
+
+		Command command = CommandCodec.decode(readBuffer);
+
+		// ruch - sprawdzenie na planszy pokoju i przekazanie otrzymanej ramki
+		if (command.getCommand() == Command.CMD_MOVE) {
+		  readBuffer.position(pos);
+		  move(command);
+		  readBuffer.limit(limit).position(end);
+		  metrics.relayLatency((System.nanoTime() - received) / 1000);
+		  continue;
+		}
+
+		readBuffer.limit(limit).position(end);
+
+		handle(command);
+
+	  }
+
+	  readBuffer.compact();
+
+	  // ramka większa niż bufor - powiększenie
+	  if (!readBuffer.hasRemaining()) {
+		ByteBuffer tmp = ByteBuffer.allocateDirect(Math.min(readBuffer.capacity() * 2,
+				CommandCodec.MAX_HEADER_LENGTH + CommandCodec.MAX_FRAME_LENGTH));
+		readBuffer.flip();
+		tmp.put(readBuffer);
+		readBuffer = tmp;
+	  }
+
+	}
+
+	catch (IOException e) {
+	  // odpowiedź przed zamknięciem przez serwer (np. FULL) musi zostać wysłana
+	  if (threadedWrite) stopWriter();
+	  disconnect();
+	}
+
+  }
+
+
+  /**
+   * Zatrzymanie wątku zapisu (tryb blokujący) i oczekiwanie na wysłanie przez
+   * niego reszty kolejki. Zablokowany zapis przerywa zamknięcie kanału (Heartbeat).
+   * @return False jeżeli oczekiwanie zostało przerwane
+   */
+  private boolean stopWriter() {
+
+	synchronized (writeQueue) {
+	  threadedWrite = false;
+	  writeQueue.notifyAll();
+	}
+
+	try {
+	  writerDone.await();
+	} catch (InterruptedException e) {
+	  return false;
+	}
+
+	return true;
+
+  }
+
+
+  /**
+   * Obsługa połączenia w trybie blokującym (wątek na połączenie). Połączenie widza
+   * jest przekazywane do pętli zdarzeń.
+   */
+  @Override
+  public void run() {
+
+	while (!closed && loop == null) onReadable();
+
+	if (closed) return;
+
+	// zatrzymanie wątku zapisu przed przełączeniem kanału w tryb nieblokujący
+	if (threadedWrite && !stopWriter()) {
+	  disconnect();
+	  return;
+	}
+
+	loop.register(this);
+
+  }
+
+
+  /**
+   * Obsługa komendy od klienta
+   * @param command Komenda
+   * @throws IOException Rozłączenie klienta lub błąd zapisu
+   */
+  private void handle(Command command) throws IOException {
+
+	switch (command.getCommand()) {
+
+	  // dołączenie do pokoju gry
+	  case Command.CMD_JOIN:
+
+		if (command.getCommandData() instanceof JoinRequest)
+		  join((JoinRequest)command.getCommandData());
+		break;
+
+	  // obserwacja pokoju (widz)
+	  case Command.CMD_WATCH:
+
+		if (command.getCommandData() instanceof Integer)
+		  watch((Integer)command.getCommandData());
+		break;
+
+	  // odpowiedź na zapytanie klienta o jego numer
+	  case Command.CMD_NUMBER:
+
+		send(new Command(Command.CMD_NUMBER, clientNumber));
+		break;
+
+	  // odpowiedź na zapytanie klienta o ustawienia gry w pokoju
+	  case Command.CMD_SETTINGS:
+
+		if (room != null) send(new Command(Command.CMD_SETTINGS, room.getSettings()));
+		break;
+
+	  // powrót gracza do gry po utracie połączenia
+	  case Command.CMD_RESUME:
+
+		if (command.getCommandData() instanceof ResumeRequest)
+		  resume((ResumeRequest)command.getCommandData());
+		break;
+
+	  // rozłączenie klienta
+	  case Command.CMD_EXIT:
+
+		exited = true;
+		throw new IOException();
+
+	  // ping klienta - odesłanie znacznika czasu
+	  case Command.CMD_PING:
+
+		if (command.getCommandData() != null) send(new Command(Command.CMD_PONG, command.getCommandData()));
+		break;
+
+	  // odpowiedź na ping serwera - pomiar czasu odpowiedzi
+	  case Command.CMD_PONG:
+
+		if (command.getCommandData() instanceof Integer) {
+		  rtt = Heartbeat.getRtt((Integer)command.getCommandData());
+		  metrics.rtt(rtt);
+		}
+		break;
+
+	  // koniec odbioru wiadomości - odeślij żeby odblokować wątek
+	  case Command.CMD_STOP_MSG:
+
+		send(command);
+		break;
+
+	  // full - nic nie robi
+	  default: break;
+
+	}
+
+  }
+
+
+  /**
+   * Czy komenda jest obsługiwana przez serwer (z pozostałych do drugiego klienta
+   * w pokoju przekazywane są tylko wiadomości)
+   * @param command Kod komendy
+   * @return True jeżeli tak
+   */
+  private static boolean isServerCommand(byte command) {
+
+	switch (command) {
+
+	  case Command.CMD_JOIN:
+	  case Command.CMD_RESUME:
+	  case Command.CMD_SESSION:
+	  case Command.CMD_WATCH:
+	  case Command.CMD_SNAPSHOT:
+	  case Command.CMD_MOVE:
+	  case Command.CMD_RESULT:
+	  case Command.CMD_RATING:
+	  case Command.CMD_NUMBER:
+	  case Command.CMD_SETTINGS:
+	  case Command.CMD_EXIT:
+	  case Command.CMD_STOP_MSG:
+	  case Command.CMD_FULL:
+	  case Command.CMD_PING:
+	  case Command.CMD_PONG: return true;
+
+	  default: return false;
+
+	}
+
+  }
+
+
+  /**
+   * Dołączenie do pokoju (odpowiedź JOIN, a gdy pokój jest pełny - START do obu graczy)
+   * @param request Żądanie klienta
+   * @throws IOException Brak miejsca lub błąd zapisu
+   */
+  private void join(JoinRequest request) throws IOException {
+
+	if (room != null) return;
+
+	Room r = server.joinRoom(this, request);
+
+	if (r == null) {
+	  send(new Command(Command.CMD_FULL));
+	  throw new IOException();
+	}
+
+	send(new Command(Command.CMD_JOIN, r.getId()));
+	send(new Command(Command.CMD_SESSION, session));
+	server.roomJoined(this, r);
+	if (r.start(clientNumber)) {
+	  server.roomStarted(r);
+	  // silnik grający czarnymi zaczyna grę
+	  if (r.hasEngine()) server.engineMove(r);
+	}
+
+  }
+
+
+  /**
+   * Powrót gracza do gry (odpowiedź RESUME i brakujące ruchy, a gdy sesja wygasła - FULL)
+   * @param request Żądanie z tokenem sesji
+   * @throws IOException Brak sesji lub błąd zapisu
+   */
+  private void resume(ResumeRequest request) throws IOException {
+
+	if (room != null || watching != null) return;
+
+	if (server.resumeRoom(this, request) == null) {
+	  send(new Command(Command.CMD_FULL));
+	  throw new IOException();
+	}
+
+  }
+
+
+  /**
+   * Dołączenie widza do pokoju (odpowiedź: migawka planszy, a gdy pokoju nie ma - FULL)
+   * @param id Numer pokoju (JoinRequest.ANY_ROOM - dowolna trwająca gra)
+   * @throws IOException Brak pokoju lub błąd zapisu
+   */
+  private void watch(int id) throws IOException {
+
+	if (room != null || watching != null) return;
+
+	Room r = server.getRoomToWatch(id);
+
+	if (r != null) {
+	  queueLimit = IConf.SPECTATOR_QUEUE_LIMIT;
+	  if (loop == null) loop = server.getSpectatorLoop();
+	  watching = r;
+	}
+
+	if (r == null || !r.watch(this)) {
+	  send(new Command(Command.CMD_FULL));
+	  throw new IOException();
+	}
+
+	server.spectatorJoined(this, r);
+
+  }
+
+
+  /**
+   * Ruch klienta - niedozwolony ruch (np. poza kolejnością) zamyka połączenie,
+   * a tym samym pokój
+   * @param command Komenda MOVE (ramka w buforze odczytu)
+   * @throws IOException Ruch niedozwolony lub błąd zapisu
+   */
+  private void move(Command command) throws IOException {
+
+	if (room == null || !(command.getCommandData() instanceof BoardField)) throw new IOException();
+
+	GameResult result = room.move(clientNumber, (BoardField)command.getCommandData(), readBuffer);
+
+	if (result == null) {
+	  exited = true;
+	  server.illegalMove(this, room);
+	  throw new IOException();
+	}
+
+	if (result != GameResult.CONTINUE) server.roomFinished(room, result);
+	else if (room.hasEngine()) server.engineMove(room);
+
+  }
+
+
+  /**
+   * Zamknięcie połączenia i pokoju klienta
+   */
+  public void disconnect() {
+
+	synchronized (this) {
+	  if (closed) return;
+	  closed = true;
+	}
+
+	// zamknięcie kanału przerywa ew. zablokowany zapis (tryb blokujący)
+	try {
+	  channel.close();
+	} catch (IOException e) {}
+
+	if (key != null) key.cancel();
+
+	synchronized (writeQueue) {
+	  writeQueue.clear();
+	  writeQueue.notifyAll();
+	}
+
+	server.leave(this);
+
+  }
+
+
+  /**
+   * Przypisanie pokoju
+   * @param room Pokój
+   * @param clientNumber Numer klienta w pokoju
+   */
+  protected void setRoom(Room room, int clientNumber) {
+
+	this.clientNumber = clientNumber;
+	this.room = room;
+
+  }
+
+
+  @Override
+  public long getLastSendTime() {
+	return lastSendTime;
+  }
+
+
+  @Override
+  public long getLastReceiveTime() {
+	return lastReceiveTime;
+  }
+
+
+  @Override
+  public void sendPing(Command ping) {
+	sendSafe(ping);
+  }
+
+
+  @Override
+  public void connectionTimeout() {
+	disconnect();
+  }
+
+
+  /**
+   * Ostatnio zmierzony czas odpowiedzi klienta
+   * @return RTT w mikrosekundach lub -1 jeżeli nie zmierzono
+   */
+  public int getRtt() {
+	return rtt;
+  }
+
+
+  protected Room getRoom() {
+	return room;
+  }
+
+
+  protected Room getWatchedRoom() {
+	return watching;
+  }
+
+
+  protected int getRating() {
+	return rating;
+  }
+
+
+  protected void setRating(int rating) {
+	this.rating = rating;
+  }
+
+
+  protected String getSession() {
+	return session;
+  }
+
+
+  protected void setSession(String session) {
+	this.session = session;
+  }
+
+
+  protected boolean isExited() {
+	return exited;
+  }
+
+
+  protected InetAddress getInetAddress() {
+	return address;
+  }
+
+
+  protected SocketChannel getChannel() {
+	return channel;
+  }
+
+
+  protected SelectionKey getKey() {
+	return key;
+  }
+
+
+  protected void setKey(SelectionKey key) {
+	this.key = key;
+  }
+
+
+}
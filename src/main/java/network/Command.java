@@ -4,16 +4,14 @@
  */
 package network;
 
-import java.io.Serializable;
-
 /**
  *
- * Komenda przesyłana pomiędzy serwerem gry i klientem
+ * Komenda przesyłana pomiędzy serwerem gry i klientem (kodowanie - zob. CommandCodec)
  * 
  * @author Maciej Kawecki
  * 
  */
-public class Command implements Serializable {
+public class Command {
     
    /** Komenda: POTWIERDZENIE  */
    public final static byte CMD_OK = 1;
@@ -25,24 +23,39 @@ public class Command implements Serializable {
    public final static byte CMD_PING = 4;
    /** Komenda: ZAKOŃCZ ODBIÓR WIADOMOŚCI */
    public final static byte CMD_STOP_MSG = 5;
+   /** Komenda: ODPOWIEDŹ NA PING (odesłany znacznik czasu) */
+   public final static byte CMD_PONG = 6;
    /** Komenda: RUCH */
    public final static byte CMD_MOVE = 11;
    /** Komenda: WIADOMOŚĆ */
    public final static byte CMD_MESSAGE = 12;       
+   /** Komenda: WYNIK RUCHU (kod GameResult, wysyłany przez serwer po każdym ruchu) */
+   public final static byte CMD_RESULT = 13;
+   /** Komenda: RANKING (nowy ranking gracza, wysyłany przez serwer po grze) */
+   public final static byte CMD_RATING = 14;
+   /** Komenda: SESJA (token do powrotu do gry po utracie połączenia, wysyłany przez serwer) */
+   public final static byte CMD_SESSION = 15;
+   /** Komenda: POWRÓT DO GRY (klient: token i liczba znanych ruchów, odpowiedź: liczba 
+    * ruchów w pokoju, po niej brakujące ruchy i wyniki) */
+   public final static byte CMD_RESUME = 16;
    /** Komenda: USTAWIENIA */
    public final static byte CMD_SETTINGS = 21;
    /** Komenda: DAJ NUMER */
    public final static byte CMD_NUMBER = 22;     
    /** Komenda: KOMPLET GRACZY */
    public final static byte CMD_FULL = 23;
+   /** Komenda: DOŁĄCZ DO POKOJU (odpowiedź: numer pokoju) */
+   public final static byte CMD_JOIN = 24;
+   /** Komenda: OBSERWUJ POKÓJ (widz, odpowiedź: migawka planszy) */
+   public final static byte CMD_WATCH = 25;
+   /** Komenda: MIGAWKA PLANSZY (stan gry w pokoju dla widza) */
+   public final static byte CMD_SNAPSHOT = 26;
     
    /** Komenda */ 
    private final byte command;
    /** Dane związane z komendą */
    private Object commandData;
 
-   private final static long serialVersionUID = 1L;
-
    /**
     * Konstruktor 
     * @param command komenda
@@ -0,0 +1,450 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import game.BoardField;
+import game.BoardFieldState;
+import game.DifficultyLevel;
+import game.RuleSet;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Binarny protokół komunikacji serwera i klienta. Ramka: długość treści (varint),
+ * kod komendy (1 bajt, stałe CMD_*), opcjonalnie typ danych (1 bajt) i dane
+ * (liczby jako varint, tekst w UTF-8). Koder i dekoder są pisane ręcznie, więc
+ * z sieci nie są deserializowane żadne obiekty Javy, a ping zajmuje 2 bajty.
+ * Wersja protokołu jest przesyłana w żądaniu dołączenia do pokoju i powrotu do gry.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public final class CommandCodec {
+
+  /** Wersja protokołu */
+  public final static int PROTOCOL_VERSION = 5;
+  /** Maksymalna długość nagłówka ramki (varint) */
+  public final static int MAX_HEADER_LENGTH = 5;
+  /** Maksymalna długość treści ramki (dłuższa oznacza błąd protokołu) */
+  public final static int MAX_FRAME_LENGTH = 64 * 1024;
+
+  /** Typy danych komendy */
+  private final static byte DATA_INT = 1, DATA_STRING = 2, DATA_FIELD = 3,
+		  DATA_SETTINGS = 4, DATA_JOIN = 5, DATA_SNAPSHOT = 6, DATA_RESUME = 7;
+
+
+  private CommandCodec() {}
+
+
+  /**
+   * Ramka gotowa do zapisu do kanału
+   * @param command Komenda
+   * @return Bufor z nagłówkiem i treścią ramki
+   * @throws IOException Nieobsługiwane dane komendy lub ramka za długa
+   */
+  public static ByteBuffer toFrame(Command command) throws IOException {
+
+	Object data = command.getCommandData();
+	byte[] text = data instanceof String ? ((String)data).getBytes(StandardCharsets.UTF_8) : null;
+
+	int length = 1 + (data == null ? 0 : 1 + getDataLength(data, text));
+	if (length > MAX_FRAME_LENGTH) throw new IOException("Frame too long: " + length);
+
+	ByteBuffer buf = ByteBuffer.allocate(getVarIntLength(length) + length);
+	putVarInt(buf, length);
+	buf.put(command.getCommand());
+	if (data != null) putData(buf, data, text);
+
+	buf.flip();
+	return buf;
+
+  }
+
+
+  /**
+   * Odczyt nagłówka ramki. Jeżeli nagłówek jest niepełny, pozycja bufora
+   * nie jest zmieniana.
+   * @param buf Bufor
+   * @return Długość treści ramki lub -1 jeżeli nagłówek jest niepełny
+   * @throws IOException Nieprawidłowa długość ramki
+   */
+  public static int readLength(ByteBuffer buf) throws IOException {
+
+	int pos = buf.position();
+	int length = 0;
+
+	for (int i=0; i<MAX_HEADER_LENGTH; i++) {
+
+	  if (!buf.hasRemaining()) {
+		buf.position(pos);
+		return -1;
+	  }
+
+	  int b = buf.get();
+	  length |= (b & 0x7f) << (7*i);
+
+	  if ((b & 0x80) == 0) {
+		if (length <= 0 || length > MAX_FRAME_LENGTH) throw new IOException("Invalid frame length: " + length);
+		return length;
+	  }
+
+	}
+
+	throw new IOException("Invalid frame header");
+
+  }
+
+
+  /**
+   * Dekodowanie treści ramki - od pozycji do limitu bufora
+   * @param buf Bufor
+   * @return Komenda
+   * @throws IOException Nieprawidłowa treść ramki
+   */
+  public static Command decode(ByteBuffer buf) throws IOException {
+
+	try {
+
+	  byte code = buf.get();
+	  if (!buf.hasRemaining()) return new Command(code);
+
+	  Object data;
+	  byte type = buf.get();
+
+	  switch (type) {
+
+		case DATA_INT: data = getSignedVarInt(buf); break;
+		case DATA_STRING: data = getString(buf); break;
+		case DATA_FIELD: data = getField(buf); break;
+		case DATA_SETTINGS: data = getSettings(buf); break;
+		case DATA_JOIN: data = getJoinRequest(buf); break;
+		case DATA_SNAPSHOT: data = getSnapshot(buf); break;
+		case DATA_RESUME: data = getResumeRequest(buf); break;
+		default: throw new IOException("Unknown data type: " + type);
+
+	  }
+
+	  if (buf.hasRemaining()) throw new IOException("Trailing bytes in frame");
+
+	  return new Command(code, data);
+
+	}
+
+	catch (BufferUnderflowException e) {
+	  throw new IOException("Truncated frame");
+	}
+
+  }
+
+
+  /**
+   * Zapis ramki do strumienia (strona klienta)
+   * @param out Strumień wyjściowy
+   * @param command Komenda
+   * @throws IOException Błąd zapisu
+   */
+  public static void write(OutputStream out, Command command) throws IOException {
+
+	ByteBuffer frame = toFrame(command);
+	out.write(frame.array(), 0, frame.limit());
+	out.flush();
+
+  }
+
+
+  /**
+   * Odczyt ramki ze strumienia (strona klienta)
+   * @param in Strumień wejściowy
+   * @return Komenda
+   * @throws IOException Błąd odczytu lub nieprawidłowa ramka
+   */
+  public static Command read(DataInputStream in) throws IOException {
+
+	byte[] header = new byte[MAX_HEADER_LENGTH];
+	int length = -1;
+
+	for (int i=0; i<MAX_HEADER_LENGTH && length < 0; i++) {
+	  header[i] = in.readByte();
+	  length = readLength(ByteBuffer.wrap(header, 0, i+1));
+	}
+
+	if (length < 0) throw new IOException("Invalid frame header");
+
+	byte[] data = new byte[length];
+	in.readFully(data);
+	return decode(ByteBuffer.wrap(data));
+
+  }
+
+
+  /**
+   * Długość zakodowanych danych komendy (bez bajtu typu)
+   * @param data Dane
+   * @param text Tekst w UTF-8 (jeżeli dane są tekstem)
+   * @return Długość w bajtach
+   * @throws IOException Nieobsługiwany typ danych
+   */
+  private static int getDataLength(Object data, byte[] text) throws IOException {
+
+	if (data instanceof Integer) return getVarIntLength(zigZag((Integer)data));
+	if (text != null) return getVarIntLength(text.length) + text.length;
+	if (data instanceof BoardField) {
+	  BoardField f = (BoardField)data;
+	  return getVarIntLength(f.getA()) + getVarIntLength(f.getB()) + 1;
+	}
+	if (data instanceof SettingsVar) return getSettingsLength((SettingsVar)data);
+	if (data instanceof JoinRequest) {
+	  JoinRequest r = (JoinRequest)data;
+	  int length = r.getToken() == null ? 0 : r.getToken().getBytes(StandardCharsets.UTF_8).length;
+	  return getVarIntLength(PROTOCOL_VERSION) + getVarIntLength(zigZag(r.getRoom())) + 1
+			  + (r.getSettings() == null ? 0 : getSettingsLength(r.getSettings())) + getVarIntLength(length) + length
+			  + getVarIntLength(r.getEngine() == null ? 0 : r.getEngine().getCode()) + 1;
+	}
+	if (data instanceof ResumeRequest) {
+	  ResumeRequest r = (ResumeRequest)data;
+	  int length = r.getToken().getBytes(StandardCharsets.UTF_8).length;
+	  return getVarIntLength(PROTOCOL_VERSION) + getVarIntLength(length) + length + getVarIntLength(r.getMovesAmount());
+	}
+	if (data instanceof RoomSnapshot) {
+	  RoomSnapshot r = (RoomSnapshot)data;
+	  return getVarIntLength(r.getRoom()) + getSettingsLength(r.getSettings()) + getVarIntLength(r.getMovesAmount())
+			  + getVarIntLength(r.getResult().getCode()) + r.getCells().length;
+	}
+
+	throw new IOException("Unsupported command data: " + data.getClass().getName());
+
+  }
+
+
+  private static void putData(ByteBuffer buf, Object data, byte[] text) {
+
+	if (data instanceof Integer) {
+	  buf.put(DATA_INT);
+	  putVarInt(buf, zigZag((Integer)data));
+	}
+	else if (text != null) {
+	  buf.put(DATA_STRING);
+	  putVarInt(buf, text.length);
+	  buf.put(text);
+	}
+	else if (data instanceof BoardField) {
+	  BoardField f = (BoardField)data;
+	  buf.put(DATA_FIELD);
+	  putVarInt(buf, f.getA());
+	  putVarInt(buf, f.getB());
+	  buf.put((byte)(f.getState() == null ? BoardFieldState.EMPTY : f.getState()).ordinal());
+	}
+	else if (data instanceof SettingsVar) {
+	  buf.put(DATA_SETTINGS);
+	  putSettings(buf, (SettingsVar)data);
+	}
+	else if (data instanceof ResumeRequest) {
+	  ResumeRequest r = (ResumeRequest)data;
+	  byte[] token = r.getToken().getBytes(StandardCharsets.UTF_8);
+	  buf.put(DATA_RESUME);
+	  putVarInt(buf, PROTOCOL_VERSION);
+	  putVarInt(buf, token.length);
+	  buf.put(token);
+	  putVarInt(buf, r.getMovesAmount());
+	}
+	else if (data instanceof RoomSnapshot) {
+	  RoomSnapshot r = (RoomSnapshot)data;
+	  buf.put(DATA_SNAPSHOT);
+	  putVarInt(buf, r.getRoom());
+	  putSettings(buf, r.getSettings());
+	  putVarInt(buf, r.getMovesAmount());
+	  putVarInt(buf, r.getResult().getCode());
+	  buf.put(r.getCells());
+	}
+	else {
+	  JoinRequest r = (JoinRequest)data;
+	  byte[] token = r.getToken() == null ? new byte[0] : r.getToken().getBytes(StandardCharsets.UTF_8);
+	  buf.put(DATA_JOIN);
+	  putVarInt(buf, PROTOCOL_VERSION);
+	  putVarInt(buf, zigZag(r.getRoom()));
+	  buf.put((byte)(r.getSettings() == null ? 0 : 1));
+	  if (r.getSettings() != null) putSettings(buf, r.getSettings());
+	  putVarInt(buf, token.length);
+	  buf.put(token);
+	  putVarInt(buf, r.getEngine() == null ? 0 : r.getEngine().getCode());
+	  buf.put((byte)(r.isEngineStarts() ? 1 : 0));
+	}
+
+  }
+
+
+  static int getSettingsLength(SettingsVar settings) {
+
+	Settings s = new Settings(settings);
+	return getVarIntLength(s.getColsAndRows()) + getVarIntLength(s.getPiecesInRow())
+			+ getVarIntLength(s.getRuleSet().getCode());
+
+  }
+
+
+  static void putSettings(ByteBuffer buf, SettingsVar settings) {
+
+	Settings s = new Settings(settings);
+	putVarInt(buf, s.getColsAndRows());
+	putVarInt(buf, s.getPiecesInRow());
+	putVarInt(buf, s.getRuleSet().getCode());
+
+  }
+
+
+  static SettingsVar getSettings(ByteBuffer buf) throws IOException {
+
+	int colsAndRows = getNonNegativeVarInt(buf);
+	int piecesInRow = getNonNegativeVarInt(buf);
+	RuleSet ruleSet = RuleSet.get(getNonNegativeVarInt(buf));
+
+	return new SettingsVar(colsAndRows, piecesInRow, ruleSet != null ? ruleSet : RuleSet.DEFAULT);
+
+  }
+
+
+  private static BoardField getField(ByteBuffer buf) throws IOException {
+
+	int a = getNonNegativeVarInt(buf), b = getNonNegativeVarInt(buf);
+	int state = buf.get();
+	if (state < 0 || state >= BoardFieldState.values().length) throw new IOException("Invalid field state");
+
+	return new BoardField(a, b, BoardFieldState.values()[state]);
+
+  }
+
+
+  private static JoinRequest getJoinRequest(ByteBuffer buf) throws IOException {
+
+	int version = getNonNegativeVarInt(buf);
+	if (version != PROTOCOL_VERSION) throw new IOException("Unsupported protocol version: " + version);
+
+	int room = getSignedVarInt(buf);
+	SettingsVar settings = buf.get() != 0 ? getSettings(buf) : null;
+	// pusty token - nowy gracz
+	String token = getString(buf);
+	int code = getNonNegativeVarInt(buf);
+	DifficultyLevel engine = code == 0 ? null : DifficultyLevel.get(code);
+	if (code != 0 && engine == null) throw new IOException("Invalid engine level");
+
+	return new JoinRequest(room, settings, token.isEmpty() ? null : token, engine, buf.get() != 0);
+
+  }
+
+
+  private static ResumeRequest getResumeRequest(ByteBuffer buf) throws IOException {
+
+	int version = getNonNegativeVarInt(buf);
+	if (version != PROTOCOL_VERSION) throw new IOException("Unsupported protocol version: " + version);
+
+	String token = getString(buf);
+	return new ResumeRequest(token, getNonNegativeVarInt(buf));
+
+  }
+
+
+  private static RoomSnapshot getSnapshot(ByteBuffer buf) throws IOException {
+
+	int room = getNonNegativeVarInt(buf);
+	SettingsVar settings = getSettings(buf);
+	int movesAmount = getNonNegativeVarInt(buf);
+	GameResult result = GameResult.get(getNonNegativeVarInt(buf));
+	if (result == null) throw new IOException("Invalid game result");
+
+	int length = RoomSnapshot.getCellsLength(new Settings(settings).getColsAndRows());
+	if (length != buf.remaining()) throw new IOException("Invalid snapshot length");
+
+	byte[] cells = new byte[length];
+	buf.get(cells);
+	return new RoomSnapshot(room, settings, movesAmount, result, cells);
+
+  }
+
+
+  private static String getString(ByteBuffer buf) throws IOException {
+
+	int length = getNonNegativeVarInt(buf);
+	if (length > buf.remaining()) throw new IOException("Invalid string length");
+
+	byte[] text = new byte[length];
+	buf.get(text);
+	return new String(text, StandardCharsets.UTF_8);
+
+  }
+
+
+  /**
+   * Zapis liczby nieujemnej (7 bitów na bajt, najstarszy bit - kontynuacja)
+   * @param buf Bufor
+   * @param value Liczba
+   */
+  static void putVarInt(ByteBuffer buf, int value) {
+
+	while ((value & ~0x7f) != 0) {
+	  buf.put((byte)((value & 0x7f) | 0x80));
+	  value >>>= 7;
+	}
+	buf.put((byte)value);
+
+  }
+
+
+  private static int getVarInt(ByteBuffer buf) throws IOException {
+
+	int value = 0;
+
+	for (int i=0; i<MAX_HEADER_LENGTH; i++) {
+	  int b = buf.get();
+	  value |= (b & 0x7f) << (7*i);
+	  if ((b & 0x80) == 0) return value;
+	}
+
+	throw new IOException("Invalid varint");
+
+  }
+
+
+  static int getNonNegativeVarInt(ByteBuffer buf) throws IOException {
+
+	int v = getVarInt(buf);
+	if (v < 0) throw new IOException("Invalid value: " + v);
+	return v;
+
+  }
+
+
+  private static int getSignedVarInt(ByteBuffer buf) throws IOException {
+
+	int v = getVarInt(buf);
+	return (v >>> 1) ^ -(v & 1);
+
+  }
+
+
+  private static int zigZag(int value) {
+
+	return (value << 1) ^ (value >> 31);
+
+  }
+
+
+  static int getVarIntLength(int value) {
+
+	int n = 1;
+	while ((value & ~0x7f) != 0) { value >>>= 7; n++; }
+	return n;
+
+  }
+
+
+}
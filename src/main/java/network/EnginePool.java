@@ -0,0 +1,104 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Wspólna pula wątków silnika serwera dla wszystkich pokoi, w których przeciwnikiem
+ * jest silnik. Liczba wątków jest stała (mniejsza od liczby procesorów), a ruchy są
+ * wyszukiwane w kolejności zleceń. Pokój ma w kolejce najwyżej jeden ruch (silnik
+ * gra dopiero po ruchu człowieka), więc przy wielu grach pokoje są obsługiwane po
+ * kolei. Czas oczekiwania w kolejce jest odliczany od budżetu ruchu - pod obciążeniem
+ * silnik gra płycej, ale gracz nie czeka dłużej niż budżet.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class EnginePool {
+
+  /** Referencja do obiektu głównego serwera (informacja o rozstrzygnięciu gry) */
+  private final Server server;
+  /** Wątki silnika */
+  private final ExecutorService executor;
+  /** Budżet czasu ruchu (ms) */
+  private final long budgetMs;
+  /** Ruchy czekające w kolejce lub wyszukiwane */
+  private final AtomicInteger pending = new AtomicInteger();
+
+
+  /**
+   * Konstruktor
+   * @param server Referencja do obiektu głównego serwera
+   * @param threads Liczba wątków silnika
+   * @param budgetMs Budżet czasu ruchu (ms, razem z oczekiwaniem w kolejce)
+   */
+  public EnginePool(Server server, int threads, long budgetMs) {
+
+	this.server = server;
+	this.budgetMs = budgetMs;
+
+	executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+	  private final AtomicInteger n = new AtomicInteger();
+	  @Override
+	  public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, "engine-" + n.getAndIncrement());
+		t.setDaemon(true);
+		// pętle zdarzeń mają pierwszeństwo przed wyszukiwaniem ruchów
+		t.setPriority(Thread.NORM_PRIORITY - 1);
+		return t;
+	  }
+	});
+
+  }
+
+
+  /**
+   * Zlecenie ruchu silnika w pokoju (bez efektu, jeżeli to nie jest ruch silnika)
+   * @param room Pokój z silnikiem
+   */
+  public void submit(final Room room) {
+
+	final long queued = Heartbeat.now();
+	pending.incrementAndGet();
+
+	executor.execute(new Runnable() {
+	  @Override
+	  public void run() {
+
+		try {
+		  GameResult result = room.engineMove(budgetMs - (Heartbeat.now() - queued));
+		  if (result != null && result != GameResult.CONTINUE) server.roomFinished(room, result);
+		}
+		catch (IOException e) {
+		  System.err.println(e);
+		}
+		finally {
+		  pending.decrementAndGet();
+		}
+
+	  }
+	});
+
+  }
+
+
+  /**
+   * Liczba ruchów czekających w kolejce lub wyszukiwanych
+   * @return Liczba ruchów
+   */
+  public int getPending() {
+
+	return pending.get();
+
+  }
+
+
+}
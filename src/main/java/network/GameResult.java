@@ -0,0 +1,98 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import game.BoardFieldState;
+import gomoku.Lang;
+
+/**
+ *
+ * Wynik ruchu ustalony przez serwer (dane komendy RESULT)
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public enum GameResult {
+
+   /** Gra toczy się dalej */
+   CONTINUE(0),
+
+   /** Wygrana czarnych */
+   BLACK_WON(1),
+
+   /** Wygrana białych */
+   WHITE_WON(2),
+
+   /** Remis (brak wolnych pól) */
+   DRAW(3);
+
+
+   private final int code;
+
+   public static final GameResult DEFAULT = CONTINUE;
+
+
+   GameResult(int code) {
+	   this.code = code;
+   }
+
+
+   public int getCode() {  return code; }
+
+
+   /**
+    * Czy wynik oznacza wygraną jednego z graczy
+    * @return True jeżeli tak
+    */
+   public boolean isWin() {
+
+	 return this == BLACK_WON || this == WHITE_WON;
+
+   }
+
+
+   /**
+    * Wygrana gracza o wskazanym kolorze
+    * @param color Kolor kamieni zwycięzcy
+    * @return Wynik
+    */
+   public static GameResult won(BoardFieldState color) {
+
+	 return color == BoardFieldState.BLACK ? BLACK_WON : WHITE_WON;
+
+   }
+
+
+   @Override
+   public String toString() {
+
+	 switch (this) {
+
+	   case CONTINUE: return Lang.get("ResultContinue");
+	   case BLACK_WON: return Lang.get("ResultBlackWon");
+	   case WHITE_WON: return Lang.get("ResultWhiteWon");
+	   case DRAW: return Lang.get("ResultDraw");
+
+	 }
+
+	 return DEFAULT.toString();
+
+   }
+
+
+   /**
+    * Metoda zwraca odpowiedni obiekt dla kodu
+    * @param code Kod
+    * @return Wynik lub null jeżeli kod jest nieprawidłowy
+    */
+   public static GameResult get(int code) {
+
+     for(GameResult e : values()) if(e.getCode() == code) return e;
+     return null;
+
+   }
+
+
+}
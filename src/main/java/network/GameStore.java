@@ -0,0 +1,1122 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import game.BoardField;
+import game.BoardFieldState;
+import game.DifficultyLevel;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Zapis gier serwera: dziennik tylko do dopisywania, dzielony na segmenty
+ * (pliki games-NNNNNN.log o ograniczonym rozmiarze). Każdy ruch jest osobnym
+ * rekordem (długość, typ, numer gry i dane jako varint, jak w CommandCodec), więc
+ * zapisane są też gry w toku. Pokoje tylko wstawiają rekord do ograniczonej kolejki
+ * (przy przepełnionej kolejce rekord jest pomijany i liczony, a wątek zapisu dopisuje
+ * rekord uszkodzenia gry - nie jest ona odtwarzana ani eksportowana) - zapis do pliku
+ * wykonuje osobny wątek, partiami przez FileChannel, a dane są utrwalane na dysku
+ * (force) co zadany interwał. Indeks gier (pozycje rekordów wg numeru gry) jest
+ * w pamięci - rekordy są krótsze niż wpisy osobnego pliku indeksu.
+ * Przy zmianie segmentu zapisywany jest punkt kontrolny (plik checkpoint): zakresy
+ * numerów gier w zamkniętych segmentach i pozycje rekordów gier w toku. Przy otwarciu
+ * przeglądane są tylko segmenty od punktu kontrolnego (gry w toku są odtwarzane
+ * z zapisu po awarii serwera), a starsze segmenty dopiero przy odczycie zapisanej
+ * w nich gry. Niepełny rekord na końcu ostatniego segmentu (awaria w trakcie zapisu)
+ * jest obcinany.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class GameStore {
+
+  /** Przedrostek nazwy pliku segmentu */
+  private final static String PREFIX = "games-";
+  /** Rozszerzenie pliku segmentu */
+  private final static String SUFFIX = ".log";
+  /** Nagłówek pliku segmentu ("GMK" i wersja formatu) */
+  private final static int MAGIC = 0x474d4b02;
+  /** Nazwa pliku punktu kontrolnego */
+  private final static String CHECKPOINT = "checkpoint";
+  /** Nagłówek pliku punktu kontrolnego ("GMKC") */
+  private final static int CHECKPOINT_MAGIC = 0x474d4b43;
+  /** Długość nagłówka segmentu */
+  private final static int HEADER_LENGTH = 4;
+  /** Typy rekordów: rozpoczęcie gry, ruch, koniec gry, sesja gracza, pominięty rekord gry */
+  private final static byte REC_START = 1, REC_MOVE = 2, REC_END = 3, REC_SESSION = 4, REC_DAMAGED = 5;
+  /** Maksymalna długość rekordu z nagłówkiem */
+  private final static int MAX_RECORD_LENGTH = 64;
+  /** Rozmiar bufora partii zapisu i odczytu segmentu */
+  private final static int BUFFER_SIZE = 256 * 1024;
+  /** Minimalny rozmiar segmentu */
+  public final static int MIN_SEGMENT_SIZE = 64 * 1024;
+
+  /** Rekord czekający na zapis */
+  private static class Record {
+
+	/** Typ rekordu */
+	private final byte type;
+	/** Numer gry */
+	private final int game;
+	/** Dane: pole ruchu (a, b, kolor), kod wyniku (a), poziom i miejsce silnika
+	 * oraz numer pokoju (a, b, c) lub miejsce i ranking gracza (a, b) */
+	private final int a, b, c;
+	/** Ustawienia gry (rozpoczęcie gry) */
+	private final SettingsVar settings;
+	/** Token sesji gracza */
+	private final String token;
+	/** Czas (ms) */
+	private final long time;
+	/** Pozycja rekordu w dzienniku (ustalana przez wątek zapisu) */
+	private long position;
+
+	private Record(byte type, int game, int a, int b, int c, SettingsVar settings) {
+	  this(type, game, a, b, c, settings, null);
+	}
+
+	private Record(byte type, int game, int a, int b, int c, SettingsVar settings, String token) {
+	  this.type = type;
+	  this.game = game;
+	  this.a = a;
+	  this.b = b;
+	  this.c = c;
+	  this.settings = settings;
+	  this.token = token;
+	  this.time = type == REC_START ? System.currentTimeMillis() : 0;
+	}
+
+  }
+
+  /** Pozycje rekordów gry (numer segmentu na starszych 32 bitach, przesunięcie na młodszych) */
+  private static class Positions {
+
+	private long[] items = new long[8];
+	private int size;
+
+	private void add(long position) {
+	  if (size == items.length) items = Arrays.copyOf(items, size * 2);
+	  items[size++] = position;
+	}
+
+  }
+
+  /** Znacznik w kolejce - zwalniany po zapisie rekordów wstawionych przed nim */
+  private static class Marker extends Record {
+
+	private final CountDownLatch written = new CountDownLatch(1);
+
+	private Marker() {
+	  super((byte)0, 0, 0, 0, 0, null);
+	}
+
+  }
+
+  /** Rekord kończący pracę wątku zapisu */
+  private final static Record END = new Record((byte)0, 0, 0, 0, 0, null);
+
+  /** Katalog segmentów */
+  private final File dir;
+  /** Maksymalny rozmiar segmentu (bajty) */
+  private final int segmentSize;
+  /** Interwał utrwalania danych na dysku (ms, 0 - po każdej partii) */
+  private final long syncMs;
+  /** Rekordy czekające na zapis */
+  private final BlockingQueue<Record> queue;
+  /** Numer kolejnej gry */
+  private final AtomicInteger nextId = new AtomicInteger(1);
+  /** Pozycje zapisanych rekordów wg numeru gry */
+  private final Map<Integer, Positions> index = new HashMap<>();
+  /** Gry w toku (bez rekordu końca) */
+  private final Set<Integer> open = new HashSet<>();
+  /** Zakresy numerów gier w segmentach (najmniejszy i największy numer wg numeru segmentu) */
+  private final Map<Integer, int[]> ranges = new TreeMap<>();
+  /** Segmenty sprzed punktu kontrolnego, których rekordy nie są jeszcze w indeksie */
+  private final Set<Integer> unscanned = new HashSet<>();
+  /** Gry w toku w chwili punktu kontrolnego (pozycje ich rekordów są w indeksie) */
+  private final Set<Integer> checkpointOpen = new HashSet<>();
+  /** Blokada odczytu segmentów sprzed punktu kontrolnego */
+  private final Object loadLock = new Object();
+  /** Kanały odczytu segmentów */
+  private final Map<Integer, FileChannel> readers = new HashMap<>();
+  /** Liczba zapisanych rekordów */
+  private final AtomicLong written = new AtomicLong();
+  /** Liczba pominiętych rekordów (przepełniona kolejka) */
+  private final AtomicLong dropped = new AtomicLong();
+  /** Gry z pominiętym rekordem, dla których wątek zapisu ma zapisać rekord uszkodzenia */
+  private final Set<Integer> damaged = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+  /** Liczba zapisanych bajtów */
+  private final AtomicLong bytes = new AtomicLong();
+  /** Liczba utrwaleń danych na dysku */
+  private final AtomicLong syncs = new AtomicLong();
+  /** Wątek zapisu (null - odczyt bez zapisu) */
+  private final Thread writer;
+  /** Numer bieżącego segmentu (wątek zapisu) */
+  private volatile int segment;
+  /** Kanał zapisu bieżącego segmentu (wątek zapisu) */
+  private FileChannel channel;
+  /** Pozycja zapisu w bieżącym segmencie (wątek zapisu) */
+  private long position;
+
+
+  /**
+   * Konstruktor - odczyt punktu kontrolnego, odtworzenie indeksu z segmentów za nim
+   * i uruchomienie wątku zapisu
+   * @param dir Katalog segmentów (tworzony, jeżeli nie istnieje)
+   * @param segmentSize Maksymalny rozmiar segmentu (bajty)
+   * @param syncMs Interwał utrwalania danych na dysku (ms, 0 - po każdej partii)
+   * @param capacity Maksymalna liczba rekordów czekających na zapis
+   * @throws IOException Nie można utworzyć katalogu lub odczytać segmentów
+   */
+  public GameStore(File dir, int segmentSize, long syncMs, int capacity) throws IOException {
+
+	this(dir, segmentSize, syncMs, capacity, false);
+
+  }
+
+
+  /**
+   * Konstruktor
+   * @param dir Katalog segmentów
+   * @param segmentSize Maksymalny rozmiar segmentu (bajty)
+   * @param syncMs Interwał utrwalania danych na dysku (ms, 0 - po każdej partii)
+   * @param capacity Maksymalna liczba rekordów czekających na zapis
+   * @param readOnly True - odczyt bez zapisu (zob. {@link #openReadOnly(File)})
+   * @throws IOException Nie można utworzyć katalogu lub odczytać segmentów
+   */
+  private GameStore(File dir, int segmentSize, long syncMs, int capacity, boolean readOnly) throws IOException {
+
+	this.dir = dir;
+	this.segmentSize = Math.max(segmentSize, MIN_SEGMENT_SIZE);
+	this.syncMs = syncMs;
+	queue = new ArrayBlockingQueue<>(capacity);
+
+	if (readOnly && !dir.isDirectory()) throw new IOException("Not a directory: " + dir);
+	if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create directory: " + dir);
+
+	List<Integer> segments = getSegments();
+	int from = readCheckpoint(segments);
+	
+	for (int i=0; i<segments.size(); i++) {
+	  int n = segments.get(i);
+	  if (n < from) unscanned.add(n);
+	  else recover(n, i == segments.size() - 1, readOnly);
+	}
+
+	if (readOnly) {
+	  segment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+	  writer = null;
+	  return;
+	}
+
+	if (segments.isEmpty()) openSegment(1);
+	else {
+	  segment = segments.get(segments.size() - 1);
+	  channel = FileChannel.open(getFile(segment).toPath(), StandardOpenOption.WRITE);
+	  position = channel.size();
+	  channel.position(position);
+	  if (position + MAX_RECORD_LENGTH > this.segmentSize) roll();
+	}
+
+	writer = new Thread("game-store") {
+	  @Override
+	  public void run() {
+		write();
+	  }
+	};
+	writer.setDaemon(true);
+	writer.start();
+
+  }
+
+
+  /**
+   * Otwarcie zapisu gier tylko do odczytu (np. budowa bazy pozycji z zapisu gier
+   * serwera): bez wątku zapisu, tworzenia segmentów i obcinania niepełnego rekordu
+   * na końcu ostatniego segmentu (jest pomijany). Zapisywane rekordy są pomijane.
+   * @param dir Katalog segmentów
+   * @return Zapis gier
+   * @throws IOException Brak katalogu lub błąd odczytu segmentów
+   */
+  public static GameStore openReadOnly(File dir) throws IOException {
+
+	return new GameStore(dir, MIN_SEGMENT_SIZE, 0, 1, true);
+
+  }
+
+
+  /**
+   * Rozpoczęcie gry (bez czekania na zapis)
+   * @param room Numer pokoju
+   * @param settings Ustawienia gry
+   * @param engine Poziom silnika serwera lub null
+   * @param engineSeat Nr gracza, którego miejsce zajmuje silnik lub -1
+   * @return Numer gry
+   */
+  public int gameStarted(int room, SettingsVar settings, DifficultyLevel engine, int engineSeat) {
+
+	int id = nextId.getAndIncrement();
+	add(new Record(REC_START, id, engine == null ? 0 : engine.getCode(), engineSeat + 1, room, settings));
+	return id;
+
+  }
+
+
+  /**
+   * Sesja gracza w grze - token i ranking do powrotu gracza po restarcie serwera
+   * (bez czekania na zapis)
+   * @param game Numer gry
+   * @param seat Nr gracza
+   * @param token Token sesji
+   * @param rating Ranking gracza
+   */
+  public void session(int game, int seat, String token, int rating) {
+
+	add(new Record(REC_SESSION, game, seat, rating, 0, null, token));
+
+  }
+
+
+  /**
+   * Ruch w grze (bez czekania na zapis)
+   * @param game Numer gry
+   * @param move Ruch
+   */
+  public void move(int game, BoardField move) {
+
+	add(new Record(REC_MOVE, game, move.getA(), move.getB(), move.getState().ordinal(), null));
+
+  }
+
+
+  /**
+   * Koniec gry (bez czekania na zapis)
+   * @param game Numer gry
+   * @param result Wynik (CONTINUE - pokój zamknięty bez wyniku)
+   */
+  public void gameFinished(int game, GameResult result) {
+
+	add(new Record(REC_END, game, result.getCode(), 0, 0, null));
+
+  }
+
+
+  private void add(Record record) {
+
+	if (writer != null && queue.offer(record)) return;
+
+	dropped.incrementAndGet();
+	// luka w rekordach gry - gra nie może być odtworzona
+	if (writer != null) damaged.add(record.game);
+
+  }
+
+
+  /**
+   * Odczyt zapisanej gry
+   * @param id Numer gry
+   * @return Gra (zob. {@link StoredGame#isDamaged()}) lub null jeżeli nie ma jej w zapisie
+   * (albo pominięto rekord jej rozpoczęcia)
+   * @throws IOException Błąd odczytu lub nieprawidłowy rekord
+   */
+  public StoredGame getGame(int id) throws IOException {
+
+	load(id);
+	long[] positions;
+
+	synchronized (index) {
+	  Positions p = index.get(id);
+	  if (p == null) return null;
+	  positions = Arrays.copyOf(p.items, p.size);
+	}
+
+	// segmenty sprzed punktu kontrolnego mogły zostać wczytane w innej kolejności
+	Arrays.sort(positions);
+
+	StoredGame game = null;
+	boolean damaged = false, missingStart = false;
+	ByteBuffer buf = ByteBuffer.allocate(MAX_RECORD_LENGTH);
+
+	for (long pos : positions) {
+
+	  buf.clear();
+	  FileChannel ch = getReader((int)(pos >>> 32));
+	  while (buf.hasRemaining() && ch.read(buf, (int)pos + buf.position()) > 0);
+	  buf.flip();
+
+	  int length = CommandCodec.readLength(buf);
+	  if (length < 0 || length > buf.remaining()) throw new IOException("Invalid record at " + pos);
+	  buf.limit(buf.position() + length);
+
+	  byte type = buf.get();
+	  CommandCodec.getNonNegativeVarInt(buf);
+
+	  if (type == REC_DAMAGED) damaged = true;
+	  else if (type == REC_START) game = getStart(buf, id);
+	  else if (game == null) missingStart = true;
+	  else if (type == REC_MOVE) game.addMove(getMove(buf));
+	  else if (type == REC_END) game.setResult(GameResult.get(CommandCodec.getNonNegativeVarInt(buf)));
+	  else if (type == REC_SESSION) getSession(buf, game);
+
+	}
+
+	if (!damaged) {
+	  if (missingStart) throw new IOException("Missing game start: " + id);
+	  return game;
+	}
+
+	if (game != null) game.setDamaged();
+	return missingStart ? null : game;
+
+  }
+
+
+  /**
+   * Gry w toku - rozpoczęte, ale bez rekordu końca (do odtworzenia pokoi po awarii
+   * lub restarcie serwera). Rekordy czekające jeszcze w kolejce nie są uwzględniane.
+   * @return Gry w kolejności numerów (bez gier z pominiętym rekordem)
+   * @throws IOException Błąd odczytu lub nieprawidłowy rekord
+   */
+  public List<StoredGame> getOpenGames() throws IOException {
+
+	List<Integer> ids;
+	synchronized (index) {
+	  ids = new ArrayList<>(open);
+	}
+
+	Collections.sort(ids);
+	List<StoredGame> games = new ArrayList<>();
+
+	for (int id : ids) {
+	  StoredGame game = getGame(id);
+	  if (game != null && !game.isFinished() && !game.isDamaged()) games.add(game);
+	}
+
+	return games;
+
+  }
+
+
+  /**
+   * Liczba gier (przydzielonych numerów gier)
+   * @return Liczba gier
+   */
+  public int getGamesCount() {
+
+	return nextId.get() - 1;
+
+  }
+
+
+  /**
+   * Oczekiwanie na zapis rekordów wstawionych do kolejki przed wywołaniem (np. końców
+   * gier przed odtworzeniem gier w toku)
+   * @param timeoutMs Maksymalny czas oczekiwania (ms)
+   * @return False jeżeli rekordy nie zostały zapisane w tym czasie (lub wątek zapisu
+   * nie działa)
+   * @throws InterruptedException Przerwano oczekiwanie
+   */
+  public boolean awaitWritten(long timeoutMs) throws InterruptedException {
+
+	if (writer == null || !writer.isAlive()) return false;
+
+	Marker marker = new Marker();
+	long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+	return queue.offer(marker, timeoutMs, TimeUnit.MILLISECONDS)
+			&& marker.written.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+  }
+
+
+  /**
+   * Zapis pozostałych rekordów, utrwalenie na dysku i zatrzymanie wątku zapisu
+   * (bez czekania, jeżeli wątek zapisu zakończył się po błędzie - kolejka nie będzie opróżniona)
+   */
+  public void close() {
+
+	try {
+	  if (writer != null && writer.isAlive() && queue.offer(END, 5000, TimeUnit.MILLISECONDS)) writer.join(5000);
+	} catch (InterruptedException e) {}
+
+	synchronized (readers) {
+	  for (FileChannel ch : readers.values())
+		try {
+		  ch.close();
+		} catch (IOException e) {}
+	  readers.clear();
+	}
+
+  }
+
+
+  public long getWritten() {
+	return written.get();
+  }
+
+
+  public long getDropped() {
+	return dropped.get();
+  }
+
+
+  public long getBytes() {
+	return bytes.get();
+  }
+
+
+  public long getSyncs() {
+	return syncs.get();
+  }
+
+
+  public int getQueued() {
+	return queue.size();
+  }
+
+
+  public int getSegment() {
+	return segment;
+  }
+
+
+  public File getDir() {
+	return dir;
+  }
+
+
+  /**
+   * Pętla wątku zapisu: pobranie partii rekordów, zakodowanie ich w buforze
+   * i zapis do kanału, dopisanie pozycji do indeksu, okresowe utrwalenie danych
+   */
+  private void write() {
+
+	ByteBuffer batch = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	List<Record> records = new ArrayList<>();
+	long lastSync = Heartbeat.now();
+	boolean dirty = false, end = false;
+
+	try {
+
+	  while (!end) {
+
+		Record first = queue.poll(syncMs > 0 ? syncMs : Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+		if (first != null) {
+		  records.add(first);
+		  queue.drainTo(records);
+		}
+
+		// rekordy uszkodzenia gier z pominiętym rekordem (przed ewentualnym END)
+		if (!damaged.isEmpty())
+		  for (Iterator<Integer> it = damaged.iterator(); it.hasNext();) {
+			records.add(0, new Record(REC_DAMAGED, it.next(), 0, 0, 0, null));
+			it.remove();
+		  }
+
+		// znaczniki są zwalniane po zapisie partii (i dopisaniu pozycji do indeksu)
+		List<Marker> markers = null;
+		for (Iterator<Record> it = records.iterator(); it.hasNext();) {
+		  Record r = it.next();
+		  if (!(r instanceof Marker)) continue;
+		  if (markers == null) markers = new ArrayList<>();
+		  markers.add((Marker)r);
+		  it.remove();
+		}
+
+		int from = 0;
+
+		for (int i=0; i<records.size(); i++) {
+
+		  Record r = records.get(i);
+
+		  if (r == END) {
+			end = true;
+			records = records.subList(0, i);
+			break;
+		  }
+
+		  // pełny bufor lub segment - zapis partii (i zmiana segmentu)
+		  boolean full = position + batch.position() + MAX_RECORD_LENGTH > segmentSize;
+		  if (full || batch.remaining() < MAX_RECORD_LENGTH) {
+			flush(batch, records, from, i);
+			from = i;
+			if (full) roll();
+		  }
+
+		  r.position = ((long)segment << 32) | (position + batch.position());
+		  encode(batch, r);
+
+		}
+
+		if (from < records.size()) flush(batch, records, from, records.size());
+		if (!records.isEmpty()) dirty = true;
+		if (markers != null) for (Marker m : markers) m.written.countDown();
+
+		long now = Heartbeat.now();
+		if (dirty && (end || now - lastSync >= syncMs)) {
+		  channel.force(false);
+		  syncs.incrementAndGet();
+		  lastSync = now;
+		  dirty = false;
+		}
+
+		records = new ArrayList<>();
+
+	  }
+
+	  channel.close();
+
+	}
+	catch (InterruptedException | IOException e) {
+	  System.err.println(e);
+	}
+
+  }
+
+
+  /**
+   * Zapis bufora partii do kanału i dopisanie pozycji zapisanych rekordów do indeksu
+   * @param batch Bufor partii
+   * @param records Rekordy partii
+   * @param from Indeks pierwszego rekordu w buforze
+   * @param to Indeks za ostatnim rekordem w buforze
+   * @throws IOException Błąd zapisu
+   */
+  private void flush(ByteBuffer batch, List<Record> records, int from, int to) throws IOException {
+
+	batch.flip();
+	int length = batch.remaining();
+	while (batch.hasRemaining()) channel.write(batch);
+	batch.clear();
+
+	position += length;
+	bytes.addAndGet(length);
+	written.addAndGet(to - from);
+
+	synchronized (index) {
+	  for (int i=from; i<to; i++) {
+		Record r = records.get(i);
+		added(r.type, r.game, r.position);
+	  }
+	}
+
+  }
+
+
+  private static void encode(ByteBuffer buf, Record r) {
+
+	int start = buf.position();
+	// długość rekordu zawsze mieści się w 1 bajcie (MAX_RECORD_LENGTH < 128)
+	buf.put((byte)0);
+	buf.put(r.type);
+	CommandCodec.putVarInt(buf, r.game);
+
+	switch (r.type) {
+
+	  case REC_START:
+		CommandCodec.putSettings(buf, r.settings);
+		CommandCodec.putVarInt(buf, r.a);
+		CommandCodec.putVarInt(buf, r.b);
+		CommandCodec.putVarInt(buf, r.c);
+		buf.putLong(r.time);
+		break;
+
+	  case REC_MOVE:
+		CommandCodec.putVarInt(buf, r.a);
+		CommandCodec.putVarInt(buf, r.b);
+		buf.put((byte)r.c);
+		break;
+
+	  case REC_END:
+		CommandCodec.putVarInt(buf, r.a);
+		break;
+
+	  case REC_SESSION:
+		byte[] token = r.token.getBytes(StandardCharsets.US_ASCII);
+		CommandCodec.putVarInt(buf, r.a);
+		CommandCodec.putVarInt(buf, r.b);
+		CommandCodec.putVarInt(buf, token.length);
+		buf.put(token);
+		break;
+
+	  default: break;
+
+	}
+
+	buf.put(start, (byte)(buf.position() - start - 1));
+
+  }
+
+
+  private static StoredGame getStart(ByteBuffer buf, int id) throws IOException {
+
+	SettingsVar settings = CommandCodec.getSettings(buf);
+	int code = CommandCodec.getNonNegativeVarInt(buf);
+	int seat = CommandCodec.getNonNegativeVarInt(buf) - 1;
+	int room = CommandCodec.getNonNegativeVarInt(buf);
+
+	return new StoredGame(id, room, settings, code == 0 ? null : DifficultyLevel.get(code), seat, buf.getLong());
+
+  }
+
+
+  private static void getSession(ByteBuffer buf, StoredGame game) throws IOException {
+
+	int seat = CommandCodec.getNonNegativeVarInt(buf), rating = CommandCodec.getNonNegativeVarInt(buf);
+	int length = CommandCodec.getNonNegativeVarInt(buf);
+	if (seat > 1 || length > buf.remaining()) throw new IOException("Invalid session record");
+
+	byte[] token = new byte[length];
+	buf.get(token);
+	game.setSession(seat, new String(token, StandardCharsets.US_ASCII), rating);
+
+  }
+
+
+  private static BoardField getMove(ByteBuffer buf) throws IOException {
+
+	int a = CommandCodec.getNonNegativeVarInt(buf), b = CommandCodec.getNonNegativeVarInt(buf);
+	int state = buf.get();
+	if (state < 0 || state >= BoardFieldState.values().length) throw new IOException("Invalid field state");
+
+	return new BoardField(a, b, BoardFieldState.values()[state]);
+
+  }
+
+
+  /**
+   * Odtworzenie indeksu z segmentu. Nieprawidłowy rekord kończy segment, a w ostatnim
+   * segmencie jest on obcinany (dalsze rekordy są dopisywane za ostatnim prawidłowym).
+   * @param n Numer segmentu
+   * @param last True jeżeli ostatni segment
+   * @param readOnly True - bez obcinania i poprawiania ostatniego segmentu
+   * @throws IOException Błąd odczytu lub nieprawidłowy nagłówek segmentu
+   */
+  private void recover(int n, boolean last, boolean readOnly) throws IOException {
+
+	try (FileChannel ch = readOnly ? FileChannel.open(getFile(n).toPath(), StandardOpenOption.READ)
+			: FileChannel.open(getFile(n).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+	  long size = ch.size();
+
+	  if (!checkHeader(ch)) {
+		if (last && size < HEADER_LENGTH) {
+		  if (readOnly) return;
+		  // segment utworzony tuż przed awarią
+		  ch.truncate(0);
+		  ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		  header.putInt(MAGIC).flip();
+		  ch.write(header, 0);
+		  return;
+		}
+		throw new IOException("Invalid game store segment: " + getFile(n));
+	  }
+
+	  long offset = scan(ch, n, null);
+
+	  if (offset < size) {
+		if (!last) throw new IOException("Invalid game store segment: " + getFile(n));
+		if (!readOnly) ch.truncate(offset);
+	  }
+
+	}
+
+  }
+
+
+  /**
+   * Wczytanie do indeksu segmentów sprzed punktu kontrolnego, w których mogą być
+   * rekordy gry (wg zakresów numerów gier z punktu kontrolnego)
+   * @param id Numer gry
+   * @throws IOException Błąd odczytu lub nieprawidłowy segment
+   */
+  private void load(int id) throws IOException {
+
+	synchronized (loadLock) {
+
+	  List<Integer> segments = new ArrayList<>();
+
+	  synchronized (index) {
+		if (unscanned.isEmpty() || open.contains(id) || checkpointOpen.contains(id)) return;
+		for (Map.Entry<Integer, int[]> e : ranges.entrySet())
+		  if (unscanned.contains(e.getKey()) && id >= e.getValue()[0] && id <= e.getValue()[1])
+			segments.add(e.getKey());
+	  }
+
+	  for (int n : segments) {
+
+		Map<Integer, Positions> positions = new HashMap<>();
+
+		// odczyt bez blokady indeksu (nie wstrzymuje wątku zapisu)
+		try (FileChannel ch = FileChannel.open(getFile(n).toPath(), StandardOpenOption.READ)) {
+		  if (!checkHeader(ch)) throw new IOException("Invalid game store segment: " + getFile(n));
+		  scan(ch, n, positions);
+		}
+
+		synchronized (index) {
+		  for (Map.Entry<Integer, Positions> e : positions.entrySet()) {
+			// pozycje gier w toku w chwili punktu kontrolnego są już w indeksie
+			if (checkpointOpen.contains(e.getKey())) continue;
+			Positions p = getPositions(e.getKey());
+			for (int i=0; i<e.getValue().size; i++) p.add(e.getValue().items[i]);
+		  }
+		  unscanned.remove(n);
+		}
+
+	  }
+
+	}
+
+  }
+
+
+  private static boolean checkHeader(FileChannel ch) throws IOException {
+
+	ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+	while (header.hasRemaining() && ch.read(header, header.position()) > 0);
+
+	return !header.hasRemaining() && header.getInt(0) == MAGIC;
+
+  }
+
+
+  /**
+   * Przejrzenie rekordów segmentu (za nagłówkiem) do pierwszego nieprawidłowego
+   * lub niepełnego rekordu
+   * @param ch Kanał segmentu
+   * @param n Numer segmentu
+   * @param target Pozycje rekordów wg numeru gry (null - odtworzenie indeksu, gier
+   * w toku i zakresów numerów gier)
+   * @return Przesunięcie za ostatnim prawidłowym rekordem
+   * @throws IOException Błąd odczytu
+   */
+  private long scan(FileChannel ch, int n, Map<Integer, Positions> target) throws IOException {
+
+	ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	long offset = HEADER_LENGTH, read = HEADER_LENGTH;
+
+	scan:
+	while (true) {
+
+	  int r = ch.read(buf, read);
+	  if (r > 0) read += r;
+	  buf.flip();
+
+	  while (buf.hasRemaining()) {
+
+		int pos = buf.position();
+		int length;
+
+		try {
+		  length = CommandCodec.readLength(buf);
+		  if (length > MAX_RECORD_LENGTH) throw new IOException();
+		} catch (IOException e) {
+		  break scan;
+		}
+
+		// niepełny rekord - doczytanie lub koniec segmentu
+		if (length < 0 || buf.remaining() < length) {
+		  buf.position(pos);
+		  if (r <= 0) break scan;
+		  break;
+		}
+
+		int end = buf.position() + length;
+		byte type = buf.get();
+		int game;
+
+		try {
+		  game = CommandCodec.getNonNegativeVarInt(buf);
+		} catch (IOException | RuntimeException e) {
+		  buf.position(pos);
+		  break scan;
+		}
+
+		if (type < REC_START || type > REC_DAMAGED) {
+		  buf.position(pos);
+		  break scan;
+		}
+
+		long position = ((long)n << 32) | offset;
+
+		if (target != null) {
+		  Positions p = target.get(game);
+		  if (p == null) {
+			p = new Positions();
+			target.put(game, p);
+		  }
+		  p.add(position);
+		}
+		else {
+		  added(type, game, position);
+		  if (game >= nextId.get()) nextId.set(game + 1);
+		}
+
+		buf.position(end);
+		offset += end - pos;
+
+	  }
+
+	  if (r <= 0) break;
+	  buf.compact();
+
+	}
+
+	return offset;
+
+  }
+
+
+  /**
+   * Dopisanie zapisanego rekordu do indeksu, gier w toku i zakresu numerów gier
+   * segmentu (wołane z blokadą indeksu lub przy otwarciu)
+   * @param type Typ rekordu
+   * @param game Numer gry
+   * @param position Pozycja rekordu
+   */
+  private void added(byte type, int game, long position) {
+
+	getPositions(game).add(position);
+
+	if (type == REC_START) open.add(game);
+	else if (type == REC_END || type == REC_DAMAGED) open.remove(game);
+
+	int n = (int)(position >>> 32);
+	int[] range = ranges.get(n);
+	if (range == null) ranges.put(n, new int[] { game, game });
+	else {
+	  range[0] = Math.min(range[0], game);
+	  range[1] = Math.max(range[1], game);
+	}
+
+  }
+
+
+  /**
+   * Odczyt punktu kontrolnego: zakresy numerów gier w segmentach i pozycje rekordów
+   * gier w toku. Brak lub nieprawidłowy plik - przejrzenie wszystkich segmentów.
+   * @param segments Numery istniejących segmentów
+   * @return Numer segmentu, od którego trzeba odtworzyć indeks (0 - wszystkie)
+   */
+  private int readCheckpoint(List<Integer> segments) {
+
+	File file = new File(dir, CHECKPOINT);
+	if (!file.isFile()) return 0;
+
+	Map<Integer, int[]> r = new HashMap<>();
+	Map<Integer, Positions> p = new HashMap<>();
+	int from, next;
+
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+	  if (in.readInt() != CHECKPOINT_MAGIC) return 0;
+	  from = in.readInt();
+	  next = in.readInt();
+
+	  for (int i=in.readInt(); i>0; i--) r.put(in.readInt(), new int[] { in.readInt(), in.readInt() });
+
+	  for (int i=in.readInt(); i>0; i--) {
+		Positions positions = new Positions();
+		int game = in.readInt();
+		for (int j=in.readInt(); j>0; j--) positions.add(in.readLong());
+		p.put(game, positions);
+	  }
+
+	}
+	catch (IOException e) {
+	  return 0;
+	}
+
+	// punkt kontrolny nowszy niż segmenty (np. usunięte pliki)
+	if (segments.isEmpty() || from > segments.get(segments.size() - 1)) return 0;
+
+	ranges.putAll(r);
+	index.putAll(p);
+	open.addAll(p.keySet());
+	checkpointOpen.addAll(p.keySet());
+	nextId.set(Math.max(next, 1));
+
+	return from;
+
+  }
+
+
+  /**
+   * Zapis punktu kontrolnego dla początku bieżącego segmentu (wątek zapisu, przy zmianie
+   * segmentu). Plik jest zapisywany obok i podmieniany, więc awaria pozostawia poprzedni.
+   * @throws IOException Błąd zapisu
+   */
+  private void writeCheckpoint() throws IOException {
+
+	File tmp = new File(dir, CHECKPOINT + ".tmp");
+
+	try (FileOutputStream file = new FileOutputStream(tmp)) {
+
+	  DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+
+	  synchronized (index) {
+
+		out.writeInt(CHECKPOINT_MAGIC);
+		out.writeInt(segment);
+		out.writeInt(nextId.get());
+
+		out.writeInt(ranges.size());
+		for (Map.Entry<Integer, int[]> e : ranges.entrySet()) {
+		  out.writeInt(e.getKey());
+		  out.writeInt(e.getValue()[0]);
+		  out.writeInt(e.getValue()[1]);
+		}
+
+		out.writeInt(open.size());
+		for (int game : open) {
+		  Positions p = index.get(game);
+		  out.writeInt(game);
+		  out.writeInt(p.size);
+		  for (int i=0; i<p.size; i++) out.writeLong(p.items[i]);
+		}
+
+	  }
+
+	  out.flush();
+	  file.getFD().sync();
+
+	}
+
+	Files.move(tmp.toPath(), new File(dir, CHECKPOINT).toPath(), 
+			StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+  }
+
+
+  /**
+   * Zamknięcie bieżącego segmentu, otwarcie kolejnego i zapis punktu kontrolnego (wątek zapisu)
+   * @throws IOException Błąd zapisu
+   */
+  private void roll() throws IOException {
+
+	channel.force(false);
+	channel.close();
+	openSegment(segment + 1);
+	writeCheckpoint();
+
+  }
+
+
+  private void openSegment(int n) throws IOException {
+
+	channel = FileChannel.open(getFile(n).toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+	ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+	header.putInt(MAGIC).flip();
+	while (header.hasRemaining()) channel.write(header);
+
+	position = HEADER_LENGTH;
+	segment = n;
+
+  }
+
+
+  /**
+   * Kanał odczytu segmentu (otwierany przy pierwszym odczycie)
+   * @param n Numer segmentu
+   * @return Kanał
+   * @throws IOException Nie można otworzyć pliku
+   */
+  private FileChannel getReader(int n) throws IOException {
+
+	synchronized (readers) {
+	  FileChannel ch = readers.get(n);
+	  if (ch == null) {
+		ch = FileChannel.open(getFile(n).toPath(), StandardOpenOption.READ);
+		readers.put(n, ch);
+	  }
+	  return ch;
+	}
+
+  }
+
+
+  /**
+   * Pozycje rekordów gry (wołane z blokadą indeksu lub przy otwarciu)
+   * @param game Numer gry
+   * @return Pozycje
+   */
+  private Positions getPositions(int game) {
+
+	Positions p = index.get(game);
+	if (p == null) {
+	  p = new Positions();
+	  index.put(game, p);
+	}
+	return p;
+
+  }
+
+
+  private File getFile(int n) {
+
+	return new File(dir, PREFIX + String.format("%06d", n) + SUFFIX);
+
+  }
+
+
+  /**
+   * Numery istniejących segmentów
+   * @return Posortowana lista
+   */
+  private List<Integer> getSegments() {
+
+	String[] names = dir.list(new FilenameFilter() {
+	  @Override
+	  public boolean accept(File d, String name) {
+		return name.matches(PREFIX + "\\d{6}" + SUFFIX.replace(".", "\\."));
+	  }
+	});
+
+	List<Integer> segments = new ArrayList<>();
+	if (names != null)
+	  for (String name : names)
+		segments.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+
+	Collections.sort(segments);
+	return segments;
+
+  }
+
+
+}
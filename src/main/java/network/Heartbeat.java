@@ -0,0 +1,167 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Wspólny harmonogram pingów dla wszystkich połączeń (jeden wątek niezależnie 
+ * od ich liczby). Ping jest wysyłany tylko wtedy, gdy połączenie nic nie wysłało 
+ * przez cały interwał, a połączenie bez odebranych danych dłużej niż limit czasu 
+ * jest zamykane. Ping zawiera znacznik czasu, odsyłany w komendzie PONG, 
+ * co pozwala zmierzyć czas odpowiedzi (RTT).
+ * 
+ * @author Maciej Kawecki
+ * 
+ */
+public class Heartbeat {
+	
+  /** Ile razy na interwał sprawdzane są połączenia */
+  private final static int TICKS_PER_INTERVAL = 4;
+	
+  /** Interwał pingów (ms) */
+  private final long intervalMs;
+  /** Limit czasu bez odebranych danych (ms, 0 - bez limitu) */
+  private final long timeoutMs;
+  /** Nadzorowane połączenia */
+  private final Set<IConnection> connections = ConcurrentHashMap.newKeySet();
+  /** Wątek harmonogramu */
+  private final ScheduledExecutorService scheduler;
+  
+  
+  /**
+   * Konstruktor, uruchamia harmonogram
+   * @param intervalMs Interwał pingów (ms)
+   * @param timeoutMs Limit czasu bez odebranych danych (ms, 0 - bez limitu)
+   */
+  public Heartbeat(long intervalMs, long timeoutMs) {
+	  
+	this.intervalMs = intervalMs;
+	this.timeoutMs = timeoutMs;
+	
+	scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+	  @Override
+	  public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, "heartbeat");
+		t.setDaemon(true);
+		return t;
+	  }
+	});
+	
+	long tick = Math.max(1, intervalMs / TICKS_PER_INTERVAL);
+	scheduler.scheduleAtFixedRate(new Runnable() {
+	  @Override
+	  public void run() {
+		tick();
+	  }
+	}, tick, tick, TimeUnit.MILLISECONDS);
+	  
+  }
+  
+  
+  public void register(IConnection connection) {
+	connections.add(connection);
+  }
+  
+  
+  public void unregister(IConnection connection) {
+	connections.remove(connection);
+  }
+  
+  
+  /**
+   * Jednorazowe zadanie w wątku harmonogramu (krótkie, nie może blokować pingów)
+   * @param task Zadanie
+   * @param delayMs Opóźnienie (ms)
+   */
+  public void schedule(Runnable task, long delayMs) {
+	  
+	scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+	  
+  }
+  
+  
+  /**
+   * Zatrzymanie harmonogramu
+   */
+  public void shutdown() {
+	  
+	scheduler.shutdownNow();
+	connections.clear();
+	  
+  }
+  
+  
+  /**
+   * Sprawdzenie wszystkich połączeń
+   */
+  private void tick() {
+	  
+	long now = now();
+	
+	for (IConnection conn : connections) {
+		
+	  try {
+		  
+		if (timeoutMs > 0 && now - conn.getLastReceiveTime() > timeoutMs) {
+		  connections.remove(conn);
+		  conn.connectionTimeout();
+		}
+		
+		else if (now - conn.getLastSendTime() >= intervalMs) 
+		  conn.sendPing(new Command(Command.CMD_PING, getStamp()));
+		
+	  }
+	  // błąd jednego połączenia nie może zatrzymać harmonogramu
+	  catch (RuntimeException e) {
+		System.err.println(e);
+	  }
+		
+	}
+	  
+  }
+  
+  
+  /**
+   * Czas zegara monotonicznego
+   * @return Czas w ms
+   */
+  public static long now() {
+	  
+	return System.nanoTime() / 1000000L;
+	  
+  }
+  
+  
+  /**
+   * Znacznik czasu do pingu
+   * @return Czas w mikrosekundach (obcięty do int)
+   */
+  public static int getStamp() {
+	  
+	return (int)(System.nanoTime() / 1000L);
+	  
+  }
+  
+  
+  /**
+   * Czas odpowiedzi na podstawie znacznika odesłanego w komendzie PONG
+   * @param stamp Znacznik z pingu
+   * @return RTT w mikrosekundach
+   */
+  public static int getRtt(int stamp) {
+	  
+	return getStamp() - stamp;
+	  
+  }
+  
+  
+}
@@ -0,0 +1,39 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+/**
+ *
+ * Połączenie nadzorowane przez wspólny harmonogram pingów (Heartbeat)
+ * 
+ * @author Maciej Kawecki
+ * 
+ */
+public interface IConnection {
+
+  /**
+   * Czas ostatniego wysłania danych
+   * @return Czas w ms (zob. Heartbeat.now())
+   */
+  long getLastSendTime();
+  
+  /**
+   * Czas ostatniego odebrania danych
+   * @return Czas w ms (zob. Heartbeat.now())
+   */
+  long getLastReceiveTime();
+  
+  /**
+   * Wysłanie pingu (błąd wysyłania obsługuje połączenie)
+   * @param ping Komenda PING ze znacznikiem czasu
+   */
+  void sendPing(Command ping);
+  
+  /**
+   * Brak danych od drugiej strony dłużej niż limit czasu
+   */
+  void connectionTimeout();
+  
+}
@@ -0,0 +1,104 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import game.DifficultyLevel;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Żądanie dołączenia do pokoju gry (dane komendy CMD_JOIN klienta)
+ * 
+ * @author Maciej Kawecki
+ * 
+ */
+public class JoinRequest {
+	
+  /** Dowolny wolny pokój (lub nowy, jeżeli nie ma wolnego) */
+  public final static int ANY_ROOM = 0;
+  
+  /** Numer pokoju (ANY_ROOM - dowolny) */
+  private final int room;
+  /** Ustawienia gry proponowane dla nowego pokoju */
+  private final SettingsVar settings;
+  /** Token sesji z poprzedniej gry gracza - serwer odczytuje na jego podstawie
+   *  ranking (null lub nieznany token - ranking domyślny) */
+  private final String token;
+  /** Poziom silnika serwera jako przeciwnika (null - przeciwnikiem jest człowiek) */
+  private final DifficultyLevel engine;
+  /** True jeżeli silnik serwera gra czarnymi (zaczyna) */
+  private final boolean engineStarts;
+    
+  
+  /**
+   * Konstruktor
+   * @param room Numer pokoju (ANY_ROOM - dowolny, ignorowany w grze z silnikiem)
+   * @param settings Ustawienia gry proponowane dla nowego pokoju
+   * @param token Token sesji z poprzedniej gry (ranking gracza na serwerze)
+   * @param engine Poziom silnika serwera jako przeciwnika (null - człowiek)
+   * @param engineStarts True jeżeli silnik serwera gra czarnymi
+   */
+  public JoinRequest(int room, SettingsVar settings, String token, DifficultyLevel engine, boolean engineStarts) {
+	  
+	this.room = room;
+	this.settings = settings;
+	this.token = token;
+	this.engine = engine;
+	this.engineStarts = engineStarts;
+	  
+  }
+  
+  
+  /**
+   * Konstruktor (przeciwnikiem jest człowiek)
+   * @param room Numer pokoju (ANY_ROOM - dowolny)
+   * @param settings Ustawienia gry proponowane dla nowego pokoju
+   * @param token Token sesji z poprzedniej gry (ranking gracza na serwerze)
+   */
+  public JoinRequest(int room, SettingsVar settings, String token) {
+	  
+	this(room, settings, token, null, false);
+	  
+  }
+  
+  
+  /**
+   * Konstruktor (nowy gracz - domyślny ranking)
+   * @param room Numer pokoju (ANY_ROOM - dowolny)
+   * @param settings Ustawienia gry proponowane dla nowego pokoju
+   */
+  public JoinRequest(int room, SettingsVar settings) {
+	  
+	this(room, settings, null);
+	  
+  }
+  
+  
+  public int getRoom() {
+	return room;
+  }
+  
+  
+  public SettingsVar getSettings() {
+	return settings;
+  }
+  
+  
+  public String getToken() {
+	return token;
+  }
+  
+  
+  public DifficultyLevel getEngine() {
+	return engine;
+  }
+  
+  
+  public boolean isEngineStarts() {
+	return engineStarts;
+  }
+  
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * Histogram czasów (mikrosekundy) o przedziałach logarytmiczno-liniowych, jak w
+ * HdrHistogram: każdy zakres [2^k, 2^(k+1)) jest podzielony na SUB_BUCKETS równych
+ * przedziałów, więc błąd względny kwantyla nie przekracza 1/SUB_BUCKETS. Zapis jest
+ * bez blokad (atomowe liczniki przedziałów), odczyt kwantyli przegląda liczniki
+ * bez zatrzymywania zapisu (wynik przybliżony przy równoległym zapisie).
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class LatencyHistogram {
+
+  /** Liczba przedziałów w zakresie potęgi dwójki (potęga dwójki) */
+  private final static int SUB_BUCKETS = 16;
+  /** Log2 z SUB_BUCKETS */
+  private final static int SUB_BITS = 4;
+  /** Największy zapisywany czas (mikrosekundy, większe są zapisywane jako ten) */
+  private final static long MAX_VALUE = (1L << 36) - 1;
+
+  /** Liczniki przedziałów */
+  private final AtomicLongArray counts = new AtomicLongArray(getIndex(MAX_VALUE) + 1);
+  /** Liczba pomiarów */
+  private final LongAdder count = new LongAdder();
+  /** Suma pomiarów (mikrosekundy) */
+  private final LongAdder sum = new LongAdder();
+
+
+  /**
+   * Zapis pomiaru
+   * @param micros Czas w mikrosekundach (ujemny jest pomijany)
+   */
+  public void record(long micros) {
+
+	if (micros < 0) return;
+
+	long val = Math.min(micros, MAX_VALUE);
+	counts.incrementAndGet(getIndex(val));
+	count.increment();
+	sum.add(val);
+
+  }
+
+
+  /**
+   * Kwantyl pomiarów
+   * @param q Kwantyl (0 - 1)
+   * @return Górna granica przedziału z kwantylem (mikrosekundy), 0 jeżeli brak pomiarów
+   */
+  public long getQuantile(double q) {
+
+	long total = 0;
+	for (int i=0; i<counts.length(); i++) total += counts.get(i);
+	if (total == 0) return 0;
+
+	long rank = Math.max(1, (long)Math.ceil(q * total)), n = 0;
+
+	for (int i=0; i<counts.length(); i++) {
+	  n += counts.get(i);
+	  if (n >= rank) return getUpperBound(i);
+	}
+
+	return MAX_VALUE;
+
+  }
+
+
+  public long getCount() {
+	return count.sum();
+  }
+
+
+  public long getSum() {
+	return sum.sum();
+  }
+
+
+  private static int getIndex(long val) {
+
+	if (val < SUB_BUCKETS) return (int)val;
+
+	int shift = 63 - Long.numberOfLeadingZeros(val) - SUB_BITS;
+	return (shift + 1) * SUB_BUCKETS + (int)(val >>> shift) - SUB_BUCKETS;
+
+  }
+
+
+  private static long getUpperBound(int index) {
+
+	if (index < SUB_BUCKETS) return index;
+
+	int shift = index / SUB_BUCKETS - 1;
+	long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+	return ((sub + 1) << shift) - 1;
+
+  }
+
+
+}
@@ -0,0 +1,784 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import game.BoardField;
+import game.BoardFieldState;
+import game.RuleSet;
+import gomoku.Gomoku;
+import gomoku.IConf;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Generator obciążenia serwera: tysiące symulowanych klientów mówiących tym samym
+ * protokołem co Client (dołączenie do dowolnego pokoju, numer gracza, ustawienia gry,
+ * losowe dozwolone ruchy z czasem namysłu, wiadomości, rozłączenie po grze i kolejna
+ * gra). Klientów obsługuje kilka pętli zdarzeń (bez wątku na klienta). Łączy się
+ * wyłącznie z serwerem na adresie pętli zwrotnej. Raport (co 5 s i na końcu) ma
+ * stały format klucz=wartość: liczba gier i ruchów, przepustowość, kwantyle czasów
+ * (ruch - wynik od serwera, ruch - odbiór przez przeciwnika, wiadomość - odbiór,
+ * dołączenie - start gry) i błędy.
+ * Z parametrem -compare generator sam uruchamia kolejno serwer w każdym trybie obsługi
+ * połączeń (pętle zdarzeń, -threads, -threads -platform) jako osobny proces bez zapisu
+ * gier, przeprowadza dla każdego ten sam test i wypisuje zestawienie wyników.
+ *
+ * Uruchomienie: Gomoku -load [-compare] [-clients=1000] [-duration=60] [-think=200] [-chat=5]
+ * [-size=15] [-rampup=5000] [-threads=2] [-port=4444]
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class LoadTest {
+
+  /** Interwał raportu częściowego (ms) */
+  private final static long REPORT_INTERVAL_MS = 5000;
+  /** Przerwa przed kolejną grą klienta (ms) */
+  private final static long RECONNECT_DELAY_MS = 100;
+  /** Prefiks wiadomości z czasem wysłania */
+  private final static String MSG_PREFIX = "load ";
+  /** Kwantyle w raporcie */
+  private final static double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+  /** Parametr wywołania: porównanie trybów serwera */
+  private final static String COMPARE_OPTION = "-compare";
+  /** Tryby serwera w porównaniu - nazwa i parametry wywołania serwera */
+  private final static String[][] SERVER_MODES = {
+	{ "loops" }, { "threads", "-threads" }, { "platform", "-threads", "-platform" } };
+  /** Maksymalny czas uruchamiania serwera w porównaniu (ms) */
+  private final static long SERVER_START_TIMEOUT_MS = 20000;
+
+  /** Liczba klientów */
+  private int clients = 1000;
+  /** Czas testu (s) */
+  private int duration = 60;
+  /** Średni czas namysłu przed ruchem (ms) */
+  private int think = 200;
+  /** Prawdopodobieństwo wiadomości przy ruchu (%) */
+  private int chat = 5;
+  /** Rozmiar planszy */
+  private int size = 15;
+  /** Czas rozłożenia pierwszych połączeń (ms) */
+  private int rampup = 5000;
+  /** Liczba pętli zdarzeń */
+  private int threads = 2;
+  /** Port serwera */
+  private int port = IConf.SERVER_PORT;
+
+  /** Adres serwera (tylko pętla zwrotna) */
+  private InetSocketAddress address;
+  /** True dopóki trwa test */
+  private volatile boolean running = true;
+  /** Rzeczywisty czas testu (s) */
+  private double seconds;
+  /** Czas wysłania ostatniego ruchu gracza w pokoju (ns, zob. getMoveKey) - odbiór mierzy przeciwnik */
+  private final ConcurrentHashMap<Long, Long> moveSent = new ConcurrentHashMap<>();
+
+  /** Czas od wysłania ruchu do wyniku od serwera */
+  private final LatencyHistogram moveLatency = new LatencyHistogram();
+  /** Czas od wysłania ruchu do odbioru przez przeciwnika */
+  private final LatencyHistogram relayLatency = new LatencyHistogram();
+  /** Czas od wysłania wiadomości do odbioru przez przeciwnika */
+  private final LatencyHistogram messageLatency = new LatencyHistogram();
+  /** Czas od dołączenia do startu gry */
+  private final LatencyHistogram startLatency = new LatencyHistogram();
+
+  /** Nawiązane połączenia */
+  private final LongAdder connects = new LongAdder();
+  /** Zakończone gry (liczone przez gracza nr 0) */
+  private final LongAdder games = new LongAdder();
+  /** Wykonane ruchy */
+  private final LongAdder moves = new LongAdder();
+  /** Wysłane wiadomości */
+  private final LongAdder messages = new LongAdder();
+  /** Błędy połączenia */
+  private final LongAdder connectErrors = new LongAdder();
+  /** Odmowy serwera (pełny pokój lub limit) */
+  private final LongAdder refused = new LongAdder();
+  /** Rozłączenia w trakcie gry */
+  private final LongAdder disconnects = new LongAdder();
+  /** Gry przerwane przez przeciwnika */
+  private final LongAdder abandoned = new LongAdder();
+  /** Nieprawidłowe ramki */
+  private final LongAdder protocolErrors = new LongAdder();
+
+
+  /** Zadanie pętli zdarzeń wykonywane o danym czasie */
+  private static class Task {
+
+	/** Czas wykonania (ms) */
+	private final long time;
+	/** Klient */
+	private final SimClient client;
+	/** True - połączenie, false - ruch */
+	private final boolean connect;
+
+	private Task(long time, SimClient client, boolean connect) {
+	  this.time = time;
+	  this.client = client;
+	  this.connect = connect;
+	}
+
+  }
+
+
+  /** Pętla zdarzeń obsługująca część klientów */
+  private class Worker extends Thread {
+
+	/** Selektor */
+	private final Selector selector;
+	/** Zadania wg czasu wykonania */
+	private final PriorityQueue<Task> tasks = new PriorityQueue<>(64, new Comparator<Task>() {
+	  @Override
+	  public int compare(Task a, Task b) {
+		return Long.compare(a.time, b.time);
+	  }
+	});
+	/** Klienci pętli */
+	private final List<SimClient> simClients = new ArrayList<>();
+
+	private Worker(int n) throws IOException {
+
+	  super("load-" + n);
+	  setDaemon(true);
+	  selector = Selector.open();
+
+	}
+
+	private void schedule(SimClient client, long delayMs, boolean connect) {
+
+	  tasks.add(new Task(Heartbeat.now() + delayMs, client, connect));
+
+	}
+
+	@Override
+	public void run() {
+
+	  while (running) {
+
+		long now = Heartbeat.now();
+
+		while (!tasks.isEmpty() && tasks.peek().time <= now) {
+		  Task t = tasks.poll();
+		  if (t.connect) t.client.connect();
+		  else t.client.move();
+		}
+
+		try {
+		  long wait = tasks.isEmpty() ? 100 : Math.max(1, tasks.peek().time - now);
+		  selector.select(wait);
+		} catch (IOException e) {
+		  break;
+		}
+
+		for (SelectionKey key : selector.selectedKeys()) {
+		  SimClient c = (SimClient)key.attachment();
+		  if (!key.isValid()) continue;
+		  if (key.isConnectable()) c.onConnectable();
+		  else {
+			if (key.isValid() && key.isWritable()) c.onWritable();
+			if (key.isValid() && key.isReadable()) c.onReadable();
+		  }
+		}
+
+		selector.selectedKeys().clear();
+
+	  }
+
+	  for (SimClient c : simClients) c.close(true);
+
+	  try {
+		selector.close();
+	  } catch (IOException e) {}
+
+	}
+
+  }
+
+
+  /** Symulowany klient (stan jednej gry, obsługiwany przez jedną pętlę) */
+  private class SimClient {
+
+	/** Pętla zdarzeń */
+	private final Worker worker;
+	/** Kanał */
+	private SocketChannel channel;
+	/** Klucz kanału */
+	private SelectionKey key;
+	/** Bufor odczytu */
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(4 * 1024);
+	/** Ramki czekające na zapis */
+	private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+	/** Numer pokoju */
+	private int room;
+	/** Numer gracza (-1 - nieznany) */
+	private int number;
+	/** Rozmiar planszy (0 - ustawienia nieznane) */
+	private int cols;
+	/** Zajęte pola (indeks a * MAX + b) */
+	private final boolean[] taken = new boolean[IConf.FREE_COLS_AND_ROWS * IConf.FREE_COLS_AND_ROWS];
+	/** Liczba ruchów w grze */
+	private int movesCount;
+	/** True jeżeli ruch został wysłany i czeka na wynik */
+	private boolean awaitingResult;
+	/** True jeżeli ruch jest zaplanowany */
+	private boolean moveScheduled;
+	/** True jeżeli gra się skończyła */
+	private boolean finished;
+	/** Czas wysłania żądania dołączenia lub ostatniego ruchu (ns) */
+	private long sentTime;
+
+	private SimClient(Worker worker) {
+
+	  this.worker = worker;
+
+	}
+
+	private void connect() {
+
+	  if (!running) return;
+
+	  room = 0;
+	  number = -1;
+	  cols = 0;
+	  movesCount = 0;
+	  awaitingResult = moveScheduled = finished = false;
+	  Arrays.fill(taken, false);
+	  readBuffer.clear();
+	  writeQueue.clear();
+
+	  try {
+		channel = SocketChannel.open();
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		key = channel.register(worker.selector, SelectionKey.OP_CONNECT, this);
+		if (channel.connect(address)) onConnectable();
+	  } catch (IOException e) {
+		connectErrors.increment();
+		close(false);
+	  }
+
+	}
+
+	private void onConnectable() {
+
+	  try {
+		channel.finishConnect();
+		connects.increment();
+		key.interestOps(SelectionKey.OP_READ);
+		sentTime = System.nanoTime();
+		send(new Command(Command.CMD_JOIN, new JoinRequest(JoinRequest.ANY_ROOM,
+				new SettingsVar(size, IConf.MAX_PIECES_IN_ROW, RuleSet.STANDARD))));
+	  } catch (IOException e) {
+		connectErrors.increment();
+		close(false);
+	  }
+
+	}
+
+	private void send(Command command) throws IOException {
+
+	  writeQueue.add(CommandCodec.toFrame(command));
+	  onWritable();
+
+	}
+
+	private void onWritable() {
+
+	  try {
+		while (!writeQueue.isEmpty()) {
+		  channel.write(writeQueue.peek());
+		  if (writeQueue.peek().hasRemaining()) break;
+		  writeQueue.poll();
+		}
+		key.interestOps(writeQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	  } catch (IOException e) {
+		lost();
+	  }
+
+	}
+
+	private void onReadable() {
+
+	  try {
+
+		if (channel.read(readBuffer) < 0) throw new IOException();
+		readBuffer.flip();
+
+		while (channel != null && readBuffer.hasRemaining()) {
+		  int pos = readBuffer.position();
+		  int length = CommandCodec.readLength(readBuffer);
+		  if (length < 0 || readBuffer.remaining() < length) {
+			readBuffer.position(pos);
+			break;
+		  }
+		  int limit = readBuffer.limit(), end = readBuffer.position() + length;
+		  readBuffer.limit(end);
+		  Command cmd;
+		  try {
+			cmd = CommandCodec.decode(readBuffer);
+		  } catch (IOException e) {
+			protocolErrors.increment();
+			throw e;
+		  }
+		  readBuffer.limit(limit).position(end);
+		  handle(cmd);
+		}
+
+		if (channel != null) readBuffer.compact();
+
+	  } catch (IOException e) {
+		lost();
+	  }
+
+	}
+
+	private void handle(Command cmd) throws IOException {
+
+	  Object data = cmd.getCommandData();
+
+	  switch (cmd.getCommand()) {
+
+		case Command.CMD_PING:
+		  if (data != null) send(new Command(Command.CMD_PONG, data));
+		  break;
+
+		case Command.CMD_JOIN:
+		  room = (Integer)data;
+		  break;
+
+		case Command.CMD_FULL:
+		  refused.increment();
+		  close(true);
+		  break;
+
+		case Command.CMD_START:
+		  startLatency.record((System.nanoTime() - sentTime) / 1000);
+		  send(new Command(Command.CMD_NUMBER));
+		  break;
+
+		case Command.CMD_NUMBER:
+		  number = (Integer)data;
+		  send(new Command(Command.CMD_SETTINGS));
+		  break;
+
+		case Command.CMD_SETTINGS:
+		  cols = new Settings((SettingsVar)data).getColsAndRows();
+		  scheduleMove();
+		  break;
+
+		// ruch przeciwnika (gracza lub silnika serwera)
+		case Command.CMD_MOVE:
+		  BoardField f = (BoardField)data;
+		  taken[f.getA() * IConf.FREE_COLS_AND_ROWS + f.getB()] = true;
+		  movesCount++;
+		  Long t = moveSent.remove(getMoveKey(room, number ^ 1));
+		  if (t != null) relayLatency.record((System.nanoTime() - t) / 1000);
+		  break;
+
+		case Command.CMD_RESULT:
+		  if (awaitingResult) {
+			awaitingResult = false;
+			moveLatency.record((System.nanoTime() - sentTime) / 1000);
+		  }
+		  if ((Integer)data != GameResult.CONTINUE.getCode()) {
+			finished = true;
+			if (number == 0) games.increment();
+			close(true);
+		  }
+		  else scheduleMove();
+		  break;
+
+		case Command.CMD_MESSAGE:
+		  String msg = (String)data;
+		  if (msg.startsWith(MSG_PREFIX))
+			messageLatency.record((System.nanoTime() - Long.parseLong(msg.substring(MSG_PREFIX.length()))) / 1000);
+		  break;
+
+		case Command.CMD_EXIT:
+		  // przeciwnik obsługiwany przez inną pętlę mógł już zostać zamknięty na końcu testu
+		  if (!finished && running) abandoned.increment();
+		  finished = true;
+		  close(true);
+		  break;
+
+		default: break;
+
+	  }
+
+	}
+
+	private boolean isMyTurn() {
+
+	  return cols > 0 && number >= 0 && !finished && !awaitingResult && movesCount % 2 == number;
+
+	}
+
+	private void scheduleMove() {
+
+	  if (!isMyTurn() || moveScheduled) return;
+
+	  moveScheduled = true;
+	  // czas namysłu: równomiernie od 0 do 2x średniej
+	  worker.schedule(this, think == 0 ? 0 : ThreadLocalRandom.current().nextInt(2 * think + 1), false);
+
+	}
+
+	private void move() {
+
+	  moveScheduled = false;
+	  if (!isMyTurn() || channel == null) return;
+
+	  ThreadLocalRandom random = ThreadLocalRandom.current();
+	  int idx = -1;
+	  for (int i=0; i<16 && idx < 0; i++) {
+		int a = random.nextInt(cols), b = random.nextInt(cols);
+		if (!taken[a * IConf.FREE_COLS_AND_ROWS + b]) idx = a * IConf.FREE_COLS_AND_ROWS + b;
+	  }
+	  for (int a=0; a<cols && idx < 0; a++)
+		for (int b=0; b<cols && idx < 0; b++)
+		  if (!taken[a * IConf.FREE_COLS_AND_ROWS + b]) idx = a * IConf.FREE_COLS_AND_ROWS + b;
+	  if (idx < 0) return;
+
+	  taken[idx] = true;
+	  movesCount++;
+	  awaitingResult = true;
+
+	  try {
+		sentTime = System.nanoTime();
+		moveSent.put(getMoveKey(room, number), sentTime);
+		send(new Command(Command.CMD_MOVE, new BoardField(idx / IConf.FREE_COLS_AND_ROWS,
+				idx % IConf.FREE_COLS_AND_ROWS, number == 0 ? BoardFieldState.BLACK : BoardFieldState.WHITE)));
+		moves.increment();
+		if (random.nextInt(100) < chat) {
+		  send(new Command(Command.CMD_MESSAGE, MSG_PREFIX + System.nanoTime()));
+		  messages.increment();
+		}
+	  } catch (IOException e) {
+		lost();
+	  }
+
+	}
+
+	/** Rozłączenie przez serwer */
+	private void lost() {
+
+	  if (!finished && running) disconnects.increment();
+	  finished = true;
+	  close(false);
+
+	}
+
+	/**
+	 * Zamknięcie połączenia i zaplanowanie kolejnej gry
+	 * @param exit True - wysłanie komendy EXIT
+	 */
+	private void close(boolean exit) {
+
+	  if (channel == null) return;
+
+	  try {
+		if (exit && channel.isConnected()) channel.write(CommandCodec.toFrame(new Command(Command.CMD_EXIT)));
+	  } catch (IOException e) {}
+
+	  try {
+		channel.close();
+	  } catch (IOException e) {}
+
+	  if (room > 0 && number >= 0) moveSent.remove(getMoveKey(room, number));
+	  channel = null;
+	  if (running) worker.schedule(this, RECONNECT_DELAY_MS, true);
+
+	}
+
+  }
+
+
+  /**
+   * Odczyt parametrów wywołania
+   * @param args Parametry -klucz=wartość
+   * @throws IllegalArgumentException Nieprawidłowy parametr
+   */
+  private void parse(String[] args) {
+
+	for (String arg : args) {
+
+	  if (!arg.startsWith("-") || arg.indexOf('=') < 0) continue;
+
+	  String key = arg.substring(1, arg.indexOf('='));
+	  int val = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+
+	  switch (key) {
+		case "clients": clients = val; break;
+		case "duration": duration = val; break;
+		case "think": think = val; break;
+		case "chat": chat = val; break;
+		case "size": size = val; break;
+		case "rampup": rampup = val; break;
+		case "threads": threads = val; break;
+		case "port": port = val; break;
+		default: throw new IllegalArgumentException(arg);
+	  }
+
+	}
+
+	if (clients < 2 || duration < 1 || think < 0 || chat < 0 || chat > 100 || rampup < 0 || threads < 1
+			|| port < 1 || port > 65535 || size < IConf.MIN_COLS_AND_ROWS || size > IConf.MAX_COLS_AND_ROWS)
+	  throw new IllegalArgumentException();
+
+  }
+
+
+  /**
+   * Uruchomienie testu i raport
+   * @throws IOException Nie można utworzyć pętli zdarzeń
+   * @throws InterruptedException Przerwanie oczekiwania
+   */
+  private void run() throws IOException, InterruptedException {
+
+	address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+	Worker[] workers = new Worker[threads];
+	for (int i=0; i<threads; i++) workers[i] = new Worker(i);
+
+	for (int i=0; i<clients; i++) {
+	  Worker w = workers[i % threads];
+	  SimClient c = new SimClient(w);
+	  w.simClients.add(c);
+	  w.schedule(c, (long)rampup * i / clients, true);
+	}
+
+	System.out.println("load clients=" + clients + " duration=" + duration + "s think=" + think
+			+ "ms chat=" + chat + "% size=" + size + " threads=" + threads + " server=" + address);
+
+	long start = Heartbeat.now(), end = start + duration * 1000L;
+	for (Worker w : workers) w.start();
+
+	long lastMoves = 0, lastTime = start;
+
+	while (Heartbeat.now() < end) {
+	  Thread.sleep(Math.min(REPORT_INTERVAL_MS, Math.max(1, end - Heartbeat.now())));
+	  long now = Heartbeat.now(), m = moves.sum();
+	  System.out.println(String.format(Locale.US, "t=%ds connects=%d games=%d moves/s=%.1f move_p99=%s errors=%d",
+			  (now - start) / 1000, connects.sum(), games.sum(), (m - lastMoves) * 1000.0 / Math.max(1, now - lastTime),
+			  ms(moveLatency.getQuantile(0.99)), getErrors()));
+	  lastMoves = m;
+	  lastTime = now;
+	}
+
+	running = false;
+	for (Worker w : workers) {
+	  w.selector.wakeup();
+	  w.join(5000);
+	}
+
+	double secs = seconds = (Heartbeat.now() - start) / 1000.0;
+
+	System.out.println("--- summary");
+	System.out.println(String.format(Locale.US, "games=%d games/s=%.2f moves=%d moves/s=%.1f messages=%d connects=%d",
+			games.sum(), games.sum() / secs, moves.sum(), moves.sum() / secs, messages.sum(), connects.sum()));
+	report("move_result", moveLatency);
+	report("move_relay", relayLatency);
+	report("message_relay", messageLatency);
+	report("join_start", startLatency);
+	System.out.println("errors connect=" + connectErrors.sum() + " refused=" + refused.sum() + " disconnects="
+			+ disconnects.sum() + " abandoned=" + abandoned.sum() + " protocol=" + protocolErrors.sum());
+
+  }
+
+
+  /**
+   * Porównanie trybów serwera: dla każdego trybu uruchomienie serwera na porcie
+   * testu, ten sam test, zatrzymanie serwera i na końcu zestawienie wyników
+   * @param args Parametry testu (zob. opis klasy)
+   * @throws IOException Nie można uruchomić serwera lub port jest zajęty
+   * @throws InterruptedException Przerwanie oczekiwania
+   */
+  private static void compare(String[] args) throws IOException, InterruptedException {
+
+	List<String> rows = new ArrayList<>();
+
+	for (String[] mode : SERVER_MODES) {
+
+	  LoadTest test = new LoadTest();
+	  test.parse(args);
+
+	  File log = File.createTempFile("gomoku-load-" + mode[0], ".log");
+	  System.out.println("=== server mode=" + mode[0] + " log=" + log);
+
+	  Process server = test.startServer(Arrays.copyOfRange(mode, 1, mode.length), log);
+
+	  try {
+		test.run();
+	  }
+	  finally {
+		server.destroy();
+		server.waitFor();
+	  }
+
+	  rows.add(test.getSummary(mode[0]));
+
+	}
+
+	System.out.println("--- compare");
+	System.out.println(String.format(Locale.US, "%-9s %9s %10s %12s %12s %13s %13s %7s", "mode", "games/s",
+			"moves/s", "move_p50_ms", "move_p99_ms", "relay_p99_ms", "msg_p99_ms", "errors"));
+	for (String row : rows) System.out.println(row);
+
+  }
+
+
+  /**
+   * Uruchomienie serwera (bez interfejsu graficznego, konsoli administracyjnej,
+   * liczników HTTP i zapisu gier) w osobnym procesie i oczekiwanie na połączenie
+   * @param options Parametry trybu serwera
+   * @param log Plik wyjścia serwera
+   * @return Proces serwera
+   * @throws IOException Nie można uruchomić serwera lub port jest zajęty
+   * @throws InterruptedException Przerwanie oczekiwania
+   */
+  private Process startServer(String[] options, File log) throws IOException, InterruptedException {
+
+	InetSocketAddress server = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+	if (isListening(server)) throw new IOException("Port " + port + " is already in use");
+
+	List<String> command = new ArrayList<>();
+	command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+	command.add("-cp");
+	command.add(System.getProperty("java.class.path"));
+	command.add(Gomoku.class.getName());
+	command.addAll(Arrays.asList("-s", "-headless", "-port=" + port, "-adminPort=0", "-metricsPort=0", "-gameStore="));
+	command.addAll(Arrays.asList(options));
+
+	Process process = new ProcessBuilder(command).redirectErrorStream(true)
+			.redirectOutput(ProcessBuilder.Redirect.to(log)).start();
+
+	long end = Heartbeat.now() + SERVER_START_TIMEOUT_MS;
+
+	while (!isListening(server)) {
+	  if (!process.isAlive() || Heartbeat.now() > end) {
+		process.destroy();
+		throw new IOException("Server did not start, see " + log);
+	  }
+	  Thread.sleep(100);
+	}
+
+	return process;
+
+  }
+
+
+  private static boolean isListening(InetSocketAddress address) {
+
+	try (SocketChannel channel = SocketChannel.open()) {
+	  return channel.connect(address);
+	} catch (IOException e) {
+	  return false;
+	}
+
+  }
+
+
+  /**
+   * Wiersz zestawienia porównania (po zakończeniu testu)
+   * @param mode Nazwa trybu serwera
+   * @return Wiersz zestawienia
+   */
+  private String getSummary(String mode) {
+
+	return String.format(Locale.US, "%-9s %9.2f %10.1f %12s %12s %13s %13s %7d", mode, games.sum() / seconds,
+			moves.sum() / seconds, ms(moveLatency.getQuantile(0.5)), ms(moveLatency.getQuantile(0.99)),
+			ms(relayLatency.getQuantile(0.99)), ms(messageLatency.getQuantile(0.99)), getErrors());
+
+  }
+
+
+  /**
+   * Klucz czasu wysłania ruchu - pokój i gracz (ruchy silnika serwera nie są mierzone)
+   * @param room Numer pokoju
+   * @param number Numer gracza
+   * @return Klucz
+   */
+  private static long getMoveKey(int room, int number) {
+
+	return ((long)room << 1) | number;
+
+  }
+
+
+  private long getErrors() {
+
+	return connectErrors.sum() + refused.sum() + disconnects.sum() + abandoned.sum() + protocolErrors.sum();
+
+  }
+
+
+  private static void report(String name, LatencyHistogram h) {
+
+	StringBuilder sb = new StringBuilder(name).append("_ms count=").append(h.getCount());
+	for (double q : QUANTILES) sb.append(" p").append(String.valueOf(q * 100).replace(".0", "")).append('=').append(ms(h.getQuantile(q)));
+	System.out.println(sb);
+
+  }
+
+
+  private static String ms(long micros) {
+
+	return String.format(Locale.US, "%.3f", micros / 1000.0);
+
+  }
+
+
+  /**
+   * Uruchomienie generatora obciążenia (serwer musi działać na tym samym komputerze,
+   * a z parametrem -compare jest uruchamiany przez generator)
+   * @param args Parametry wywołania -klucz=wartość (zob. opis klasy)
+   */
+  public static void main(String[] args) {
+
+	LoadTest test = new LoadTest();
+
+	try {
+	  test.parse(args);
+	} catch (IllegalArgumentException e) {
+	  System.err.println("Invalid option " + (e.getMessage() == null ? "value" : e.getMessage()));
+	  System.err.println("Options: -compare -clients=1000 -duration=60 -think=200 -chat=5 -size=15 -rampup=5000 -threads=2 -port=4444");
+	  System.exit(1);
+	}
+
+	try {
+	  if (Arrays.asList(args).contains(COMPARE_OPTION)) compare(args);
+	  else test.run();
+	} catch (IOException | InterruptedException e) {
+	  System.err.println(e);
+	  System.exit(1);
+	}
+
+	System.exit(0);
+
+  }
+
+
+}
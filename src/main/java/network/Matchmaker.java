@@ -0,0 +1,194 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import game.DifficultyLevel;
+import gomoku.IConf;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Dobór przeciwników dla graczy dołączających do dowolnego pokoju (ANY_ROOM).
+ * Pokoje z jednym czekającym graczem są kolejkowane wg ustawień gry i przedziału
+ * rankingu gracza - dobór sprawdza tylko kolejkę własnego przedziału i kilku
+ * sąsiednich (bez przeglądania wszystkich pokoi), w każdej kolejce najdłużej
+ * czekający pokój jest pierwszy. Obiekt nie jest synchronizowany - jest
+ * wołany z blokadą serwera.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class Matchmaker {
+
+  /** Maksymalny ranking */
+  public final static int MAX_RATING = 4000;
+
+  /** Kolejki czekających pokoi wg klucza (ustawienia gry i przedział rankingu) */
+  private final Map<Long, ArrayDeque<Room>> queues = new HashMap<>();
+  /** Klucze kolejek, w których są pokoje */
+  private final Map<Room, Long> queued = new HashMap<>();
+
+
+  /**
+   * Pobranie z kolejki pokoju z przeciwnikiem dla gracza - z przedziału rankingu
+   * gracza, a jeżeli tam nie ma czekających, z kolejnych sąsiednich przedziałów
+   * @param settings Ustawienia gry (znormalizowane przez serwer)
+   * @param rating Ranking gracza
+   * @return Pokój lub null jeżeli nikt nie czeka
+   */
+  public Room poll(SettingsVar settings, int rating) {
+
+	long key = getSettingsKey(settings);
+	int band = getBand(rating);
+
+	for (int d=0; d<=IConf.MATCH_MAX_BANDS; d++) {
+	  Room room = poll(key, band - d);
+	  if (room == null && d > 0) room = poll(key, band + d);
+	  if (room != null) return room;
+	}
+
+	return null;
+
+  }
+
+
+  /**
+   * Dodanie pokoju z czekającym graczem do kolejki
+   * @param room Pokój
+   * @param rating Ranking czekającego gracza
+   */
+  public void add(Room room, int rating) {
+
+	long key = getQueueKey(getSettingsKey(room.getSettings()), getBand(rating));
+
+	ArrayDeque<Room> queue = queues.get(key);
+	if (queue == null) {
+	  queue = new ArrayDeque<>();
+	  queues.put(key, queue);
+	}
+
+	queue.add(room);
+	queued.put(room, key);
+
+  }
+
+
+  /**
+   * Usunięcie pokoju z kolejki (odejście gracza lub dołączenie silnika)
+   * @param room Pokój
+   */
+  public void remove(Room room) {
+
+	Long key = queued.remove(room);
+	if (key == null) return;
+
+	ArrayDeque<Room> queue = queues.get(key);
+	queue.remove(room);
+	if (queue.isEmpty()) queues.remove(key);
+
+  }
+
+
+  /**
+   * Usunięcie wszystkich pokoi z kolejek
+   */
+  public void clear() {
+
+	queues.clear();
+	queued.clear();
+
+  }
+
+
+  private Room poll(long settingsKey, int band) {
+
+	if (band < 0 || band > getBand(MAX_RATING)) return null;
+
+	long key = getQueueKey(settingsKey, band);
+	ArrayDeque<Room> queue = queues.get(key);
+	if (queue == null) return null;
+
+	Room room;
+	while ((room = queue.poll()) != null) {
+	  queued.remove(room);
+	  if (room.isWaiting()) break;
+	}
+
+	if (queue.isEmpty()) queues.remove(key);
+
+	return room;
+
+  }
+
+
+  private static long getSettingsKey(SettingsVar settings) {
+
+	Settings s = new Settings(settings);
+	return ((long)s.getColsAndRows() << 16) | (s.getPiecesInRow() << 8) | s.getRuleSet().getCode();
+
+  }
+
+
+  private static long getQueueKey(long settingsKey, int band) {
+
+	return (settingsKey << 32) | band;
+
+  }
+
+
+  private static int getBand(int rating) {
+
+	return getRating(rating) / IConf.MATCH_RATING_BAND;
+
+  }
+
+
+  /**
+   * Ranking ograniczony do dozwolonego zakresu
+   * @param rating Ranking
+   * @return Ranking z zakresu 0 - MAX_RATING
+   */
+  public static int getRating(int rating) {
+
+	return Math.max(0, Math.min(MAX_RATING, rating));
+
+  }
+
+
+  /**
+   * Nowy ranking gracza po grze (Elo)
+   * @param rating Ranking gracza
+   * @param opponent Ranking przeciwnika
+   * @param score Wynik gracza (1 - wygrana, 0.5 - remis, 0 - przegrana)
+   * @return Nowy ranking
+   */
+  public static int getNewRating(int rating, int opponent, double score) {
+
+	double expected = 1.0 / (1.0 + Math.pow(10.0, (opponent - rating) / 400.0));
+	return getRating((int)Math.round(rating + IConf.RATING_K * (score - expected)));
+
+  }
+
+
+  /**
+   * Poziom silnika serwera dla gracza, który nie doczekał się przeciwnika
+   * @param rating Ranking gracza
+   * @return Poziom trudności
+   */
+  public static DifficultyLevel getEngineLevel(int rating) {
+
+	if (rating < IConf.DEFAULT_RATING - IConf.MATCH_RATING_BAND) return DifficultyLevel.EASY;
+	if (rating > IConf.DEFAULT_RATING + IConf.MATCH_RATING_BAND) return DifficultyLevel.HARD;
+	return DifficultyLevel.MEDIUM;
+
+  }
+
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * Lokalny punkt HTTP z licznikami serwera (GET /metrics, format tekstowy Prometheus).
+ * Dostępny tylko na adresie pętli zwrotnej, żądania obsługuje jeden wątek -
+ * pobranie liczników nie wstrzymuje obsługi połączeń graczy.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class MetricsServer {
+
+  /** Ścieżka liczników */
+  private final static String PATH = "/metrics";
+  /** Typ treści odpowiedzi (format tekstowy Prometheus) */
+  private final static String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  /** Serwer HTTP */
+  private final HttpServer http;
+  /** Wątek obsługi żądań */
+  private final ExecutorService executor;
+
+
+  /**
+   * Konstruktor, uruchamia serwer HTTP
+   * @param server Referencja do obiektu głównego serwera
+   * @param port Port (na adresie pętli zwrotnej)
+   * @throws IOException Nie można otworzyć portu
+   */
+  public MetricsServer(final Server server, int port) throws IOException {
+
+	http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+	executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+	  @Override
+	  public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, "metrics");
+		t.setDaemon(true);
+		return t;
+	  }
+	});
+
+	http.setExecutor(executor);
+	http.createContext(PATH, new HttpHandler() {
+	  @Override
+	  public void handle(HttpExchange exchange) throws IOException {
+
+		try {
+
+		  if (!exchange.getRequestMethod().equals("GET")) {
+			exchange.sendResponseHeaders(405, -1);
+			return;
+		  }
+
+		  byte[] body = server.getMetrics().toPrometheus(server).getBytes(StandardCharsets.UTF_8);
+		  exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+		  exchange.sendResponseHeaders(200, body.length);
+
+		  try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		  }
+
+		}
+		finally {
+		  exchange.close();
+		}
+
+	  }
+	});
+
+	http.start();
+
+  }
+
+
+  /**
+   * Zatrzymanie serwera HTTP
+   */
+  public void shutdown() {
+
+	http.stop(0);
+	executor.shutdownNow();
+
+  }
+
+
+}
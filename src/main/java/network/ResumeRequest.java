@@ -0,0 +1,46 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+/**
+ *
+ * Żądanie powrotu do gry po utracie połączenia (dane komendy CMD_RESUME klienta)
+ * 
+ * @author Maciej Kawecki
+ * 
+ */
+public class ResumeRequest {
+	
+  /** Token sesji otrzymany od serwera (komenda CMD_SESSION) */
+  private final String token;
+  /** Liczba ruchów, których wynik klient już otrzymał */
+  private final int movesAmount;
+  
+  
+  /**
+   * Konstruktor
+   * @param token Token sesji
+   * @param movesAmount Liczba ruchów, których wynik klient już otrzymał (serwer 
+   * odsyła tylko późniejsze)
+   */
+  public ResumeRequest(String token, int movesAmount) {
+	  
+	this.token = token;
+	this.movesAmount = movesAmount;
+	  
+  }
+  
+  
+  public String getToken() {
+	return token;
+  }
+  
+  
+  public int getMovesAmount() {
+	return movesAmount;
+  }
+  
+
+}
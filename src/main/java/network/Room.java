@@ -0,0 +1,649 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import game.Board;
+import game.BoardField;
+import game.BoardFieldState;
+import game.DifficultyLevel;
+import game.MoveGenerator;
+import gomoku.IConf;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Pokój gry na serwerze - para graczy, ustawienia i plansza ich rozgrywki. 
+ * Serwer sprawdza kolejność i poprawność ruchów na własnej planszy i rozstrzyga
+ * o wygranej lub remisie. Ruchy i wyniki są rozsyłane także do widzów - ramka 
+ * jest kodowana raz, a widzowie współdzielą jej bufor. Rozłączenie gracza 
+ * zamyka tylko jego pokój. Miejsce jednego z graczy może zająć silnik serwera - 
+ * jego ruchy są wyszukiwane (we wspólnej puli silnika) na kopii planszy pokoju.
+ * Miejsce gracza, który utracił połączenie w trakcie gry, jest zawieszane - po
+ * powrocie (token sesji) otrzymuje on brakujące ruchy z bufora powtórek pokoju.
+ * Rozpoczęcie gry, sesje graczy, ruchy i wynik są zapisywane w zapisie gier serwera
+ * (GameStore), z którego po restarcie serwera odtwarzane są pokoje gier w toku.
+ * 
+ * @author Maciej Kawecki
+ * 
+ */
+public class Room {
+	
+  /** Numer pokoju */
+  private final int id;
+  /** Ustawienia gry w pokoju */
+  private final SettingsVar settings;
+  /** True jeżeli pokój jest dostępny dla dowolnych graczy (ANY_ROOM) */
+  private final boolean open;
+  /** Połączenia graczy (nr gracza = indeks) */
+  private final ClientConnection[] players = new ClientConnection[2];
+  /** Gracze, którzy otrzymali już odpowiedź na dołączenie (mogą otrzymać START) */
+  private final boolean[] ready = new boolean[2];
+  /** Poziom silnika serwera (null - brak silnika) */
+  private DifficultyLevel engine;
+  /** Nr gracza, którego miejsce zajmuje silnik serwera */
+  private int engineSeat = -1;
+  /** Połączenia widzów */
+  private final List<ClientConnection> spectators = new CopyOnWriteArrayList<>();
+  /** Plansza gry w pokoju (stan rozstrzygający dla obu graczy) */
+  private final Board board;
+  /** Ilość pól planszy */
+  private final int fieldsAmount;
+  /** Kolor kamieni gracza wykonującego następny ruch */
+  private BoardFieldState turn = BoardFieldState.BLACK;
+  /** True jeżeli gra się rozpoczęła */
+  private boolean started;
+  /** Wynik gry (CONTINUE - gra trwa) */
+  private GameResult result = GameResult.CONTINUE;
+  /** True jeżeli pokój jest zamknięty */
+  private volatile boolean closed;
+  /** Liczba ramek przekazanych pomiędzy graczami (wiadomości) */
+  private long relayed;
+  /** Miejsca graczy czekające na powrót po utracie połączenia */
+  private final boolean[] suspended = new boolean[2];
+  /** Tokeny sesji graczy */
+  private final String[] tokens = new String[2];
+  /** Bufor powtórek - ramki kolejnych ruchów z wynikiem (ruchy gracza nr 0 mają indeksy parzyste) */
+  private final List<ByteBuffer> replay = new ArrayList<>();
+  /** Zapis gier serwera (null - gry nie są zapisywane) */
+  private final GameStore store;
+  /** Numer gry w zapisie gier */
+  private int gameId = -1;
+  
+  
+  /**
+   * Konstruktor
+   * @param id Numer pokoju
+   * @param settings Ustawienia gry
+   * @param open True jeżeli pokój jest dostępny dla dowolnych graczy
+   * @param store Zapis gier serwera lub null
+   */
+  public Room(int id, SettingsVar settings, boolean open, GameStore store) {
+	  
+	this.id = id;
+	this.settings = settings;
+	this.open = open;
+	this.store = store;
+	
+	Settings s = new Settings(settings);
+	board = new Board(s);
+	fieldsAmount = s.getFieldsAmount();
+	  
+  }
+  
+  
+  /**
+   * Dołączenie gracza
+   * @param player Połączenie gracza
+   * @return Nr gracza w pokoju lub -1 jeżeli pokój jest pełny lub zamknięty
+   */
+  public synchronized int join(ClientConnection player) {
+	  
+	if (closed || started) return -1;
+	
+	for (int i=0; i<players.length; i++)
+	  if (players[i] == null && i != engineSeat) {
+		players[i] = player;
+		return i;
+	  }
+	
+	return -1;
+	  
+  }
+  
+  
+  /**
+   * Czy w pokoju jest wolne miejsce
+   * @return True jeżeli tak
+   */
+  public synchronized boolean isWaiting() {
+	  
+	if (closed || started) return false;
+	
+	for (int i=0; i<players.length; i++)
+	  if (players[i] == null && i != engineSeat) return true;
+	
+	return false;
+	  
+  }
+  
+  
+  /**
+   * Zajęcie wolnego miejsca przez silnik serwera
+   * @param level Poziom trudności silnika
+   * @param seat Nr gracza (0 - silnik gra czarnymi)
+   * @return False jeżeli miejsce jest już zajęte lub gra się rozpoczęła
+   */
+  public synchronized boolean addEngine(DifficultyLevel level, int seat) {
+	  
+	if (closed || started || players[seat] != null || engine != null) return false;
+	
+	engine = level;
+	engineSeat = seat;
+	return true;
+	  
+  }
+  
+  
+  /**
+   * Gracz otrzymał odpowiedź na dołączenie - rozpoczęcie gry, jeżeli pokój jest pełny
+   * @param seat Nr gracza
+   * @return True jeżeli rozpoczęto grę
+   */
+  public boolean start(int seat) {
+	  
+	synchronized (this) {
+	  ready[seat] = true;
+	}
+	
+	return start();
+	  
+  }
+  
+  
+  /**
+   * Rozpoczęcie gry (komenda START do obu graczy), jeżeli pokój jest pełny, 
+   * a gracze otrzymali już odpowiedź na dołączenie
+   * @return True jeżeli rozpoczęto grę
+   */
+  public boolean start() {
+	  
+	ClientConnection[] tmp;
+	synchronized (this) {
+	  if (started || closed) return false;
+	  for (int i=0; i<players.length; i++)
+		if ((players[i] == null || !ready[i]) && i != engineSeat) return false;
+	  started = true;
+	  tmp = players.clone();
+	  if (store != null) {
+		gameId = store.gameStarted(id, settings, engine, engineSeat);
+		for (int i=0; i<players.length; i++)
+		  if (tokens[i] != null && players[i] != null) store.session(gameId, i, tokens[i], players[i].getRating());
+	  }
+	}
+	
+	// zapis poza blokadą pokoju (błąd zapisu zamyka pokój)
+	for (ClientConnection p : tmp) 
+	  if (p != null) p.sendSafe(new Command(Command.CMD_START));
+	
+	return true;
+	  
+  }
+  
+  
+  /**
+   * Przekazanie ramki komendy do drugiego gracza w pokoju (bez dekodowania)
+   * @param from Nr gracza wysyłającego
+   * @param frame Ramka (nagłówek i treść, pozycja bufora nie jest zmieniana)
+   */
+  public void relay(int from, ByteBuffer frame) {
+
+	ClientConnection to;
+
+	synchronized (this) {
+	  if (!started || closed) return;
+	  to = players[from^1];
+	  relayed++;
+	}
+
+	if (to != null) to.sendFrame(frame);
+
+  }
+
+
+  /**
+   * Ruch gracza: sprawdzenie kolejności i poprawności ruchu, wykonanie go na planszy
+   * pokoju, przekazanie ramki ruchu drugiemu graczowi i wysłanie wyniku (komenda 
+   * RESULT) do obu graczy. Gracz nr 0 gra czarnymi.
+   * @param from Nr gracza wysyłającego
+   * @param move Ruch (pole i kolor kamienia)
+   * @param frame Ramka ruchu (pozycja bufora nie jest zmieniana, null - ramka kodowana 
+   * dla ruchu silnika)
+   * @return Wynik ruchu lub null jeżeli ruch jest niedozwolony
+   * @throws IOException Błąd kodowania wyniku
+   */
+  public GameResult move(int from, BoardField move, ByteBuffer frame) throws IOException {
+	  
+	ClientConnection[] tmp;
+	GameResult result;
+	ByteBuffer resultFrame;
+	
+	synchronized (this) {
+		
+	  if (closed) return GameResult.CONTINUE;
+	  
+	  result = play(from, move);
+	  if (result == null) return null;
+	  
+	  if (frame == null) frame = CommandCodec.toFrame(new Command(Command.CMD_MOVE, move));
+	  
+	  if (store != null) {
+		store.move(gameId, move);
+		if (result != GameResult.CONTINUE) store.gameFinished(gameId, result);
+	  }
+	  tmp = players.clone();
+	  resultFrame = CommandCodec.toFrame(new Command(Command.CMD_RESULT, result.getCode()));
+	  ByteBuffer shared = addReplay(frame, resultFrame);
+	  
+	  // kolejność ramek u widzów ustalana w blokadzie pokoju, zapis poza nią
+	  if (!spectators.isEmpty()) queueForSpectators(shared);
+	  
+	}
+	
+	// zapis poza blokadą pokoju, przeciwnik otrzymuje ruch przed wynikiem
+	if (tmp[from^1] != null) tmp[from^1].sendFrame(frame);
+	for (ClientConnection p : tmp) 
+	  if (p != null) p.sendFrame(resultFrame);
+	
+	for (ClientConnection s : spectators) s.flushShared();
+	
+	return result;
+	  
+  }
+  
+  
+  /**
+   * Sprawdzenie kolejności i poprawności ruchu i wykonanie go na planszy pokoju
+   * (wołane z blokadą pokoju)
+   * @param from Nr gracza wykonującego ruch
+   * @param move Ruch
+   * @return Wynik ruchu lub null jeżeli ruch jest niedozwolony
+   */
+  private GameResult play(int from, BoardField move) {
+	  
+	BoardFieldState color = from == 0 ? BoardFieldState.BLACK : BoardFieldState.WHITE;
+	if (!started || result != GameResult.CONTINUE || color != turn || move.getState() != color
+			|| board.getFieldState(move.getA(), move.getB()) != BoardFieldState.EMPTY
+			|| board.isForbiddenMove(move.getA(), move.getB(), color)) return null;
+	
+	board.makeMove(move);
+	
+	if (board.isWinningMove(move)) result = GameResult.won(color);
+	else if (board.getMovesAmount() == fieldsAmount) result = GameResult.DRAW;
+	
+	turn = turn.getOpposite();
+	return result;
+	  
+  }
+  
+  
+  /**
+   * Dodanie ruchu z wynikiem do bufora powtórek (wołane z blokadą pokoju)
+   * @param frame Ramka ruchu
+   * @param resultFrame Ramka wyniku
+   * @return Ruch z wynikiem we wspólnym buforze (ramka ruchu może być buforem odczytu gracza)
+   */
+  private ByteBuffer addReplay(ByteBuffer frame, ByteBuffer resultFrame) {
+	  
+	ByteBuffer shared = ByteBuffer.allocate(frame.remaining() + resultFrame.remaining());
+	shared.put(frame.duplicate()).put(resultFrame.duplicate()).flip();
+	replay.add(shared);
+	
+	return shared;
+	  
+  }
+  
+  
+  /**
+   * Odtworzenie pokoju gry w toku z zapisu gier (po restarcie serwera). Zapisane ruchy
+   * są wykonywane na planszy pokoju i dopisywane do bufora powtórek, a miejsca graczy
+   * są zawieszone do ich powrotu z tokenem sesji.
+   * @param game Gra z zapisu gier
+   * @param store Zapis gier serwera
+   * @return Pokój lub null jeżeli zapisane ruchy są nieprawidłowe lub gra jest już 
+   * rozstrzygnięta (w zapisie gier zostaje wtedy zapisany jej koniec)
+   * @throws IOException Błąd kodowania ruchu lub wyniku
+   */
+  public static Room restore(StoredGame game, GameStore store) throws IOException {
+	  
+	Room room = new Room(game.getRoom(), game.getSettings(), false, store);
+	
+	synchronized (room) {
+		
+	  room.engine = game.getEngine();
+	  room.engineSeat = game.getEngineSeat();
+	  room.started = true;
+	  room.gameId = game.getId();
+	  
+	  for (BoardField move : game.getMoves()) {
+		GameResult result = room.play(move.getState() == BoardFieldState.BLACK ? 0 : 1, move);
+		if (result == null) break;
+		room.addReplay(CommandCodec.toFrame(new Command(Command.CMD_MOVE, move)), 
+				CommandCodec.toFrame(new Command(Command.CMD_RESULT, result.getCode())));
+	  }
+	  
+	  if (room.result != GameResult.CONTINUE || room.replay.size() < game.getMoves().size()) {
+		store.gameFinished(game.getId(), room.result);
+		return null;
+	  }
+	  
+	  for (int i=0; i<room.players.length; i++)
+		if (i != room.engineSeat) {
+		  room.suspended[i] = true;
+		  room.tokens[i] = game.getToken(i);
+		}
+	  
+	}
+	
+	return room;
+	  
+  }
+  
+  
+  /**
+   * Ruch silnika serwera - wyszukiwany poza blokadą pokoju, na kopii planszy, 
+   * a następnie wykonywany i rozsyłany jak ruch gracza
+   * @param budgetMs Pozostały budżet czasu ruchu (ms, przy braku czasu silnik 
+   * przeszukuje tylko głębokość 1)
+   * @return Wynik ruchu lub null jeżeli silnik nie ma teraz ruchu
+   * @throws IOException Błąd kodowania ruchu lub wyniku
+   */
+  public GameResult engineMove(long budgetMs) throws IOException {
+	  
+	Board copy;
+	DifficultyLevel level;
+	BoardFieldState color;
+	int seat;
+	
+	synchronized (this) {
+	  color = engineSeat == 0 ? BoardFieldState.BLACK : BoardFieldState.WHITE;
+	  if (engine == null || !started || closed || result != GameResult.CONTINUE || turn != color) return null;
+	  copy = board.copy();
+	  level = engine;
+	  seat = engineSeat;
+	}
+	
+	return move(seat, MoveGenerator.getMove(copy, color, level, budgetMs), null);
+	  
+  }
+  
+  
+  /**
+   * Dodanie ruchu i wyniku do kolejek widzów (wołane z blokadą pokoju). Ruch i wynik 
+   * są we wspólnym buforze, w kolejkach widzów zapisywane są tylko jego widoki. Widz, 
+   * który nie nadąża (pełna kolejka), zamiast zaległych ramek otrzymuje bieżącą 
+   * migawkę planszy.
+   * @param shared Ramki ruchu i wyniku
+   * @throws IOException Błąd kodowania migawki
+   */
+  private void queueForSpectators(ByteBuffer shared) throws IOException {
+	  
+	ByteBuffer snapshot = null;
+	
+	for (ClientConnection s : spectators)
+	  if (!s.queueShared(shared)) {
+		if (snapshot == null) snapshot = getSnapshotFrame();
+		s.replaceQueue(snapshot);
+	  }
+	  
+  }
+  
+  
+  /**
+   * Dołączenie widza - otrzymuje migawkę planszy, a następnie kolejne ruchy 
+   * (ruch wykonany tuż przed dołączeniem może dotrzeć powtórnie)
+   * @param spectator Połączenie widza
+   * @return False jeżeli pokój jest zamknięty lub osiągnięto limit widzów
+   * @throws IOException Błąd kodowania migawki
+   */
+  public boolean watch(ClientConnection spectator) throws IOException {
+	  
+	synchronized (this) {
+	  if (closed || spectators.size() >= IConf.MAX_SPECTATORS) return false;
+	  spectator.queueShared(getSnapshotFrame());
+	  spectators.add(spectator);
+	}
+	
+	spectator.flushShared();
+	return true;
+	  
+  }
+  
+  
+  /**
+   * Odejście widza
+   * @param spectator Połączenie widza
+   */
+  public void unwatch(ClientConnection spectator) {
+	  
+	spectators.remove(spectator);
+	  
+  }
+  
+  
+  /**
+   * Ramka z migawką bieżącego stanu planszy
+   * @return Ramka komendy SNAPSHOT
+   * @throws IOException Błąd kodowania
+   */
+  private synchronized ByteBuffer getSnapshotFrame() throws IOException {
+	  
+	return CommandCodec.toFrame(new Command(Command.CMD_SNAPSHOT, new RoomSnapshot(id, settings, board, result)));
+	  
+  }
+  
+  
+  /**
+   * Zawieszenie miejsca gracza, który utracił połączenie w trakcie gry
+   * @param leaving Odchodzący gracz
+   * @return Nr zawieszonego miejsca, -1 jeżeli gra się nie toczy (pokój trzeba zamknąć)
+   * lub -2 jeżeli gracza nie ma już w pokoju (miejsce zajęło nowe połączenie)
+   */
+  public synchronized int suspend(ClientConnection leaving) {
+	  
+	for (int i=0; i<players.length; i++)
+	  if (players[i] == leaving) {
+		if (closed || !started || result != GameResult.CONTINUE) return -1;
+		players[i] = null;
+		suspended[i] = true;
+		return i;
+	  }
+	
+	return -2;
+	  
+  }
+  
+  
+  /**
+   * Powrót gracza na zawieszone miejsce - odpowiedź RESUME z liczbą ruchów w pokoju,
+   * a po niej ruchy i wyniki, których gracz nie otrzymał (własne ruchy tylko z wynikiem).
+   * Ramki są dodawane do kolejki zapisu gracza w blokadzie pokoju, żeby kolejne ruchy
+   * dotarły po brakujących, a zapisywane do kanału poza nią.
+   * @param seat Nr miejsca
+   * @param player Nowe połączenie gracza
+   * @param known Liczba ruchów, których wynik gracz już otrzymał
+   * @return False jeżeli miejsce nie jest zawieszone, pokój jest zamknięty lub w pokoju 
+   * jest mniej ruchów, niż gracz już otrzymał
+   * @throws IOException Błąd zapisu
+   */
+  public boolean resume(int seat, ClientConnection player, int known) throws IOException {
+	  
+	synchronized (this) {
+		
+	  // ruchy, których wynik gracz otrzymał, nie zostały zapisane przed awarią serwera
+	  if (closed || !suspended[seat] || known > replay.size()) return false;
+	  
+	  players[seat] = player;
+	  suspended[seat] = false;
+	  
+	  player.queueShared(CommandCodec.toFrame(new Command(Command.CMD_RESUME, replay.size())));
+	  
+	  for (int i=Math.max(0, known); i<replay.size(); i++) {
+		ByteBuffer frames = replay.get(i).duplicate();
+		// własny ruch - tylko wynik (ramka za ramką ruchu)
+		if (i % 2 == seat) frames.position(CommandCodec.readLength(frames) + frames.position());
+		player.queueShared(frames);
+	  }
+	  
+	}
+	
+	player.flushShared();
+	
+	return true;
+	  
+  }
+  
+  
+  public synchronized boolean isSuspended(int seat) {
+	return suspended[seat];
+  }
+  
+  
+  public synchronized void setToken(int seat, String token) {
+	tokens[seat] = token;
+  }
+  
+  
+  public synchronized String[] getTokens() {
+	return tokens.clone();
+  }
+  
+  
+  /**
+   * Zamknięcie pokoju po odejściu gracza - drugi gracz otrzymuje komendę EXIT
+   * @param leaving Odchodzący gracz
+   * @return True jeżeli pokój został właśnie zamknięty
+   */
+  public boolean close(ClientConnection leaving) {
+	  
+	ClientConnection[] tmp;
+	synchronized (this) {
+	  if (closed) return false;
+	  closed = true;
+	  tmp = players.clone();
+	  // gra przerwana - zamknięcie bez wyniku
+	  if (store != null && started && result == GameResult.CONTINUE) store.gameFinished(gameId, GameResult.CONTINUE);
+	}
+	
+	for (ClientConnection p : tmp) 
+	  if (p != null && p != leaving) p.sendSafe(new Command(Command.CMD_EXIT));
+	
+	for (ClientConnection s : spectators) s.sendSafe(new Command(Command.CMD_EXIT));
+	
+	return true;
+	  
+  }
+  
+  
+  /**
+   * Zatrzymanie pokoju przy zatrzymaniu lub restarcie serwera - bez rekordu końca gry
+   * i bez komendy EXIT (połączenia zamyka serwer), więc gra w toku pozostaje w zapisie
+   * gier do odtworzenia. Późniejsze zawieszenie lub zamknięcie pokoju nic nie zmienia.
+   * @return True jeżeli pokój został właśnie zatrzymany
+   */
+  public synchronized boolean stop() {
+	  
+	if (closed) return false;
+	closed = true;
+	
+	return true;
+	  
+  }
+  
+  
+  public int getId() {
+	return id;
+  }
+  
+  
+  /**
+   * Numer gry w zapisie gier serwera
+   * @return Numer lub -1 jeżeli gra się nie rozpoczęła lub nie jest zapisywana
+   */
+  public synchronized int getGameId() {
+	return gameId;
+  }
+  
+  
+  public SettingsVar getSettings() {
+	return settings;
+  }
+  
+  
+  public synchronized boolean isStarted() {
+	return started && !closed;
+  }
+  
+  
+  public boolean isOpen() {
+	return open;
+  }
+  
+  
+  public synchronized boolean hasEngine() {
+	return engine != null;
+  }
+
+  
+  /**
+   * Liczba graczy w pokoju
+   * @return Liczba połączonych graczy (bez silnika)
+   */
+  public synchronized int getPlayersCount() {
+	  
+	int n = 0;
+	for (ClientConnection p : players) 
+	  if (p != null) n++;
+	return n;
+	  
+  }
+  
+  
+  public int getSpectatorsCount() {
+	return spectators.size();
+  }
+  
+  
+  public synchronized int getMovesAmount() {
+	return board.getMovesAmount();
+  }
+  
+  
+  public synchronized long getRelayedCount() {
+	return relayed;
+  }
+  
+  
+  /**
+   * Połączenia graczy
+   * @return Kopia tablicy graczy (null - wolne miejsce lub silnik)
+   */
+  public synchronized ClientConnection[] getPlayers() {
+	return players.clone();
+  }
+  
+  
+  public boolean isClosed() {
+	return closed;
+  }
+  
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import game.Board;
+import game.BoardField;
+import game.BoardFieldState;
+import gomoku.Settings;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Migawka planszy pokoju wysyłana widzom (dane komendy SNAPSHOT) zamiast
+ * historii ruchów: stan pól zapisany po 2 bity na pole (15x15 - 57 bajtów).
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class RoomSnapshot {
+
+  /** Kody pól w migawce */
+  private final static int EMPTY = 0, BLACK = 1, WHITE = 2;
+
+  /** Numer pokoju */
+  private final int room;
+  /** Ustawienia gry w pokoju */
+  private final SettingsVar settings;
+  /** Ilość wykonanych ruchów */
+  private final int movesAmount;
+  /** Wynik gry w chwili wykonania migawki */
+  private final GameResult result;
+  /** Ilość wierszy i kolumn planszy */
+  private final int colsAndRows;
+  /** Stan pól (2 bity na pole, kolejno wg indeksu a*colsAndRows+b) */
+  private final byte[] cells;
+
+
+  /**
+   * Konstruktor - migawka planszy pokoju
+   * @param room Numer pokoju
+   * @param settings Ustawienia gry
+   * @param board Plansza
+   * @param result Bieżący wynik gry
+   */
+  public RoomSnapshot(int room, SettingsVar settings, Board board, GameResult result) {
+
+	this.room = room;
+	this.settings = settings;
+	this.movesAmount = board.getMovesAmount();
+	this.result = result;
+
+	colsAndRows = new Settings(settings).getColsAndRows();
+	cells = new byte[getCellsLength(colsAndRows)];
+
+	for (int a=0; a<colsAndRows; a++)
+	  for (int b=0; b<colsAndRows; b++) {
+		BoardFieldState state = board.getFieldState(a, b);
+		int code = state == BoardFieldState.BLACK ? BLACK : state == BoardFieldState.WHITE ? WHITE : EMPTY;
+		int index = a*colsAndRows + b;
+		cells[index >>> 2] |= code << ((index & 3) * 2);
+	  }
+
+  }
+
+
+  /**
+   * Konstruktor - migawka odczytana z ramki (CommandCodec)
+   * @param room Numer pokoju
+   * @param settings Ustawienia gry
+   * @param movesAmount Ilość wykonanych ruchów
+   * @param result Wynik gry
+   * @param cells Stan pól
+   */
+  RoomSnapshot(int room, SettingsVar settings, int movesAmount, GameResult result, byte[] cells) {
+
+	this.room = room;
+	this.settings = settings;
+	this.movesAmount = movesAmount;
+	this.result = result;
+	this.cells = cells;
+	colsAndRows = new Settings(settings).getColsAndRows();
+
+  }
+
+
+  /**
+   * Długość zapisu stanu pól
+   * @param colsAndRows Ilość wierszy i kolumn planszy
+   * @return Długość w bajtach
+   */
+  static int getCellsLength(int colsAndRows) {
+
+	return (int)Math.min(Integer.MAX_VALUE, ((long)colsAndRows * colsAndRows + 3) / 4);
+
+  }
+
+
+  /**
+   * Stan wskazanego pola
+   * @param a Indeks a (kolumna) pola
+   * @param b Indeks b (wiersz) pola
+   * @return Stan pola
+   */
+  public BoardFieldState getFieldState(int a, int b) {
+
+	int index = a*colsAndRows + b;
+
+	switch ((cells[index >>> 2] >>> ((index & 3) * 2)) & 3) {
+	  case BLACK: return BoardFieldState.BLACK;
+	  case WHITE: return BoardFieldState.WHITE;
+	  default: return BoardFieldState.EMPTY;
+	}
+
+  }
+
+
+  /**
+   * Kamienie na planszy (do odtworzenia planszy u widza)
+   * @return Lista zajętych pól
+   */
+  public List<BoardField> getStones() {
+
+	List<BoardField> stones = new ArrayList<>();
+
+	for (int a=0; a<colsAndRows; a++)
+	  for (int b=0; b<colsAndRows; b++) {
+		BoardFieldState state = getFieldState(a, b);
+		if (state != BoardFieldState.EMPTY) stones.add(new BoardField(a, b, state));
+	  }
+
+	return stones;
+
+  }
+
+
+  public int getRoom() {
+	return room;
+  }
+
+
+  public SettingsVar getSettings() {
+	return settings;
+  }
+
+
+  public int getMovesAmount() {
+	return movesAmount;
+  }
+
+
+  public GameResult getResult() {
+	return result;
+  }
+
+
+  byte[] getCells() {
+	return cells;
+  }
+
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ *
+ * Pętla zdarzeń obsługująca wiele połączeń klientów na jednym wątku
+ * (nieblokujące kanały i selektor). Serwer uruchamia stałą liczbę pętli,
+ * niezależną od liczby połączeń.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class SelectorLoop extends Thread {
+
+  /** Selektor kanałów */
+  private final Selector selector;
+  /** Nowe połączenia do zarejestrowania (przekazywane z wątku akceptującego) */
+  private final Queue<ClientConnection> newConnections = new ConcurrentLinkedQueue<>();
+  /** Połączenia z niewysłanymi danymi (zgłoszone z innych wątków) */
+  private final Queue<ClientConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+  /** True jeżeli pętla ma zostać zakończona */
+  private volatile boolean stopped;
+
+
+  /**
+   * Konstruktor
+   * @param n Numer pętli (do nazwy wątku)
+   * @throws IOException Nie można utworzyć selektora
+   */
+  public SelectorLoop(int n) throws IOException {
+
+	super("selector-" + n);
+	selector = Selector.open();
+	setDaemon(true);
+
+  }
+
+
+  /**
+   * Przekazanie nowego połączenia do obsługi przez pętlę
+   * @param connection Połączenie
+   */
+  protected void register(ClientConnection connection) {
+
+	newConnections.add(connection);
+	selector.wakeup();
+
+  }
+
+
+  /**
+   * Zgłoszenie, że połączenie ma dane czekające na wysłanie (z wątku pętli - uwzględniane
+   * przed kolejnym wywołaniem select())
+   * @param connection Połączenie
+   */
+  protected void requestWrite(ClientConnection connection) {
+
+	pendingWrites.add(connection);
+	if (Thread.currentThread() != this) selector.wakeup();
+
+  }
+
+
+  /**
+   * Zatrzymanie pętli i zamknięcie selektora
+   */
+  public void shutdown() {
+
+	stopped = true;
+	selector.wakeup();
+
+  }
+
+
+  @Override
+  public void run() {
+
+	while (!stopped) {
+
+	  // przed select(), bo zgłoszenia z wątku pętli (np. ruch do przeciwnika w tej samej
+	  // pętli przy pełnym buforze gniazda) nie budzą selektora
+	  registerConnections();
+	  updateWriteInterest();
+
+	  try {
+		selector.select();
+	  } catch (IOException e) {
+		break;
+	  }
+
+	  for (SelectionKey key : selector.selectedKeys()) {
+
+		ClientConnection conn = (ClientConnection)key.attachment();
+
+		try {
+		  if (key.isValid() && key.isWritable()) conn.onWritable();
+		  if (key.isValid() && key.isReadable()) conn.onReadable();
+		}
+		catch (CancelledKeyException e) {
+		  conn.disconnect();
+		}
+
+	  }
+
+	  selector.selectedKeys().clear();
+
+	}
+
+	try {
+	  selector.close();
+	} catch (IOException e) {}
+
+  }
+
+
+  private void registerConnections() {
+
+	ClientConnection conn;
+
+	while ((conn = newConnections.poll()) != null) {
+
+	  try {
+		SocketChannel channel = conn.getChannel();
+		channel.configureBlocking(false);
+		int ops = SelectionKey.OP_READ | (conn.hasPendingWrites() ? SelectionKey.OP_WRITE : 0);
+		conn.setKey(channel.register(selector, ops, conn));
+	  } catch (IOException e) {
+		conn.disconnect();
+	  }
+
+	}
+
+  }
+
+
+  private void updateWriteInterest() {
+
+	ClientConnection conn;
+
+	while ((conn = pendingWrites.poll()) != null) {
+
+	  SelectionKey key = conn.getKey();
+	  if (key == null || !key.isValid()) continue;
+	  if (conn.hasPendingWrites()) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+
+	}
+
+  }
+
+
+}
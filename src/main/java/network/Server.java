@@ -5,26 +5,36 @@
 package network;
 
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.SwingUtilities;
 
+import game.RuleSet;
 import gomoku.AppObserver;
 import gomoku.IConf;
 import gomoku.Lang;
 import gomoku.Settings;
+import gomoku.SettingsVar;
 import gui.GUI;
 import gui.ServerGUI;
 import gui.dialogs.DialogType;
@@ -35,50 +45,127 @@ import gui.dialogs.InfoDialog;
  *
  * Serwer gry.
  * Klasa główna zawierająca metodę main() - wywołanie interfejsu graficznego, 
- * uruchomianie serwera. 
+ * uruchomianie serwera. Serwer obsługuje wiele jednoczesnych rozgrywek - 
+ * każda w osobnym pokoju (para graczy i ustawienia gry). Połączenia obsługuje
+ * stała liczba pętli zdarzeń (SelectorLoop), niezależna od liczby klientów.
+ * Gracze bez numeru pokoju są dobierani w pary wg ustawień i rankingu (Matchmaker), 
+ * a gdy nikt nie dołączy w wyznaczonym czasie, przeciwnikiem jest silnik serwera.
+ * Rankingi przechowuje serwer - gracz wskazuje swój tokenem sesji z poprzedniej gry.
+ * Gracz może też od razu zażądać gry z silnikiem. Ruchy silnika we wszystkich 
+ * pokojach wyszukuje wspólna pula wątków o stałym rozmiarze (EnginePool).
+ * Gracz, który utracił połączenie w trakcie gry, może wrócić do pokoju z tokenem 
+ * sesji w ciągu IConf.RESUME_GRACE_MS - do tego czasu pokój nie jest zamykany.
+ * Bez interfejsu graficznego (-headless) serwer zapisuje komunikaty w dzienniku 
+ * (ServerLog), a sterowanie umożliwia lokalna konsola administracyjna (AdminConsole).
+ * Rozegrane gry (także w toku) są zapisywane na dysku (GameStore), a po awarii lub
+ * restarcie serwera pokoje gier w toku są z niego odtwarzane.
  * 
  * @author Maciej Kawecki
  * 
  */
 public class Server  implements Observer {
     
-  /** Gniazdko serwera */
-  private ServerSocket serverSocket;  
-  /** Tablica strumieni wyjściowych */
-  private final ObjectOutputStream[] output;
-  /** Tablica strumieni wejściowych */
-  private final ObjectInputStream[] input;
-  /** Lista wątków klientów */
-  private final List<ServerThread> serverThreadList;
-  /** Lista gniazdek klienckich */
-  private final List<Socket> serverSocketList;
-  /** Lista timerów */
-  private final List<Ping> serverPingList;
+  /** Parametr wywołania: wątek (wirtualny, jeżeli dostępny) na połączenie zamiast pętli zdarzeń */
+  private final static String THREADS_OPTION = "-threads";
+  /** Parametr wywołania: z -threads zwykłe wątki również na JDK 21+ (porównanie z wątkami wirtualnymi) */
+  private final static String PLATFORM_THREADS_OPTION = "-platform";
+  /** Parametr wywołania: serwer bez interfejsu graficznego */
+  private final static String HEADLESS_OPTION = "-headless";
+  /** Parametr wywołania: plik dziennika serwera bez interfejsu graficznego (-log=plik) */
+  private final static String LOG_OPTION = "-log=";
+	
+  /** Kanał (gniazdko) serwera */
+  private ServerSocketChannel serverSocket;  
+  /** Pętle zdarzeń obsługujące połączenia klientów */
+  private SelectorLoop[] loops;
+  /** Wykonawca wątków połączeń (tryb wątek na połączenie, inaczej null) */
+  private ExecutorService connectionExecutor;
+  /** Numer pętli dla następnego połączenia */
+  private int nextLoop;
+  /** Pętla zdarzeń obsługująca widzów w trybie wątku na połączenie */
+  private SelectorLoop spectatorLoop;
+  /** Lista połączeń klientów */
+  private final List<ClientConnection> connections;
+  /** Pokoje gry wg numeru (kolejność utworzenia) */
+  private final Map<Integer, Room> rooms;
+  /** Ostatnio przydzielony numer pokoju */
+  private int lastRoomId;
+  /** Kolejki pokoi czekających na przeciwnika (ANY_ROOM) */
+  private final Matchmaker matchmaker = new Matchmaker();
+  /** Pula wątków wyszukujących ruchy silnika serwera */
+  private final EnginePool enginePool;
+  /** Sesje graczy wg tokenu (powrót do gry po utracie połączenia) */
+  private final Map<String, Session> sessions = new HashMap<>();
+  /** Rankingi graczy wg tokenu ostatniej sesji (najdawniej użyte są usuwane) */
+  private final Map<String, Integer> ratings = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+	private static final long serialVersionUID = 1L;
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+	  return size() > IConf.MAX_RATINGS;
+	}
+  };
+  /** Generator tokenów sesji */
+  private final SecureRandom random = new SecureRandom();
+  /** Harmonogram pingów (wspólny dla wszystkich połączeń) */
+  private volatile Heartbeat heartbeat;
   /** True jeżeli konieczny jest restart, false jeżeli nie */
   private boolean restart;
+  /** True w trakcie zatrzymania lub restartu serwera (nowe połączenia są od razu zamykane) */
+  private volatile boolean stopping;
   /** Obserwator do komunikacji z innymi wątkami */
   private AppObserver serverSpy;
-  /** Referencja do GUI serwera */
+  /** Wątek wypisujący wiadomości na konsoli (żeby nie wstrzymywać pętli zdarzeń) */
+  private final ExecutorService consoleExecutor;
+  /** Referencja do GUI serwera (null - serwer bez interfejsu graficznego) */
   private ServerGUI gui;
-  /** Ustawienia gry po stronie serwera */
+  /** Dziennik serwera bez interfejsu graficznego (null - komunikaty na konsoli GUI) */
+  private ServerLog log;
+  /** Konfiguracja sieciowa serwera (adres, port, limity, opcje gniazd) */
+  private final ServerConfig config;
+  /** Konsola administracyjna */
+  private AdminConsole admin;
+  /** Liczniki serwera */
+  private final ServerMetrics metrics = new ServerMetrics();
+  /** Punkt HTTP z licznikami */
+  private MetricsServer metricsServer;
+  /** Zapis gier (null - gry nie są zapisywane) */
+  private volatile GameStore store;
+  /** Ustawienia gry po stronie serwera (domyślne dla nowych pokoi) */
   private final Settings settings;
   
   
   /**
    * Konstruktor
+   * @param threadPerConnection True - każde połączenie obsługuje własny (wirtualny, 
+   * jeżeli dostępny) wątek z blokującym odczytem, false - pętle zdarzeń
+   * @param platformThreads True - zwykłe wątki zamiast wirtualnych (przy wątku na połączenie)
+   * @param headless True - bez interfejsu graficznego (komunikaty w dzienniku)
+   * @param logFile Plik dziennika (null - standardowe wyjście), tylko bez interfejsu graficznego
+   * @param config Konfiguracja sieciowa serwera
    * @throws InterruptedException Problem z uruchomieniem wątku GUI
    * @throws InvocationTargetException Problem z uruchomieniem wątku GUI
+   * @throws IOException Nie można otworzyć pliku dziennika
    */
-  private Server() throws InterruptedException, InvocationTargetException {
+  private Server(boolean threadPerConnection, boolean platformThreads, boolean headless, String logFile, 
+		  ServerConfig config) throws InterruptedException, InvocationTargetException, IOException {
       
-    this.output = new ObjectOutputStream[2];
-    this.input = new ObjectInputStream[2];
-    
+    if (threadPerConnection) connectionExecutor = newConnectionExecutor(platformThreads);
+    if (headless) log = new ServerLog(logFile, IConf.SERVER_LOG_QUEUE);
+    this.config = config;
+	  
     serverSpy = new AppObserver();
     serverSpy.addObserver(this);
-    serverSocketList = new ArrayList<>();
-    serverThreadList = new ArrayList<>();
-    serverPingList = new ArrayList<>();
+    connections = new CopyOnWriteArrayList<>();
+    rooms = new LinkedHashMap<>();
+    consoleExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+    	Thread t = new Thread(r, "console");
+    	t.setDaemon(true);
+    	return t;
+      }
+    });
+    enginePool = new EnginePool(this, IConf.SERVER_ENGINE_THREADS, IConf.ENGINE_MOVE_BUDGET_MS);
     
     // ustawia wartości domyślne
     settings = new Settings();
@@ -90,10 +177,14 @@ public class Server  implements Observer {
       public void run() {
   	    try {  	       
   	      Server.this.free();  
+  	      if (store != null) store.close();
+  	      if (log != null) log.close();
   	    }
   	    catch (Exception e) {}		  
   	  }  		
   	});  	
+  	
+  	if (headless) return;
     
     GUI.setLookAndFeel();
     
@@ -109,122 +200,475 @@ public class Server  implements Observer {
     
   
   /**
-   * Metoda ustawia referencję do strumienia wyjściowego dla danego klienta
-   * @param clientNumber Numer klienta
-   * @param output Strumień wyjściowy
+   * Dołączenie klienta do pokoju. Dla ANY_ROOM przeciwnik jest dobierany z kolejki
+   * graczy czekających z tymi samymi ustawieniami gry i zbliżonym rankingiem, a jeżeli 
+   * takiego nie ma - tworzony jest nowy pokój i dodawany do kolejki. Pokój o podanym 
+   * numerze jest tworzony, jeżeli jeszcze nie istnieje. Gracz żądający gry z silnikiem
+   * serwera zawsze otrzymuje nowy, zamknięty dla innych pokój.
+   * @param client Połączenie klienta
+   * @param request Żądanie klienta
+   * @return Pokój lub null jeżeli jest pełny lub osiągnięto limit pokoi
    */
-  private void setOutputStream(int clientNumber, ObjectOutputStream output) {
-      
-    this.output[clientNumber] = output;
-      
+  protected synchronized Room joinRoom(ClientConnection client, JoinRequest request) {
+	  
+	Room room;
+	int n = -1;
+	int id = request == null ? JoinRequest.ANY_ROOM : request.getRoom();
+	SettingsVar proposed = request == null ? null : request.getSettings();
+	
+	if (id < 0) return null;
+	
+	// ranking przechowywany przez serwer (nowy gracz lub nieznany token - domyślny)
+	Integer known = request == null || request.getToken() == null ? null : ratings.get(request.getToken());
+	client.setRating(known != null ? known : IConf.DEFAULT_RATING);
+	
+	// gra z silnikiem serwera
+	if (request != null && request.getEngine() != null) {
+		
+	  if (rooms.size() >= config.getMaxRooms()) return null;
+	  
+	  room = new Room(nextRoomId(), getRoomSettings(proposed), false, store);
+	  room.addEngine(request.getEngine(), request.isEngineStarts() ? 0 : 1);
+	  rooms.put(room.getId(), room);
+	  
+	  n = room.join(client);
+	  
+	}
+	
+	else if (id == JoinRequest.ANY_ROOM) {
+		
+	  SettingsVar roomSettings = getRoomSettings(proposed);
+	  int rating = client.getRating();
+	  
+	  // pokój z kolejki mógł zostać zajęty przez silnik tuż przed dołączeniem
+	  do {
+		room = matchmaker.poll(roomSettings, rating);
+	  } while (room != null && (n = room.join(client)) < 0);
+	  
+	  if (room == null) {
+		  
+		if (rooms.size() >= config.getMaxRooms()) return null;
+		
+		room = new Room(nextRoomId(), roomSettings, true, store);
+		rooms.put(room.getId(), room);
+		
+		n = room.join(client);
+		matchmaker.add(room, rating);
+		scheduleEngine(room, rating);
+		
+	  }
+	  
+	}
+	
+	else {
+		
+	  room = rooms.get(id);
+	  
+	  if (room == null) {
+		if (rooms.size() >= config.getMaxRooms()) return null;
+		room = new Room(id, getRoomSettings(proposed), false, store);
+		rooms.put(room.getId(), room);
+	  }
+	  
+	  n = room.join(client);
+	  
+	}
+	
+	if (n < 0) return null;
+	
+	client.setRoom(room, n);
+	
+	// ranking przechodzi na nową sesję - poprzedni token nie może go już przywrócić
+	if (known != null) ratings.remove(request.getToken());
+	
+	String token = newToken();
+	sessions.put(token, new Session(room, n, client.getRating()));
+	ratings.put(token, client.getRating());
+	room.setToken(n, token);
+	client.setSession(token);
+	
+	return room;
+	  
   }
   
+  
   /**
-   * Metoda ustawia referencję do strumienia wejściowego dla danego klienta
-   * @param clientNumber Numer klienta
-   * @param input Strumień wejściowy
+   * Nowy token sesji (wołane z blokadą serwera)
+   * @return Losowy token (128 bitów, szesnastkowo)
    */
-  private void setInputStream(int clientNumber, ObjectInputStream input) {
-      
-    this.input[clientNumber] = input;
-      
-  }  
+  private String newToken() {
+	  
+	String token;
+	do {
+	  byte[] bytes = new byte[16];
+	  random.nextBytes(bytes);
+	  StringBuilder sb = new StringBuilder(32);
+	  for (byte b : bytes) sb.append(String.format("%02x", b));
+	  token = sb.toString();
+	} while (sessions.containsKey(token) || ratings.containsKey(token));
+	
+	return token;
+	  
+  }
+  
   
   /**
-   * Metoda zwraca referencję do strumienia wyjściowego dla danego klienta
-   * @param clientNumber Numer klienta
-   * @return Referencja do strumienia wyjściowego
+   * Powrót gracza do gry po utracie połączenia. Jeżeli serwer jeszcze nie wykrył
+   * utraty poprzedniego połączenia, jest ono zamykane.
+   * @param client Nowe połączenie gracza
+   * @param request Żądanie z tokenem sesji
+   * @return Pokój lub null jeżeli sesja wygasła
+   * @throws IOException Błąd zapisu
    */
-  protected ObjectOutputStream getOutputStream(int clientNumber) {
-      
-    
-    try {
-        
-      return output[clientNumber];
-      
-    }
-    catch (ArrayIndexOutOfBoundsException e) {
-       
-       restart();
-       return null;
-        
-    }
-        
+  protected Room resumeRoom(ClientConnection client, ResumeRequest request) throws IOException {
+	  
+	Session session;
+	synchronized (this) {
+	  session = sessions.get(request.getToken());
+	}
+	
+	if (session == null) return null;
+	
+	// poprzednie połączenie nie zostało jeszcze zamknięte
+	ClientConnection old = session.room.getPlayers()[session.seat];
+	if (old != null) {
+	  session.room.suspend(old);
+	  old.disconnect();
+	}
+	
+	client.setRoom(session.room, session.seat);
+	client.setRating(session.rating);
+	client.setSession(request.getToken());
+	
+	if (!session.room.resume(session.seat, client, request.getMovesAmount())) {
+	  client.setRoom(null, 0);
+	  return null;
+	}
+	
+	consoleMsg(Lang.get("PlayerResumed", client.getInetAddress(), session.room.getId()), Color.BLUE);
+	
+	return session.room;
+	  
   }
   
   
   /**
-   * Metoda zwraca referencję do strumienia wejściowego dla danego klienta
-   * @param clientNumber Numer klienta
-   * @return Referencja do strumienia wejściowego
-   */  
-  protected ObjectInputStream getInputStream(int clientNumber) {
-    
-    try {
-        
-      return input[clientNumber];   
-        
-    }
-      
-    catch (ArrayIndexOutOfBoundsException e) {
-       
-       restart();
-       return null;
-        
-    }
-      
-  }  
+   * Zamknięcie pokoju, w którym gracz nie wrócił w wyznaczonym czasie
+   * @param room Pokój
+   * @param seat Zawieszone miejsce
+   */
+  private void expireSession(Room room, int seat) {
+	  
+	if (!room.isSuspended(seat)) return;
+	
+	consoleMsg(Lang.get("SessionExpired", room.getId()), Color.RED);
+	closeRoom(room, null);
+	  
+  }
   
   
-
+  /**
+   * Usunięcie pokoju i jego sesji, zamknięcie pokoju (drugi gracz otrzymuje EXIT)
+   * @param room Pokój
+   * @param leaving Odchodzący gracz lub null
+   */
+  private void closeRoom(Room room, ClientConnection leaving) {
+	  
+	synchronized (this) {
+	  if (rooms.get(room.getId()) == room) rooms.remove(room.getId());
+	  matchmaker.remove(room);
+	  for (String token : room.getTokens())
+		if (token != null) sessions.remove(token);
+	}
+	
+	if (room.close(leaving)) consoleMsg(Lang.get("RoomClosed", room.getId()), Color.DARK_GRAY);
+	  
+  }
   
   
   /**
-   * Metoda zapamiętuje gniazdko klienta do późniejszego uruchomienia dedykowanego wątku serwera
-   * @param socket Gniazdko klienta
+   * Kolejny wolny numer pokoju (wołane z blokadą serwera)
+   * @return Numer pokoju
    */
-  private void addNewSocket(Socket socket) {
-      
-     serverSocketList.add(socket);        
-      
+  private int nextRoomId() {
+	  
+	do { lastRoomId = lastRoomId % Integer.MAX_VALUE + 1; } while (rooms.containsKey(lastRoomId));
+	return lastRoomId;
+	  
+  }
+  
+  
+  /**
+   * Zaplanowanie dołączenia silnika serwera do pokoju, jeżeli w wyznaczonym czasie 
+   * nie dołączy drugi gracz
+   * @param room Pokój z czekającym graczem
+   * @param rating Ranking czekającego gracza (poziom silnika)
+   */
+  private void scheduleEngine(final Room room, final int rating) {
+	  
+	Heartbeat hb = heartbeat;
+	if (hb == null || IConf.MATCH_ENGINE_TIMEOUT_MS <= 0) return;
+	
+	hb.schedule(new Runnable() {
+	  @Override
+	  public void run() {
+		
+		synchronized (Server.this) {
+		  if (!room.addEngine(Matchmaker.getEngineLevel(rating), 1)) return;
+		  matchmaker.remove(room);
+		}
+		
+		consoleMsg(Lang.get("EngineJoinedRoom", room.getId()), Color.BLUE);
+		if (room.start()) roomStarted(room);
+		
+	  }
+	}, IConf.MATCH_ENGINE_TIMEOUT_MS);
+	  
   }
   
   
+  /**
+   * Wyszukanie i wykonanie ruchu silnika serwera (w puli silnika, nie wstrzymuje 
+   * pętli zdarzeń)
+   * @param room Pokój z silnikiem
+   */
+  protected void engineMove(Room room) {
+	  
+	enginePool.submit(room);
+	  
+  }
+  
   
   /**
-   * Metoda uruchamia wątki serwera dla każdego z podłączonych wcześniej klientów
+   * Pokój do obserwacji przez widza
+   * @param id Numer pokoju (JoinRequest.ANY_ROOM - pierwsza trwająca gra)
+   * @return Pokój lub null jeżeli nie ma takiego pokoju
    */
-  private void startServerThreads() {
-      
-    int n = 0;  
-    
-    try {
-        
-      for (Socket s: serverSocketList) {
-        
-        // przesłanie powitania do klienta 
-        gui.getConsole().setMessageLn(Lang.get("WelcomeMessageToClient", n+1), new Color(0xa5, 0x2a, 0x2a));
-        ObjectOutputStream out = getOutputStream(n); 
-        try {
-           out.writeObject(new Command(Command.CMD_START));
-           out.flush();
-        } catch (IOException ex) {
-           // tylko wyjście, restart będzie obsłużony przez Ping
-           return;
-        }
-      
-        ServerThread sThread = new ServerThread(s, this, n);
-        serverThreadList.add(sThread);
-        sThread.start();
-        n++;
-     
-      }
-    }
-    // wyjątek rzucany, jeżeli w trakcie podłączania drugiego klienta, pierwszy klient 
-    // się rozłączył i poszedł restart serwera; nic nie trzeba robić, wystarczy nie blokować
-    catch (ConcurrentModificationException e) {}
-           
-      
+  protected synchronized Room getRoomToWatch(int id) {
+	  
+	if (id != JoinRequest.ANY_ROOM) return rooms.get(id);
+	
+	for (Room r : rooms.values())
+	  if (r.isStarted()) return r;
+	
+	return null;
+	  
+  }
+  
+  
+  /**
+   * Pętla zdarzeń dla połączenia widza przekazywanego z trybu blokującego 
+   * (tworzona przy pierwszym widzu)
+   * @return Pętla zdarzeń
+   * @throws IOException Nie można utworzyć selektora
+   */
+  protected synchronized SelectorLoop getSpectatorLoop() throws IOException {
+	  
+	if (spectatorLoop == null) {
+	  spectatorLoop = new SelectorLoop(0);
+	  spectatorLoop.start();
+	}
+	
+	return spectatorLoop;
+	  
+  }
+  
+  
+  /**
+   * Ustawienia nowego pokoju - proponowane przez klienta (jeżeli są poprawne) 
+   * lub domyślne ustawienia serwera
+   * @param proposed Ustawienia proponowane przez klienta (lub null)
+   * @return Ustawienia pokoju
+   */
+  private SettingsVar getRoomSettings(SettingsVar proposed) {
+	  
+	if (proposed != null) {
+		
+	  Settings s = new Settings(proposed);
+	  int cr = s.getColsAndRows();
+	  boolean sizeOk = cr % 2 == 1 && ((cr >= IConf.MIN_COLS_AND_ROWS && cr <= IConf.MAX_COLS_AND_ROWS) 
+			  || cr == IConf.FREE_COLS_AND_ROWS);
+	  boolean piecesOk = s.getPiecesInRow() >= IConf.MIN_PIECES_IN_ROW 
+			  && s.getPiecesInRow() <= IConf.MAX_PIECES_IN_ROW;
+	  
+	  if (sizeOk && piecesOk) return new SettingsVar(cr, s.getPiecesInRow(), s.getRuleSet());
+	  
+	}
+	
+	synchronized (settings) {
+	  return new SettingsVar(settings.getColsAndRows(), settings.getPiecesInRow(), 
+			settings.getRuleSet() != null ? settings.getRuleSet() : RuleSet.DEFAULT);
+	}
+	  
+  }
+  
+  
+  /**
+   * Informacja o dołączeniu klienta do pokoju
+   * @param client Połączenie klienta
+   * @param room Pokój
+   */
+  protected void roomJoined(ClientConnection client, Room room) {
+	  
+	consoleMsg(Lang.get("ClientJoinedRoom", client.getInetAddress(), room.getId()), Color.BLUE);
+	  
+  }
+  
+  
+  /**
+   * Informacja o rozpoczęciu gry w pokoju
+   * @param room Pokój
+   */
+  protected void roomStarted(Room room) {
+	  
+	consoleMsg(Lang.get("RoomStarted", room.getId()), Color.BLACK);
+	  
+  }
+  
+  
+  /**
+   * Informacja o dołączeniu widza
+   * @param client Połączenie widza
+   * @param room Pokój
+   */
+  protected void spectatorJoined(ClientConnection client, Room room) {
+	  
+	consoleMsg(Lang.get("SpectatorJoined", client.getInetAddress(), room.getId()), Color.BLUE);
+	  
+  }
+  
+  
+  /**
+   * Informacja o rozstrzygnięciu gry w pokoju
+   * @param room Pokój
+   * @param result Wynik gry
+   */
+  protected void roomFinished(Room room, GameResult result) {
+	  
+	consoleMsg(Lang.get("RoomFinished", room.getId(), result), Color.BLACK);
+	metrics.gameFinished();
+	updateRatings(room, result);
+	  
+  }
+  
+  
+  /**
+   * Nowe rankingi graczy po grze - zapis pod tokenem sesji i wysłanie graczom
+   * (gra z silnikiem serwera nie jest liczona)
+   * @param room Pokój
+   * @param result Wynik gry
+   */
+  private void updateRatings(Room room, GameResult result) {
+	  
+	ClientConnection[] players = room.getPlayers();
+	if (players[0] == null || players[1] == null || room.hasEngine()) return;
+	
+	double score = result == GameResult.BLACK_WON ? 1.0 : result == GameResult.DRAW ? 0.5 : 0.0;
+	int black = players[0].getRating(), white = players[1].getRating();
+	int[] updated = {Matchmaker.getNewRating(black, white, score), Matchmaker.getNewRating(white, black, 1.0 - score)};
+	
+	synchronized (this) {
+	  for (int i=0; i<2; i++)
+		if (players[i].getSession() != null) ratings.put(players[i].getSession(), updated[i]);
+	}
+	
+	for (int i=0; i<2; i++) players[i].sendSafe(new Command(Command.CMD_RATING, updated[i]));
+	  
+  }
+  
+  
+  /**
+   * Informacja o niedozwolonym ruchu klienta (klient zostanie rozłączony)
+   * @param client Połączenie klienta
+   * @param room Pokój
+   */
+  protected void illegalMove(ClientConnection client, Room room) {
+	  
+	consoleMsg(Lang.get("IllegalMove", client.getInetAddress(), room.getId()), Color.RED);
+	  
+  }
+  
+  
+  /**
+   * Odłączenie klienta - zamknięcie tylko jego pokoju
+   * @param client Połączenie klienta
+   */
+  protected void leave(ClientConnection client) {
+	  
+	connections.remove(client);
+	Heartbeat hb = heartbeat;
+	if (hb != null) hb.unregister(client);
+	
+	consoleMsg(Lang.get("ConnectionWithXLost", client.getInetAddress()), Color.RED);
+	
+	Room watched = client.getWatchedRoom();
+	if (watched != null) watched.unwatch(client);
+	
+	final Room room = client.getRoom();
+	if (room == null) return;
+	
+	// utrata połączenia w trakcie gry - miejsce czeka na powrót gracza
+	final int seat = client.isExited() || hb == null ? -1 : room.suspend(client);
+	
+	if (seat == -2) return;
+	
+	if (seat >= 0) {
+	  consoleMsg(Lang.get("PlayerSuspended", client.getInetAddress(), room.getId(), 
+			  String.valueOf(IConf.RESUME_GRACE_MS / 1000)), Color.DARK_GRAY);
+	  hb.schedule(new Runnable() {
+		@Override
+		public void run() {
+		  expireSession(room, seat);
+		}
+	  }, IConf.RESUME_GRACE_MS);
+	  return;
+	}
+	
+	closeRoom(room, client);
+	  
+  }
+  
+
+  /**
+   * Pokoje gry (konsola administracyjna)
+   * @return Kopia listy pokoi
+   */
+  protected synchronized List<Room> getRooms() {
+	  
+	return new ArrayList<>(rooms.values());
+	  
+  }
+  
+  
+  protected int getConnectionsCount() {
+	  
+	return connections.size();
+	  
+  }
+  
+  
+  protected ServerMetrics getMetrics() {
+	  
+	return metrics;
+	  
+  }
+  
+  
+  protected EnginePool getEnginePool() {
+	  
+	return enginePool;
+	  
+  }
+  
+  
+  /**
+   * Zapis gier serwera
+   * @return Zapis gier lub null jeżeli gry nie są zapisywane
+   */
+  protected GameStore getGameStore() {
+	  
+	return store;
+	  
   }
   
 
@@ -253,7 +697,7 @@ public class Server  implements Observer {
        
     AppObserver obs = (AppObserver)object;
     
-    SwingUtilities.invokeLater(new Runnable() { 
+    Runnable task = new Runnable() { 
       @Override
       public void run() {
     	  
@@ -263,45 +707,32 @@ public class Server  implements Observer {
             
              String val = (String)obs.getObject();
              if (val.equals("restart")) {
-               gui.trayMessage(Lang.get("ServerRestarted")); 
+               if (gui != null) gui.trayMessage(Lang.get("ServerRestarted")); 
                restart();
              }
             
              break;
            
            
-           case "ping-out":
-        	
-             try {	
-               String msg = Lang.get("ConnectionWithXLost", 
-              		  serverSocketList.get((int)obs.getObject()).getInetAddress());
-               consoleMsg(msg, Color.RED);
-               gui.trayMessage(msg + ". " + Lang.get("ServerRestarted"));
-               restart();
-             }
-             // już zrestartowane - FIX (2 klientów, kolejna gra)
-             catch (IndexOutOfBoundsException e) {
-               try {
-                 free();
-               } catch (Exception ex) {}
-               restart = true;
-             }
-
-             break;
-           
-           
+           // nowe ustawienia dotyczą tylko nowych pokoi
            case "settings":
             
              Settings s = (Settings)obs.getObject();
-             settings.setGameSettings(s.getColsAndRows(), s.getPiecesInRow());                       
-             restart();
+             synchronized (settings) {
+               settings.setGameSettings(s.getColsAndRows(), s.getPiecesInRow());                       
+               settings.setRules(s.getRuleSet(), false);
+             }
            
              break;
              
     	 }
            
        };
-    });           
+    };
+    
+    // bez interfejsu graficznego (konsola administracyjna) - w bieżącym wątku
+    if (gui != null) SwingUtilities.invokeLater(task);
+    else task.run();
      
   }    
   
@@ -310,34 +741,89 @@ public class Server  implements Observer {
    * Operacje przy restarcie/zamknięciu
    */
   private void free() {	  
+	
+	stopping = true;
+	
+	// gry w toku pozostają w zapisie gier (do odtworzenia po restarcie), 
+	// zanim odłączenie graczy zamknie pokoje
+	for (Room room : getRooms()) room.stop();
 		       
-	for (Ping p: serverPingList) p.stopPinging();
-	serverPingList.clear();	
-	
-	for (ServerThread t: serverThreadList) t.interrupt();
-	for (Socket s: serverSocketList) {
-	   try {
-	     s.close();
-	   } catch (Exception ex) {}
-	   do {          
-	     try {
-	       Thread.sleep(50);
-	     } catch (InterruptedException e) { }           
-	   } while (!s.isClosed());
-	}		       
-	    
-	serverThreadList.clear();
-	serverSocketList.clear();
+	if (heartbeat != null) {
+	  heartbeat.shutdown();
+	  heartbeat = null;
+	}
+	
+	List<ClientConnection> tmp = new ArrayList<>(connections);
+	for (ClientConnection t: tmp) t.disconnect();
+	
+	connections.clear();
+	synchronized (this) {
+	  rooms.clear();
+	  matchmaker.clear();
+	  sessions.clear();
+	}
 	  	  
   }
   
   
   /**
-   * Liczba podłączonych klientów   
-   * @return Liczba klientów
+   * Dodanie nowego połączenia do listy i do harmonogramu pingów
+   * @param conn Połączenie
    */
-  private int clientsNum() {
-	 return serverSocketList.size();
+  private void addConnection(ClientConnection conn) {
+	  
+	connections.add(conn);
+	
+	Heartbeat hb = heartbeat;
+	if (hb != null) hb.register(conn);
+	  
+  }
+  
+  
+  /**
+   * Wykonawca uruchamiający wątek na każde połączenie: wątki wirtualne (JDK 21+, 
+   * wywołanie przez refleksję, bo projekt kompiluje się dla Javy 8), a na starszych 
+   * JDK - zwykłe wątki demony
+   * @param platform True - zwykłe wątki również na JDK 21+
+   * @return Wykonawca
+   */
+  private static ExecutorService newConnectionExecutor(boolean platform) {
+	  
+	try {
+	  if (!platform) return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	}
+	catch (ReflectiveOperationException e) {}
+	
+	return Executors.newCachedThreadPool(new ThreadFactory() {
+	  @Override
+	  public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, "client");
+		t.setDaemon(true);
+		return t;
+	  }
+	});
+	  
+  }
+  
+  
+  /**
+   * Uruchomienie pętli zdarzeń obsługujących połączenia
+   */
+  private void startLoops() {
+	  
+	if (connectionExecutor != null) return;
+	  
+	loops = new SelectorLoop[IConf.SERVER_IO_THREADS];
+	  
+	try {
+	  for (int i=0; i<loops.length; i++) {
+		loops[i] = new SelectorLoop(i);
+		loops[i].start();
+	  }
+	} catch (IOException e) {
+      fatal(e.getMessage());
+	}
+	  
   }
   
   
@@ -352,8 +838,6 @@ public class Server  implements Observer {
        Thread.sleep(100);	 
        free();
      }
-     // właśnie zwalnianie w innym wątku
-     catch (ConcurrentModificationException e) {}
      catch (InterruptedException e) {}
      catch (NullPointerException e) {}
      
@@ -365,10 +849,11 @@ public class Server  implements Observer {
        try {
          Thread.sleep(50);
        } catch (InterruptedException e) { }           
-     } while (!serverSocket.isClosed());
+     } while (serverSocket.isOpen());
                 
      setServerSocket();     
 
+     stopping = false;
      restart = true;     
 
   }
@@ -382,13 +867,15 @@ public class Server  implements Observer {
       
     try { 
     	  
-      serverSocket = new ServerSocket(IConf.SERVER_PORT);
+      serverSocket = ServerSocketChannel.open();
+      serverSocket.socket().setReuseAddress(true);
+      // bufor odbioru przed bind() - dziedziczony przez przyjęte gniazda (skalowanie okna TCP)
+      if (config.getReceiveBuffer() > 0) serverSocket.socket().setReceiveBufferSize(config.getReceiveBuffer());
+      serverSocket.bind(config.getAddress(), config.getBacklog());
         
     } catch (IOException e) {
     	  
-      consoleMsg(e.getMessage(), Color.RED);
-      new InfoDialog(gui, e.getMessage(), DialogType.WARNING);
-      System.exit(0);
+      fatal(e.getMessage());
           
     }
       
@@ -396,17 +883,165 @@ public class Server  implements Observer {
   
   
   /**
-   * Wyświetlenie wiadomości na konsoli
+   * Błąd uniemożliwiający pracę serwera - komunikat i zakończenie
+   * @param msg Treść komunikatu
+   */
+  private void fatal(String msg) {
+	  
+	consoleMsg(msg, Color.RED);
+	if (gui != null) new InfoDialog(gui, msg, DialogType.WARNING);
+	System.exit(gui != null ? 0 : 1);
+	  
+  }
+  
+  
+  /**
+   * Uruchomienie konsoli administracyjnej (błąd nie zatrzymuje serwera)
+   */
+  private void startAdminConsole() {
+	  
+	if (config.getAdminPort() <= 0 || admin != null) return;
+	
+	try {
+	  admin = new AdminConsole(this, config.getAdminPort());
+	  admin.start();
+	  consoleMsg(Lang.get("AdminConsoleOnPort", String.valueOf(config.getAdminPort())), Color.DARK_GRAY);
+	} catch (IOException e) {
+	  consoleMsg(Lang.get("AdminConsoleFailed", e.getMessage()), Color.RED);
+	}
+	  
+  }
+  
+  
+  /**
+   * Otwarcie zapisu gier (błąd nie zatrzymuje serwera - gry nie są wtedy zapisywane)
+   */
+  private void startGameStore() {
+	  
+	if (config.getGameStore() == null || store != null) return;
+	
+	try {
+	  store = new GameStore(new File(config.getGameStore()), config.getSegmentSize(), 
+			  config.getSyncInterval(), IConf.GAME_STORE_QUEUE);
+	  consoleMsg(Lang.get("GameStoreOpened", store.getDir().getAbsolutePath(), 
+			  String.valueOf(store.getGamesCount())), Color.DARK_GRAY);
+	} catch (IOException e) {
+	  consoleMsg(Lang.get("GameStoreFailed", e.getMessage()), Color.RED);
+	}
+	  
+  }
+  
+  
+  /**
+   * Odtworzenie pokoi gier w toku z zapisu gier (po awarii lub restarcie serwera).
+   * Gracze wracają do nich z tokenem sesji jak po utracie połączenia, a pokój, do
+   * którego nie wrócą w wyznaczonym czasie, jest zamykany.
+   */
+  private void restoreRooms() {
+	  
+	GameStore s = store;
+	Heartbeat hb = heartbeat;
+	if (s == null || hb == null) return;
+	
+	List<Room> restored = new ArrayList<>();
+	
+	try {
+		
+	  // rekordy końca gier zamkniętych przed restartem mogą jeszcze czekać w kolejce zapisu
+	  if (!s.awaitWritten(IConf.GAME_STORE_FLUSH_MS)) {
+		consoleMsg(Lang.get("GameStoreNotFlushed"), Color.RED);
+		return;
+	  }
+		
+	  for (StoredGame game : s.getOpenGames()) {
+		  
+		Room room = Room.restore(game, s);
+		if (room == null) continue;
+		
+		synchronized (this) {
+		  if (rooms.containsKey(room.getId()) || rooms.size() >= config.getMaxRooms()) {
+			room.close(null);
+			continue;
+		  }
+		  rooms.put(room.getId(), room);
+		  for (int i=0; i<2; i++)
+			if (game.getToken(i) != null) {
+			  sessions.put(game.getToken(i), new Session(room, i, game.getRating(i)));
+			  ratings.put(game.getToken(i), game.getRating(i));
+			}
+		}
+		
+		restored.add(room);
+		
+	  }
+	  
+	} catch (IOException e) {
+	  consoleMsg(Lang.get("GameStoreFailed", e.getMessage()), Color.RED);
+	} catch (InterruptedException e) {
+	  return;
+	}
+	
+	for (final Room room : restored) {
+	  for (int i=0; i<2; i++) {
+		final int seat = i;
+		if (room.isSuspended(seat)) hb.schedule(new Runnable() {
+		  @Override
+		  public void run() {
+			expireSession(room, seat);
+		  }
+		}, IConf.RESUME_GRACE_MS);
+	  }
+	  // ruch silnika mógł nie zostać wykonany przed awarią
+	  if (room.hasEngine()) engineMove(room);
+	}
+	
+	if (!restored.isEmpty())
+	  consoleMsg(Lang.get("RoomsRestored", String.valueOf(restored.size()), 
+			  String.valueOf(IConf.RESUME_GRACE_MS / 1000)), Color.DARK_GRAY);
+	  
+  }
+  
+  
+  /**
+   * Uruchomienie punktu HTTP z licznikami (błąd nie zatrzymuje serwera)
+   */
+  private void startMetricsServer() {
+	  
+	if (config.getMetricsPort() <= 0 || metricsServer != null) return;
+	
+	try {
+	  metricsServer = new MetricsServer(this, config.getMetricsPort());
+	  consoleMsg(Lang.get("MetricsOnPort", String.valueOf(config.getMetricsPort())), Color.DARK_GRAY);
+	} catch (IOException e) {
+	  consoleMsg(Lang.get("MetricsFailed", e.getMessage()), Color.RED);
+	}
+	  
+  }
+  
+  
+  /**
+   * Wyświetlenie wiadomości na konsoli lub zapis w dzienniku (asynchronicznie, 
+   * w kolejności wywołań)
    * @param msg Treść
-   * @param color Kolor
+   * @param color Kolor (w dzienniku czerwony oznacza ostrzeżenie)
    */
-  private synchronized void consoleMsg(String msg, Color color) {
+  private void consoleMsg(final String msg, final Color color) {
 	  
-	  String timeStamp
+	  if (log != null) {
+		log.log(msg, color == Color.RED);
+		return;
+	  }
+	  
+	  final String timeStamp
 	  	= new SimpleDateFormat("HH:mm:ss").format(Calendar.getInstance().getTime());  
 	  
-	  gui.getConsole().setMessage(timeStamp + ": ", Color.GRAY);
-	  gui.getConsole().setMessageLn(msg, color);  
+	  consoleExecutor.execute(new Runnable() {
+		@Override
+		public void run() {
+	      gui.getConsole().setMessage(timeStamp + ": ", Color.GRAY);
+	      gui.getConsole().setMessageLn(msg, color);  
+		}
+	  });
 	  
   }
   
@@ -417,16 +1052,26 @@ public class Server  implements Observer {
    */
   public void start() {
 	  
-	gui.getConsole().setMessageLn("Gomoku Server v."+IConf.VERSION_SERVER, Color.BLACK);
-	gui.getConsole().setMessageLn("------------------------------------------------"
+	if (gui != null) {
+	  gui.getConsole().setMessageLn("Gomoku Server v."+IConf.VERSION_SERVER, Color.BLACK);
+	  gui.getConsole().setMessageLn("------------------------------------------------"
 			+ "-------------------------------------------------------", Color.BLACK);    
+	}
+	else log.log("Gomoku Server v."+IConf.VERSION_SERVER, false);
+	
+	for (String option : config.getInvalid())
+	  consoleMsg(Lang.get("InvalidServerOption", option), Color.RED);
 	  
     setServerSocket();	
+    startGameStore();
+    startLoops();
+    startAdminConsole();
+    startMetricsServer();
     
-    SwingUtilities.invokeLater(new Runnable() {		
+    if (gui != null) SwingUtilities.invokeLater(new Runnable() {		
 	  @Override
 	  public void run() {
-		gui.setTray();
+		gui.setTray(config.getPort());
 	  }
 	});
 	  
@@ -437,61 +1082,69 @@ public class Server  implements Observer {
 	  } catch (Exception e) {}
 	      
 	  consoleMsg(Lang.get("WaitForConnectionsOnPort",
-	    		  String.valueOf(IConf.SERVER_PORT)), Color.DARK_GRAY);
+	    		  String.valueOf(config.getPort())), Color.DARK_GRAY);
 	      
 	  restart = false;
+	  if (heartbeat == null) heartbeat = new Heartbeat(IConf.HEARTBEAT_INTERVAL_MS, IConf.HEARTBEAT_TIMEOUT_MS);
+	  restoreRooms();
 	             
 	  while (!restart)  {    	  
 	  
         try {  
           
-          Socket socket = serverSocket.accept();
+          SocketChannel channel = serverSocket.accept();
+          
+          // zatrzymanie serwera - gracz wracający do gry połączy się ponownie po restarcie
+          if (stopping) {
+            channel.close();
+            continue;
+          }
+          
+          // limit połączeń - nadmiarowe są od razu zamykane
+          if (connections.size() >= config.getMaxConnections()) {
+            consoleMsg(Lang.get("ConnectionLimitReached", channel.socket().getInetAddress(),
+            		String.valueOf(config.getMaxConnections())), Color.RED);
+            metrics.connectionRefused();
+            channel.close();
+            continue;
+          }
           
           try {
-         
-            setInputStream(clientsNum(), new ObjectInputStream(socket.getInputStream()));
-            setOutputStream(clientsNum(), new ObjectOutputStream(socket.getOutputStream()));                    
-
-            String msg = Lang.get("ConnectionWithXAccepted", socket.getInetAddress());
-            consoleMsg(msg, Color.BLUE);     
-            gui.trayMessage(msg);
-           
-            Ping ping = new Ping(this, clientsNum());
-            serverPingList.add(ping);
-            ping.startPinging();
-         
-            addNewSocket(socket);         
-         
-            if (clientsNum() == 2) {             
-              startServerThreads();                   
-              consoleMsg(Lang.get("TwoClientsAlready") + "\n", Color.BLACK);
-              gui.trayMessage(Lang.get("TwoClientsAlready"));             
-            }
-         
-          }      
+            channel.configureBlocking(connectionExecutor != null);
+            channel.socket().setTcpNoDelay(config.isTcpNoDelay());
+            if (config.getSendBuffer() > 0) channel.socket().setSendBufferSize(config.getSendBuffer());
+          } catch (IOException e) {
+            channel.close();
+            continue;
+          }
           
-          // jest już 2 klientów
-          catch (ArrayIndexOutOfBoundsException e) {
-          	          
-            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-            out.writeObject(new Command(Command.CMD_FULL));
-            out.flush();     	    
-          	
+          consoleMsg(Lang.get("ConnectionWithXAccepted", channel.socket().getInetAddress()), Color.BLUE);     
+          metrics.connectionAccepted();
+          
+          // wątek na połączenie
+          if (connectionExecutor != null) {
+        	ClientConnection conn = new ClientConnection(channel, this, null);
+        	addConnection(conn);
+        	connectionExecutor.execute(conn.getWriter());
+        	connectionExecutor.execute(conn);
+        	continue;
           }
+          
+          // połączenia przydzielane kolejno do pętli zdarzeń
+          SelectorLoop loop = loops[nextLoop];
+          nextLoop = (nextLoop + 1) % loops.length;
+          
+          ClientConnection conn = new ClientConnection(channel, this, loop);
+          addConnection(conn);
+          loop.register(conn);
       
         }
-     
        
         catch (IOException e) {       
           restart = true;
      	  break;      	  
         }
 
-        try {
-          Thread.sleep(50);
-        }
-        catch (InterruptedException e) { return; }    
-
       }
 	  
 	  
@@ -507,25 +1160,59 @@ public class Server  implements Observer {
    * i uruchamia dedykowane dla nich wątki serwera.
    * Metoda jest wołana przez głowną klasę projektu Gomoku, w razie wywołania 
    * z parametrem -s.
-   * @param args Parametry wejściowe (nie obsługiwane)
+   * @param args Parametry wejściowe: -threads - wątek (wirtualny na JDK 21+) na połączenie
+   * zamiast pętli zdarzeń, -platform - razem z -threads zwykłe wątki, -headless - bez interfejsu 
+   * graficznego (również gdy nie ma ekranu), -log=plik - plik dziennika (domyślnie standardowe 
+   * wyjście), -config=plik - plik konfiguracji serwera, -klucz=wartość - wartość konfiguracji 
+   * (np. -port=4446)
+   * @see ServerConfig
    * @see gomoku.Gomoku
    */
   public static void main(final String[] args) {
+	  
+    List<String> options = Arrays.asList(args);
+    boolean headless = options.contains(HEADLESS_OPTION) || GraphicsEnvironment.isHeadless();
+    String logFile = null;
+    
+    for (String option : options)
+      if (option.startsWith(LOG_OPTION)) logFile = option.substring(LOG_OPTION.length());
+    
+    ServerConfig config = new ServerConfig();
+    config.load(options);
+    
+    if (headless) System.setProperty("java.awt.headless", "true");
      
     try {  
-      new Server().start();    
+      new Server(options.contains(THREADS_OPTION), options.contains(PLATFORM_THREADS_OPTION), headless, 
+    		  logFile, config).start();    
     } catch (InterruptedException | InvocationTargetException e) {
       System.err.println(Lang.get("StartGraphicsProblem", e));
       System.exit(0);
+    } catch (IOException e) {
+      System.err.println(e);
+      System.exit(1);
     } 
     
   }
   
  
-}
-  
-  
+  /** Sesja gracza - miejsce w pokoju i ranking (powrót do gry po utracie połączenia) */
+  private static class Session {
+	  
+	/** Pokój */
+	private final Room room;
+	/** Nr gracza w pokoju */
+	private final int seat;
+	/** Ranking gracza (serwera) przy dołączeniu */
+	private final int rating;
+	
+	private Session(Room room, int seat, int rating) {
+	  this.room = room;
+	  this.seat = seat;
+	  this.rating = rating;
+	}
+	  
+  }
   
   
-
-  
\ No newline at end of file
+}
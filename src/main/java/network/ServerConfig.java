@@ -0,0 +1,228 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import gomoku.IConf;
+
+/**
+ *
+ * Konfiguracja sieciowa serwera: adres i port nasłuchu, kolejka połączeń, limity
+ * pokoi i połączeń, bufory gniazd i TCP_NODELAY, porty lokalnej konsoli i liczników,
+ * katalog i parametry zapisu gier.
+ * Wartości domyślne pochodzą z IConf, są nadpisywane przez plik ustawień
+ * (gomoku-server.properties lub -config=plik), a te przez parametry wywołania
+ * w postaci -klucz=wartość (te same klucze co w pliku).
+ * Nieprawidłowe wartości są pomijane (zostaje poprzednia wartość), a ich klucze
+ * można pobrać do wyświetlenia ostrzeżenia.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class ServerConfig {
+
+  /** Nazwa domyślnego pliku konfiguracji serwera */
+  private final static String FILE_NAME = "gomoku-server.properties";
+  /** Parametr wywołania: plik konfiguracji (-config=plik) */
+  private final static String CONFIG_OPTION = "-config=";
+  /** Największy numer portu */
+  private final static int MAX_PORT = 65535;
+
+  /** Adres nasłuchu (null - wszystkie interfejsy) */
+  private String bindAddress = null;
+  /** Port serwera */
+  private int port = IConf.SERVER_PORT;
+  /** Długość kolejki połączeń czekających na przyjęcie (0 - domyślna systemu) */
+  private int backlog = IConf.SERVER_BACKLOG;
+  /** Maksymalna liczba pokoi */
+  private int maxRooms = IConf.MAX_ROOMS;
+  /** Maksymalna liczba jednoczesnych połączeń (graczy i widzów) */
+  private int maxConnections = IConf.MAX_CONNECTIONS;
+  /** Rozmiar bufora odbioru gniazda (bajty, 0 - domyślny systemu) */
+  private int receiveBuffer = 0;
+  /** Rozmiar bufora wysyłania gniazda (bajty, 0 - domyślny systemu) */
+  private int sendBuffer = 0;
+  /** Czy wyłączony jest algorytm Nagle'a */
+  private boolean tcpNoDelay = true;
+  /** Port konsoli administracyjnej (0 - bez konsoli) */
+  private int adminPort = IConf.ADMIN_PORT;
+  /** Port punktu HTTP z licznikami serwera (0 - bez liczników HTTP) */
+  private int metricsPort = IConf.METRICS_PORT;
+  /** Katalog zapisu gier (null - gry nie są zapisywane) */
+  private String gameStore = IConf.GAME_STORE_DIR;
+  /** Maksymalny rozmiar segmentu zapisu gier (bajty) */
+  private int segmentSize = IConf.GAME_STORE_SEGMENT_SIZE;
+  /** Interwał utrwalania zapisu gier na dysku (ms, 0 - po każdej partii) */
+  private int syncInterval = (int)IConf.GAME_STORE_SYNC_MS;
+  /** Klucze z nieprawidłowymi wartościami */
+  private final List<String> invalid = new ArrayList<>();
+
+
+  /**
+   * Załadowanie konfiguracji z pliku i parametrów wywołania
+   * @param args Parametry wywołania (-config=plik i -klucz=wartość, inne są pomijane)
+   */
+  public void load(List<String> args) {
+
+	String fileName = FILE_NAME;
+	Properties options = new Properties();
+
+	for (String arg : args) {
+	  if (arg.startsWith(CONFIG_OPTION)) fileName = arg.substring(CONFIG_OPTION.length());
+	  else if (arg.startsWith("-") && arg.indexOf('=') > 1)
+		options.setProperty(arg.substring(1, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+	}
+
+	Properties props = new Properties();
+
+	try (InputStream in = new FileInputStream(new File(fileName))) {
+	  props.load(in);
+	}
+	catch (IOException e) {
+	  // brak domyślnego pliku nie jest błędem
+	  if (!fileName.equals(FILE_NAME)) invalid.add(CONFIG_OPTION + fileName);
+	}
+
+	set(props);
+	set(options);
+
+  }
+
+
+  private void set(Properties props) {
+
+	if (props.containsKey("bindAddress")) {
+	  String val = props.getProperty("bindAddress").trim();
+	  bindAddress = val.isEmpty() || val.equals("*") ? null : val;
+	}
+
+	port = getInt(props, "port", port, 1, MAX_PORT);
+	backlog = getInt(props, "backlog", backlog, 0, Integer.MAX_VALUE);
+	maxRooms = getInt(props, "maxRooms", maxRooms, 1, Integer.MAX_VALUE);
+	maxConnections = getInt(props, "maxConnections", maxConnections, 1, Integer.MAX_VALUE);
+	receiveBuffer = getInt(props, "receiveBuffer", receiveBuffer, 0, Integer.MAX_VALUE);
+	sendBuffer = getInt(props, "sendBuffer", sendBuffer, 0, Integer.MAX_VALUE);
+	adminPort = getInt(props, "adminPort", adminPort, 0, MAX_PORT);
+	metricsPort = getInt(props, "metricsPort", metricsPort, 0, MAX_PORT);
+	segmentSize = getInt(props, "segmentSize", segmentSize, GameStore.MIN_SEGMENT_SIZE, Integer.MAX_VALUE);
+	syncInterval = getInt(props, "syncInterval", syncInterval, 0, Integer.MAX_VALUE);
+
+	if (props.containsKey("gameStore")) {
+	  String val = props.getProperty("gameStore").trim();
+	  gameStore = val.isEmpty() ? null : val;
+	}
+
+	if (props.containsKey("tcpNoDelay"))
+	  tcpNoDelay = Boolean.valueOf(props.getProperty("tcpNoDelay").trim());
+
+  }
+
+
+  private int getInt(Properties props, String key, int current, int min, int max) {
+
+	if (!props.containsKey(key)) return current;
+
+	try {
+	  int val = Integer.parseInt(props.getProperty(key).trim());
+	  if (val < min || val > max) throw new Exception();
+	  return val;
+	}
+	catch (Exception e) {
+	  invalid.add(key + "=" + props.getProperty(key));
+	  return current;
+	}
+
+  }
+
+
+  /**
+   * Adres gniazda serwera
+   * @return Adres nasłuchu i port
+   */
+  public InetSocketAddress getAddress() {
+
+	return bindAddress == null ? new InetSocketAddress(port) : new InetSocketAddress(bindAddress, port);
+
+  }
+
+
+  public int getPort() {
+	return port;
+  }
+
+
+  public int getBacklog() {
+	return backlog;
+  }
+
+
+  public int getMaxRooms() {
+	return maxRooms;
+  }
+
+
+  public int getMaxConnections() {
+	return maxConnections;
+  }
+
+
+  public int getReceiveBuffer() {
+	return receiveBuffer;
+  }
+
+
+  public int getSendBuffer() {
+	return sendBuffer;
+  }
+
+
+  public boolean isTcpNoDelay() {
+	return tcpNoDelay;
+  }
+
+
+  public int getAdminPort() {
+	return adminPort;
+  }
+
+
+  public int getMetricsPort() {
+	return metricsPort;
+  }
+
+
+  public String getGameStore() {
+	return gameStore;
+  }
+
+
+  public int getSegmentSize() {
+	return segmentSize;
+  }
+
+
+  public int getSyncInterval() {
+	return syncInterval;
+  }
+
+
+  /**
+   * Nieprawidłowe wartości konfiguracji (pominięte)
+   * @return Lista w postaci klucz=wartość
+   */
+  public List<String> getInvalid() {
+	return invalid;
+  }
+
+
+}
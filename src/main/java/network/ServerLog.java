@@ -0,0 +1,155 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gomoku.Lang;
+
+/**
+ *
+ * Asynchroniczny dziennik serwera bez interfejsu graficznego (plik lub standardowe
+ * wyjście). Wątki serwera tylko wstawiają wpis do ograniczonej kolejki - nigdy nie
+ * czekają na zapis, a przy przepełnionej kolejce wpis jest pomijany (liczba
+ * pominiętych wpisów jest zapisywana w dzienniku). Wpisy są formatowane i
+ * zapisywane przez osobny wątek, partiami.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class ServerLog {
+
+  /** Wpis dziennika */
+  private static class Entry {
+
+	/** Czas (ms) */
+	private final long time;
+	/** True jeżeli ostrzeżenie */
+	private final boolean warning;
+	/** Treść */
+	private final String msg;
+
+	private Entry(long time, boolean warning, String msg) {
+	  this.time = time;
+	  this.warning = warning;
+	  this.msg = msg;
+	}
+
+  }
+
+  /** Wpis kończący pracę wątku zapisu */
+  private final static Entry END = new Entry(0, false, null);
+
+  /** Wpisy czekające na zapis */
+  private final BlockingQueue<Entry> queue;
+  /** Liczba pominiętych wpisów (przepełniona kolejka) */
+  private final AtomicLong dropped = new AtomicLong();
+  /** Wyjście dziennika */
+  private final Writer out;
+  /** Wątek zapisu */
+  private final Thread writer;
+
+
+  /**
+   * Konstruktor, uruchamia wątek zapisu
+   * @param fileName Nazwa pliku dziennika (dopisywanie) lub null - standardowe wyjście
+   * @param capacity Maksymalna liczba wpisów czekających na zapis
+   * @throws IOException Nie można otworzyć pliku
+   */
+  public ServerLog(String fileName, int capacity) throws IOException {
+
+	OutputStream os = fileName == null ? System.out : new FileOutputStream(fileName, true);
+	out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+	queue = new ArrayBlockingQueue<>(capacity);
+
+	writer = new Thread("log") {
+	  @Override
+	  public void run() {
+		write();
+	  }
+	};
+	writer.setDaemon(true);
+	writer.start();
+
+  }
+
+
+  /**
+   * Dodanie wpisu (bez czekania na zapis)
+   * @param msg Treść
+   * @param warning True jeżeli ostrzeżenie (błąd, rozłączenie)
+   */
+  public void log(String msg, boolean warning) {
+
+	if (!queue.offer(new Entry(System.currentTimeMillis(), warning, msg))) dropped.incrementAndGet();
+
+  }
+
+
+  /**
+   * Zapis pozostałych wpisów i zatrzymanie wątku zapisu (bez czekania, jeżeli
+   * wątek zapisu zakończył się po błędzie)
+   */
+  public void close() {
+
+	try {
+	  if (writer.isAlive() && queue.offer(END, 1000, TimeUnit.MILLISECONDS)) writer.join(1000);
+	} catch (InterruptedException e) {}
+
+  }
+
+
+  private void write() {
+
+	SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+	List<Entry> batch = new ArrayList<>();
+
+	try {
+
+	  while (true) {
+
+		batch.add(queue.take());
+		queue.drainTo(batch);
+
+		for (Entry e : batch) {
+		  if (e == END) {
+			out.flush();
+			return;
+		  }
+		  out.write(format.format(new Date(e.time)) + (e.warning ? " WARN " : " INFO ") + e.msg);
+		  out.write(System.lineSeparator());
+		}
+
+		long n = dropped.getAndSet(0);
+		if (n > 0) out.write(format.format(new Date()) + " WARN " + Lang.get("LogEntriesDropped", n) + System.lineSeparator());
+
+		out.flush();
+		batch.clear();
+
+	  }
+
+	}
+	catch (InterruptedException | IOException e) {
+	  System.err.println(e);
+	}
+
+  }
+
+
+}
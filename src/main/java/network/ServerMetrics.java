@@ -0,0 +1,250 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * Liczniki serwera: połączenia, gry, ramki odebrane i wysłane wg kodu komendy,
+ * bajty, czas przekazania ramki przez serwer, czas odpowiedzi klientów (ping)
+ * i zapis gier.
+ * Zapis jest bez blokad - wołany z pętli zdarzeń i wątków połączeń. Stan pokoi
+ * jest odczytywany dopiero przy pobraniu liczników. Format tekstowy Prometheus.
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class ServerMetrics {
+
+  /** Kwantyle histogramów w formacie tekstowym */
+  private final static double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+  /** Przyjęte połączenia */
+  private final LongAdder accepted = new LongAdder();
+  /** Połączenia odrzucone (limit połączeń) */
+  private final LongAdder refused = new LongAdder();
+  /** Zakończone gry */
+  private final LongAdder finished = new LongAdder();
+  /** Odebrane ramki wg kodu komendy */
+  private final AtomicLongArray framesIn = new AtomicLongArray(256);
+  /** Wysłane ramki wg kodu komendy */
+  private final AtomicLongArray framesOut = new AtomicLongArray(256);
+  /** Odebrane bajty */
+  private final LongAdder bytesIn = new LongAdder();
+  /** Wysłane bajty (ramki przekazane do zapisu) */
+  private final LongAdder bytesOut = new LongAdder();
+  /** Czas od odczytu ramki do przekazania jej przeciwnikowi (mikrosekundy) */
+  private final LatencyHistogram relayLatency = new LatencyHistogram();
+  /** Czas odpowiedzi klientów na ping (mikrosekundy) */
+  private final LatencyHistogram rtt = new LatencyHistogram();
+
+
+  protected void connectionAccepted() {
+	accepted.increment();
+  }
+
+
+  protected void connectionRefused() {
+	refused.increment();
+  }
+
+
+  protected void gameFinished() {
+	finished.increment();
+  }
+
+
+  /**
+   * Odebrana ramka
+   * @param command Kod komendy
+   * @param bytes Długość ramki z nagłówkiem
+   */
+  protected void frameIn(byte command, int bytes) {
+
+	framesIn.incrementAndGet(command & 0xff);
+	bytesIn.add(bytes);
+
+  }
+
+
+  /**
+   * Ramki przekazane do wysłania (bufor może zawierać kilka ramek)
+   * @param frames Bufor z ramkami (pozycja nie jest zmieniana)
+   */
+  protected void framesOut(ByteBuffer frames) {
+
+	ByteBuffer buf = frames.duplicate();
+	bytesOut.add(buf.remaining());
+
+	try {
+	  while (buf.hasRemaining()) {
+		int length = CommandCodec.readLength(buf);
+		if (length < 0 || buf.remaining() < length) break;
+		framesOut.incrementAndGet(buf.get(buf.position()) & 0xff);
+		buf.position(buf.position() + length);
+	  }
+	} catch (IOException e) {}
+
+  }
+
+
+  protected void relayLatency(long micros) {
+	relayLatency.record(micros);
+  }
+
+
+  protected void rtt(int micros) {
+	rtt.record(micros);
+  }
+
+
+  /**
+   * Liczniki w formacie tekstowym Prometheus
+   * @param server Referencja do obiektu głównego serwera (stan połączeń i pokoi)
+   * @return Tekst
+   */
+  public String toPrometheus(Server server) {
+
+	StringBuilder sb = new StringBuilder(4096);
+	List<Room> rooms = server.getRooms();
+
+	int started = 0, spectators = 0;
+	for (Room r : rooms) {
+	  if (r.isStarted()) started++;
+	  spectators += r.getSpectatorsCount();
+	}
+
+	type(sb, "gomoku_connections", "gauge", "Open client connections (players and spectators)");
+	sb.append("gomoku_connections ").append(server.getConnectionsCount()).append('\n');
+	type(sb, "gomoku_connections_accepted_total", "counter", "Accepted connections");
+	sb.append("gomoku_connections_accepted_total ").append(accepted.sum()).append('\n');
+	type(sb, "gomoku_connections_refused_total", "counter", "Connections refused by the connection limit");
+	sb.append("gomoku_connections_refused_total ").append(refused.sum()).append('\n');
+
+	type(sb, "gomoku_rooms", "gauge", "Game rooms by state");
+	sb.append("gomoku_rooms{state=\"started\"} ").append(started).append('\n');
+	sb.append("gomoku_rooms{state=\"waiting\"} ").append(rooms.size() - started).append('\n');
+	type(sb, "gomoku_spectators", "gauge", "Spectators in all rooms");
+	sb.append("gomoku_spectators ").append(spectators).append('\n');
+	type(sb, "gomoku_games_finished_total", "counter", "Games finished with a result");
+	sb.append("gomoku_games_finished_total ").append(finished.sum()).append('\n');
+	type(sb, "gomoku_engine_pending", "gauge", "Engine moves queued or being searched");
+	sb.append("gomoku_engine_pending ").append(server.getEnginePool().getPending()).append('\n');
+
+	type(sb, "gomoku_frames_received_total", "counter", "Frames received by command");
+	commands(sb, "gomoku_frames_received_total", framesIn);
+	type(sb, "gomoku_frames_sent_total", "counter", "Frames sent by command");
+	commands(sb, "gomoku_frames_sent_total", framesOut);
+	type(sb, "gomoku_received_bytes_total", "counter", "Bytes received");
+	sb.append("gomoku_received_bytes_total ").append(bytesIn.sum()).append('\n');
+	type(sb, "gomoku_sent_bytes_total", "counter", "Bytes queued for sending");
+	sb.append("gomoku_sent_bytes_total ").append(bytesOut.sum()).append('\n');
+
+	type(sb, "gomoku_relay_latency_seconds", "summary", "Time from reading a frame to passing it to the opponent");
+	summary(sb, "gomoku_relay_latency_seconds", relayLatency);
+	type(sb, "gomoku_ping_rtt_seconds", "summary", "Client ping round trip time");
+	summary(sb, "gomoku_ping_rtt_seconds", rtt);
+
+	GameStore store = server.getGameStore();
+	if (store != null) {
+	  type(sb, "gomoku_store_records_total", "counter", "Game records written to the game store");
+	  sb.append("gomoku_store_records_total ").append(store.getWritten()).append('\n');
+	  type(sb, "gomoku_store_dropped_total", "counter", "Game records dropped (full write queue)");
+	  sb.append("gomoku_store_dropped_total ").append(store.getDropped()).append('\n');
+	  type(sb, "gomoku_store_bytes_total", "counter", "Bytes written to the game store");
+	  sb.append("gomoku_store_bytes_total ").append(store.getBytes()).append('\n');
+	  type(sb, "gomoku_store_syncs_total", "counter", "Game store syncs to disk");
+	  sb.append("gomoku_store_syncs_total ").append(store.getSyncs()).append('\n');
+	  type(sb, "gomoku_store_queued", "gauge", "Game records waiting for the writer");
+	  sb.append("gomoku_store_queued ").append(store.getQueued()).append('\n');
+	  type(sb, "gomoku_store_segment", "gauge", "Current game store segment number");
+	  sb.append("gomoku_store_segment ").append(store.getSegment()).append('\n');
+	}
+
+	type(sb, "gomoku_room_moves", "gauge", "Moves made in a room");
+	for (Room r : rooms)
+	  sb.append("gomoku_room_moves{room=\"").append(r.getId()).append("\"} ").append(r.getMovesAmount()).append('\n');
+	type(sb, "gomoku_room_relayed_total", "counter", "Frames relayed between players in a room");
+	for (Room r : rooms)
+	  sb.append("gomoku_room_relayed_total{room=\"").append(r.getId()).append("\"} ").append(r.getRelayedCount()).append('\n');
+	type(sb, "gomoku_room_spectators", "gauge", "Spectators in a room");
+	for (Room r : rooms)
+	  sb.append("gomoku_room_spectators{room=\"").append(r.getId()).append("\"} ").append(r.getSpectatorsCount()).append('\n');
+
+	return sb.toString();
+
+  }
+
+
+  private static void type(StringBuilder sb, String name, String type, String help) {
+
+	sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+	sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+
+  }
+
+
+  private static void commands(StringBuilder sb, String name, AtomicLongArray counts) {
+
+	for (int i=0; i<counts.length(); i++) {
+	  long n = counts.get(i);
+	  if (n > 0) sb.append(name).append("{command=\"").append(getCommandName(i)).append("\"} ").append(n).append('\n');
+	}
+
+  }
+
+
+  private static void summary(StringBuilder sb, String name, LatencyHistogram h) {
+
+	for (double q : QUANTILES)
+	  sb.append(name).append("{quantile=\"").append(q).append("\"} ").append(seconds(h.getQuantile(q))).append('\n');
+
+	sb.append(name).append("_sum ").append(seconds(h.getSum())).append('\n');
+	sb.append(name).append("_count ").append(h.getCount()).append('\n');
+
+  }
+
+
+  private static String seconds(long micros) {
+
+	return String.format(Locale.US, "%.6f", micros / 1e6);
+
+  }
+
+
+  private static String getCommandName(int command) {
+
+	switch (command) {
+	  case Command.CMD_OK: return "OK";
+	  case Command.CMD_EXIT: return "EXIT";
+	  case Command.CMD_START: return "START";
+	  case Command.CMD_PING: return "PING";
+	  case Command.CMD_STOP_MSG: return "STOP_MSG";
+	  case Command.CMD_PONG: return "PONG";
+	  case Command.CMD_MOVE: return "MOVE";
+	  case Command.CMD_MESSAGE: return "MESSAGE";
+	  case Command.CMD_RESULT: return "RESULT";
+	  case Command.CMD_RATING: return "RATING";
+	  case Command.CMD_SESSION: return "SESSION";
+	  case Command.CMD_RESUME: return "RESUME";
+	  case Command.CMD_SETTINGS: return "SETTINGS";
+	  case Command.CMD_NUMBER: return "NUMBER";
+	  case Command.CMD_FULL: return "FULL";
+	  case Command.CMD_JOIN: return "JOIN";
+	  case Command.CMD_WATCH: return "WATCH";
+	  case Command.CMD_SNAPSHOT: return "SNAPSHOT";
+	  default: return String.valueOf(command);
+	}
+
+  }
+
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Gomoku
+ * Maciej Kawecki 2015/16
+ */
+package network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import game.BoardField;
+import game.DifficultyLevel;
+import gomoku.SettingsVar;
+
+/**
+ *
+ * Gra odczytana z zapisu gier serwera (GameStore): ustawienia, ruchy i wynik,
+ * a także pokój i sesje graczy (odtworzenie gry w toku po restarcie serwera)
+ *
+ * @author Maciej Kawecki
+ *
+ */
+public class StoredGame {
+
+  /** Numer gry */
+  private final int id;
+  /** Numer pokoju */
+  private final int room;
+  /** Ustawienia gry */
+  private final SettingsVar settings;
+  /** Poziom silnika serwera (null - gra dwóch graczy) */
+  private final DifficultyLevel engine;
+  /** Nr gracza, którego miejsce zajmował silnik (-1 - brak silnika) */
+  private final int engineSeat;
+  /** Czas rozpoczęcia gry (ms) */
+  private final long startTime;
+  /** Kolejne ruchy */
+  private final List<BoardField> moves = new ArrayList<>();
+  /** Wynik gry (null - gra trwa lub przerwana awarią serwera, CONTINUE - pokój zamknięty bez wyniku) */
+  private GameResult result;
+  /** Tokeny sesji graczy (null - brak zapisanej sesji) */
+  private final String[] tokens = new String[2];
+  /** Rankingi graczy */
+  private final int[] ratings = new int[2];
+  /** True jeżeli rekord gry został pominięty (przepełniona kolejka zapisu) */
+  private boolean damaged;
+
+
+  /**
+   * Konstruktor
+   * @param id Numer gry
+   * @param room Numer pokoju
+   * @param settings Ustawienia gry
+   * @param engine Poziom silnika serwera lub null
+   * @param engineSeat Nr gracza, którego miejsce zajmował silnik lub -1
+   * @param startTime Czas rozpoczęcia gry (ms)
+   */
+  public StoredGame(int id, int room, SettingsVar settings, DifficultyLevel engine, int engineSeat, long startTime) {
+
+	this.id = id;
+	this.room = room;
+	this.settings = settings;
+	this.engine = engine;
+	this.engineSeat = engineSeat;
+	this.startTime = startTime;
+
+  }
+
+
+  protected void addMove(BoardField move) {
+	moves.add(move);
+  }
+
+
+  protected void setResult(GameResult result) {
+	this.result = result;
+  }
+
+
+  protected void setDamaged() {
+	damaged = true;
+  }
+
+
+  protected void setSession(int seat, String token, int rating) {
+	tokens[seat] = token;
+	ratings[seat] = rating;
+  }
+
+
+  public int getId() {
+	return id;
+  }
+
+
+  public int getRoom() {
+	return room;
+  }
+
+
+  public SettingsVar getSettings() {
+	return settings;
+  }
+
+
+  public DifficultyLevel getEngine() {
+	return engine;
+  }
+
+
+  public int getEngineSeat() {
+	return engineSeat;
+  }
+
+
+  public long getStartTime() {
+	return startTime;
+  }
+
+
+  public List<BoardField> getMoves() {
+	return Collections.unmodifiableList(moves);
+  }
+
+
+  public GameResult getResult() {
+	return result;
+  }
+
+
+  /**
+   * Token sesji gracza
+   * @param seat Nr gracza
+   * @return Token lub null jeżeli sesja nie została zapisana
+   */
+  public String getToken(int seat) {
+	return tokens[seat];
+  }
+
+
+  public int getRating(int seat) {
+	return ratings[seat];
+  }
+
+
+  /**
+   * Czy zapis gry jest niepełny - pominięto jej rekord (np. ruch), więc ruchy
+   * nie odpowiadają rozegranej grze
+   * @return True jeżeli tak
+   */
+  public boolean isDamaged() {
+	return damaged;
+  }
+
+
+  /**
+   * Czy gra została zakończona (wynikiem lub zamknięciem pokoju)
+   * @return True jeżeli tak
+   */
+  public boolean isFinished() {
+	return result != null;
+  }
+
+
+}